@@ -28,10 +28,10 @@ import org.hyperledger.aries.api.connection.ConnectionState;
 import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
 import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.aries.api.resolver.DIDDocument;
+import org.hyperledger.bpa.model.CredExPartnerSummary;
 import org.hyperledger.bpa.model.Partner;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -46,12 +46,12 @@ public class PartnerAPI {
     private Long createdAt;
     private Long updatedAt;
     private Long lastSeen;
+    private Integer pingRttMs;
     private Boolean trustPing;
     private Boolean valid;
     private Boolean ariesSupport;
     private Boolean incoming;
     private ConnectionState state;
-    private Map<ConnectionState, Long> stateToTimestamp;
     private String alias;
     private String label;
     private String did;
@@ -63,6 +63,9 @@ public class PartnerAPI {
     private transient VerifiablePresentation<VerifiableIndyCredential> verifiablePresentation;
     @JsonIgnore
     private transient DIDDocument didDocAPI;
+    /** legal name, if the partner is only loaded as {@link CredExPartnerSummary} */
+    @JsonIgnore
+    private transient String legalName;
     // end: internal use only
 
     @Data
@@ -85,16 +88,32 @@ public class PartnerAPI {
         return result;
     }
 
+    /**
+     * Lightweight partner without credentials and tags
+     *
+     * @param s {@link CredExPartnerSummary}
+     * @return {@link PartnerAPI}
+     */
+    public static PartnerAPI from(@NonNull CredExPartnerSummary s) {
+        return new PartnerAPI()
+                .setId(s.getPartnerId() != null ? s.getPartnerId().toString() : null)
+                .setAlias(s.getAlias())
+                .setLabel(s.getLabel())
+                .setDid(s.getDid())
+                .setState(s.getState())
+                .setLegalName(s.getLegalName());
+    }
+
     public static void copyFrom(@NonNull PartnerAPI to, @NonNull Partner from) {
         to
                 .setCreatedAt(from.getCreatedAt() != null ? from.getCreatedAt().toEpochMilli() : null)
                 .setUpdatedAt(from.getUpdatedAt() != null ? from.getUpdatedAt().toEpochMilli() : null)
                 .setLastSeen(from.getLastSeen() != null ? from.getLastSeen().toEpochMilli() : null)
+                .setPingRttMs(from.getPingRttMs())
                 .setId(from.getId() != null ? from.getId().toString() : null)
                 .setValid(from.getValid())
                 .setAriesSupport(from.getAriesSupport())
                 .setState(from.getState())
-                .setStateToTimestamp(from.getStateToTimestamp() != null ? from.getStateToTimestamp().toApi() : null)
                 .setTrustPing(from.getTrustPing())
                 .setAlias(from.getAlias())
                 .setLabel(from.getLabel())
@@ -140,6 +159,9 @@ public class PartnerAPI {
                 return legalName.get();
             }
         }
+        if (StringUtils.isNotEmpty(legalName)) {
+            return legalName;
+        }
         if (StringUtils.isNotEmpty(label)) {
             return label;
         }
@@ -61,7 +61,7 @@ public class AriesCredential {
         }
         return b
                 .id(c.getId())
-                .issuedAt(c.calculateIssuedAt() != null ? c.calculateIssuedAt().toEpochMilli() : null)
+                .issuedAt(c.getIssuedAt() != null ? c.getIssuedAt().toEpochMilli() : null)
                 .state(c.getState())
                 .isPublic(c.checkIfPublic())
                 .issuer(c.getIssuer())
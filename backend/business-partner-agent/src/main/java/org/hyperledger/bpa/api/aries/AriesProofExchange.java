@@ -45,7 +45,6 @@ public class AriesProofExchange {
     private PresentationExchangeRole role;
 
     private Long updatedAt;
-    public Map<PresentationExchangeState, Long> stateToTimestamp;
 
     private String typeLabel;
 
@@ -65,7 +64,6 @@ public class AriesProofExchange {
                 .role(p.getRole())
                 .problemReport(p.getProblemReport())
                 .exchangeVersion(p.getExchangeVersion())
-                .stateToTimestamp(p.getStateToTimestamp() != null ? p.getStateToTimestamp().toApi() : null)
                 .valid(p.getValid())
                 .updatedAt(p.getUpdatedAt().toEpochMilli())
                 .build();
@@ -17,9 +17,12 @@
  */
 package org.hyperledger.bpa.client;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.cache.annotation.Cacheable;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpStatus;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
@@ -32,13 +35,13 @@ import org.hyperledger.aries.api.exception.AriesException;
 import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
 import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.aries.api.resolver.DIDDocument;
-import org.hyperledger.aries.config.GsonConfig;
 import org.hyperledger.bpa.api.exception.NetworkException;
 import org.hyperledger.bpa.api.exception.PartnerException;
+import org.hyperledger.bpa.client.api.ConditionalResponse;
 import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.impl.util.Converter;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map;
@@ -52,16 +55,14 @@ import java.util.Optional;
 @Singleton
 public class DidDocClient {
 
-    private static final Type VP_TYPE = new TypeToken<VerifiablePresentation<VerifiableIndyCredential>>() {
-    }.getType();
-
     @Inject
     AriesClient ac;
 
     @Inject
     BPAMessageSource.DefaultMessageSource msg;
 
-    private final Gson gson = GsonConfig.defaultConfig();
+    @Inject
+    ObjectMapper mapper;
 
     private final OkHttpClient okClient = new OkHttpClient();
 
@@ -78,10 +79,50 @@ public class DidDocClient {
     }
 
     public Optional<VerifiablePresentation<VerifiableIndyCredential>> getPublicProfile(String url) {
-        return call(url, VP_TYPE);
+        return call(url, Converter.VP_TYPEREF);
     }
 
-    public <T> Optional<T> call(String url, Type type) {
+    /**
+     * Fetches the public profile only if it changed since the provided validators
+     * were issued.
+     *
+     * @param url          public profile url
+     * @param etag         ETag of the last fetched profile
+     * @param lastModified Last-Modified of the last fetched profile
+     * @return {@link ConditionalResponse}, without body if the call was not
+     *         successful
+     */
+    public ConditionalResponse<VerifiablePresentation<VerifiableIndyCredential>> getPublicProfile(
+            @NonNull String url, @Nullable String etag, @Nullable String lastModified) {
+        Request.Builder request = new Request.Builder().url(toUrl(url));
+        if (etag != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            request.header(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        try (Response response = okClient.newCall(request.build()).execute()) {
+            ConditionalResponse.ConditionalResponseBuilder<VerifiablePresentation<VerifiableIndyCredential>> result = ConditionalResponse
+                    .<VerifiablePresentation<VerifiableIndyCredential>>builder()
+                    .etag(response.header(HttpHeaders.ETAG, etag))
+                    .lastModified(response.header(HttpHeaders.LAST_MODIFIED, lastModified));
+            if (response.code() == HttpStatus.NOT_MODIFIED.getCode()) {
+                return result.notModified(true).build();
+            }
+            if (response.isSuccessful() && response.body() != null) {
+                return result.body(mapper.readValue(Objects.requireNonNull(response.body()).byteStream(),
+                        Converter.VP_TYPEREF)).build();
+            }
+            log.warn("Could not resolve public profile: {}, {}", response.code(), response.message());
+            return result.build();
+        } catch (IOException e) {
+            String message = msg.getMessage("api.diddoc.partner.call.failed", Map.of("msg", e.getMessage()));
+            log.error(message, e);
+            throw new NetworkException(message);
+        }
+    }
+
+    public <T> Optional<T> call(String url, TypeReference<T> type) {
         Optional<T> result = Optional.empty();
         try {
             URL url2 = new URL(url);
@@ -90,8 +131,8 @@ public class DidDocClient {
                     .build();
             try (Response response = okClient.newCall(request).execute()) {
                 if (response.isSuccessful() && response.body() != null) {
-                    String body = Objects.requireNonNull(response.body()).string();
-                    T md = gson.fromJson(body, type);
+                    // parsed straight from the response stream, no intermediate string
+                    T md = mapper.readValue(Objects.requireNonNull(response.body()).byteStream(), type);
                     result = Optional.of(md);
                 } else {
                     log.warn("Could not resolve public profile: {}, {}", response.code(), response.message());
@@ -108,4 +149,14 @@ public class DidDocClient {
         }
         return result;
     }
+
+    private String toUrl(@NonNull String url) {
+        try {
+            return new URL(url).toString();
+        } catch (MalformedURLException e) {
+            String message = msg.getMessage("api.diddoc.malformed.url", Map.of("url", url));
+            log.error(message, e);
+            throw new PartnerException(message);
+        }
+    }
 }
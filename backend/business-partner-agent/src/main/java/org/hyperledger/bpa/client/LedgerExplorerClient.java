@@ -19,6 +19,7 @@ package org.hyperledger.bpa.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.AccessLevel;
@@ -38,6 +39,7 @@ import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
 import org.hyperledger.bpa.impl.util.AriesStringUtil;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -71,6 +73,11 @@ public class LedgerExplorerClient {
     @Setter(value = AccessLevel.PROTECTED)
     ObjectMapper mapper;
 
+    // transactions per page, a schema has at most a few hundred credential
+    // definitions and a registry a few thousand entries, so one page is usually
+    // enough
+    static final int PAGE_SIZE = 1000;
+
     private final OkHttpClient ok = new OkHttpClient();
 
     /**
@@ -81,7 +88,74 @@ public class LedgerExplorerClient {
      * @return optional list of {@link PartnerCredentialType}
      */
     public Optional<List<PartnerCredentialType>> queryCredentialDefinitions(@NonNull String query) {
-        Optional<List<PartnerCredentialType>> result = Optional.empty();
+        return queryCredentialDefinitionTransactions(query).map(txns -> txns
+                .stream()
+                .map(TxnMetadata::getTxnId)
+                .distinct()
+                .map(PartnerCredentialType::fromCredDefId)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Query the ledger explorer for the credential definition transactions that are
+     * based on a did or a TRX id. All pages are fetched, if one of them fails the
+     * result is empty.
+     *
+     * @param query query can be either a did or a transaction id.
+     * @return optional list of {@link TxnMetadata}, the txnId is the credential
+     *         definition id
+     */
+    public Optional<List<TxnMetadata>> queryCredentialDefinitionTransactions(@NonNull String query) {
+        // 102 = credential definition
+        return queryAllDomainTransactions(AriesStringUtil.getLastSegment(query), "102", 1)
+                .map(txns -> txns
+                        .stream()
+                        .map(DomainTransaction::getTxnMetadata)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Query the ledger explorer for the entry transactions of a revocation
+     * registry, every entry contains the indices that were issued and revoked with
+     * it. The explorer returns the entries ordered by seqNo, the pages that only
+     * contain entries that are known already are skipped, all others are fetched.
+     * If one of them fails the result is empty.
+     *
+     * @param revRegId the revocation registry id
+     * @param known    number of entries of the registry that are known already
+     * @return optional list of {@link DomainTransaction} of the registry, starting
+     *         with the page that contains the first unknown entry
+     */
+    public Optional<List<DomainTransaction>> queryRevocationRegistryEntries(@NonNull String revRegId, int known) {
+        // 114 = revocation registry entry, the explorer does a text search
+        return queryAllDomainTransactions(revRegId, "114", known / PAGE_SIZE + 1)
+                .map(txns -> txns
+                        .stream()
+                        .filter(txn -> txn.getTxn() != null && txn.getTxn().getData() != null
+                                && revRegId.equals(txn.getTxn().getData().path("revocRegDefId").asText()))
+                        .collect(Collectors.toList()));
+    }
+
+    private Optional<List<DomainTransaction>> queryAllDomainTransactions(
+            @NonNull String query, @NonNull String type, int firstPage) {
+        List<DomainTransaction> all = new ArrayList<>();
+        for (int page = firstPage;; page++) {
+            Optional<LedgerQueryResult> result = queryDomainTransactions(query, type, page, PAGE_SIZE);
+            if (result.isEmpty()) {
+                return Optional.empty();
+            }
+            List<DomainTransaction> txns = result.get().getResults();
+            all.addAll(txns);
+            Integer total = result.get().getTotal();
+            if (txns.size() < PAGE_SIZE || (total != null && page * PAGE_SIZE >= total)) {
+                return Optional.of(all);
+            }
+        }
+    }
+
+    private Optional<LedgerQueryResult> queryDomainTransactions(
+            @NonNull String query, @NonNull String type, @Nullable Integer page, @Nullable Integer pageSize) {
+        Optional<LedgerQueryResult> result = Optional.empty();
 
         if (StringUtils.isEmpty(url)) {
             log.error("The system property: 'bpa.ledger.browser' is not set");
@@ -89,26 +163,24 @@ public class LedgerExplorerClient {
         }
 
         try {
-            HttpUrl b = HttpUrl.parse(url + "/ledger/domain")
+            HttpUrl.Builder b = HttpUrl.parse(url + "/ledger/domain")
                     .newBuilder()
-                    .addQueryParameter("query", AriesStringUtil.getLastSegment(query))
-                    .addQueryParameter("type", "102") // 102 = credential definition
-                    .build();
+                    .addQueryParameter("query", query)
+                    .addQueryParameter("type", type);
+            if (page != null) {
+                b.addQueryParameter("page", page.toString());
+            }
+            if (pageSize != null) {
+                b.addQueryParameter("page_size", pageSize.toString());
+            }
             Request request = new Request.Builder()
-                    .url(b)
+                    .url(b.build())
                     .build();
             try (Response response = ok.newCall(request).execute()) {
                 if (response.isSuccessful() && response.body() != null) {
                     String body = response.body().string();
-                    LedgerQueryResult md = mapper.readValue(body, LedgerQueryResult.class);
-                    List<PartnerCredentialType> credDefIds = md.getResults()
-                            .stream()
-                            .map(DomainTransaction::getTxnMetadata)
-                            .map(TxnMetadata::getTxnId)
-                            .distinct()
-                            .map(PartnerCredentialType::fromCredDefId)
-                            .collect(Collectors.toList());
-                    result = Optional.of(credDefIds);
+                    result = Optional.ofNullable(mapper.readValue(body, LedgerQueryResult.class))
+                            .filter(md -> md.getResults() != null);
                 } else {
                     log.warn("Could not query ledger: {}, {}", response.code(), response.message());
                 }
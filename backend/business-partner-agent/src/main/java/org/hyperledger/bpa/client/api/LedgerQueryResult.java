@@ -18,6 +18,7 @@
 package org.hyperledger.bpa.client.api;
 
 import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -46,8 +47,17 @@ public class LedgerQueryResult {
     @NoArgsConstructor
     public static final class DomainTransaction {
         private Integer ledgerSize;
+        private Txn txn;
         private TxnMetadata txnMetadata;
 
+        @Data
+        @NoArgsConstructor
+        public static final class Txn {
+            private String type;
+            /** transaction type specific content */
+            private JsonNode data;
+        }
+
         @Data
         @NoArgsConstructor
         public static final class TxnMetadata {
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.gson.*;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Singleton;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Moves JSON between the Gson tree model, that is used by the aries client, and
+ * the Jackson tree model by walking the trees instead of serializing to a
+ * string and parsing it again. Registered with the applications
+ * {@link com.fasterxml.jackson.databind.ObjectMapper}, it replaces the string
+ * based (de)serializers of the aries client.
+ */
+@Singleton
+public class GsonJacksonModule extends SimpleModule {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    public GsonJacksonModule() {
+        super("GsonJacksonModule");
+        addSerializer(JsonElement.class, new JsonElementSerializer());
+        addDeserializer(JsonObject.class, new JsonObjectDeserializer());
+        addDeserializer(JsonArray.class, new JsonArrayDeserializer());
+        addDeserializer(JsonElement.class, new JsonElementDeserializer());
+        setMixInAnnotation(VerifiableCredential.class, VerifiableCredentialMixin.class);
+    }
+
+    /** overrides the field level (de)serializers of the aries client */
+    abstract static class VerifiableCredentialMixin {
+        @JsonSerialize(using = JsonElementSerializer.class)
+        @JsonDeserialize(using = JsonObjectDeserializer.class)
+        JsonObject credentialSubject;
+    }
+
+    public static JsonNode toJsonNode(@Nullable JsonElement e) {
+        if (e == null || e.isJsonNull()) {
+            return NODES.nullNode();
+        }
+        if (e.isJsonObject()) {
+            ObjectNode on = NODES.objectNode();
+            e.getAsJsonObject().entrySet().forEach(entry -> on.set(entry.getKey(), toJsonNode(entry.getValue())));
+            return on;
+        }
+        if (e.isJsonArray()) {
+            ArrayNode an = NODES.arrayNode();
+            e.getAsJsonArray().forEach(element -> an.add(toJsonNode(element)));
+            return an;
+        }
+        JsonPrimitive p = e.getAsJsonPrimitive();
+        if (p.isBoolean()) {
+            return NODES.booleanNode(p.getAsBoolean());
+        }
+        if (p.isNumber()) {
+            Number n = normalize(p.getAsNumber());
+            if (n instanceof BigDecimal) {
+                return NODES.numberNode((BigDecimal) n);
+            }
+            if (n instanceof BigInteger) {
+                return NODES.numberNode((BigInteger) n);
+            }
+            if (n instanceof Double || n instanceof Float) {
+                return NODES.numberNode(n.doubleValue());
+            }
+            long l = n.longValue();
+            return l == (int) l ? NODES.numberNode((int) l) : NODES.numberNode(l);
+        }
+        return NODES.textNode(p.getAsString());
+    }
+
+    public static JsonElement toJsonElement(@Nullable JsonNode n) {
+        if (n == null || n.isNull() || n.isMissingNode()) {
+            return JsonNull.INSTANCE;
+        }
+        if (n.isObject()) {
+            JsonObject jo = new JsonObject();
+            Iterator<Map.Entry<String, JsonNode>> fields = n.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                jo.add(field.getKey(), toJsonElement(field.getValue()));
+            }
+            return jo;
+        }
+        if (n.isArray()) {
+            JsonArray ja = new JsonArray(n.size());
+            n.forEach(element -> ja.add(toJsonElement(element)));
+            return ja;
+        }
+        if (n.isBoolean()) {
+            return new JsonPrimitive(n.booleanValue());
+        }
+        if (n.isNumber()) {
+            return new JsonPrimitive(n.numberValue());
+        }
+        return new JsonPrimitive(n.asText());
+    }
+
+    /**
+     * Gson keeps parsed numbers as string, pick the narrowest java type so that
+     * integers do not end up as floating point numbers. Integral values are written
+     * as int where they fit, the same as jackson would parse them.
+     */
+    private static Number normalize(Number n) {
+        if (!(n instanceof com.google.gson.internal.LazilyParsedNumber)) {
+            return n;
+        }
+        String s = n.toString();
+        if (s.contains(".") || s.contains("e") || s.contains("E")) {
+            return new BigDecimal(s);
+        }
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return new BigInteger(s);
+        }
+    }
+
+    static void write(JsonElement e, JsonGenerator gen) throws IOException {
+        if (e == null || e.isJsonNull()) {
+            gen.writeNull();
+        } else if (e.isJsonObject()) {
+            gen.writeStartObject();
+            for (Map.Entry<String, JsonElement> entry : e.getAsJsonObject().entrySet()) {
+                gen.writeFieldName(entry.getKey());
+                write(entry.getValue(), gen);
+            }
+            gen.writeEndObject();
+        } else if (e.isJsonArray()) {
+            gen.writeStartArray();
+            for (JsonElement element : e.getAsJsonArray()) {
+                write(element, gen);
+            }
+            gen.writeEndArray();
+        } else {
+            JsonPrimitive p = e.getAsJsonPrimitive();
+            if (p.isBoolean()) {
+                gen.writeBoolean(p.getAsBoolean());
+            } else if (p.isNumber()) {
+                Number n = normalize(p.getAsNumber());
+                if (n instanceof BigDecimal) {
+                    gen.writeNumber((BigDecimal) n);
+                } else if (n instanceof BigInteger) {
+                    gen.writeNumber((BigInteger) n);
+                } else if (n instanceof Double || n instanceof Float) {
+                    gen.writeNumber(n.doubleValue());
+                } else {
+                    long l = n.longValue();
+                    if (l == (int) l) {
+                        gen.writeNumber((int) l);
+                    } else {
+                        gen.writeNumber(l);
+                    }
+                }
+            } else {
+                gen.writeString(p.getAsString());
+            }
+        }
+    }
+
+    static class JsonElementSerializer extends JsonSerializer<JsonElement> {
+        @Override
+        public void serialize(JsonElement value, JsonGenerator gen, SerializerProvider serializers)
+                throws IOException {
+            write(value, gen);
+        }
+    }
+
+    static class JsonElementDeserializer extends JsonDeserializer<JsonElement> {
+        @Override
+        public JsonElement deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            return toJsonElement(p.getCodec().readTree(p));
+        }
+
+        @Override
+        public JsonElement getNullValue(DeserializationContext ctxt) {
+            return JsonNull.INSTANCE;
+        }
+    }
+
+    static class JsonObjectDeserializer extends JsonDeserializer<JsonObject> {
+        @Override
+        public JsonObject deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonElement e = toJsonElement(p.getCodec().readTree(p));
+            return e.isJsonObject() ? e.getAsJsonObject() : null;
+        }
+    }
+
+    static class JsonArrayDeserializer extends JsonDeserializer<JsonArray> {
+        @Override
+        public JsonArray deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonElement e = toJsonElement(p.getCodec().readTree(p));
+            return e.isJsonArray() ? e.getAsJsonArray() : null;
+        }
+    }
+}
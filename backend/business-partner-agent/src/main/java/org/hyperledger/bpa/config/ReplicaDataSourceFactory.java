@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+/**
+ * Optional read only replica, only list and count queries are routed to it.
+ * There is no flyway configuration for it, the schema is replicated from the
+ * primary.
+ */
+@Factory
+@Requires(property = "bpa.pg.replica.url", pattern = ".+")
+public class ReplicaDataSourceFactory {
+
+    public static final String REPLICA = "replica";
+
+    @Named(REPLICA)
+    @Singleton
+    @Bean(preDestroy = "close")
+    HikariDataSource replicaDataSource(
+            @Value("${bpa.pg.replica.url}") String url,
+            @Value("${bpa.pg.username}") String username,
+            @Value("${bpa.pg.password}") String password,
+            @Value("${bpa.pg.schema}") String schema) {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setPoolName(REPLICA);
+        ds.setDriverClassName("org.postgresql.Driver");
+        ds.setJdbcUrl(url);
+        ds.setUsername(username);
+        ds.setPassword(password);
+        ds.setSchema(schema);
+        ds.setReadOnly(true);
+        // the replica may come up after the agent
+        ds.setInitializationFailTimeout(-1);
+        return ds;
+    }
+}
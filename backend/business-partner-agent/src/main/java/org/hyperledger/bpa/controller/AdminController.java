@@ -38,6 +38,7 @@ import org.hyperledger.bpa.controller.api.admin.*;
 import org.hyperledger.bpa.impl.TagService;
 import org.hyperledger.bpa.impl.aries.config.RestrictionsManager;
 import org.hyperledger.bpa.impl.aries.config.SchemaService;
+import org.hyperledger.bpa.impl.cluster.JobLeaseManager;
 import org.hyperledger.bpa.impl.mode.indy.EndpointService;
 
 import java.util.List;
@@ -66,6 +67,9 @@ public class AdminController {
     @Inject
     RuntimeConfig config;
 
+    @Inject
+    JobLeaseManager jobLeaseManager;
+
     /**
      * List configured schemas
      *
@@ -269,6 +273,17 @@ public class AdminController {
         return HttpResponse.ok(config);
     }
 
+    /**
+     * List the scheduled jobs that run on one node of the cluster at a time, with
+     * their last run and the node that did it
+     *
+     * @return list of {@link ScheduledJobStatus}
+     */
+    @Get("/jobs")
+    public HttpResponse<List<ScheduledJobStatus>> listScheduledJobs() {
+        return HttpResponse.ok(jobLeaseManager.listJobs());
+    }
+
     /**
      * Trigger the backend to write configured endpoints to the ledger. TAA digest
      * has to be passed to explicitly confirm prior TTA acceptance by the user for
@@ -20,6 +20,7 @@ package org.hyperledger.bpa.controller;
 import io.micronaut.core.annotation.Nullable;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.*;
 import io.micronaut.scheduling.TaskExecutors;
 import io.micronaut.scheduling.annotation.ExecuteOn;
@@ -30,15 +31,19 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.inject.Inject;
+import org.hyperledger.aries.api.ExchangeVersion;
 import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
 import org.hyperledger.bpa.api.aries.SchemaAPI;
 import org.hyperledger.bpa.controller.api.issuer.*;
+import org.hyperledger.bpa.impl.IssuanceJobManager;
 import org.hyperledger.bpa.impl.IssuerCredentialManager;
+import org.hyperledger.bpa.impl.RevocationJobManager;
 import org.hyperledger.bpa.impl.aries.ConnectionLessCredential;
 import org.hyperledger.bpa.impl.aries.config.SchemaService;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -56,6 +61,12 @@ public class IssuerController {
     @Inject
     IssuerCredentialManager im;
 
+    @Inject
+    RevocationJobManager revocationManager;
+
+    @Inject
+    IssuanceJobManager issuanceManager;
+
     @Inject
     ConnectionLessCredential connectionLess;
 
@@ -147,6 +158,50 @@ public class IssuerController {
         return HttpResponse.ok(exchange);
     }
 
+    /**
+     * Offer credentials based on one credential definition to many partners, the
+     * offers are sent in the background
+     *
+     * @param req {@link BulkIssueCredentialRequest}
+     * @return {@link IssuanceJobAPI}
+     */
+    @Post("/issue-credential/bulk")
+    public HttpResponse<IssuanceJobAPI> issueCredentialBulk(@Valid @Body BulkIssueCredentialRequest req) {
+        return HttpResponse.accepted().body(issuanceManager.startIssuance(req));
+    }
+
+    /**
+     * Offer credentials from csv, the header line is: partnerId,attribute1,...
+     * followed by one credential per line
+     *
+     * @param csv             csv content
+     * @param credDefId       credential definition id
+     * @param exchangeVersion credential exchange api version
+     * @return {@link IssuanceJobAPI}
+     */
+    @Post(value = "/issue-credential/bulk/csv", consumes = MediaType.TEXT_PLAIN)
+    public HttpResponse<IssuanceJobAPI> issueCredentialBulkCsv(
+            @Body String csv,
+            @Parameter(description = "credential definition id") @QueryValue UUID credDefId,
+            @Parameter(description = "exchange version") @Nullable @QueryValue ExchangeVersion exchangeVersion) {
+        return HttpResponse.accepted().body(issuanceManager.startIssuance(credDefId, exchangeVersion, csv));
+    }
+
+    /**
+     * Get the progress of a bulk issuance
+     *
+     * @param id {@link UUID} the issuance job id
+     * @return {@link IssuanceJobAPI}
+     */
+    @Get("/issue-credential/bulk/{id}")
+    public HttpResponse<IssuanceJobAPI> getIssuanceJob(@PathVariable UUID id) {
+        Optional<IssuanceJobAPI> job = issuanceManager.getIssuanceJob(id);
+        if (job.isPresent()) {
+            return HttpResponse.ok(job.get());
+        }
+        return HttpResponse.notFound();
+    }
+
     /**
      * Issue connection-less credential step 1 - prepares credential offer and
      * returns URL for use within the barcode
@@ -174,15 +229,19 @@ public class IssuerController {
     }
 
     /**
-     * List issued credentials
+     * List issued credentials, newest first. The result is paged, to get the next
+     * page pass the nextCursor of the previous page.
      *
-     * @return list of {@link CredEx}
+     * @return {@link CredExPage}
      */
     @Get("/exchanges")
-    public HttpResponse<List<CredEx>> listCredentialExchanges(
+    public HttpResponse<CredExPage> listCredentialExchanges(
             @Parameter(description = "issuer or holder") @Nullable @QueryValue CredentialExchangeRole role,
-            @Parameter(description = "partner id") @Nullable @QueryValue String partnerId) {
-        return HttpResponse.ok(im.listCredentialExchanges(role, partnerId != null ? UUID.fromString(partnerId) : null));
+            @Parameter(description = "partner id") @Nullable @QueryValue String partnerId,
+            @Parameter(description = "nextCursor of the previous page") @Nullable @QueryValue String cursor,
+            @Parameter(description = "page size") @Nullable @QueryValue Integer size) {
+        return HttpResponse.ok(im.listCredentialExchanges(role,
+                partnerId != null ? UUID.fromString(partnerId) : null, cursor, size));
     }
 
     /**
@@ -195,6 +254,17 @@ public class IssuerController {
         return HttpResponse.ok(im.getCredEx(id));
     }
 
+    /**
+     * Get the state history of a credential exchange
+     *
+     * @param id credential exchange id
+     * @return state to timestamp in the order the states were reached
+     */
+    @Get("/exchanges/{id}/timeline")
+    public HttpResponse<Map<String, Long>> getCredentialExchangeTimeline(@PathVariable UUID id) {
+        return HttpResponse.ok(im.getCredExTimeline(id));
+    }
+
     /**
      * Revoke an issued credential
      *
@@ -206,6 +276,33 @@ public class IssuerController {
         return HttpResponse.ok(im.revokeCredentialExchange(id));
     }
 
+    /**
+     * Revoke multiple issued credentials, the revocation runs in the background and
+     * is published to the ledger once per revocation registry
+     *
+     * @param req {@link RevokeCredentialsRequest}
+     * @return {@link RevocationJobAPI}
+     */
+    @Post("/exchanges/revoke")
+    public HttpResponse<RevocationJobAPI> revokeCredentials(@Body RevokeCredentialsRequest req) {
+        return HttpResponse.accepted().body(revocationManager.startRevocation(req));
+    }
+
+    /**
+     * Get the progress of a bulk revocation
+     *
+     * @param id {@link UUID} the revocation job id
+     * @return {@link RevocationJobAPI}
+     */
+    @Get("/exchanges/revoke/{id}")
+    public HttpResponse<RevocationJobAPI> getRevocationJob(@PathVariable UUID id) {
+        Optional<RevocationJobAPI> job = revocationManager.getRevocationJob(id);
+        if (job.isPresent()) {
+            return HttpResponse.ok(job.get());
+        }
+        return HttpResponse.notFound();
+    }
+
     /**
      * Send holder a new credential offer based on an existing (revoked) exchange
      * record
@@ -19,12 +19,14 @@ package org.hyperledger.bpa.controller;
 
 import io.micronaut.core.annotation.Nullable;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.*;
 import io.micronaut.scheduling.TaskExecutors;
 import io.micronaut.scheduling.annotation.ExecuteOn;
 import io.micronaut.security.annotation.Secured;
 import io.micronaut.security.rules.SecurityRule;
 import io.micronaut.validation.Validated;
+import io.reactivex.rxjava3.core.Flowable;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -39,6 +41,7 @@ import org.hyperledger.bpa.controller.api.partner.*;
 import org.hyperledger.bpa.controller.api.proof.PresentationRequestVersion;
 import org.hyperledger.bpa.impl.ChatMessageManager;
 import org.hyperledger.bpa.impl.ChatMessageService;
+import org.hyperledger.bpa.impl.PartnerImportManager;
 import org.hyperledger.bpa.impl.PartnerManager;
 import org.hyperledger.bpa.impl.ProofTemplateManager;
 import org.hyperledger.bpa.impl.activity.PartnerLookup;
@@ -47,7 +50,9 @@ import org.hyperledger.bpa.impl.aries.PartnerCredDefLookup;
 import org.hyperledger.bpa.impl.aries.ProofManager;
 import org.hyperledger.bpa.model.ChatMessage;
 
+import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -62,6 +67,9 @@ public class PartnerController {
     @Inject
     PartnerManager pm;
 
+    @Inject
+    PartnerImportManager importManager;
+
     @Inject
     PartnerLookup partnerLookup;
 
@@ -116,6 +124,21 @@ public class PartnerController {
         return HttpResponse.notFound();
     }
 
+    /**
+     * Get the connection state history of a partner
+     *
+     * @param id {@link UUID} the partner id
+     * @return state to timestamp in the order the states were reached
+     */
+    @Get("/{id}/timeline")
+    public HttpResponse<Map<String, Long>> getPartnerTimeline(@PathVariable UUID id) {
+        Optional<Map<String, Long>> timeline = pm.getPartnerTimeline(id);
+        if (timeline.isPresent()) {
+            return HttpResponse.ok(timeline.get());
+        }
+        return HttpResponse.notFound();
+    }
+
     /**
      * Update partner
      *
@@ -175,6 +198,47 @@ public class PartnerController {
         return HttpResponse.created(pm.addPartnerFlow(request));
     }
 
+    /**
+     * Bulk import partners, the import runs in the background
+     *
+     * @param request {@link ImportPartnersRequest}
+     * @return {@link PartnerImportJobAPI}
+     */
+    @Post("/import")
+    public HttpResponse<PartnerImportJobAPI> importPartners(@Valid @Body ImportPartnersRequest request) {
+        return HttpResponse.accepted().body(importManager.startImport(request));
+    }
+
+    /**
+     * Bulk import partners from csv, one partner per line: did,alias,tag1;tag2
+     *
+     * @param csv       csv content
+     * @param trustPing if the trust ping feature should be active for the imported
+     *                  partners
+     * @return {@link PartnerImportJobAPI}
+     */
+    @Post(value = "/import/csv", consumes = MediaType.TEXT_PLAIN)
+    public HttpResponse<PartnerImportJobAPI> importPartnersCsv(
+            @Body String csv,
+            @Parameter(description = "trust ping") @Nullable @QueryValue Boolean trustPing) {
+        return HttpResponse.accepted().body(importManager.startImport(csv, trustPing));
+    }
+
+    /**
+     * Get the progress of a partner import
+     *
+     * @param id {@link UUID} the import job id
+     * @return {@link PartnerImportJobAPI}
+     */
+    @Get("/import/{id}")
+    public HttpResponse<PartnerImportJobAPI> getPartnerImport(@PathVariable UUID id) {
+        Optional<PartnerImportJobAPI> job = importManager.getImportJob(id);
+        if (job.isPresent()) {
+            return HttpResponse.ok(job.get());
+        }
+        return HttpResponse.notFound();
+    }
+
     /**
      * Manual connection flow. Accept partner connection request
      *
@@ -198,6 +262,29 @@ public class PartnerController {
         return HttpResponse.ok(partnerLookup.lookupPartner(did));
     }
 
+    /**
+     * Lookup/Preview the public profiles of multiple partners at once
+     *
+     * @param req {@link LookupPartnersRequest}
+     * @return list of {@link PartnerLookupResult}, one per did
+     */
+    @Post("/lookup")
+    public HttpResponse<List<PartnerLookupResult>> lookupPartners(@Valid @Body LookupPartnersRequest req) {
+        return HttpResponse.ok(partnerLookup.lookupPartners(req.getDid()).toList().blockingGet());
+    }
+
+    /**
+     * Lookup/Preview the public profiles of multiple partners at once, streams each
+     * result as soon as the lookup completes
+     *
+     * @param req {@link LookupPartnersRequest}
+     * @return stream of {@link PartnerLookupResult}, one per did
+     */
+    @Post(value = "/lookup/stream", produces = MediaType.APPLICATION_JSON_STREAM)
+    public Flowable<PartnerLookupResult> streamLookupPartners(@Valid @Body LookupPartnersRequest req) {
+        return partnerLookup.lookupPartners(req.getDid());
+    }
+
     /**
      * Reload/Re- lookup a partners public profile
      *
@@ -42,6 +42,7 @@ import org.hyperledger.bpa.impl.aries.ProofManager;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Slf4j
@@ -143,6 +144,17 @@ public class ProofExchangeController {
         return HttpResponse.ok(pProof);
     }
 
+    /**
+     * Get the state history of a proof exchange
+     *
+     * @param id {@link UUID} presentation exchange id
+     * @return state to timestamp in the order the states were reached
+     */
+    @Get("/{id}/timeline")
+    public HttpResponse<Map<String, Long>> getProofExchangeTimeline(@PathVariable UUID id) {
+        return HttpResponse.ok(proofM.getPartnerProofTimeline(id));
+    }
+
     /**
      * Aries: Deletes a proof exchange by id
      *
@@ -27,7 +27,10 @@ import io.micronaut.security.rules.SecurityRule;
 import io.micronaut.validation.Validated;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.inject.Inject;
+import org.hyperledger.bpa.controller.api.prooftemplates.BulkProofRequest;
+import org.hyperledger.bpa.controller.api.prooftemplates.ProofRequestJobAPI;
 import org.hyperledger.bpa.controller.api.prooftemplates.ProofTemplate;
+import org.hyperledger.bpa.impl.ProofRequestJobManager;
 import org.hyperledger.bpa.impl.ProofTemplateManager;
 import org.hyperledger.bpa.model.BPAProofTemplate;
 
@@ -48,6 +51,9 @@ public class ProofTemplateController {
     @Inject
     ProofTemplateManager proofTemplateManager;
 
+    @Inject
+    ProofRequestJobManager proofRequestJobManager;
+
     /**
      * List configured templates
      * 
@@ -108,6 +114,36 @@ public class ProofTemplateController {
         return HttpResponse.ok(proofTemplateManager.getKnownConditionOperators());
     }
 
+    /**
+     * Request proofs via template from all partners with the given tag. The
+     * requests are sent in the background, the response contains the job that
+     * tracks the progress.
+     *
+     * @param id  proof template id
+     * @param req {@link BulkProofRequest}
+     * @return {@link ProofRequestJobAPI}
+     */
+    @Post("/{id}/proof-request")
+    public HttpResponse<ProofRequestJobAPI> requestProofsByTag(@PathVariable UUID id,
+            @Valid @Body BulkProofRequest req) {
+        return HttpResponse.accepted().body(proofRequestJobManager.startProofRequests(id, req));
+    }
+
+    /**
+     * Progress of a bulk proof request
+     *
+     * @param jobId job id
+     * @return {@link ProofRequestJobAPI}
+     */
+    @Get("/proof-request/{jobId}")
+    public HttpResponse<ProofRequestJobAPI> getProofRequestJob(@PathVariable UUID jobId) {
+        Optional<ProofRequestJobAPI> job = proofRequestJobManager.getProofRequestJob(jobId);
+        if (job.isPresent()) {
+            return HttpResponse.ok(job.get());
+        }
+        return HttpResponse.notFound();
+    }
+
     /**
      * Delete proof template by id
      * 
@@ -17,7 +17,11 @@
  */
 package org.hyperledger.bpa.controller;
 
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
 import io.micronaut.scheduling.TaskExecutors;
@@ -27,11 +31,9 @@ import io.micronaut.security.rules.SecurityRule;
 import io.micronaut.validation.Validated;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.inject.Inject;
-import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
-import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.aries.api.resolver.DIDDocument;
 import org.hyperledger.bpa.impl.DidDocManager;
-import org.hyperledger.bpa.impl.activity.VPManager;
+import org.hyperledger.bpa.impl.activity.PublicDocumentCache;
 
 import java.util.Optional;
 
@@ -42,28 +44,52 @@ import java.util.Optional;
 @ExecuteOn(TaskExecutors.IO)
 public class PublicProfileController {
 
+    private static final String CACHE_CONTROL = "public, max-age=60";
+
     @Inject
-    VPManager vpMgmt;
+    PublicDocumentCache publicDocs;
 
     @Inject
     DidDocManager didDocManager;
 
     @Get("/profile.jsonld")
-    public HttpResponse<VerifiablePresentation<VerifiableIndyCredential>> getMasterdata() {
-        Optional<VerifiablePresentation<VerifiableIndyCredential>> vp = vpMgmt.getVerifiablePresentation();
-        if (vp.isPresent()) {
-            return HttpResponse.ok(vp.get());
-        }
-        return HttpResponse.notFound();
+    public HttpResponse<byte[]> getMasterdata(HttpRequest<?> request) {
+        return publicDocs.getProfile()
+                .map(doc -> toResponse(request, doc))
+                .orElseGet(HttpResponse::notFound);
     }
 
     @Get("/.well-known/did.json")
-    public HttpResponse<DIDDocument> getDid() {
-
+    public HttpResponse<?> getDid(HttpRequest<?> request) {
+        // in web mode the did document is stored locally, otherwise it's on the ledger
+        Optional<PublicDocumentCache.SerializedDocument> web = publicDocs.getDidDocument();
+        if (web.isPresent()) {
+            return toResponse(request, web.get());
+        }
         Optional<DIDDocument> api = didDocManager.getDidDocument();
         if (api.isPresent()) {
             return HttpResponse.ok(api.get());
         }
         return HttpResponse.notFound();
     }
+
+    private static MutableHttpResponse<byte[]> toResponse(
+            HttpRequest<?> request, PublicDocumentCache.SerializedDocument doc) {
+        if (doc.matches(request.getHeaders().get(HttpHeaders.IF_NONE_MATCH))) {
+            return HttpResponse.<byte[]>notModified()
+                    .header(HttpHeaders.ETAG, doc.getEtag())
+                    .header(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        }
+        String acceptEncoding = request.getHeaders().get(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        MutableHttpResponse<byte[]> response = HttpResponse.ok(gzip ? doc.getGzip() : doc.getJson())
+                .contentType(MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.ETAG, doc.getEtag())
+                .header(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response;
+    }
 }
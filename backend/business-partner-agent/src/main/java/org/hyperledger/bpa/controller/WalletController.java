@@ -32,13 +32,17 @@ import jakarta.inject.Inject;
 import org.hyperledger.bpa.api.CredentialType;
 import org.hyperledger.bpa.api.MyDocumentAPI;
 import org.hyperledger.bpa.api.aries.AriesCredential;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.config.BPAMessageSource;
 import org.hyperledger.bpa.controller.api.issuer.DeclineExchangeRequest;
 import org.hyperledger.bpa.controller.api.wallet.WalletCredentialRequest;
 import org.hyperledger.bpa.controller.api.wallet.WalletDocumentRequest;
 import org.hyperledger.bpa.impl.MyDocumentManager;
 import org.hyperledger.bpa.impl.aries.HolderCredentialManager;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -55,6 +59,9 @@ public class WalletController {
     @Inject
     HolderCredentialManager holderCredMgmt;
 
+    @Inject
+    BPAMessageSource.DefaultMessageSource msg;
+
     // -------------------------------------
     // Document Management
     // -------------------------------------
@@ -134,11 +141,26 @@ public class WalletController {
     /**
      * Aries: List wallet credentials
      *
+     * @param attribute multi value list of name=value pairs, only credentials that
+     *                  contain all the values are returned
      * @return list of {@link AriesCredential}
      */
     @Get("/credential")
-    public HttpResponse<List<AriesCredential>> getCredentials() {
-        return HttpResponse.ok(holderCredMgmt.listCredentials());
+    public HttpResponse<List<AriesCredential>> getCredentials(
+            @Parameter(
+                    description = "attribute filter, name=value") @Nullable @QueryValue @Format("MULTI") List<String> attribute) {
+        Map<String, String> attributes = new HashMap<>();
+        if (attribute != null) {
+            attribute.forEach(a -> {
+                int idx = a.indexOf('=');
+                if (idx < 1) {
+                    throw new WrongApiUsageException(
+                            msg.getMessage("api.holder.credential.attribute.filter.invalid", Map.of("filter", a)));
+                }
+                attributes.put(a.substring(0, idx), a.substring(idx + 1));
+            });
+        }
+        return HttpResponse.ok(holderCredMgmt.listCredentials(attributes));
     }
 
     /**
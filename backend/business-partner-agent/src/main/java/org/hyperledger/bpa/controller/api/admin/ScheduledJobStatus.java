@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.controller.api.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hyperledger.bpa.model.ScheduledJob;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScheduledJobStatus {
+    private String name;
+    private boolean running;
+    /** node that ran the job last */
+    private String node;
+    private Instant lastStartedAt;
+    private Instant lastFinishedAt;
+    private Long lastDurationMs;
+    private Boolean lastSuccess;
+    private String lastError;
+    private Long runs;
+
+    public static ScheduledJobStatus from(ScheduledJob db, boolean running) {
+        return ScheduledJobStatus
+                .builder()
+                .name(db.getName())
+                .running(running)
+                .node(db.getNode())
+                .lastStartedAt(db.getLastStartedAt())
+                .lastFinishedAt(db.getLastFinishedAt())
+                .lastDurationMs(db.getLastDurationMs())
+                .lastSuccess(db.getLastSuccess())
+                .lastError(db.getLastError())
+                .runs(db.getRuns())
+                .build();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.controller.api.issuer;
+
+import io.micronaut.core.annotation.Introspected;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hyperledger.aries.api.ExchangeVersion;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Offer credentials based on one credential definition to many partners
+ */
+@Introspected
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkIssueCredentialRequest {
+
+    @NotNull
+    private UUID credDefId;
+
+    /** credential exchange api version */
+    private ExchangeVersion exchangeVersion;
+
+    @Valid
+    @NotEmpty
+    private List<BulkIssueCredentialRow> credentials;
+
+    @Introspected
+    @Builder
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static final class BulkIssueCredentialRow {
+        @NotNull
+        private UUID partnerId;
+        /** credential body key value pairs */
+        @NotEmpty
+        private Map<String, String> document;
+    }
+}
@@ -47,7 +47,6 @@ public class CredEx {
     private Credential credential; // TODO should also be Map<String, String>
     private CredentialExchangeRole role;
     private CredentialExchangeState state;
-    public Map<CredentialExchangeState, Long> stateToTimestamp;
     private CredentialType type;
     private String displayText;
     private Boolean revoked;
@@ -106,7 +105,6 @@ public class CredEx {
                         .build())
                 .role(db.getRole())
                 .state(db.getState())
-                .stateToTimestamp(db.getStateToTimestamp() != null ? db.getStateToTimestamp().toApi() : null)
                 .type(db.getType())
                 .displayText(displayText)
                 .revoked(db.getRevoked())
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.controller.api.partner;
+
+import io.micronaut.core.annotation.Introspected;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Introspected
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportPartnersRequest {
+
+    @Valid
+    @NotEmpty
+    private List<ImportPartner> partners;
+
+    /** If the trust ping feature should be active for the imported partners */
+    private Boolean trustPing;
+
+    @Introspected
+    @Builder
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static final class ImportPartner {
+        /** The fully qualified did like did:sov:123 */
+        @NotBlank
+        private String did;
+        private String alias;
+        /** tag names, tags that do not exist yet are created */
+        private List<String> tag;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.controller.api.partner;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.model.PartnerImportItem;
+import org.hyperledger.bpa.model.PartnerImportJob;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress of a partner import job
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartnerImportJobAPI {
+    private UUID id;
+    private Long createdAt;
+    private Long updatedAt;
+    private JobState state;
+    private Integer total;
+    private Long pending;
+    private Long imported;
+    private Long skipped;
+    private Long failed;
+    /** items that were skipped or failed */
+    private List<ImportItem> problems;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static final class ImportItem {
+        private Integer position;
+        private String did;
+        private JobItemState state;
+        private String error;
+
+        public static ImportItem from(PartnerImportItem item) {
+            return ImportItem
+                    .builder()
+                    .position(item.getPosition())
+                    .did(item.getDid())
+                    .state(item.getState())
+                    .error(item.getError())
+                    .build();
+        }
+    }
+
+    public static PartnerImportJobAPIBuilder from(PartnerImportJob job) {
+        return PartnerImportJobAPI
+                .builder()
+                .id(job.getId())
+                .createdAt(job.getCreatedAt() != null ? job.getCreatedAt().toEpochMilli() : null)
+                .updatedAt(job.getUpdatedAt() != null ? job.getUpdatedAt().toEpochMilli() : null)
+                .state(job.getState())
+                .total(job.getTotal());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.controller.api.prooftemplates;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.model.ProofRequestItem;
+import org.hyperledger.bpa.model.ProofRequestJob;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress of a bulk proof request job
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProofRequestJobAPI {
+    private UUID id;
+    private Long createdAt;
+    private Long updatedAt;
+    private JobState state;
+    private UUID proofTemplateId;
+    private String tag;
+    private Integer total;
+    private Long pending;
+    /** requests that were sent */
+    private Long requested;
+    private Long failed;
+    /** partners the request could not be sent to */
+    private List<ProofRequestJobItem> problems;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static final class ProofRequestJobItem {
+        private Integer position;
+        private UUID partnerId;
+        private JobItemState state;
+        private String error;
+
+        public static ProofRequestJobItem from(ProofRequestItem item) {
+            return ProofRequestJobItem
+                    .builder()
+                    .position(item.getPosition())
+                    .partnerId(item.getPartnerId())
+                    .state(item.getState())
+                    .error(item.getError())
+                    .build();
+        }
+    }
+
+    public static ProofRequestJobAPIBuilder from(ProofRequestJob job) {
+        return ProofRequestJobAPI
+                .builder()
+                .id(job.getId())
+                .createdAt(job.getCreatedAt() != null ? job.getCreatedAt().toEpochMilli() : null)
+                .updatedAt(job.getUpdatedAt() != null ? job.getUpdatedAt().toEpochMilli() : null)
+                .state(job.getState())
+                .proofTemplateId(job.getProofTemplateId())
+                .tag(job.getTag())
+                .total(job.getTotal());
+    }
+}
@@ -38,4 +38,6 @@ public class BPAStats {
 
     private DashboardCounts totals;
     private DashboardCounts periodTotals;
+
+    private VPRegenerationStats vpRegeneration;
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.util.CollectionUtils;
+import io.micronaut.data.model.Pageable;
+import jakarta.inject.Inject;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.impl.cluster.BulkJobRunner;
+import org.hyperledger.bpa.impl.cluster.BulkJobType;
+import org.hyperledger.bpa.model.BulkJobItem;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.repository.BulkItemRepository;
+import org.hyperledger.bpa.repository.BulkJobRepository;
+import org.hyperledger.bpa.repository.PartnerRepository;
+import org.hyperledger.bpa.util.Pair;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Skeleton of a bulk job. A job is stored together with its items, and run by
+ * the {@link BulkJobRunner} which processes the pending items in batches
+ * ordered by their position until none is left. Every item is stored as soon as
+ * it is processed, so a job that was interrupted continues with the items that
+ * are still pending once aca-py is ready again.
+ *
+ * @param <J> the job entity
+ * @param <I> the item entity
+ */
+@Slf4j
+public abstract class AbstractBulkJobManager<J, I extends BulkJobItem>
+        implements ApplicationEventListener<StartupTasks.AcaPyReady> {
+
+    /**
+     * Processes a batch of pending items, every item should be in a final state
+     * afterwards or the job has to stop.
+     */
+    @FunctionalInterface
+    protected interface BatchTask<I> {
+        void process(@NonNull List<I> items) throws IOException;
+    }
+
+    @Inject
+    BulkJobRunner jobRunner;
+
+    @Inject
+    PartnerRepository partnerRepo;
+
+    @Inject
+    BPAMessageSource.DefaultMessageSource msg;
+
+    protected abstract BulkJobType type();
+
+    protected abstract BulkJobRepository<J> jobRepo();
+
+    protected abstract BulkItemRepository<I> itemRepo();
+
+    protected abstract int batchSize();
+
+    /**
+     * Loads what is needed once per job, e.g. the credential definition
+     *
+     * @param job the job
+     * @return processes the batches of the job
+     */
+    protected abstract BatchTask<I> prepare(@NonNull J job);
+
+    /**
+     * @param jobId the job id
+     * @return the next batch of items to process, empty if there are none left
+     */
+    protected List<I> nextBatch(@NonNull UUID jobId) {
+        return itemRepo().findByJobIdAndStateOrderByPosition(jobId, JobItemState.PENDING,
+                Pageable.from(0, batchSize()));
+    }
+
+    /**
+     * Called once all batches are processed, before the job is completed
+     *
+     * @param jobId the job id
+     * @throws IOException if aca-py is not available
+     */
+    protected void finish(@NonNull UUID jobId) throws IOException {
+        // nothing to do by default
+    }
+
+    @Override
+    public void onApplicationEvent(StartupTasks.AcaPyReady event) {
+        jobRunner.resume(type(), jobRepo(), this::run);
+    }
+
+    /**
+     * Stores the items of a new job and runs it in the background
+     *
+     * @param jobId the job id
+     * @param items all items of the job
+     */
+    protected void start(@NonNull UUID jobId, @NonNull List<I> items) {
+        itemRepo().saveAll(items);
+        jobRunner.submit(type(), jobRepo(), jobId, this::run);
+    }
+
+    void run(@NonNull UUID jobId) throws IOException {
+        Optional<J> job = jobRepo().findById(jobId);
+        if (job.isEmpty()) {
+            return;
+        }
+        BatchTask<I> task = prepare(job.get());
+        List<I> items;
+        while (!(items = nextBatch(jobId)).isEmpty()) {
+            jobRunner.checkLease(jobId);
+            task.process(items);
+        }
+        finish(jobId);
+        jobRepo().updateState(jobId, JobState.COMPLETED);
+        log.info("{} job: {} completed", type().getLabel(), jobId);
+    }
+
+    /**
+     * Pairs the items with their partner, items are failed if the partner does not
+     * exist or is not connected, or all items if the job can not be run at all.
+     * Failed items are stored right away.
+     *
+     * @param items     the items of a batch
+     * @param partnerId the partner of an item
+     * @param jobError  why the job can not be run, null if it can
+     * @return the items that can be processed together with their partner
+     */
+    protected List<Pair<I, Partner>> withConnectedPartner(@NonNull List<I> items,
+            @NonNull Function<I, UUID> partnerId, @Nullable String jobError) {
+        Map<UUID, Partner> partners = partnerRepo.findByIdIn(items
+                .stream()
+                .map(partnerId)
+                .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Partner::getId, Function.identity()));
+        List<Pair<I, Partner>> result = new ArrayList<>();
+        List<I> failed = new ArrayList<>();
+        for (I item : items) {
+            Partner p = partners.get(partnerId.apply(item));
+            if (jobError != null) {
+                item.setState(JobItemState.FAILED).setError(jobError);
+                failed.add(item);
+            } else if (p == null) {
+                item.setState(JobItemState.FAILED).setError(
+                        msg.getMessage("api.partner.not.found", Map.of("id", partnerId.apply(item))));
+                failed.add(item);
+            } else if (StringUtils.isEmpty(p.getConnectionId())) {
+                item.setState(JobItemState.FAILED).setError(msg.getMessage("api.partner.no.connection"));
+                failed.add(item);
+            } else {
+                result.add(new Pair<>(item, p));
+            }
+        }
+        updateAll(failed);
+        return result;
+    }
+
+    protected void updateAll(@NonNull List<I> items) {
+        if (CollectionUtils.isNotEmpty(items)) {
+            itemRepo().updateAll(items);
+        }
+    }
+
+    protected long count(@NonNull UUID jobId, @NonNull JobItemState state) {
+        return itemRepo().countByJobIdAndState(jobId, state);
+    }
+
+    /**
+     * @param jobId  the job id
+     * @param states item states that are reported as problems
+     * @param mapper to the api object
+     * @param <T>    api item type
+     * @return the items in one of the states ordered by position
+     */
+    protected <T> List<T> problems(@NonNull UUID jobId, @NonNull List<JobItemState> states,
+            @NonNull Function<I, T> mapper) {
+        return itemRepo().findByJobIdAndStateInOrderByPosition(jobId, states)
+                .stream()
+                .map(mapper)
+                .collect(Collectors.toList());
+    }
+}
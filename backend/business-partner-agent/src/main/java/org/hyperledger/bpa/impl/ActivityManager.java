@@ -32,12 +32,16 @@ import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.model.Activity;
 import org.hyperledger.bpa.model.Partner;
 import org.hyperledger.bpa.model.PartnerProof;
+import org.hyperledger.bpa.repository.ActivityReadQueries;
 import org.hyperledger.bpa.repository.ActivityRepository;
 import org.hyperledger.bpa.repository.PartnerRepository;
+import org.hyperledger.bpa.repository.replica.ReplicaActivityRepository;
+import org.hyperledger.bpa.repository.replica.ReplicaRouter;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -50,6 +54,12 @@ public class ActivityManager {
     @Inject
     ActivityRepository activityRepository;
 
+    @Inject
+    Optional<ReplicaActivityRepository> replicaActivityRepo;
+
+    @Inject
+    ReplicaRouter replica;
+
     @Inject
     Converter converter;
 
@@ -57,30 +67,32 @@ public class ActivityManager {
     ApplicationEventPublisher eventPublisher;
 
     public List<ActivityItem> getItems(ActivitySearchParameters parameters) {
-        List<Activity> activities;
+        Function<ActivityReadQueries, List<Activity>> query;
 
         if (parameters.getActivity() && parameters.getTask()) {
             if (parameters.getType() != null) {
-                activities = activityRepository.findByTypeOrderByUpdatedAt(parameters.getType());
+                query = r -> r.findByTypeOrderByUpdatedAt(parameters.getType());
             } else {
-                activities = activityRepository.listOrderByUpdatedAtDesc();
+                query = ActivityReadQueries::listOrderByUpdatedAtDesc;
             }
         } else if (parameters.getTask()) {
             if (parameters.getType() != null) {
-                activities = activityRepository
+                query = r -> r
                         .findByTypeAndCompletedFalseOrderByUpdatedAtDesc(parameters.getType());
             } else {
-                activities = activityRepository.findByCompletedFalseOrderByUpdatedAtDesc();
+                query = ActivityReadQueries::findByCompletedFalseOrderByUpdatedAtDesc;
             }
         } else {
             if (parameters.getType() != null) {
-                activities = activityRepository
+                query = r -> r
                         .findByTypeAndCompletedTrueOrderByUpdatedAtDesc(parameters.getType());
             } else {
-                activities = activityRepository.findByCompletedTrueOrderByUpdatedAtDesc();
+                query = ActivityReadQueries::findByCompletedTrueOrderByUpdatedAtDesc;
             }
         }
 
+        List<Activity> activities = replica.read(activityRepository, replicaActivityRepo, query);
+
         return activities.stream().map(this::convert).collect(Collectors.toList());
     }
 
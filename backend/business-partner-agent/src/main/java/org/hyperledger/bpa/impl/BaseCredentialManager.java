@@ -29,6 +29,7 @@ import org.hyperledger.aries.api.ExchangeVersion;
 import org.hyperledger.bpa.api.exception.EntityNotFoundException;
 import org.hyperledger.bpa.api.exception.NetworkException;
 import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
 import org.hyperledger.bpa.model.BPACredentialExchange;
 import org.hyperledger.bpa.repository.IssuerCredExRepository;
 
@@ -47,6 +48,9 @@ public abstract class BaseCredentialManager {
     @Inject
     BPAMessageSource.DefaultMessageSource msg;
 
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
     /**
      * The only way to stop or decline a credential exchange is for any side (issuer
      * or holder) to send a problem report. If a problem report is sent aca-py will
@@ -96,8 +100,9 @@ public abstract class BaseCredentialManager {
         } catch (AriesException e) {
             if (e.getCode() == 404) {
                 credEx.pushStates(CredentialExchangeState.PROBLEM, Instant.now());
-                credExRepo.updateAfterEventNoRevocationInfo(credEx.getId(), credEx.getState(),
-                        credEx.getStateToTimestamp(), msg.getMessage("api.credential.no.match"));
+                credExRepo.updateAfterEventNoRevocationInfo(credEx.getId(), credEx.getVersion(), credEx.getState(),
+                        credEx.getStateChangedAt(), credEx.getIssuedAt(), msg.getMessage("api.credential.no.match"));
+                stateTransitions.record(credEx);
                 throw new EntityNotFoundException();
             }
             throw e;
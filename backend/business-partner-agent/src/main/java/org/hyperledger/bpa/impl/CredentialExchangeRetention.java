@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.impl.cluster.ClusterExclusive;
+import org.hyperledger.bpa.repository.CredExArchiveRepository;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Keeps the credential exchange table small by moving terminal exchanges to the
+ * archive once they did not change for the configured retention period. The
+ * listing, counting and event lookups only see the remaining exchanges.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "bpa.credex.retention.enabled", value = "true")
+public class CredentialExchangeRetention {
+
+    @Inject
+    CredExArchiveRepository archiveRepo;
+
+    @Inject
+    Clock clock;
+
+    @Value("${bpa.credex.retention.after}")
+    Duration after;
+
+    @Value("${bpa.credex.retention.batchSize}")
+    Integer batchSize;
+
+    @Scheduled(cron = "0 30 3 ? * *")
+    @ClusterExclusive(value = "credential-exchange-retention", period = "12h")
+    void archiveTerminalExchanges() {
+        Instant olderThan = clock.instant().minus(after);
+        long start = System.currentTimeMillis();
+        int total = 0;
+        try {
+            int moved;
+            // one transaction per batch, so the table is not locked for the whole run
+            do {
+                Integer result = archiveRepo.archive(olderThan, batchSize);
+                moved = result != null ? result : 0;
+                total += moved;
+            } while (moved >= batchSize);
+        } catch (Exception e) {
+            log.error("Could not archive credential exchanges", e);
+        }
+        log.info("Archived {} credential exchanges older than {} in {}ms", total, olderThan,
+                System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.aries.api.ExchangeVersion;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.api.exception.IssuerException;
+import org.hyperledger.bpa.api.exception.NetworkException;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.controller.api.issuer.BulkIssueCredentialRequest;
+import org.hyperledger.bpa.controller.api.issuer.BulkIssueCredentialRequest.BulkIssueCredentialRow;
+import org.hyperledger.bpa.controller.api.issuer.IssuanceJobAPI;
+import org.hyperledger.bpa.impl.cluster.BulkJobType;
+import org.hyperledger.bpa.impl.util.CsvUtil;
+import org.hyperledger.bpa.model.BPACredentialDefinition;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.IssuanceItem;
+import org.hyperledger.bpa.model.IssuanceJob;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.repository.BPACredentialDefinitionRepository;
+import org.hyperledger.bpa.repository.BulkItemRepository;
+import org.hyperledger.bpa.repository.BulkJobRepository;
+import org.hyperledger.bpa.repository.IssuanceItemRepository;
+import org.hyperledger.bpa.repository.IssuanceJobRepository;
+import org.hyperledger.bpa.repository.IssuerCredExRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk issuance of credentials. Other than issuing credentials one by one, the
+ * credential definition is loaded once per job, partners once per batch and
+ * offers are sent to aca-py in parallel. The progress of a job is persisted, so
+ * jobs that were interrupted are resumed once aca-py is ready again.
+ */
+@Slf4j
+@Singleton
+public class IssuanceJobManager extends AbstractBulkJobManager<IssuanceJob, IssuanceItem> {
+
+    private static final String CSV_PARTNER_ID = "partnerId";
+
+    // tolerated difference between the clocks of the node and aca-py
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+    @Value("${bpa.credex.issuance.batchSize}")
+    Integer batchSize;
+
+    @Inject
+    IssuanceJobRepository jobRepo;
+
+    @Inject
+    IssuanceItemRepository itemRepo;
+
+    @Inject
+    BPACredentialDefinitionRepository credDefRepo;
+
+    @Inject
+    IssuerCredExRepository credExRepo;
+
+    @Inject
+    IssuerCredentialManager im;
+
+    @Inject
+    @Named("credential-issuance")
+    ExecutorService offerExecutor;
+
+    public IssuanceJobAPI startIssuance(@NonNull BulkIssueCredentialRequest req) {
+        BPACredentialDefinition dbCredDef = credDefRepo.findById(req.getCredDefId())
+                .orElseThrow(() -> new IssuerException(
+                        msg.getMessage("api.issuer.creddef.not.found", Map.of("id", req.getCredDefId()))));
+        IssuanceJob job = jobRepo.save(IssuanceJob
+                .builder()
+                .state(JobState.RUNNING)
+                .credDefId(dbCredDef.getId())
+                .exchangeVersion(req.getExchangeVersion())
+                .total(req.getCredentials().size())
+                .build());
+        List<IssuanceItem> items = new ArrayList<>();
+        for (int i = 0; i < req.getCredentials().size(); i++) {
+            BulkIssueCredentialRow row = req.getCredentials().get(i);
+            IssuanceItem item = IssuanceItem
+                    .builder()
+                    .jobId(job.getId())
+                    .position(i)
+                    .partnerId(row.getPartnerId())
+                    .document(row.getDocument())
+                    .state(JobItemState.PENDING)
+                    .build();
+            try {
+                im.checkAttributes(row.getDocument(), dbCredDef);
+            } catch (IssuerException e) {
+                item.setState(JobItemState.FAILED).setError(e.getMessage());
+            }
+            items.add(item);
+        }
+        start(job.getId(), items);
+        return toAPIObject(job);
+    }
+
+    public IssuanceJobAPI startIssuance(@NonNull UUID credDefId, @Nullable ExchangeVersion exchangeVersion,
+            @NonNull String csv) {
+        return startIssuance(BulkIssueCredentialRequest
+                .builder()
+                .credDefId(credDefId)
+                .exchangeVersion(exchangeVersion)
+                .credentials(parseCsv(csv))
+                .build());
+    }
+
+    public Optional<IssuanceJobAPI> getIssuanceJob(@NonNull UUID id) {
+        return jobRepo.findById(id).map(this::toAPIObject);
+    }
+
+    @Override
+    protected BulkJobType type() {
+        return BulkJobType.ISSUANCE;
+    }
+
+    @Override
+    protected BulkJobRepository<IssuanceJob> jobRepo() {
+        return jobRepo;
+    }
+
+    @Override
+    protected BulkItemRepository<IssuanceItem> itemRepo() {
+        return itemRepo;
+    }
+
+    @Override
+    protected int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sends the offers of a batch, every item is in a final state afterwards unless
+     * aca-py became unavailable, in which case the job stops. Every exchange is
+     * stored right after its offer was sent, so that the events of partners that
+     * answer quickly find it.
+     */
+    @Override
+    protected BatchTask<IssuanceItem> prepare(@NonNull IssuanceJob job) {
+        BPACredentialDefinition dbCredDef = credDefRepo.findById(job.getCredDefId()).orElse(null);
+        String jobError = dbCredDef == null
+                ? msg.getMessage("api.issuer.creddef.not.found", Map.of("id", job.getCredDefId()))
+                : null;
+        return items -> jobRunner.processParallel(job.getId(),
+                withConnectedPartner(items, IssuanceItem::getPartnerId, jobError), offerExecutor,
+                p -> offer(job, Objects.requireNonNull(dbCredDef), p.getLeft(), p.getRight()));
+    }
+
+    /**
+     * Sends the offer and stores the exchange, a {@link NetworkException} is passed
+     * on and the item stays pending. If the item was offered before, but the job
+     * stopped before it was updated, the exchange of that offer is used instead of
+     * sending a second one.
+     */
+    private void offer(@NonNull IssuanceJob job, @NonNull BPACredentialDefinition dbCredDef,
+            @NonNull IssuanceItem item, @NonNull Partner partner) {
+        try {
+            BPACredentialExchange credEx = item.getOfferStartedAt() != null
+                    ? findSentOffer(job, dbCredDef, item, partner).orElse(null)
+                    : null;
+            if (credEx == null) {
+                item.setOfferStartedAt(Instant.now());
+                itemRepo.updateOfferStartedAt(item.getId(), item.getOfferStartedAt());
+                credEx = save(im.offerCredential(partner, dbCredDef, item.getDocument(), job.getExchangeVersion()));
+            }
+            item.setState(JobItemState.DONE).setCredentialExchangeId(credEx.getId());
+        } catch (NetworkException e) {
+            throw e;
+        } catch (Exception e) {
+            log.debug("Could not offer credential to partner: {}", partner.getId(), e);
+            item.setState(JobItemState.FAILED).setError(e.getMessage());
+        }
+        itemRepo.update(item);
+    }
+
+    /**
+     * @return the exchange of an offer that was sent for the item, but not stored
+     *         or not set on the item
+     */
+    private Optional<BPACredentialExchange> findSentOffer(@NonNull IssuanceJob job,
+            @NonNull BPACredentialDefinition dbCredDef, @NonNull IssuanceItem item, @NonNull Partner partner) {
+        for (BPACredentialExchange sent : im.findSentOffers(partner, dbCredDef, item.getDocument(),
+                job.getExchangeVersion(), item.getOfferStartedAt().minus(CLOCK_SKEW))) {
+            Optional<BPACredentialExchange> stored = credExRepo.findByCredentialExchangeId(
+                    sent.getCredentialExchangeId());
+            if (stored.isEmpty()) {
+                log.info("Found offer: {} that was not stored yet", sent.getCredentialExchangeId());
+                return Optional.of(save(sent));
+            }
+            // otherwise it is the offer of another item with the same attributes
+            if (!itemRepo.existsByCredentialExchangeId(stored.get().getId())) {
+                return stored;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private BPACredentialExchange save(@NonNull BPACredentialExchange credEx) {
+        BPACredentialExchange saved = credExRepo.save(credEx);
+        im.fireCredentialIssuedEvent(saved);
+        return saved;
+    }
+
+    private IssuanceJobAPI toAPIObject(@NonNull IssuanceJob job) {
+        UUID id = job.getId();
+        return IssuanceJobAPI.from(job)
+                .pending(count(id, JobItemState.PENDING))
+                .offered(count(id, JobItemState.DONE))
+                .failed(count(id, JobItemState.FAILED))
+                .problems(problems(id, List.of(JobItemState.FAILED), IssuanceJobAPI.IssuanceJobItem::from))
+                .build();
+    }
+
+    /**
+     * Parses credentials from csv. The first line is the header in the format:
+     * partnerId,attribute1,attribute2,... followed by one credential per line.
+     * Values that contain a comma, e.g. addresses, have to be quoted.
+     *
+     * @param csv the csv content
+     * @return list of {@link BulkIssueCredentialRow}
+     */
+    List<BulkIssueCredentialRow> parseCsv(@NonNull String csv) {
+        List<List<String>> records;
+        try {
+            records = CsvUtil.parse(csv);
+        } catch (@SuppressWarnings("unused") IllegalArgumentException e) {
+            throw new WrongApiUsageException(msg.getMessage("api.csv.unterminated.quote"));
+        }
+        if (records.isEmpty()) {
+            throw new WrongApiUsageException(msg.getMessage("api.issuer.bulk.csv.empty"));
+        }
+        List<String> header = records.get(0).stream().map(String::trim).collect(Collectors.toList());
+        if (header.size() < 2 || !CSV_PARTNER_ID.equalsIgnoreCase(header.get(0))) {
+            throw new WrongApiUsageException(msg.getMessage("api.issuer.bulk.csv.no.header"));
+        }
+        List<BulkIssueCredentialRow> result = new ArrayList<>();
+        for (List<String> fields : records.subList(1, records.size())) {
+            String line = String.join(",", fields);
+            if (fields.size() != header.size()) {
+                throw new WrongApiUsageException(msg.getMessage("api.issuer.bulk.csv.wrong.columns",
+                        Map.of("line", line)));
+            }
+            UUID partnerId;
+            try {
+                partnerId = UUID.fromString(fields.get(0).trim());
+            } catch (@SuppressWarnings("unused") IllegalArgumentException e) {
+                throw new WrongApiUsageException(msg.getMessage("api.issuer.bulk.csv.invalid.partner",
+                        Map.of("line", line)));
+            }
+            Map<String, String> document = new LinkedHashMap<>();
+            for (int i = 1; i < header.size(); i++) {
+                document.put(header.get(i), fields.get(i).trim());
+            }
+            result.add(BulkIssueCredentialRow
+                    .builder()
+                    .partnerId(partnerId)
+                    .document(document)
+                    .build());
+        }
+        if (result.isEmpty()) {
+            throw new WrongApiUsageException(msg.getMessage("api.issuer.bulk.csv.empty"));
+        }
+        return result;
+    }
+}
@@ -18,8 +18,11 @@
 package org.hyperledger.bpa.impl;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.context.event.ApplicationEventPublisher;
 import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.exceptions.OptimisticLockException;
+import io.micronaut.retry.annotation.Retryable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.Builder;
@@ -38,9 +41,11 @@ import org.hyperledger.aries.api.credentials.CredentialPreview;
 import org.hyperledger.aries.api.exception.AriesException;
 import org.hyperledger.aries.api.issue_credential_v1.*;
 import org.hyperledger.aries.api.issue_credential_v2.V20CredExRecord;
+import org.hyperledger.aries.api.issue_credential_v2.V2IssueCredentialRecordsFilter;
 import org.hyperledger.aries.api.issue_credential_v2.V2IssueIndyCredentialEvent;
 import org.hyperledger.aries.api.revocation.RevokeRequest;
 import org.hyperledger.aries.api.schema.SchemaSendResponse;
+import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.api.aries.AriesCredential;
 import org.hyperledger.bpa.api.aries.SchemaAPI;
 import org.hyperledger.bpa.api.exception.EntityNotFoundException;
@@ -52,6 +57,7 @@ import org.hyperledger.bpa.config.BPAMessageSource;
 import org.hyperledger.bpa.config.RuntimeConfig;
 import org.hyperledger.bpa.controller.api.issuer.CredDef;
 import org.hyperledger.bpa.controller.api.issuer.CredEx;
+import org.hyperledger.bpa.controller.api.issuer.CredExPage;
 import org.hyperledger.bpa.controller.api.issuer.CredentialOfferRequest;
 import org.hyperledger.bpa.controller.api.issuer.IssueCredentialSendRequest;
 import org.hyperledger.bpa.impl.aries.config.SchemaService;
@@ -59,23 +65,37 @@ import org.hyperledger.bpa.impl.notification.CredentialAcceptedEvent;
 import org.hyperledger.bpa.impl.notification.CredentialIssuedEvent;
 import org.hyperledger.bpa.impl.notification.CredentialProblemEvent;
 import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.impl.util.TimeUtil;
 import org.hyperledger.bpa.model.BPACredentialDefinition;
 import org.hyperledger.bpa.model.BPACredentialExchange;
 import org.hyperledger.bpa.model.BPASchema;
+import org.hyperledger.bpa.model.CredExPartnerSummary;
 import org.hyperledger.bpa.model.Partner;
 import org.hyperledger.bpa.repository.BPACredentialDefinitionRepository;
 import org.hyperledger.bpa.repository.IssuerCredExRepository;
 import org.hyperledger.bpa.repository.PartnerRepository;
+import org.hyperledger.bpa.repository.replica.ReplicaCredExRepository;
+import org.hyperledger.bpa.repository.replica.ReplicaRouter;
+import org.hyperledger.bpa.util.Pair;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Singleton
 public class IssuerCredentialManager extends BaseCredentialManager {
 
+    @Value("${bpa.credex.list.pageSize}")
+    Integer pageSize;
+
+    @Value("${bpa.credex.list.maxPageSize}")
+    Integer maxPageSize;
+
     @Inject
     AriesClient ac;
 
@@ -94,6 +114,12 @@ public class IssuerCredentialManager extends BaseCredentialManager {
     @Inject
     IssuerCredExRepository credExRepo;
 
+    @Inject
+    Optional<ReplicaCredExRepository> replicaCredExRepo;
+
+    @Inject
+    ReplicaRouter replica;
+
     @Inject
     Converter conv;
 
@@ -202,6 +228,24 @@ public class IssuerCredentialManager extends BaseCredentialManager {
 
         checkAttributes(document, dbCredDef);
 
+        BPACredentialExchange cex = offerCredential(dbPartner, dbCredDef, document, request.getExchangeVersion());
+        credExRepo.save(cex);
+
+        fireCredentialIssuedEvent(cex);
+        return cex.getCredentialExchangeId();
+    }
+
+    /**
+     * Sends the credential offer to the partner, without persisting the exchange
+     *
+     * @param dbPartner       {@link Partner} with connection
+     * @param dbCredDef       {@link BPACredentialDefinition} including the schema
+     * @param document        credential attributes, must match the schema
+     * @param exchangeVersion {@link ExchangeVersion} defaults to V1
+     * @return the unsaved {@link BPACredentialExchange}
+     */
+    BPACredentialExchange offerCredential(@NonNull Partner dbPartner, @NonNull BPACredentialDefinition dbCredDef,
+            @NonNull Map<String, String> document, @Nullable ExchangeVersion exchangeVersion) {
         String connectionId = dbPartner.getConnectionId();
         String schemaId = dbCredDef.getSchema().getSchemaId();
         String credentialDefinitionId = dbCredDef.getCredentialDefinitionId();
@@ -217,15 +261,94 @@ public class IssuerCredentialManager extends BaseCredentialManager {
                 .credentialDefinitionId(credentialDefinitionId)
                 .build();
 
-        if (request.isV1()) {
+        if (exchangeVersion == null || ExchangeVersion.V1.equals(exchangeVersion)) {
             exVersion = ExchangeVersion.V1;
             exResult = sendV1Credential(proposal);
         } else {
             exVersion = ExchangeVersion.V2;
             exResult = sendV2Credential(proposal);
         }
+        return toCredentialExchange(dbPartner, dbCredDef, document, exVersion, exResult);
+    }
+
+    /**
+     * Offers that were sent to the partner since the given time with the same
+     * attributes, oldest first. Used to find offers whose exchange was never
+     * stored, because the node stopped right after sending them.
+     *
+     * @param dbPartner       {@link Partner} with connection
+     * @param dbCredDef       {@link BPACredentialDefinition} including the schema
+     * @param document        credential attributes
+     * @param exchangeVersion {@link ExchangeVersion} defaults to V1
+     * @param since           offers that were created before are ignored
+     * @return the unsaved {@link BPACredentialExchange}s
+     */
+    List<BPACredentialExchange> findSentOffers(@NonNull Partner dbPartner,
+            @NonNull BPACredentialDefinition dbCredDef, @NonNull Map<String, String> document,
+            @Nullable ExchangeVersion exchangeVersion, @NonNull Instant since) {
+        String connectionId = Objects.requireNonNull(dbPartner.getConnectionId());
+        try {
+            if (exchangeVersion == null || ExchangeVersion.V1.equals(exchangeVersion)) {
+                return ac.issueCredentialRecords(IssueCredentialRecordsFilter
+                        .builder()
+                        .connectionId(connectionId)
+                        .role(CredentialExchangeRole.ISSUER)
+                        .build())
+                        .orElse(List.of())
+                        .stream()
+                        .filter(ex -> dbCredDef.getCredentialDefinitionId().equals(ex.getCredentialDefinitionId()))
+                        .filter(ex -> ex.getCredentialProposalDict() != null
+                                && ex.getCredentialProposalDict().getCredentialProposal() != null
+                                && sameAttributes(document,
+                                        ex.getCredentialProposalDict().getCredentialProposal().getAttributes(),
+                                        CredentialAttributes::getName, CredentialAttributes::getValue))
+                        .filter(ex -> !createdAt(ex.getCreatedAt()).isBefore(since))
+                        .sorted(Comparator.comparing(ex -> createdAt(ex.getCreatedAt())))
+                        .map(ex -> toCredentialExchange(dbPartner, dbCredDef, document, ExchangeVersion.V1,
+                                ExchangeResult.fromV1(ex)))
+                        .collect(Collectors.toList());
+            }
+            return ac.issueCredentialV2Records(V2IssueCredentialRecordsFilter
+                    .builder()
+                    .connectionId(connectionId)
+                    .role(CredentialExchangeRole.ISSUER)
+                    .build())
+                    .orElse(List.of())
+                    .stream()
+                    .map(V20CredExRecordDetail::getCredExRecord)
+                    .filter(ex -> ex != null && ex.getCredPreview() != null
+                            && sameAttributes(document, ex.getCredPreview().getAttributes(),
+                                    V20CredAttrSpec::getName, V20CredAttrSpec::getValue))
+                    .filter(ex -> !createdAt(ex.getCreatedAt()).isBefore(since))
+                    .sorted(Comparator.comparing(ex -> createdAt(ex.getCreatedAt())))
+                    .map(ex -> toCredentialExchange(dbPartner, dbCredDef, document, ExchangeVersion.V2,
+                            ExchangeResult
+                                    .builder()
+                                    .credentialExchangeId(ex.getCredExId())
+                                    .threadId(ex.getThreadId())
+                                    .build()))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new NetworkException(msg.getMessage("acapy.unavailable"), e);
+        }
+    }
 
-        BPACredentialExchange cex = BPACredentialExchange.builder()
+    private static <T> boolean sameAttributes(@NonNull Map<String, String> document, @Nullable List<T> attributes,
+            @NonNull Function<T, String> name, @NonNull Function<T, String> value) {
+        return attributes != null && document.equals(attributes
+                .stream()
+                .collect(HashMap::new, (m, a) -> m.put(name.apply(a), value.apply(a)), HashMap::putAll));
+    }
+
+    private static Instant createdAt(@Nullable String acaPyTimestamp) {
+        return TimeUtil.fromISOInstant(StringUtils.replaceChars(acaPyTimestamp, ' ', 'T'));
+    }
+
+    private BPACredentialExchange toCredentialExchange(@NonNull Partner dbPartner,
+            @NonNull BPACredentialDefinition dbCredDef, @NonNull Map<String, String> document,
+            @NonNull ExchangeVersion exVersion, @NonNull ExchangeResult exResult) {
+        String schemaId = dbCredDef.getSchema().getSchemaId();
+        return BPACredentialExchange.builder()
                 .schema(dbCredDef.getSchema())
                 .partner(dbPartner)
                 .credDef(dbCredDef)
@@ -242,10 +365,6 @@ public class IssuerCredentialManager extends BaseCredentialManager {
                 .threadId(exResult.getThreadId())
                 .exchangeVersion(exVersion)
                 .build();
-        credExRepo.save(cex);
-
-        fireCredentialIssuedEvent(cex);
-        return exResult.getCredentialExchangeId();
     }
 
     public void reIssueCredential(@NonNull UUID exchangeId) {
@@ -269,7 +388,7 @@ public class IssuerCredentialManager extends BaseCredentialManager {
      * @param document  the credential
      * @param dbCredDef {@link BPACredentialDefinition}
      */
-    private void checkAttributes(Map<String, String> document, BPACredentialDefinition dbCredDef) {
+    void checkAttributes(Map<String, String> document, BPACredentialDefinition dbCredDef) {
         Set<String> documentAttributeNames = document.keySet();
         Set<String> schemaAttributeNames = dbCredDef.getSchema().getSchemaAttributeNames();
         if (!documentAttributeNames.equals(schemaAttributeNames)) {
@@ -298,25 +417,61 @@ public class IssuerCredentialManager extends BaseCredentialManager {
         }
     }
 
-    public List<CredEx> listCredentialExchanges(@Nullable CredentialExchangeRole role, @Nullable UUID partnerId) {
-        List<BPACredentialExchange> exchanges = credExRepo.listOrderByUpdatedAtDesc();
-        // now, lets get credentials...
-        return exchanges.stream()
-                .filter(x -> {
-                    if (role != null) {
-                        return role.equals(x.getRole());
-                    }
-                    return true;
-                })
-                .filter(x -> x.getPartner() != null)
-                .filter(x -> {
-                    if (partnerId != null) {
-                        return x.getPartner().getId().equals(partnerId);
-                    }
-                    return true;
-                })
-                .map(ex -> CredEx.from(ex, conv.toAPIObject(ex.getPartner())))
-                .collect(Collectors.toList());
+    /**
+     * One page of credential exchanges, newest first. Filtering and paging happen
+     * in the database and the partner is loaded as a summary.
+     *
+     * @param role      {@link CredentialExchangeRole}, null for all
+     * @param partnerId partner id, null for all
+     * @param cursor    next cursor of the previous page, null for the first page
+     * @param size      page size, defaults to the configured page size
+     * @return {@link CredExPage}
+     */
+    public CredExPage listCredentialExchanges(@Nullable CredentialExchangeRole role, @Nullable UUID partnerId,
+            @Nullable String cursor, @Nullable Integer size) {
+        Pair<Instant, UUID> before = cursor != null ? decodeCursor(cursor) : null;
+        int limit = size != null && size > 0 ? Math.min(size, maxPageSize) : pageSize;
+        List<CredExPartnerSummary> page = replica.read(credExRepo, replicaCredExRepo,
+                q -> q.listPartnerSummaries(role != null ? role.name() : null, partnerId,
+                        before != null ? before.getLeft() : null, before != null ? before.getRight() : null, limit));
+        if (page.isEmpty()) {
+            return CredExPage.builder().exchanges(List.of()).build();
+        }
+        Map<UUID, BPACredentialExchange> exchanges = replica.read(credExRepo, replicaCredExRepo,
+                q -> q.listByIdIn(page.stream().map(CredExPartnerSummary::getCredExId).collect(Collectors.toList())))
+                .stream()
+                .collect(Collectors.toMap(BPACredentialExchange::getId, Function.identity()));
+        CredExPartnerSummary last = page.get(page.size() - 1);
+        return CredExPage
+                .builder()
+                .exchanges(page.stream()
+                        .filter(s -> exchanges.containsKey(s.getCredExId()))
+                        .map(s -> CredEx.from(exchanges.get(s.getCredExId()), PartnerAPI.from(s)))
+                        .collect(Collectors.toList()))
+                .nextCursor(page.size() == limit ? encodeCursor(last.getUpdatedAt(), last.getCredExId()) : null)
+                .build();
+    }
+
+    /**
+     * The cursor keeps the full precision of updated_at, epoch millis would skip or
+     * repeat exchanges that were updated within the same millisecond.
+     */
+    static String encodeCursor(@NonNull Instant updatedAt, @NonNull UUID id) {
+        String key = updatedAt.getEpochSecond() + ":" + updatedAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Pair<Instant, UUID> decodeCursor(@NonNull String cursor) {
+        try {
+            String[] key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (key.length != 3) {
+                throw new IllegalArgumentException(cursor);
+            }
+            return new Pair<>(Instant.ofEpochSecond(Long.parseLong(key[0]), Long.parseLong(key[1])),
+                    UUID.fromString(key[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new WrongApiUsageException(msg.getMessage("api.issuer.exchanges.invalid.cursor"));
+        }
     }
 
     public CredEx getCredEx(@NonNull UUID id) {
@@ -324,6 +479,13 @@ public class IssuerCredentialManager extends BaseCredentialManager {
         return CredEx.from(credEx, conv.toAPIObject(credEx.getPartner()));
     }
 
+    public Map<String, Long> getCredExTimeline(@NonNull UUID id) {
+        if (!credExRepo.existsById(id)) {
+            throw new EntityNotFoundException();
+        }
+        return stateTransitions.timeline(id);
+    }
+
     public CredEx revokeCredentialExchange(@NonNull UUID id) {
         if (!config.getTailsServerConfigured()) {
             throw new IssuerException(msg.getMessage("api.issuer.no.tails.server"));
@@ -341,7 +503,8 @@ public class IssuerCredentialManager extends BaseCredentialManager {
                     .build());
             credEx.setRevoked(Boolean.TRUE);
             credEx.pushStates(CredentialExchangeState.REVOKED);
-            credExRepo.update(credEx);
+            credExRepo.updateRevoked(credEx.getId(), credEx.getStateChangedAt());
+            stateTransitions.record(credEx);
             return CredEx.from(credEx);
         } catch (IOException e) {
             throw new NetworkException(msg.getMessage("acapy.unavailable"), e);
@@ -408,7 +571,9 @@ public class IssuerCredentialManager extends BaseCredentialManager {
                 String message = msg.getMessage("api.issuer.credential.exchange.problem");
                 credEx.pushStates(CredentialExchangeState.PROBLEM);
                 credExRepo.updateAfterEventNoRevocationInfo(
-                        credEx.getId(), credEx.getState(), credEx.getStateToTimestamp(), message);
+                        credEx.getId(), credEx.getVersion(), credEx.getState(), credEx.getStateChangedAt(),
+                        credEx.getIssuedAt(), message);
+                stateTransitions.record(credEx);
                 throw new WrongApiUsageException(message);
             }
             throw e;
@@ -422,14 +587,18 @@ public class IssuerCredentialManager extends BaseCredentialManager {
         return CredEx.from(credEx);
     }
 
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void declineCredentialProposal(@NonNull UUID id, @Nullable String message) {
         if (StringUtils.isEmpty(message)) {
             message = msg.getMessage("api.issuer.credential.exchange.declined");
         }
         BPACredentialExchange credEx = getCredentialExchange(id);
         credEx.pushStates(CredentialExchangeState.DECLINED, Instant.now());
-        credExRepo.updateAfterEventNoRevocationInfo(credEx.getId(), credEx.getState(), credEx.getStateToTimestamp(),
+        credExRepo.updateAfterEventNoRevocationInfo(credEx.getId(), credEx.getVersion(), credEx.getState(),
+                credEx.getStateChangedAt(),
+                credEx.getIssuedAt(),
                 message);
+        stateTransitions.record(credEx);
         declineCredentialExchange(credEx, message);
     }
 
@@ -465,17 +634,19 @@ public class IssuerCredentialManager extends BaseCredentialManager {
     /**
      * In v1 (indy) this message can only be received after a preceding Credential
      * Offer, meaning the holder can never start with a Credential Request, so it is
-     * ok to directly auto accept the request
+     * ok to directly auto accept the request. The state change is saved before the
+     * credential is issued, so a retry on a version conflict does not issue twice.
      * 
      * @param ex {@link V1CredentialExchange}
      */
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleV1CredentialRequest(@NonNull V1CredentialExchange ex) {
+        handleV1CredentialExchange(ex); // save state changes
         try {
             if (Boolean.FALSE.equals(acaPyConfig.getAutoRespondCredentialRequest())) {
                 ac.issueCredentialRecordsIssue(ex.getCredentialExchangeId(),
                         V1CredentialIssueRequest.builder().build());
             }
-            handleV1CredentialExchange(ex); // save state changes
         } catch (IOException e) {
             log.error(msg.getMessage("acapy.unavailable"));
         }
@@ -486,6 +657,7 @@ public class IssuerCredentialManager extends BaseCredentialManager {
      *
      * @param ex {@link V1CredentialExchange}
      */
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleV1CredentialExchange(@NonNull V1CredentialExchange ex) {
         credExRepo.findByCredentialExchangeId(ex.getCredentialExchangeId()).ifPresent(bpaEx -> {
             boolean notDeclined = bpaEx.stateIsNotDeclined();
@@ -493,14 +665,16 @@ public class IssuerCredentialManager extends BaseCredentialManager {
             bpaEx.pushStates(state, ex.getUpdatedAt());
             if (StringUtils.isNotEmpty(ex.getErrorMsg())) {
                 if (notDeclined) {
-                    credExRepo.updateAfterEventNoRevocationInfo(bpaEx.getId(),
-                            bpaEx.getState(), bpaEx.getStateToTimestamp(), ex.getErrorMsg());
+                    credExRepo.updateAfterEventNoRevocationInfo(bpaEx.getId(), bpaEx.getVersion(),
+                            bpaEx.getState(), bpaEx.getStateChangedAt(), bpaEx.getIssuedAt(), ex.getErrorMsg());
+                    stateTransitions.record(bpaEx);
                     fireCredentialProblemEvent(bpaEx);
                 }
             } else {
-                credExRepo.updateAfterEventWithRevocationInfo(bpaEx.getId(),
-                        bpaEx.getState(), bpaEx.getStateToTimestamp(),
+                credExRepo.updateAfterEventWithRevocationInfo(bpaEx.getId(), bpaEx.getVersion(),
+                        bpaEx.getState(), bpaEx.getStateChangedAt(), bpaEx.getIssuedAt(),
                         ex.getRevocRegId(), ex.getRevocationId(), ex.getErrorMsg());
+                stateTransitions.record(bpaEx);
             }
             if (ex.stateIsCredentialAcked() && ex.autoIssueEnabled()) {
                 ex.findAttributesInCredentialOfferDict().ifPresent(
@@ -517,6 +691,7 @@ public class IssuerCredentialManager extends BaseCredentialManager {
      *
      * @param ex {@link V20CredExRecord}
      */
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleV2CredentialExchange(@NonNull V20CredExRecord ex) {
         credExRepo.findByCredentialExchangeId(ex.getCredExId())
                 .ifPresent(bpaEx -> {
@@ -526,8 +701,9 @@ public class IssuerCredentialManager extends BaseCredentialManager {
                             state = CredentialExchangeState.PROBLEM;
                         }
                         bpaEx.pushStates(state, ex.getUpdatedAt());
-                        credExRepo.updateAfterEventNoRevocationInfo(bpaEx.getId(),
-                                bpaEx.getState(), bpaEx.getStateToTimestamp(), ex.getErrorMsg());
+                        credExRepo.updateAfterEventNoRevocationInfo(bpaEx.getId(), bpaEx.getVersion(),
+                                bpaEx.getState(), bpaEx.getStateChangedAt(), bpaEx.getIssuedAt(), ex.getErrorMsg());
+                        stateTransitions.record(bpaEx);
                         if (ex.stateIsCredentialIssued() && ex.autoIssueEnabled()) {
                             ex.getByFormat().findValuesInIndyCredIssue().ifPresent(
                                     attr -> credExRepo.updateCredential(bpaEx.getId(),
@@ -559,19 +735,22 @@ public class IssuerCredentialManager extends BaseCredentialManager {
      * In v2 (indy and w3c) a holder can decide to skip negotiation and directly
      * start the whole flow with a request. So we check if there is a preceding
      * record if not decline with problem report TODO support v2 credential request
-     * without prior negotiation
+     * without prior negotiation. Like in v1 the state change is saved before the
+     * credential is issued, so a retry on a version conflict does not issue twice.
      * 
      * @param ex {@link V20CredExRecord v2CredEx}
      */
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleV2CredentialRequest(@NonNull V20CredExRecord ex) {
         credExRepo.findByCredentialExchangeId(ex.getCredExId()).ifPresentOrElse(db -> {
+            db.pushStates(ex.getState(), ex.getUpdatedAt());
+            credExRepo.updateAfterEventNoRevocationInfo(db.getId(), db.getVersion(),
+                    db.getState(), db.getStateChangedAt(), db.getIssuedAt(), ex.getErrorMsg());
+            stateTransitions.record(db);
             try {
                 if (Boolean.FALSE.equals(acaPyConfig.getAutoRespondCredentialRequest())) {
                     ac.issueCredentialV2RecordsIssue(ex.getCredExId(), V20CredIssueRequest.builder().build());
                 }
-                db.pushStates(ex.getState(), ex.getUpdatedAt());
-                credExRepo.updateAfterEventNoRevocationInfo(db.getId(),
-                        db.getState(), db.getStateToTimestamp(), ex.getErrorMsg());
             } catch (IOException e) {
                 log.error(msg.getMessage("acapy.unavailable"));
             }
@@ -589,7 +768,7 @@ public class IssuerCredentialManager extends BaseCredentialManager {
         });
     }
 
-    private void fireCredentialIssuedEvent(@NonNull BPACredentialExchange db) {
+    void fireCredentialIssuedEvent(@NonNull BPACredentialExchange db) {
         eventPublisher.publishEventAsync(CredentialIssuedEvent.builder()
                 .credential(AriesCredential.fromBPACredentialExchange(db, schemaLabel(db)))
                 .build());
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.util.CollectionUtils;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.controller.api.partner.ImportPartnersRequest;
+import org.hyperledger.bpa.controller.api.partner.ImportPartnersRequest.ImportPartner;
+import org.hyperledger.bpa.controller.api.partner.PartnerImportJobAPI;
+import org.hyperledger.bpa.core.RegisteredWebhook.WebhookEventType;
+import org.hyperledger.bpa.impl.activity.PartnerLookup;
+import org.hyperledger.bpa.impl.aries.ConnectionManager;
+import org.hyperledger.bpa.impl.aries.PartnerCredDefLookup;
+import org.hyperledger.bpa.impl.cluster.BulkJobType;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.impl.util.CsvUtil;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.PartnerImportItem;
+import org.hyperledger.bpa.model.PartnerImportJob;
+import org.hyperledger.bpa.model.Tag;
+import org.hyperledger.bpa.repository.BulkItemRepository;
+import org.hyperledger.bpa.repository.BulkJobRepository;
+import org.hyperledger.bpa.repository.PartnerImportItemRepository;
+import org.hyperledger.bpa.repository.PartnerImportJobRepository;
+import org.hyperledger.bpa.repository.TagRepository;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of partners. Other than adding partners one by one, lookups and
+ * connection requests run in parallel and the ledger lookup of the partners
+ * credential types is coalesced. The progress of a job is persisted, so jobs
+ * that were interrupted are resumed once aca-py is ready again.
+ */
+@Slf4j
+@Singleton
+public class PartnerImportManager extends AbstractBulkJobManager<PartnerImportJob, PartnerImportItem> {
+
+    private static final List<JobItemState> PROBLEM_STATES = List.of(JobItemState.SKIPPED, JobItemState.FAILED);
+
+    @Value("${bpa.did.prefix}")
+    String ledgerPrefix;
+
+    @Value("${bpa.partner.import.batchSize}")
+    Integer batchSize;
+
+    @Inject
+    PartnerImportJobRepository jobRepo;
+
+    @Inject
+    PartnerImportItemRepository itemRepo;
+
+    @Inject
+    TagRepository tagRepo;
+
+    @Inject
+    PartnerLookup partnerLookup;
+
+    @Inject
+    ConnectionManager cm;
+
+    @Inject
+    PartnerCredDefLookup credLookup;
+
+    @Inject
+    Converter converter;
+
+    @Inject
+    WebhookService webhook;
+
+    @Inject
+    @Named("partner-lookup")
+    ExecutorService lookupExecutor;
+
+    public PartnerImportJobAPI startImport(@NonNull ImportPartnersRequest req) {
+        PartnerImportJob job = jobRepo.save(PartnerImportJob
+                .builder()
+                .state(JobState.RUNNING)
+                .trustPing(req.getTrustPing() != null ? req.getTrustPing() : Boolean.TRUE)
+                .total(req.getPartners().size())
+                .build());
+        List<PartnerImportItem> items = new ArrayList<>();
+        for (int i = 0; i < req.getPartners().size(); i++) {
+            ImportPartner p = req.getPartners().get(i);
+            items.add(PartnerImportItem
+                    .builder()
+                    .jobId(job.getId())
+                    .position(i)
+                    .did(StringUtils.trim(p.getDid()))
+                    .alias(StringUtils.trimToNull(p.getAlias()))
+                    .tag(p.getTag())
+                    .state(JobItemState.PENDING)
+                    .build());
+        }
+        start(job.getId(), items);
+        return toAPIObject(job);
+    }
+
+    public PartnerImportJobAPI startImport(@NonNull String csv, Boolean trustPing) {
+        return startImport(ImportPartnersRequest
+                .builder()
+                .partners(parseCsv(csv))
+                .trustPing(trustPing)
+                .build());
+    }
+
+    public Optional<PartnerImportJobAPI> getImportJob(@NonNull UUID id) {
+        return jobRepo.findById(id).map(this::toAPIObject);
+    }
+
+    @Override
+    protected BulkJobType type() {
+        return BulkJobType.PARTNER_IMPORT;
+    }
+
+    @Override
+    protected BulkJobRepository<PartnerImportJob> jobRepo() {
+        return jobRepo;
+    }
+
+    @Override
+    protected BulkItemRepository<PartnerImportItem> itemRepo() {
+        return itemRepo;
+    }
+
+    @Override
+    protected int batchSize() {
+        return batchSize;
+    }
+
+    @Override
+    protected BatchTask<PartnerImportItem> prepare(@NonNull PartnerImportJob job) {
+        Map<String, Tag> tags = new HashMap<>();
+        return items -> importBatch(job, items, tags);
+    }
+
+    /**
+     * Imports a batch of items, every item is in a final state afterwards. Every
+     * partner is stored right after its connection was created, so that the
+     * connection events find it. A partner that already exists with the item's
+     * connection was imported by the item before the job stopped.
+     */
+    private void importBatch(@NonNull PartnerImportJob job, @NonNull List<PartnerImportItem> items,
+            @NonNull Map<String, Tag> tags) {
+        Map<String, Partner> known = partnerRepo.findByDidIn(items.stream()
+                .map(PartnerImportItem::getDid)
+                .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Partner::getDid, Function.identity(), (a, b) -> a));
+        List<PartnerImportItem> toImport = new ArrayList<>();
+        List<PartnerImportItem> done = new ArrayList<>();
+        List<Partner> imported = new ArrayList<>();
+        for (PartnerImportItem item : items) {
+            Partner existing = known.get(item.getDid());
+            if (!known.containsKey(item.getDid())) {
+                known.put(item.getDid(), null);
+                resolveTags(item.getTag(), tags);
+                toImport.add(item);
+            } else if (existing != null && item.getConnectionId() != null
+                    && item.getConnectionId().equals(existing.getConnectionId())) {
+                done.add(item.setState(JobItemState.DONE).setPartnerId(existing.getId()));
+                imported.add(existing);
+            } else {
+                done.add(item.setState(JobItemState.SKIPPED)
+                        .setError(msg.getMessage("api.partner.already.exists", Map.of("id", item.getDid()))));
+            }
+        }
+        updateAll(done);
+        imported.forEach(this::afterImport);
+        jobRunner.processParallel(job.getId(), toImport, lookupExecutor, item -> importPartner(job, item, tags));
+    }
+
+    /**
+     * Same as the add partner flow, the connection id is stored on the item before
+     * the partner is saved, so that a resumed job does not create a second
+     * connection.
+     */
+    private void importPartner(@NonNull PartnerImportJob job, @NonNull PartnerImportItem item,
+            @NonNull Map<String, Tag> tags) {
+        Partner partner = null;
+        try {
+            PartnerAPI lookupP = partnerLookup.lookupPartner(item.getDid());
+            Partner p = converter.toModelObject(item.getDid(), lookupP)
+                    .setAriesSupport(lookupP.getAriesSupport())
+                    .setAlias(item.getAlias())
+                    .setTags(CollectionUtils.isNotEmpty(item.getTag())
+                            ? item.getTag().stream().map(tags::get).filter(Objects::nonNull)
+                                    .collect(Collectors.toSet())
+                            : null)
+                    .pushStates(ConnectionState.REQUEST)
+                    .setTrustPing(job.getTrustPing());
+            if (item.getConnectionId() == null) {
+                cm.createConnection(item.getDid()).ifPresent(c -> {
+                    item.setConnectionId(c.getConnectionId());
+                    itemRepo.updateConnectionId(item.getId(), c.getConnectionId());
+                });
+            }
+            partner = partnerRepo.save(p.setConnectionId(item.getConnectionId()));
+            item.setState(JobItemState.DONE).setPartnerId(partner.getId());
+        } catch (Exception e) {
+            log.debug("Could not import partner: {}", item.getDid(), e);
+            item.setState(JobItemState.FAILED).setError(e.getMessage());
+        }
+        itemRepo.update(item);
+        if (partner != null) {
+            afterImport(partner);
+        }
+    }
+
+    private void afterImport(@NonNull Partner partner) {
+        if (partner.getDid().startsWith(ledgerPrefix)) {
+            credLookup.lookupTypesForPartner(partner.getId());
+        }
+        webhook.convertAndSend(WebhookEventType.PARTNER_ADD, converter.toAPIObject(partner));
+    }
+
+    private void resolveTags(@Nullable List<String> names,
+            @NonNull Map<String, Tag> tags) {
+        if (CollectionUtils.isNotEmpty(names)) {
+            names.stream()
+                    .filter(StringUtils::isNotBlank)
+                    .filter(name -> !tags.containsKey(name))
+                    .forEach(name -> tags.put(name, tagRepo.findByName(name)
+                            .orElseGet(() -> tagRepo.save(Tag
+                                    .builder()
+                                    .name(name)
+                                    .isReadOnly(Boolean.FALSE)
+                                    .build()))));
+        }
+    }
+
+    private PartnerImportJobAPI toAPIObject(@NonNull PartnerImportJob job) {
+        UUID id = job.getId();
+        return PartnerImportJobAPI.from(job)
+                .pending(count(id, JobItemState.PENDING))
+                .imported(count(id, JobItemState.DONE))
+                .skipped(count(id, JobItemState.SKIPPED))
+                .failed(count(id, JobItemState.FAILED))
+                .problems(problems(id, PROBLEM_STATES, PartnerImportJobAPI.ImportItem::from))
+                .build();
+    }
+
+    /**
+     * Parses partners from csv, one partner per line in the format: did,alias,tags
+     * where alias and tags are optional and multiple tags are separated by a
+     * semicolon. Fields that contain a comma have to be quoted. A header line
+     * starting with did is ignored.
+     *
+     * @param csv the csv content
+     * @return list of {@link ImportPartner}
+     */
+    List<ImportPartner> parseCsv(@NonNull String csv) {
+        List<List<String>> records;
+        try {
+            records = CsvUtil.parse(csv);
+        } catch (@SuppressWarnings("unused") IllegalArgumentException e) {
+            throw new WrongApiUsageException(msg.getMessage("api.csv.unterminated.quote"));
+        }
+        List<ImportPartner> result = new ArrayList<>();
+        for (List<String> fields : records) {
+            String did = StringUtils.trimToNull(fields.get(0));
+            if ("did".equalsIgnoreCase(did)) {
+                continue;
+            }
+            if (did == null) {
+                throw new WrongApiUsageException(msg.getMessage("api.partner.import.csv.no.did",
+                        Map.of("line", String.join(",", fields))));
+            }
+            List<String> tag = fields.size() > 2
+                    ? Arrays.stream(fields.get(2).split(";"))
+                            .map(String::trim)
+                            .filter(StringUtils::isNotEmpty)
+                            .collect(Collectors.toList())
+                    : null;
+            result.add(ImportPartner
+                    .builder()
+                    .did(did)
+                    .alias(fields.size() > 1 ? StringUtils.trimToNull(fields.get(1)) : null)
+                    .tag(tag)
+                    .build());
+        }
+        if (result.isEmpty()) {
+            throw new WrongApiUsageException(msg.getMessage("api.partner.import.csv.empty"));
+        }
+        return result;
+    }
+}
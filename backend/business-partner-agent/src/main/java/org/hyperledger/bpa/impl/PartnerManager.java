@@ -17,7 +17,6 @@
  */
 package org.hyperledger.bpa.impl;
 
-import io.micronaut.cache.annotation.CacheInvalidate;
 import io.micronaut.context.annotation.Value;
 import io.micronaut.core.annotation.Nullable;
 import jakarta.inject.Inject;
@@ -33,10 +32,12 @@ import org.hyperledger.bpa.controller.api.partner.AddPartnerRequest;
 import org.hyperledger.bpa.controller.api.partner.UpdatePartnerRequest;
 import org.hyperledger.bpa.core.RegisteredWebhook.WebhookEventType;
 import org.hyperledger.bpa.impl.activity.PartnerLookup;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
 import org.hyperledger.bpa.impl.aries.ConnectionManager;
 import org.hyperledger.bpa.impl.aries.PartnerCredDefLookup;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.converter.LazyJson;
 import org.hyperledger.bpa.repository.HolderCredExRepository;
 import org.hyperledger.bpa.repository.PartnerRepository;
 import org.hyperledger.bpa.repository.TagRepository;
@@ -72,6 +73,9 @@ public class PartnerManager {
     @Inject
     TagRepository tagRepo;
 
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
     @Inject
     WebhookService webhook;
 
@@ -88,6 +92,10 @@ public class PartnerManager {
         return repo.findById(id).map(converter::toAPIObject);
     }
 
+    public Optional<Map<String, Long>> getPartnerTimeline(@NonNull UUID id) {
+        return repo.existsById(id) ? Optional.of(stateTransitions.timeline(id)) : Optional.empty();
+    }
+
     @Nullable
     public PartnerAPI getPartner(@NonNull UUID id) {
         return repo.findById(id).map(converter::toAPIObject).orElse(null);
@@ -125,7 +133,7 @@ public class PartnerManager {
         Partner result = repo.save(partner);
 
         if (req.getDid().startsWith(ledgerPrefix)) {
-            credLookup.lookupTypesForAllPartnersAsync();
+            credLookup.lookupTypesForPartner(result.getId());
         }
 
         final PartnerAPI apiPartner = converter.toAPIObject(result);
@@ -155,6 +163,7 @@ public class PartnerManager {
         Optional<PartnerAPI> result = Optional.empty();
         int count = repo.updateDid(id, did);
         if (count > 0) {
+            credLookup.lookupTypesForPartner(id);
             final Optional<Partner> dbP = repo.findById(id);
             if (dbP.isPresent()) {
                 result = Optional.of(converter.toAPIObject(dbP.get()));
@@ -175,25 +184,19 @@ public class PartnerManager {
         final Optional<Partner> dbPartner = repo.findById(id);
         if (dbPartner.isPresent()) {
             Partner dbP = dbPartner.get();
-            invalidatePartnerLookupCache();
+            partnerLookup.invalidate(dbP.getDid());
             PartnerAPI pAPI = partnerLookup.lookupPartner(dbP.getDid());
-            dbP.setValid(pAPI.getValid());
-            dbP.setVerifiablePresentation(pAPI.getVerifiablePresentation() != null
-                    ? converter.toMap(pAPI.getVerifiablePresentation())
-                    : null);
-            dbP = repo.update(dbP);
+            // only the profile columns are written, so state changes that happened
+            // during the lookup are kept and do not fail on the version check
+            repo.updateVerifiablePresentation(id, LazyJson.ofNullable(pAPI.getVerifiablePresentation()),
+                    pAPI.getValid());
+            dbP = repo.findById(id).orElseThrow(EntityNotFoundException::new);
             result = Optional.of(converter.toAPIObject(dbP));
             webhook.convertAndSend(WebhookEventType.PARTNER_UPDATE, result.get());
         }
         return result;
     }
 
-    // TODO use partner UUID as cache key
-    @CacheInvalidate(cacheNames = { "partner-lookup-cache" }, all = true)
-    public void invalidatePartnerLookupCache() {
-        //
-    }
-
     public void acceptPartner(@NonNull UUID partnerId) {
         String connectionId = repo.findById(partnerId)
                 .map(Partner::getConnectionId)
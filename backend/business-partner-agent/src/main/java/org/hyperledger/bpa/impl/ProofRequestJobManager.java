@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.aries.api.ExchangeVersion;
+import org.hyperledger.aries.api.present_proof.PresentProofRequest;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.api.exception.NetworkException;
+import org.hyperledger.bpa.api.exception.ProofTemplateException;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.controller.api.prooftemplates.BulkProofRequest;
+import org.hyperledger.bpa.controller.api.prooftemplates.ProofRequestJobAPI;
+import org.hyperledger.bpa.impl.aries.ProofManager;
+import org.hyperledger.bpa.impl.cluster.BulkJobType;
+import org.hyperledger.bpa.impl.prooftemplates.ProofTemplateConversion;
+import org.hyperledger.bpa.model.BPAProofTemplate;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.PartnerProof;
+import org.hyperledger.bpa.model.ProofRequestItem;
+import org.hyperledger.bpa.model.ProofRequestJob;
+import org.hyperledger.bpa.repository.BPAProofTemplateRepository;
+import org.hyperledger.bpa.repository.BulkItemRepository;
+import org.hyperledger.bpa.repository.BulkJobRepository;
+import org.hyperledger.bpa.repository.PartnerProofRepository;
+import org.hyperledger.bpa.repository.ProofRequestItemRepository;
+import org.hyperledger.bpa.repository.ProofRequestJobRepository;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests proofs by template from all partners with a tag. The template is
+ * converted into a proof request once per job, partners are loaded once per
+ * batch and requests are sent to aca-py in parallel but paced to a maximum
+ * rate. The progress of a job is persisted, so jobs that were interrupted are
+ * resumed once aca-py is ready again.
+ */
+@Slf4j
+@Singleton
+public class ProofRequestJobManager extends AbstractBulkJobManager<ProofRequestJob, ProofRequestItem> {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Value("${bpa.proof.bulk.batchSize}")
+    Integer batchSize;
+
+    @Value("${bpa.proof.bulk.ratePerSecond}")
+    Integer ratePerSecond;
+
+    @Inject
+    ProofRequestJobRepository jobRepo;
+
+    @Inject
+    ProofRequestItemRepository itemRepo;
+
+    @Inject
+    BPAProofTemplateRepository templateRepo;
+
+    @Inject
+    PartnerProofRepository proofRepo;
+
+    @Inject
+    ProofTemplateConversion conversion;
+
+    @Inject
+    ProofManager proofManager;
+
+    @Inject
+    @Named("proof-request")
+    ExecutorService requestExecutor;
+
+    // earliest time the next request may be sent, shared by all jobs
+    private long nextRequestAt = System.nanoTime();
+
+    public ProofRequestJobAPI startProofRequests(@NonNull UUID templateId, @NonNull BulkProofRequest req) {
+        BPAProofTemplate template = templateRepo.findById(templateId)
+                .orElseThrow(() -> new ProofTemplateException(
+                        msg.getMessage("api.proof.template.not.found", Map.of("id", templateId))));
+        List<UUID> partnerIds = partnerRepo.findIdsByTagName(req.getTag());
+        if (partnerIds.isEmpty()) {
+            throw new WrongApiUsageException(
+                    msg.getMessage("api.proof.bulk.no.partners", Map.of("tag", req.getTag())));
+        }
+        ProofRequestJob job = jobRepo.save(ProofRequestJob
+                .builder()
+                .state(JobState.RUNNING)
+                .proofTemplateId(template.getId())
+                .tag(req.getTag())
+                .exchangeVersion(req.getExchangeVersion() != null ? req.getExchangeVersion() : ExchangeVersion.V1)
+                .total(partnerIds.size())
+                .build());
+        List<ProofRequestItem> items = new ArrayList<>();
+        for (int i = 0; i < partnerIds.size(); i++) {
+            items.add(ProofRequestItem
+                    .builder()
+                    .jobId(job.getId())
+                    .position(i)
+                    .partnerId(partnerIds.get(i))
+                    .state(JobItemState.PENDING)
+                    .build());
+        }
+        start(job.getId(), items);
+        return toAPIObject(job);
+    }
+
+    public Optional<ProofRequestJobAPI> getProofRequestJob(@NonNull UUID id) {
+        return jobRepo.findById(id).map(this::toAPIObject);
+    }
+
+    @Override
+    protected BulkJobType type() {
+        return BulkJobType.PROOF_REQUEST;
+    }
+
+    @Override
+    protected BulkJobRepository<ProofRequestJob> jobRepo() {
+        return jobRepo;
+    }
+
+    @Override
+    protected BulkItemRepository<ProofRequestItem> itemRepo() {
+        return itemRepo;
+    }
+
+    @Override
+    protected int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sends the requests of a batch, every item is in a final state afterwards
+     * unless aca-py became unavailable, in which case the job stops. Every exchange
+     * is stored right after its request was sent, so that the events of partners
+     * that answer quickly find it.
+     */
+    @Override
+    protected BatchTask<ProofRequestItem> prepare(@NonNull ProofRequestJob job) {
+        BPAProofTemplate template = templateRepo.findById(job.getProofTemplateId()).orElse(null);
+        PresentProofRequest.ProofRequest proofRequest = template != null
+                ? conversion.proofRequestFrom(template)
+                : null;
+        String jobError = proofRequest == null
+                ? msg.getMessage("api.proof.template.not.found", Map.of("id", job.getProofTemplateId()))
+                : null;
+        return items -> jobRunner.processParallel(job.getId(),
+                withConnectedPartner(items, ProofRequestItem::getPartnerId, jobError), requestExecutor,
+                p -> request(job, Objects.requireNonNull(template), Objects.requireNonNull(proofRequest),
+                        p.getLeft(), p.getRight()));
+    }
+
+    /**
+     * Sends the request and stores the exchange, a {@link NetworkException} is
+     * passed on and the item stays pending. Every request gets its own nonce which
+     * is stored before the request is sent, if the job stopped before the item was
+     * updated the exchange with that nonce is used instead of sending a second
+     * request.
+     */
+    private void request(@NonNull ProofRequestJob job, @NonNull BPAProofTemplate template,
+            @NonNull PresentProofRequest.ProofRequest proofRequest, @NonNull ProofRequestItem item,
+            @NonNull Partner partner) {
+        try {
+            Optional<PartnerProof> proof = item.getNonce() != null
+                    ? findSentRequest(job, template, item, partner)
+                    : Optional.empty();
+            if (proof.isEmpty()) {
+                item.setNonce(newNonce());
+                itemRepo.updateNonce(item.getId(), item.getNonce());
+                awaitRate();
+                proof = proofManager.sendPresentProofRequest(partner.getId(),
+                        PresentProofRequest
+                                .builder()
+                                .connectionId(partner.getConnectionId())
+                                .proofRequest(withNonce(proofRequest, item.getNonce()))
+                                .build(),
+                        template, job.getExchangeVersion());
+                proof.ifPresent(proofManager::saveProofRequest);
+            }
+            if (proof.isPresent()) {
+                item.setState(JobItemState.DONE).setPartnerProofId(proof.get().getId());
+            } else {
+                item.setState(JobItemState.FAILED).setError(msg.getMessage("api.proof.bulk.no.exchange"));
+            }
+        } catch (NetworkException e) {
+            throw e;
+        } catch (Exception e) {
+            log.debug("Could not request proof from partner: {}", partner.getId(), e);
+            item.setState(JobItemState.FAILED).setError(e.getMessage());
+        }
+        itemRepo.update(item);
+    }
+
+    /**
+     * @return the stored exchange of a request that was sent for the item
+     */
+    private Optional<PartnerProof> findSentRequest(@NonNull ProofRequestJob job, @NonNull BPAProofTemplate template,
+            @NonNull ProofRequestItem item, @NonNull Partner partner) {
+        return proofManager.findSentPresentProofRequest(partner.getId(), partner.getConnectionId(),
+                item.getNonce(), template, job.getExchangeVersion())
+                .map(sent -> proofRepo.findByPresentationExchangeId(sent.getPresentationExchangeId())
+                        .orElseGet(() -> {
+                            log.info("Found proof request: {} that was not stored yet",
+                                    sent.getPresentationExchangeId());
+                            proofManager.saveProofRequest(sent);
+                            return sent;
+                        }));
+    }
+
+    private static PresentProofRequest.ProofRequest withNonce(@NonNull PresentProofRequest.ProofRequest proofRequest,
+            @NonNull String nonce) {
+        return PresentProofRequest.ProofRequest
+                .builder()
+                .name(proofRequest.getName())
+                .version(proofRequest.getVersion())
+                .nonce(nonce)
+                .nonRevoked(proofRequest.getNonRevoked())
+                .requestedAttributes(proofRequest.getRequestedAttributes() != null
+                        ? proofRequest.getRequestedAttributes()
+                        : Map.of())
+                .requestedPredicates(proofRequest.getRequestedPredicates() != null
+                        ? proofRequest.getRequestedPredicates()
+                        : Map.of())
+                .build();
+    }
+
+    /**
+     * Same format as the nonces aca-py generates, a natural number of 80 bits
+     */
+    static String newNonce() {
+        return new BigInteger(80, RANDOM).toString();
+    }
+
+    /**
+     * Blocks until the next request may be sent, so that all jobs together do not
+     * send more than ratePerSecond requests to aca-py.
+     */
+    void awaitRate() {
+        long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            nextRequestAt = Math.max(nextRequestAt, now);
+            wait = nextRequestAt - now;
+            nextRequestAt += interval;
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                log.warn("Interrupted while waiting for the next proof request");
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ProofRequestJobAPI toAPIObject(@NonNull ProofRequestJob job) {
+        UUID id = job.getId();
+        return ProofRequestJobAPI.from(job)
+                .pending(count(id, JobItemState.PENDING))
+                .requested(count(id, JobItemState.DONE))
+                .failed(count(id, JobItemState.FAILED))
+                .problems(problems(id, List.of(JobItemState.FAILED), ProofRequestJobAPI.ProofRequestJobItem::from))
+                .build();
+    }
+}
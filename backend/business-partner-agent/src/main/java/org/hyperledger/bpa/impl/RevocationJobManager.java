@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.util.CollectionUtils;
+import io.micronaut.data.model.Pageable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.acy_py.generated.model.PublishRevocations;
+import org.hyperledger.aries.AriesClient;
+import org.hyperledger.aries.api.exception.AriesException;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
+import org.hyperledger.aries.api.revocation.RevokeRequest;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.api.exception.IssuerException;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.config.RuntimeConfig;
+import org.hyperledger.bpa.controller.api.issuer.RevocationJobAPI;
+import org.hyperledger.bpa.controller.api.issuer.RevokeCredentialsRequest;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
+import org.hyperledger.bpa.impl.cluster.BulkJobType;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.RevocationItem;
+import org.hyperledger.bpa.model.RevocationJob;
+import org.hyperledger.bpa.repository.BulkItemRepository;
+import org.hyperledger.bpa.repository.BulkJobRepository;
+import org.hyperledger.bpa.repository.IssuerCredExRepository;
+import org.hyperledger.bpa.repository.RevocationItemRepository;
+import org.hyperledger.bpa.repository.RevocationJobRepository;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk revocation of issued credentials. Other than the single revocation, the
+ * credentials are revoked in aca-py without publishing, once all credentials of
+ * a job are revoked the pending revocations are published with one ledger
+ * transaction per revocation registry. The progress of a job is persisted, so
+ * jobs that were interrupted are resumed once aca-py is ready again.
+ */
+@Slf4j
+@Singleton
+public class RevocationJobManager extends AbstractBulkJobManager<RevocationJob, RevocationItem> {
+
+    private static final List<JobItemState> PROBLEM_STATES = List.of(JobItemState.SKIPPED, JobItemState.FAILED);
+
+    @Value("${bpa.credex.revocation.batchSize}")
+    Integer batchSize;
+
+    @Inject
+    AriesClient ac;
+
+    @Inject
+    RevocationJobRepository jobRepo;
+
+    @Inject
+    RevocationItemRepository itemRepo;
+
+    @Inject
+    IssuerCredExRepository credExRepo;
+
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
+    @Inject
+    RuntimeConfig config;
+
+    public RevocationJobAPI startRevocation(@NonNull RevokeCredentialsRequest req) {
+        if (!config.getTailsServerConfigured()) {
+            throw new IssuerException(msg.getMessage("api.issuer.no.tails.server"));
+        }
+        List<UUID> ids;
+        if (CollectionUtils.isNotEmpty(req.getIds())) {
+            ids = req.getIds().stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        } else if (req.getPartnerId() != null) {
+            ids = credExRepo.findRevocableIdsByPartnerId(req.getPartnerId());
+        } else {
+            ids = List.of();
+        }
+        if (ids.isEmpty()) {
+            throw new WrongApiUsageException(msg.getMessage("api.issuer.revoke.no.credentials"));
+        }
+
+        RevocationJob job = jobRepo.save(RevocationJob
+                .builder()
+                .state(JobState.RUNNING)
+                .total(ids.size())
+                .build());
+        Map<UUID, BPACredentialExchange> credEx = credExRepo.findByIdIn(ids)
+                .stream()
+                .collect(Collectors.toMap(BPACredentialExchange::getId, Function.identity()));
+        List<RevocationItem> items = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            items.add(toItem(job.getId(), i, ids.get(i), credEx.get(ids.get(i))));
+        }
+        start(job.getId(), items);
+        return toAPIObject(job);
+    }
+
+    public Optional<RevocationJobAPI> getRevocationJob(@NonNull UUID id) {
+        return jobRepo.findById(id).map(this::toAPIObject);
+    }
+
+    @Override
+    protected BulkJobType type() {
+        return BulkJobType.REVOCATION;
+    }
+
+    @Override
+    protected BulkJobRepository<RevocationJob> jobRepo() {
+        return jobRepo;
+    }
+
+    @Override
+    protected BulkItemRepository<RevocationItem> itemRepo() {
+        return itemRepo;
+    }
+
+    @Override
+    protected int batchSize() {
+        return batchSize;
+    }
+
+    @Override
+    protected List<RevocationItem> nextBatch(@NonNull UUID jobId) {
+        return itemRepo.findByJobIdAndStateAndRevokedAtIsNullOrderByPosition(jobId, JobItemState.PENDING,
+                Pageable.from(0, batchSize));
+    }
+
+    @Override
+    protected BatchTask<RevocationItem> prepare(@NonNull RevocationJob job) {
+        return items -> revokeBatch(job.getId(), items);
+    }
+
+    @Override
+    protected void finish(@NonNull UUID jobId) throws IOException {
+        publish(jobId, itemRepo.findByJobIdAndStateAndRevokedAtIsNotNull(jobId, JobItemState.PENDING));
+    }
+
+    /**
+     * Revokes the credentials in aca-py without publishing them, the items are
+     * still pending afterwards unless the revocation failed.
+     */
+    private void revokeBatch(@NonNull UUID jobId, @NonNull List<RevocationItem> items) throws IOException {
+        try {
+            for (RevocationItem item : items) {
+                jobRunner.checkLease(jobId);
+                try {
+                    ac.revocationRevoke(RevokeRequest
+                            .builder()
+                            .revRegId(item.getRevRegId())
+                            .credRevId(item.getCredRevId())
+                            .publish(Boolean.FALSE)
+                            .build());
+                    item.setRevokedAt(Instant.now());
+                } catch (AriesException e) {
+                    log.debug("Could not revoke credential: {}", item.getCredentialExchangeId(), e);
+                    item.setState(JobItemState.FAILED).setError(e.getMessage());
+                }
+            }
+        } finally {
+            // keeps the progress if aca-py becomes unavailable in between
+            itemRepo.updateAll(items);
+        }
+    }
+
+    /**
+     * Publishes all pending revocations, one aca-py call and ledger transaction per
+     * revocation registry. The credentials are already revoked in aca-py, so if
+     * publishing fails the items stay pending and the job stops once all registries
+     * were tried, the next run publishes them again.
+     */
+    private void publish(@NonNull UUID jobId, @NonNull List<RevocationItem> items) throws IOException {
+        Map<String, List<RevocationItem>> byRegistry = items
+                .stream()
+                .collect(Collectors.groupingBy(RevocationItem::getRevRegId, LinkedHashMap::new, Collectors.toList()));
+        AriesException failed = null;
+        for (Map.Entry<String, List<RevocationItem>> registry : byRegistry.entrySet()) {
+            List<RevocationItem> regItems = registry.getValue();
+            jobRunner.checkLease(jobId);
+            try {
+                ac.revocationPublishRevocations(PublishRevocations
+                        .builder()
+                        .rrid2crid(Map.of(registry.getKey(), regItems
+                                .stream()
+                                .map(RevocationItem::getCredRevId)
+                                .collect(Collectors.toList())))
+                        .build());
+            } catch (AriesException e) {
+                log.error("Could not publish revocations for registry: {}", registry.getKey(), e);
+                failed = e;
+                continue;
+            }
+            regItems.forEach(item -> item.setState(JobItemState.DONE));
+            markRevoked(regItems);
+            itemRepo.updateAll(regItems);
+        }
+        if (failed != null) {
+            throw failed;
+        }
+    }
+
+    private void markRevoked(@NonNull List<RevocationItem> items) {
+        credExRepo.findByIdIn(items
+                .stream()
+                .map(RevocationItem::getCredentialExchangeId)
+                .collect(Collectors.toList()))
+                .forEach(credEx -> {
+                    credEx.setRevoked(Boolean.TRUE);
+                    credEx.pushStates(CredentialExchangeState.REVOKED);
+                    credExRepo.updateRevoked(credEx.getId(), credEx.getStateChangedAt());
+                    stateTransitions.record(credEx);
+                });
+    }
+
+    private RevocationItem toItem(@NonNull UUID jobId, int position, @NonNull UUID credExId,
+            BPACredentialExchange credEx) {
+        RevocationItem item = RevocationItem
+                .builder()
+                .jobId(jobId)
+                .position(position)
+                .credentialExchangeId(credExId)
+                .state(JobItemState.PENDING)
+                .build();
+        if (credEx == null) {
+            item.setState(JobItemState.SKIPPED)
+                    .setError(msg.getMessage("api.issuer.revoke.not.found", Map.of("id", credExId)));
+        } else if (!credEx.roleIsIssuer() || StringUtils.isEmpty(credEx.getRevRegId())
+                || StringUtils.isEmpty(credEx.getCredRevId())) {
+            item.setState(JobItemState.SKIPPED)
+                    .setError(msg.getMessage("api.issuer.credential.missing.revocation.info"));
+        } else if (Boolean.TRUE.equals(credEx.getRevoked())) {
+            item.setState(JobItemState.SKIPPED)
+                    .setError(msg.getMessage("api.issuer.revoke.already.revoked"));
+        } else {
+            item.setRevRegId(credEx.getRevRegId()).setCredRevId(credEx.getCredRevId());
+        }
+        return item;
+    }
+
+    private RevocationJobAPI toAPIObject(@NonNull RevocationJob job) {
+        UUID id = job.getId();
+        long awaitingPublication = itemRepo.countByJobIdAndStateAndRevokedAtIsNotNull(id, JobItemState.PENDING);
+        return RevocationJobAPI.from(job)
+                .pending(count(id, JobItemState.PENDING) - awaitingPublication)
+                .awaitingPublication(awaitingPublication)
+                .revoked(count(id, JobItemState.DONE))
+                .skipped(count(id, JobItemState.SKIPPED))
+                .failed(count(id, JobItemState.FAILED))
+                .problems(problems(id, PROBLEM_STATES, RevocationJobAPI.RevocationJobItem::from))
+                .build();
+    }
+}
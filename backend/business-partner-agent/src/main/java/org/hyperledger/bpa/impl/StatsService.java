@@ -28,10 +28,13 @@ import org.hyperledger.bpa.api.CredentialType;
 import org.hyperledger.bpa.controller.api.stats.BPAStats;
 import org.hyperledger.bpa.controller.api.stats.DashboardCounts;
 import org.hyperledger.bpa.impl.activity.Identity;
+import org.hyperledger.bpa.impl.activity.VPManager;
 import org.hyperledger.bpa.repository.*;
+import org.hyperledger.bpa.repository.replica.*;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Optional;
 
 @Slf4j
 @Singleton
@@ -55,19 +58,41 @@ public class StatsService {
     @Inject
     PartnerProofRepository proofRepository;
 
+    @Inject
+    VPManager vpMgmt;
+
+    @Inject
+    Optional<ReplicaPartnerRepository> replicaPartnerRepo;
+
+    @Inject
+    Optional<ReplicaCredExRepository> replicaCredExRepo;
+
+    @Inject
+    Optional<ReplicaActivityRepository> replicaActivityRepo;
+
+    @Inject
+    Optional<ReplicaPartnerProofRepository> replicaProofRepo;
+
+    @Inject
+    ReplicaRouter replica;
+
     public BPAStats collectStats() {
         DashboardCounts totals = DashboardCounts
                 .builder()
-                .credentialsSent(holderCredExRepo.countByRoleEqualsAndStateEquals(
-                        CredentialExchangeRole.ISSUER,
-                        CredentialExchangeState.CREDENTIAL_ACKED))
-                .credentialsReceived(holderCredExRepo.countByRoleEqualsAndStateEquals(
-                        CredentialExchangeRole.HOLDER, CredentialExchangeState.CREDENTIAL_ACKED))
-                .tasks(activityRepository.countByCompletedFalse())
-                .partners(partnerRepo.countByStateNotEquals(ConnectionState.INVITATION))
-                .presentationRequestsSent(proofRepository.countByStateEquals(PresentationExchangeState.REQUEST_SENT))
-                .presentationRequestsReceived(
-                        proofRepository.countByStateEquals(PresentationExchangeState.PRESENTATION_RECEIVED))
+                .credentialsSent(replica.read(holderCredExRepo, replicaCredExRepo,
+                        r -> r.countByRoleEqualsAndStateEquals(
+                                CredentialExchangeRole.ISSUER, CredentialExchangeState.CREDENTIAL_ACKED)))
+                .credentialsReceived(replica.read(holderCredExRepo, replicaCredExRepo,
+                        r -> r.countByRoleEqualsAndStateEquals(
+                                CredentialExchangeRole.HOLDER, CredentialExchangeState.CREDENTIAL_ACKED)))
+                .tasks(replica.read(activityRepository, replicaActivityRepo,
+                        ActivityReadQueries::countByCompletedFalse))
+                .partners(replica.read(partnerRepo, replicaPartnerRepo,
+                        r -> r.countByStateNotEquals(ConnectionState.INVITATION)))
+                .presentationRequestsSent(replica.read(proofRepository, replicaProofRepo,
+                        r -> r.countByStateEquals(PresentationExchangeState.REQUEST_SENT)))
+                .presentationRequestsReceived(replica.read(proofRepository, replicaProofRepo,
+                        r -> r.countByStateEquals(PresentationExchangeState.PRESENTATION_RECEIVED)))
                 .build();
 
         // for now, let's just get new data created today.
@@ -76,16 +101,21 @@ public class StatsService {
         Instant yesterday = Instant.now().minus(1, ChronoUnit.DAYS);
         DashboardCounts periodTotals = DashboardCounts
                 .builder()
-                .credentialsSent(holderCredExRepo.countByRoleEqualsAndStateEqualsAndCreatedAtAfter(
-                        CredentialExchangeRole.ISSUER, CredentialExchangeState.CREDENTIAL_ACKED, yesterday))
-                .credentialsReceived(holderCredExRepo.countByRoleEqualsAndStateEqualsAndCreatedAtAfter(
-                        CredentialExchangeRole.HOLDER, CredentialExchangeState.CREDENTIAL_ACKED, yesterday))
-                .tasks(activityRepository.countByCompletedFalseAndCreatedAtAfter(yesterday))
-                .partners(partnerRepo.countByStateNotEqualsAndCreatedAtAfter(ConnectionState.INVITATION, yesterday))
-                .presentationRequestsSent(proofRepository
-                        .countByStateEqualsAndCreatedAtAfter(PresentationExchangeState.REQUEST_SENT, yesterday))
-                .presentationRequestsReceived(proofRepository.countByStateEqualsAndCreatedAtAfter(
-                        PresentationExchangeState.PRESENTATION_RECEIVED, yesterday))
+                .credentialsSent(replica.read(holderCredExRepo, replicaCredExRepo,
+                        r -> r.countByRoleEqualsAndStateEqualsAndCreatedAtAfter(
+                                CredentialExchangeRole.ISSUER, CredentialExchangeState.CREDENTIAL_ACKED, yesterday)))
+                .credentialsReceived(replica.read(holderCredExRepo, replicaCredExRepo,
+                        r -> r.countByRoleEqualsAndStateEqualsAndCreatedAtAfter(
+                                CredentialExchangeRole.HOLDER, CredentialExchangeState.CREDENTIAL_ACKED, yesterday)))
+                .tasks(replica.read(activityRepository, replicaActivityRepo,
+                        r -> r.countByCompletedFalseAndCreatedAtAfter(yesterday)))
+                .partners(replica.read(partnerRepo, replicaPartnerRepo,
+                        r -> r.countByStateNotEqualsAndCreatedAtAfter(ConnectionState.INVITATION, yesterday)))
+                .presentationRequestsSent(replica.read(proofRepository, replicaProofRepo,
+                        r -> r.countByStateEqualsAndCreatedAtAfter(PresentationExchangeState.REQUEST_SENT, yesterday)))
+                .presentationRequestsReceived(replica.read(proofRepository, replicaProofRepo,
+                        r -> r.countByStateEqualsAndCreatedAtAfter(
+                                PresentationExchangeState.PRESENTATION_RECEIVED, yesterday)))
                 .build();
 
         return BPAStats
@@ -95,6 +125,7 @@ public class StatsService {
                         .existsByTypeEqualsAndIsPublicTrue(CredentialType.ORGANIZATIONAL_PROFILE_CREDENTIAL))
                 .totals(totals)
                 .periodTotals(periodTotals)
+                .vpRegeneration(vpMgmt.getRegenerationStats())
                 .build();
     }
 }
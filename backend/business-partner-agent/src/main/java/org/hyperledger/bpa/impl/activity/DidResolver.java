@@ -37,6 +37,7 @@ import org.hyperledger.bpa.impl.util.AriesStringUtil;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.model.Partner;
 import org.hyperledger.bpa.model.PartnerProof;
+import org.hyperledger.bpa.model.converter.LazyJson;
 import org.hyperledger.bpa.repository.PartnerRepository;
 
 import java.util.List;
@@ -98,7 +99,7 @@ public class DidResolver {
                                 final PartnerAPI pAPI = partnerLookup.lookupPartner(pubDid.toString());
                                 p.setDid(pubDid.toString());
                                 p.setValid(pAPI.getValid());
-                                p.setVerifiablePresentation(converter.toMap(pAPI.getVerifiablePresentation()));
+                                p.setVerifiablePresentation(LazyJson.ofNullable(pAPI.getVerifiablePresentation()));
                                 partnerRepo.update(p);
                             }
                         }
@@ -123,7 +124,7 @@ public class DidResolver {
         lookupPartnerSave(p.getDid()).ifPresentOrElse(pAPI -> {
             partnerRepo.updateVerifiablePresentation(
                     p.getId(),
-                    converter.toMap(pAPI.getVerifiablePresentation()),
+                    LazyJson.of(pAPI.getVerifiablePresentation()),
                     pAPI.getValid());
             webhook.convertAndSend(RegisteredWebhook.WebhookEventType.PARTNER_ADD, pAPI);
         }, () -> {
@@ -132,7 +133,7 @@ public class DidResolver {
                 final PartnerAPI pAPI = partnerLookup.lookupPartner(did);
                 partnerRepo.updateVerifiablePresentation(
                         p.getId(),
-                        converter.toMap(pAPI.getVerifiablePresentation()),
+                        LazyJson.of(pAPI.getVerifiablePresentation()),
                         pAPI.getValid(),
                         cl.getLabel(),
                         did);
@@ -17,31 +17,49 @@
  */
 package org.hyperledger.bpa.impl.activity;
 
-import io.micronaut.cache.annotation.Cacheable;
+import io.micronaut.cache.CacheManager;
+import io.micronaut.cache.SyncCache;
+import io.micronaut.cache.annotation.CacheInvalidate;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.core.util.CollectionUtils;
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.aries.api.exception.AriesException;
 import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
 import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.aries.api.resolver.DIDDocument;
 import org.hyperledger.bpa.api.ApiConstants;
 import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.api.exception.NetworkException;
 import org.hyperledger.bpa.api.exception.PartnerException;
 import org.hyperledger.bpa.client.DidDocClient;
 import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.controller.api.partner.PartnerLookupResult;
 import org.hyperledger.bpa.impl.util.Converter;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Singleton
 public class PartnerLookup {
 
+    static final String PARTNER_LOOKUP_CACHE = "partner-lookup-cache";
+    static final String UR_CACHE = "ur-cache";
+
     @Inject
     Converter converter;
 
@@ -54,8 +72,98 @@ public class PartnerLookup {
     @Inject
     BPAMessageSource.DefaultMessageSource ms;
 
-    @Cacheable(cacheNames = { "partner-lookup-cache" })
+    @Inject
+    @Named("partner-lookup")
+    ExecutorService lookupExecutor;
+
+    @Inject
+    CacheManager<?> cacheManager;
+
+    @Value("${micronaut.caches.partner-lookup-cache.expire-after-write}")
+    Duration cacheTtl;
+
+    @Value("${bpa.partner.lookup.refreshBeforeExpiry}")
+    Duration refreshBeforeExpiry;
+
+    // did -> when the cached lookup was resolved, only populated on cache misses
+    final Map<String, Instant> resolvedAt = new ConcurrentHashMap<>();
+
+    // did -> when the cached lookup was last read
+    final Map<String, Instant> accessedAt = new ConcurrentHashMap<>();
+
     public PartnerAPI lookupPartner(@NonNull String did) {
+        accessedAt.put(did, Instant.now());
+        return cacheManager.getCache(PARTNER_LOOKUP_CACHE).get(did, PartnerAPI.class, () -> {
+            PartnerAPI partner = resolvePartner(did);
+            resolvedAt.put(did, Instant.now());
+            return partner;
+        });
+    }
+
+    /**
+     * Removes the cached lookup and did document of a single partner, all other
+     * cached partners are kept.
+     *
+     * @param did the fully qualified did
+     */
+    @CacheInvalidate(cacheNames = { PARTNER_LOOKUP_CACHE, UR_CACHE })
+    public void invalidate(@NonNull String did) {
+        resolvedAt.remove(did);
+        accessedAt.remove(did);
+    }
+
+    /**
+     * Re-validates the cached lookups that are close to expiry and were read since
+     * they were last resolved, so that requests keep being served from the cache
+     * instead of blocking on a miss. The stale entry stays in the cache until the
+     * new one is resolved. Lookups that were not read in the meantime are left to
+     * expire.
+     */
+    @Scheduled(fixedDelay = "15s", initialDelay = "1m")
+    void refreshExpiringLookups() {
+        Instant now = Instant.now();
+        Instant expired = now.minus(cacheTtl);
+        Instant refreshBefore = now.minus(cacheTtl.minus(refreshBeforeExpiry));
+        resolvedAt.values().removeIf(t -> t.isBefore(expired));
+        accessedAt.values().removeIf(t -> t.isBefore(expired));
+        List<String> expiring = resolvedAt.entrySet()
+                .stream()
+                .filter(e -> e.getValue().isBefore(refreshBefore))
+                .filter(e -> readSince(e.getKey(), e.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        if (expiring.isEmpty()) {
+            return;
+        }
+
+        SyncCache<?> lookupCache = cacheManager.getCache(PARTNER_LOOKUP_CACHE);
+        SyncCache<?> urCache = cacheManager.getCache(UR_CACHE);
+        Scheduler scheduler = Schedulers.from(lookupExecutor);
+        Long refreshed = Flowable.fromIterable(expiring)
+                .flatMapMaybe(did -> Maybe.fromCallable(() -> {
+                    try {
+                        urCache.invalidate(did);
+                        lookupCache.put(did, resolvePartner(did));
+                        resolvedAt.put(did, Instant.now());
+                        return did;
+                    } catch (Exception e) {
+                        // keep serving the stale entry until it expires
+                        log.debug("Did: {} could not be refreshed: {}", did, e.getMessage());
+                        resolvedAt.remove(did);
+                        return null;
+                    }
+                }).subscribeOn(scheduler))
+                .count()
+                .blockingGet();
+        log.debug("Refreshed {} of {} expiring partner lookups", refreshed, expiring.size());
+    }
+
+    private boolean readSince(@NonNull String did, @NonNull Instant resolved) {
+        Instant accessed = accessedAt.get(did);
+        return accessed != null && accessed.isAfter(resolved);
+    }
+
+    private PartnerAPI resolvePartner(@NonNull String did) {
         Optional<DIDDocument> didDocument = ur.getDidDocument(did);
         if (didDocument.isPresent()) {
             Optional<String> publicProfileUrl = didDocument.get().findPublicProfileUrl();
@@ -78,21 +186,63 @@ public class PartnerLookup {
         throw new PartnerException(ms.getMessage("api.partner.lookup.no.did.doc"));
     }
 
+    /**
+     * Converts the public profile and verifies its proof against the matching key
+     * of the did document.
+     *
+     * @param profile             the partners public profile
+     * @param verificationMethods verification methods of the partners did document
+     * @return {@link PartnerAPI}, valid is only set if a key matched
+     */
+    PartnerAPI verifyProfile(@NonNull VerifiablePresentation<VerifiableIndyCredential> profile,
+            List<DIDDocument.VerificationMethod> verificationMethods) {
+        final PartnerAPI partner = converter.toAPIObject(profile);
+
+        String verificationMethod = profile.getProof() != null
+                ? profile.getProof().getVerificationMethod()
+                : "";
+        Optional<String> pk = matchKey(verificationMethod, verificationMethods);
+        if (pk.isPresent()) {
+            final Boolean valid = crypto.verify(pk.get(), profile);
+            partner.setValid(valid);
+        }
+        return partner;
+    }
+
+    /**
+     * Resolves multiple partners in parallel, the number of concurrent lookups is
+     * bounded by the partner-lookup executor. Every did goes through the cached
+     * {@link #lookupPartner(String)}, so already known partners are served from the
+     * cache. Results are emitted in completion order.
+     *
+     * @param dids fully qualified did's, duplicates are resolved once
+     * @return {@link Flowable} emitting one {@link PartnerLookupResult} per did
+     */
+    public Flowable<PartnerLookupResult> lookupPartners(@NonNull Collection<String> dids) {
+        Scheduler scheduler = Schedulers.from(lookupExecutor);
+        return Flowable.fromIterable(new LinkedHashSet<>(dids))
+                .filter(StringUtils::isNotBlank)
+                .flatMap(did -> Flowable.fromCallable(() -> lookupPartnerResult(did)).subscribeOn(scheduler));
+    }
+
+    private PartnerLookupResult lookupPartnerResult(@NonNull String did) {
+        PartnerLookupResult.PartnerLookupResultBuilder result = PartnerLookupResult.builder().did(did);
+        try {
+            result.partner(lookupPartner(did));
+        } catch (PartnerException | NetworkException | AriesException e) {
+            log.debug("Did: {} could not be resolved: {}", did, e.getMessage());
+            result.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("Did: {} could not be resolved", did, e);
+            result.error(e.getMessage());
+        }
+        return result.build();
+    }
+
     PartnerAPI lookupPartner(@NonNull String endpoint, List<DIDDocument.VerificationMethod> verificationMethods) {
         Optional<VerifiablePresentation<VerifiableIndyCredential>> profile = ur.getPublicProfile(endpoint);
         if (profile.isPresent()) {
-
-            final PartnerAPI partner = converter.toAPIObject(profile.get());
-
-            String verificationMethod = profile.get().getProof() != null
-                    ? profile.get().getProof().getVerificationMethod()
-                    : "";
-            Optional<String> pk = matchKey(verificationMethod, verificationMethods);
-            if (pk.isPresent()) {
-                final Boolean valid = crypto.verify(pk.get(), profile.get());
-                partner.setValid(valid);
-            }
-            return partner;
+            return verifyProfile(profile.get(), verificationMethods);
         }
         throw new PartnerException(ms.getMessage("api.partner.lookup.no.endpoint", Map.of("endpoint", endpoint)));
     }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.activity;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.aries.api.resolver.DIDDocument;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.api.exception.NetworkException;
+import org.hyperledger.bpa.client.DidDocClient;
+import org.hyperledger.bpa.client.api.ConditionalResponse;
+import org.hyperledger.bpa.core.RegisteredWebhook.WebhookEventType;
+import org.hyperledger.bpa.impl.WebhookService;
+import org.hyperledger.bpa.impl.aries.ConnectionManager;
+import org.hyperledger.bpa.impl.cluster.ClusterExclusive;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.repository.PartnerRepository;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps the stored public profiles of partners up to date. Profiles are fetched
+ * with conditional requests, so a partner whose profile did not change costs a
+ * single 304 response. Only if the content changed the profile is verified and
+ * stored again.
+ */
+@Slf4j
+@Singleton
+public class PartnerProfileRefresher {
+
+    enum Outcome {
+        /** no profile endpoint, or no did document and never had a profile */
+        SKIPPED,
+        /** 304 response */
+        NOT_MODIFIED,
+        /** 200 response with the same content */
+        UNCHANGED,
+        UPDATED,
+        FAILED
+    }
+
+    private static final UUID FIRST = new UUID(0, 0);
+
+    private static final String PEER_DIDS = "did:peer:%";
+
+    @Inject
+    PartnerRepository partnerRepo;
+
+    @Inject
+    DidDocClient ur;
+
+    @Inject
+    PartnerLookup partnerLookup;
+
+    @Inject
+    Converter conv;
+
+    @Inject
+    WebhookService webhook;
+
+    @Inject
+    @Named("partner-lookup")
+    ExecutorService executor;
+
+    @Value("${bpa.did.prefix}")
+    String didPrefix;
+
+    @Value("${bpa.partner.profile.refresh.pageSize}")
+    Integer pageSize;
+
+    @Value("${bpa.partner.profile.refresh.parallelism}")
+    Integer parallelism;
+
+    @Scheduled(fixedDelay = "${bpa.partner.profile.refresh.interval}", initialDelay = "5m")
+    @ClusterExclusive(value = "partner-profile-refresh", period = "${bpa.partner.profile.refresh.interval}")
+    void refreshProfiles() {
+        long start = System.currentTimeMillis();
+        Scheduler scheduler = Schedulers.from(executor);
+        Map<Outcome, Integer> stats = new EnumMap<>(Outcome.class);
+        UUID last = FIRST;
+        List<Partner> page;
+        while (!(page = partnerRepo.findResolvableByIdGreaterThan(last, didPrefix + ConnectionManager.UNKNOWN_DID,
+                PEER_DIDS, pageSize)).isEmpty()) {
+            Flowable.fromIterable(page)
+                    .flatMap(p -> Flowable.fromCallable(() -> refreshProfile(p)).subscribeOn(scheduler),
+                            parallelism)
+                    .blockingForEach(o -> stats.merge(o, 1, Integer::sum));
+            last = page.get(page.size() - 1).getId();
+        }
+        log.info("Partner profile refresh took {}ms: {}", System.currentTimeMillis() - start, stats);
+    }
+
+    Outcome refreshProfile(@NonNull Partner p) {
+        try {
+            Optional<DIDDocument> didDoc;
+            try {
+                didDoc = ur.getDidDocument(p.getDid());
+            } catch (NetworkException e) {
+                // e.g. pairwise did's of partners that connected without a public did
+                if (p.getVerifiablePresentation() == null) {
+                    return Outcome.SKIPPED;
+                }
+                throw e;
+            }
+            Optional<String> url = didDoc.flatMap(DIDDocument::findPublicProfileUrl);
+            if (url.isEmpty()) {
+                return Outcome.SKIPPED;
+            }
+            ConditionalResponse<VerifiablePresentation<VerifiableIndyCredential>> response = ur
+                    .getPublicProfile(url.get(), p.getProfileEtag(), p.getProfileLastModified());
+            if (response.isNotModified()) {
+                return Outcome.NOT_MODIFIED;
+            }
+            if (!response.hasBody()) {
+                return Outcome.FAILED;
+            }
+            VerifiablePresentation<VerifiableIndyCredential> vp = Objects.requireNonNull(response.getBody());
+            if (p.getVerifiablePresentation() != null && vp.equals(p.getVerifiablePresentation().get())) {
+                partnerRepo.updateProfileValidators(p.getId(), response.getEtag(), response.getLastModified());
+                return Outcome.UNCHANGED;
+            }
+            PartnerAPI verified = partnerLookup.verifyProfile(vp,
+                    didDoc.get().getVerificationMethod());
+            partnerRepo.updateProfile(p.getId(), conv.writeValueAsString(vp).orElseThrow(), verified.getValid(),
+                    response.getEtag(), response.getLastModified());
+            partnerLookup.invalidate(p.getDid());
+            partnerRepo.findById(p.getId()).ifPresent(
+                    dbP -> webhook.convertAndSend(WebhookEventType.PARTNER_UPDATE, conv.toAPIObject(dbP)));
+            return Outcome.UPDATED;
+        } catch (Exception e) {
+            log.debug("Could not refresh profile of partner: {}", p.getDid(), e);
+            return Outcome.FAILED;
+        }
+    }
+}
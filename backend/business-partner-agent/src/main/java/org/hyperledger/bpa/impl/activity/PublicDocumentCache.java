@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.activity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.model.DidDocWeb;
+import org.hyperledger.bpa.repository.DidDocWebRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the public profile (VP) and the did document in their serialized form,
+ * as they are polled by every partner in the network. The documents are loaded,
+ * serialized and compressed once per version of the did_doc_web row, the
+ * version is its updated at timestamp. So all nodes serve the same bytes and
+ * ETag, and pick up changes that were written by another node.
+ */
+@Slf4j
+@Singleton
+public class PublicDocumentCache {
+
+    @Inject
+    DidDocWebRepository didRepo;
+
+    @Inject
+    ObjectMapper mapper;
+
+    private final AtomicReference<CachedDocument> profile = new AtomicReference<>();
+    private final AtomicReference<CachedDocument> didDocument = new AtomicReference<>();
+
+    public Optional<SerializedDocument> getProfile() {
+        return get(profile, dd -> dd.getProfileJson() != null ? dd.getProfileJson().get() : null);
+    }
+
+    public Optional<SerializedDocument> getDidDocument() {
+        return get(didDocument, DidDocWeb::getDidDoc);
+    }
+
+    private Optional<SerializedDocument> get(
+            @NonNull AtomicReference<CachedDocument> cache, @NonNull Function<DidDocWeb, Object> document) {
+        Optional<Instant> version = didRepo.findVersion();
+        if (version.isEmpty()) {
+            return Optional.empty();
+        }
+        CachedDocument cached = cache.get();
+        if (cached == null || !cached.getVersion().equals(version.get())) {
+            // always serialized from the mapped document, so the ETag is the same on
+            // all nodes and does not depend on how the json is stored
+            cached = didRepo.findDidDocSingle()
+                    .map(dd -> new CachedDocument(versionOf(dd), serialize(document.apply(dd))))
+                    .orElseGet(() -> new CachedDocument(version.get(), null));
+            cache.set(cached);
+        }
+        return Optional.ofNullable(cached.getDocument());
+    }
+
+    private static Instant versionOf(@NonNull DidDocWeb dd) {
+        return dd.getUpdatedAt() != null ? dd.getUpdatedAt() : Instant.EPOCH;
+    }
+
+    private @Nullable SerializedDocument serialize(@Nullable Object document) {
+        if (document == null) {
+            return null;
+        }
+        try {
+            return SerializedDocument.of(mapper.writeValueAsBytes(document));
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize public document", e);
+            return null;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class CachedDocument {
+
+        /** updated at of the did_doc_web row the document was loaded from */
+        private final Instant version;
+
+        /** null if the row has no such document */
+        @Nullable
+        private final SerializedDocument document;
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class SerializedDocument {
+
+        private final byte[] json;
+
+        private final byte[] gzip;
+
+        /** strong ETag, quoted */
+        private final String etag;
+
+        static SerializedDocument of(byte[] json) {
+            return new SerializedDocument(json, gzip(json), etag(json));
+        }
+
+        /**
+         * @param ifNoneMatch value of the If-None-Match header
+         * @return true if the client already has this version
+         */
+        public boolean matches(@Nullable String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String t = tag.trim();
+                if ("*".equals(t) || etag.equals(t.startsWith("W/") ? t.substring(2) : t)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static byte[] gzip(byte[] json) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+
+        private static String etag(byte[] json) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(json);
+                return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
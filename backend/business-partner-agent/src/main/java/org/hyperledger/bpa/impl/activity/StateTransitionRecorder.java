@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.activity;
+
+import io.micronaut.data.event.EntityEventContext;
+import io.micronaut.data.event.EntityEventListener;
+import io.micronaut.data.model.runtime.RuntimePersistentEntity;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import org.hyperledger.bpa.model.StateChangeDecorator;
+import org.hyperledger.bpa.model.StateTransition;
+import org.hyperledger.bpa.repository.StateTransitionRepository;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Appends the state changes of connection, credential and proof exchanges to
+ * the state_transition table. Entities that are saved or updated as a whole are
+ * handled via entity events, partial updates have to call
+ * {@link #record(StateChangeDecorator)} and deletes by id
+ * {@link #remove(UUID)}.
+ */
+@Singleton
+public class StateTransitionRecorder implements EntityEventListener<Object> {
+
+    @Inject
+    StateTransitionRepository transitionRepo;
+
+    @Override
+    public boolean supports(RuntimePersistentEntity<Object> entity, Class<? extends Annotation> eventType) {
+        return StateChangeDecorator.class.isAssignableFrom(entity.getIntrospection().getBeanType());
+    }
+
+    @Override
+    public void postPersist(@NonNull EntityEventContext<Object> context) {
+        StateChangeDecorator<?, ?> entity = (StateChangeDecorator<?, ?>) context.getEntity();
+        List<StateTransition> transitions = entity.drainTransitions();
+        if (transitions.isEmpty()) {
+            entity.initialTransition().ifPresent(transitions::add);
+        }
+        save(transitions);
+    }
+
+    @Override
+    public void postUpdate(@NonNull EntityEventContext<Object> context) {
+        record((StateChangeDecorator<?, ?>) context.getEntity());
+    }
+
+    @Override
+    public void postRemove(@NonNull EntityEventContext<Object> context) {
+        remove(((StateChangeDecorator<?, ?>) context.getEntity()).getId());
+    }
+
+    /**
+     * Writes the pending state changes of an entity that was updated partially
+     *
+     * @param entity the entity
+     */
+    public void record(@NonNull StateChangeDecorator<?, ?> entity) {
+        save(entity.drainTransitions());
+    }
+
+    /**
+     * Removes the state history of an entity that was deleted by id
+     *
+     * @param entityId the entity id
+     */
+    public void remove(@NonNull UUID entityId) {
+        transitionRepo.deleteByEntityId(entityId);
+    }
+
+    /**
+     * @param entityId the entity id
+     * @return state to epoch millis in the order the states were reached, if a
+     *         state was reached multiple times the latest timestamp is kept
+     */
+    public Map<String, Long> timeline(@NonNull UUID entityId) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        transitionRepo.findByEntityIdOrderByTs(entityId).forEach(t -> {
+            result.remove(t.getState());
+            result.put(t.getState(), t.getTs().toEpochMilli());
+        });
+        return result;
+    }
+
+    private void save(List<StateTransition> transitions) {
+        if (!transitions.isEmpty()) {
+            transitionRepo.saveAll(new ArrayList<>(transitions));
+        }
+    }
+}
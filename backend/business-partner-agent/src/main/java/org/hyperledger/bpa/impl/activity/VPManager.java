@@ -17,16 +17,22 @@
  */
 package org.hyperledger.bpa.impl.activity;
 
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.core.annotation.Nullable;
-import io.micronaut.scheduling.annotation.Async;
+import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.TaskScheduler;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.hyperledger.aries.api.credentials.Credential;
 import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
 import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
@@ -37,21 +43,35 @@ import org.hyperledger.aries.config.GsonConfig;
 import org.hyperledger.aries.config.TimeUtil;
 import org.hyperledger.bpa.api.ApiConstants;
 import org.hyperledger.bpa.api.CredentialType;
+import org.hyperledger.bpa.controller.api.stats.VPRegenerationStats;
+import org.hyperledger.bpa.impl.aries.config.SchemaChangedEvent;
 import org.hyperledger.bpa.impl.aries.config.SchemaService;
 import org.hyperledger.bpa.impl.util.AriesStringUtil;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.model.BPACredentialExchange;
 import org.hyperledger.bpa.model.DidDocWeb;
 import org.hyperledger.bpa.model.MyDocument;
+import org.hyperledger.bpa.model.converter.LazyJson;
 import org.hyperledger.bpa.repository.DidDocWebRepository;
 import org.hyperledger.bpa.repository.HolderCredExRepository;
 import org.hyperledger.bpa.repository.MyDocumentRepository;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+@Slf4j
 @Singleton
 public class VPManager {
 
+    private static final Gson GSON = GsonConfig.defaultConfig();
+
     @Inject
     Identity id;
 
@@ -75,47 +95,132 @@ public class VPManager {
     @Setter(AccessLevel.PROTECTED)
     Converter converter;
 
-    public void recreateVerifiablePresentation() {
-        List<VerifiableIndyCredential> vcs = new ArrayList<>();
+    @Value("${bpa.vp.regenerationDelay}")
+    Duration regenerationDelay;
+
+    @Inject
+    @Named(TaskExecutors.SCHEDULED)
+    TaskScheduler taskScheduler;
+
+    // schema id -> json-ld context, shared between all VPs, so it must not be
+    // modified
+    private final Map<String, JsonObject> schemaContexts = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean regenerationPending = new AtomicBoolean();
+
+    private final AtomicLong signed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong lastDurationMillis = new AtomicLong();
+    private final AtomicLong maxDurationMillis = new AtomicLong();
+    private volatile Instant lastSignedAt;
 
-        String myDid = id.getMyDid();
+    /**
+     * Schedules the regeneration of the public VP. All calls that happen before the
+     * regeneration starts are handled by a single signing pass.
+     */
+    public void recreateVerifiablePresentation() {
+        if (regenerationPending.compareAndSet(false, true)) {
+            taskScheduler.schedule(regenerationDelay, this::regenerate);
+        }
+    }
 
-        docRepo.findByIsPublicTrue().forEach(doc -> vcs.add(buildFromDocument(doc, myDid)));
+    /**
+     * Single writer of the public VP, skips signing if the content did not change
+     * since the stored VP was signed, on any node.
+     */
+    synchronized void regenerate() {
+        // changes from here on need another pass
+        regenerationPending.set(false);
+        long start = System.currentTimeMillis();
+        try {
+            List<VerifiableIndyCredential> vcs = new ArrayList<>();
+
+            String myDid = id.getMyDid();
+
+            docRepo.findByIsPublicTrue().forEach(doc -> vcs.add(buildFromDocument(doc, myDid)));
+
+            holderCredExRepo.findByRoleAndIsPublicTrue(CredentialExchangeRole.HOLDER)
+                    .forEach(cred -> vcs.add(buildFromCredential(cred)));
+
+            String contentHash = contentHash(vcs);
+            Optional<DidDocWeb> current = didRepo.findDidDocSingle();
+            if (current.map(DidDocWeb::getProfileJson).isPresent()
+                    && contentHash.equals(current.get().getProfileHash())) {
+                skipped.incrementAndGet();
+                log.debug("Public VP did not change, skipping signing");
+                return;
+            }
+            signVP(vcs, contentHash, current.orElse(null));
+
+            long duration = System.currentTimeMillis() - start;
+            signed.incrementAndGet();
+            lastDurationMillis.set(duration);
+            maxDurationMillis.accumulateAndGet(duration, Math::max);
+            lastSignedAt = Instant.now();
+            log.debug("Public VP with {} credentials signed in {}ms", vcs.size(), duration);
+        } catch (Exception e) {
+            log.error("Could not regenerate the public VP", e);
+        }
+    }
 
-        holderCredExRepo.findByRoleAndIsPublicTrue(CredentialExchangeRole.HOLDER)
-                .forEach(cred -> vcs.add(buildFromCredential(cred)));
+    public VPRegenerationStats getRegenerationStats() {
+        return VPRegenerationStats
+                .builder()
+                .signed(signed.get())
+                .skipped(skipped.get())
+                .lastDurationMillis(lastDurationMillis.get())
+                .maxDurationMillis(maxDurationMillis.get())
+                .lastSignedAt(lastSignedAt)
+                .build();
+    }
 
-        // only split up into own method, because of a weird issue that the second
-        // thread does
-        // not see the newly created document otherwise.
-        signVP(vcs);
+    /**
+     * Hash over the VP content, without the issuance dates of the documents which
+     * are set to the current time on every pass.
+     */
+    static String contentHash(@NonNull List<VerifiableIndyCredential> vcs) {
+        JsonArray content = GSON.toJsonTree(vcs).getAsJsonArray();
+        content.forEach(vc -> vc.getAsJsonObject().remove("issuanceDate"));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    @Async
-    public void signVP(List<VerifiableIndyCredential> vcs) {
+    void signVP(@NonNull List<VerifiableIndyCredential> vcs, @NonNull String contentHash,
+            @Nullable DidDocWeb current) {
         final VerifiablePresentationBuilder<VerifiableIndyCredential> vpBuilder = VerifiablePresentation.builder();
         if (vcs.size() > 0) {
             vpBuilder.verifiableCredential(vcs);
         } else {
             vpBuilder.verifiableCredential(null);
         }
-        crypto.sign(vpBuilder.build())
-                .ifPresent(vp -> didRepo.findDidDocSingle().ifPresentOrElse(
-                        didWeb -> didRepo.updateProfileJson(didWeb.getId(), converter.toMap(vp)),
-                        () -> didRepo.save(DidDocWeb
-                                .builder()
-                                .profileJson(converter.toMap(vp))
-                                .build())));
+        crypto.sign(vpBuilder.build()).ifPresent(vp -> {
+            LazyJson<VerifiablePresentation<VerifiableIndyCredential>> profileJson = LazyJson.of(vp);
+            if (current != null) {
+                didRepo.updateProfileJsonAndProfileHash(current.getId(), profileJson, contentHash);
+            } else {
+                didRepo.save(DidDocWeb
+                        .builder()
+                        .profileJson(profileJson)
+                        .profileHash(contentHash)
+                        .build());
+            }
+        });
     }
 
     protected VerifiableIndyCredential buildFromDocument(@NonNull MyDocument doc, @NonNull String myDid) {
-        final ObjectNode on = converter.fromMap(Objects.requireNonNull(doc.getDocument()), ObjectNode.class);
-        on.remove("id");
-        on.put("id", myDid);
-
-        // this is needed because the java client serializes with GSON
-        // and cannot handle Jackson ObjectNode
-        JsonObject subj = GsonConfig.defaultConfig().fromJson(on.toString(), JsonObject.class);
+        // the java client serializes with GSON and cannot handle Jackson types
+        JsonObject subj = new JsonObject();
+        Objects.requireNonNull(doc.getDocument()).forEach((k, v) -> {
+            if (!"id".equals(k)) {
+                subj.add(k, GSON.toJsonTree(v));
+            }
+        });
+        subj.addProperty("id", myDid);
 
         List<String> types = new ArrayList<>(doc.getType().getType());
         if (doc.typeIsJsonLd() && doc.getSchema() != null && doc.getSchema().getLdType() != null) {
@@ -148,22 +253,19 @@ public class VPManager {
                 .id("urn:" + cred.getId().toString())
                 .type(type)
                 .context(context)
-                .issuanceDate(TimeUtil.currentTimeFormatted(cred.calculateIssuedAt()))
+                .issuanceDate(TimeUtil.currentTimeFormatted(cred.getIssuedAt()))
                 .schemaId(ariesCred.getSchemaId())
                 .credDefId(ariesCred.getCredentialDefinitionId())
                 .label(cred.getLabel())
                 .indyIssuer(id.getDidPrefix() + AriesStringUtil.credDefIdGetDid(ariesCred.getCredentialDefinitionId()))
-                .credentialSubject(GsonConfig.defaultConfig().toJsonTree(ariesCred.getAttrs()).getAsJsonObject());
+                .credentialSubject(GSON.toJsonTree(ariesCred.getAttrs()).getAsJsonObject());
         return builder.build();
     }
 
     public Optional<VerifiablePresentation<VerifiableIndyCredential>> getVerifiablePresentation() {
-        final Optional<DidDocWeb> dbVP = didRepo.findDidDocSingle();
-        if (dbVP.isPresent() && dbVP.get().getProfileJson() != null) {
-            return Optional
-                    .of(converter.fromMap(Objects.requireNonNull(dbVP.get().getProfileJson()), Converter.VP_TYPEREF));
-        }
-        return Optional.empty();
+        return didRepo.findDidDocSingle()
+                .map(DidDocWeb::getProfileJson)
+                .map(LazyJson::get);
     }
 
     protected List<Object> resolveContext(@NonNull CredentialType type, @Nullable String schemaId) {
@@ -176,8 +278,20 @@ public class VPManager {
         }
 
         final ArrayList<Object> context = new ArrayList<>(type.getContext());
+        if (schemaId != null) {
+            JsonObject ctx = schemaContexts.computeIfAbsent(schemaId, this::buildSchemaContext);
+            if (ctx != null) {
+                context.add(ctx);
+            }
+        }
+        return context;
+    }
 
-        schemaService.getSchemaFor(schemaId).ifPresent(schema -> {
+    /**
+     * @return the schemas json-ld context, or null if the schema is not known
+     */
+    private @Nullable JsonObject buildSchemaContext(@NonNull String schemaId) {
+        return schemaService.getSchemaFor(schemaId).map(schema -> {
             Set<String> attributeNames = schema.getSchemaAttributeNames();
 
             JsonObject ctx = new JsonObject();
@@ -191,11 +305,15 @@ public class VPManager {
                 id.addProperty("@id", "sc:" + name);
                 content.add(name, id);
             });
+            return ctx;
+        }).orElse(null);
+    }
 
-            context.add(ctx);
-        });
-
-        return context;
+    @EventListener
+    public void onSchemaChanged(SchemaChangedEvent event) {
+        if (event.getSchemaId() != null) {
+            schemaContexts.remove(event.getSchemaId());
+        }
     }
 
 }
@@ -23,6 +23,8 @@ import io.micronaut.context.annotation.Value;
 import io.micronaut.context.event.ApplicationEventPublisher;
 import io.micronaut.core.annotation.Nullable;
 import io.micronaut.core.util.CollectionUtils;
+import io.micronaut.data.exceptions.OptimisticLockException;
+import io.micronaut.retry.annotation.Retryable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
@@ -47,6 +49,7 @@ import org.hyperledger.bpa.controller.api.invitation.CheckInvitationResponse;
 import org.hyperledger.bpa.controller.api.partner.CreatePartnerInvitationRequest;
 import org.hyperledger.bpa.impl.InvitationParser;
 import org.hyperledger.bpa.impl.activity.DidResolver;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
 import org.hyperledger.bpa.impl.notification.*;
 import org.hyperledger.bpa.impl.util.TimeUtil;
 import org.hyperledger.bpa.model.Partner;
@@ -84,6 +87,9 @@ public class ConnectionManager {
     @Inject
     HolderCredExRepository holderCredExRepo;
 
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
     @Inject
     DidResolver didResolver;
 
@@ -218,17 +224,20 @@ public class ConnectionManager {
     }
 
     // connection that originated from this agent
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleOutgoingConnectionEvent(ConnectionRecord record) {
         partnerRepo.findByConnectionId(record.getConnectionId()).ifPresent(
                 dbP -> {
                     dbP.pushStates(record.getState(), record.getUpdatedAt());
                     if (StringUtils.isEmpty(dbP.getLabel())) {
                         partnerRepo.updateStateAndLabel(
-                                dbP.getId(), dbP.getState(), dbP.getStateToTimestamp(), record.getTheirLabel());
+                                dbP.getId(), dbP.getVersion(), dbP.getState(), dbP.getStateChangedAt(),
+                                record.getTheirLabel());
                     } else {
                         partnerRepo.updateState(
-                                dbP.getId(), dbP.getState(), dbP.getStateToTimestamp());
+                                dbP.getId(), dbP.getVersion(), dbP.getState(), dbP.getStateChangedAt());
                     }
+                    stateTransitions.record(dbP);
                     if (record.stateIsRequest()) {
                         eventPublisher.publishEventAsync(PartnerAddedEvent.builder().partner(dbP).build());
                     } else if (record.stateIsResponse() || record.stateIsCompleted()) {
@@ -238,6 +247,7 @@ public class ConnectionManager {
     }
 
     // handles invitations and incoming connection events
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleIncomingConnectionEvent(ConnectionRecord record) {
         partnerRepo.findByConnectionId(record.getConnectionId()).ifPresentOrElse(
                 dbP -> {
@@ -280,6 +290,7 @@ public class ConnectionManager {
      *
      * @param record {@link ConnectionRecord}
      */
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleInvitationEvent(ConnectionRecord record) {
         partnerRepo.findByInvitationMsgId(record.getInvitationMsgId()).ifPresent(dbP -> {
             String did;
@@ -316,7 +327,7 @@ public class ConnectionManager {
             }
         } else if (record.stateIsActive() && record.isIncomingConnection()) {
             eventPublisher.publishEventAsync(PartnerRequestCompletedEvent.builder().partner(p).build());
-            partnerCredDefLookup.lookupTypesForAllPartnersAsync();
+            partnerCredDefLookup.lookupTypesForPartner(p.getId());
         }
     }
 
@@ -21,7 +21,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.context.annotation.Value;
 import io.micronaut.context.event.ApplicationEventPublisher;
 import io.micronaut.core.annotation.Nullable;
-import io.micronaut.scheduling.annotation.Scheduled;
+import io.micronaut.data.exceptions.OptimisticLockException;
+import io.micronaut.retry.annotation.Retryable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.AccessLevel;
@@ -55,6 +56,7 @@ import org.hyperledger.bpa.api.exception.PartnerException;
 import org.hyperledger.bpa.config.BPAMessageSource;
 import org.hyperledger.bpa.impl.BaseCredentialManager;
 import org.hyperledger.bpa.impl.activity.LabelStrategy;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
 import org.hyperledger.bpa.impl.activity.VPManager;
 import org.hyperledger.bpa.impl.aries.config.SchemaService;
 import org.hyperledger.bpa.impl.notification.CredentialAddedEvent;
@@ -96,6 +98,9 @@ public class HolderCredentialManager extends BaseCredentialManager {
     @Inject
     HolderCredExRepository holderCredExRepo;
 
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
     @Inject
     VPManager vpMgmt;
 
@@ -180,9 +185,20 @@ public class HolderCredentialManager extends BaseCredentialManager {
     // credential CRUD operations
 
     public List<AriesCredential> listCredentials() {
-        return holderCredExRepo.findByRoleEqualsAndStateIn(
-                CredentialExchangeRole.HOLDER,
-                List.of(CredentialExchangeState.CREDENTIAL_ACKED, CredentialExchangeState.DONE))
+        return listCredentials(null);
+    }
+
+    /**
+     * @param attributes optional filter, attribute name to value, all have to match
+     * @return list of {@link AriesCredential}
+     */
+    public List<AriesCredential> listCredentials(@Nullable Map<String, String> attributes) {
+        List<BPACredentialExchange> credentials = attributes == null || attributes.isEmpty()
+                ? holderCredExRepo.findByRoleEqualsAndStateIn(
+                        CredentialExchangeRole.HOLDER,
+                        List.of(CredentialExchangeState.CREDENTIAL_ACKED, CredentialExchangeState.DONE))
+                : holderCredExRepo.findCredentialsByAttributes(conv.writeValueAsString(attributes).orElseThrow());
+        return credentials
                 .stream()
                 .map(this::buildCredential)
                 .collect(Collectors.toList());
@@ -227,6 +243,7 @@ public class HolderCredentialManager extends BaseCredentialManager {
                 log.error("Could not delete aca-py credential for referent: {}", c.getReferent(), e);
             }
             holderCredExRepo.deleteById(id);
+            stateTransitions.remove(id);
             if (isPublic) {
                 vpMgmt.recreateVerifiablePresentation();
             }
@@ -247,13 +264,16 @@ public class HolderCredentialManager extends BaseCredentialManager {
         }
     }
 
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void declineCredentialOffer(@NonNull UUID id, @Nullable String message) {
         if (StringUtils.isEmpty(message)) {
             message = msg.getMessage("api.holder.credential.exchange.declined");
         }
         BPACredentialExchange dbEx = getCredentialExchange(id);
         dbEx.pushStates(CredentialExchangeState.DECLINED, Instant.now());
-        holderCredExRepo.updateStates(dbEx.getId(), dbEx.getState(), dbEx.getStateToTimestamp(), message);
+        holderCredExRepo.updateStates(dbEx.getId(), dbEx.getVersion(), dbEx.getState(), dbEx.getStateChangedAt(),
+                message);
+        stateTransitions.record(dbEx);
         declineCredentialExchange(dbEx, message);
     }
 
@@ -276,8 +296,8 @@ public class HolderCredentialManager extends BaseCredentialManager {
                 if (StringUtils.isNotEmpty(p.get().getAlias())) {
                     issuer = p.get().getAlias();
                 } else if (p.get().getVerifiablePresentation() != null) {
-                    VerifiablePresentation<VerifiableIndyCredential> vp = conv
-                            .fromMap(Objects.requireNonNull(p.get().getVerifiablePresentation()), Converter.VP_TYPEREF);
+                    VerifiablePresentation<VerifiableIndyCredential> vp = Objects
+                            .requireNonNull(p.get().getVerifiablePresentation()).get();
                     Optional<VerifiableIndyCredential> profile = vp.getVerifiableCredential()
                             .stream().filter(ic -> ic.getType().contains("OrganizationalProfileCredential")).findAny();
                     if (profile.isPresent() && profile.get().getCredentialSubject() != null) {
@@ -297,45 +317,19 @@ public class HolderCredentialManager extends BaseCredentialManager {
         return issuer;
     }
 
-    /**
-     * Scheduled task that checks the revocation status of all credentials issued to
-     * this BPA.
-     */
-    @Scheduled(fixedDelay = "5m", initialDelay = "1m")
-    void checkRevocationStatus() {
-        log.trace("Running revocation checks");
-        holderCredExRepo.findNotRevoked().parallelStream().forEach(cred -> {
-            try {
-                log.trace("Running revocation check for credential exchange: {}", cred.getReferent());
-                ac.credentialRevoked(Objects.requireNonNull(cred.getReferent())).ifPresent(isRevoked -> {
-                    if (isRevoked.getRevoked() != null && isRevoked.getRevoked()) {
-                        cred.pushStates(CredentialExchangeState.REVOKED, Instant.now());
-                        holderCredExRepo.updateRevoked(cred.getId(), Boolean.TRUE, cred.getStateToTimestamp());
-                        log.debug("Credential with referent id: {} has been revoked", cred.getReferent());
-                    }
-                });
-            } catch (AriesException e) {
-                if (e.getCode() == 404) {
-                    log.error("aca-py has no credential with referent id: {}", cred.getReferent());
-                    holderCredExRepo.updateReferent(cred.getId(), null);
-                }
-            } catch (Exception e) {
-                log.error("Revocation check failed", e);
-            }
-        });
-    }
-
     // credential event handling
 
     // credential offer event
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleOfferReceived(@NonNull V1CredentialExchange credEx, @NonNull ExchangeVersion version) {
         holderCredExRepo.findByCredentialExchangeId(credEx.getCredentialExchangeId()).ifPresentOrElse(db -> {
             // counter offer or accepted proposal from issuer
             db.pushStates(credEx.getState(), credEx.getUpdatedAt());
             V1CredentialExchange.CredentialProposalDict.CredentialProposal credentialOffer = credEx
                     .getCredentialProposalDict().getCredentialProposal();
-            holderCredExRepo.updateOnCredentialOfferEvent(db.getId(), db.getState(), db.getStateToTimestamp(),
-                    credentialOffer);
+            holderCredExRepo.updateOnCredentialOfferEvent(db.getId(), db.getVersion(), db.getState(),
+                    db.getStateChangedAt(), credentialOffer);
+            stateTransitions.record(db);
             // if offer equals proposal send request immediately
             if (CryptoUtil.hashCompare(db.getCredentialProposal(), credentialOffer)) {
                 this.sendCredentialRequest(db.getId());
@@ -367,6 +361,7 @@ public class HolderCredentialManager extends BaseCredentialManager {
     }
 
     // credential request, receive and problem events
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleStateChangesOnly(
             @NonNull String credExId, @Nullable CredentialExchangeState state,
             @NonNull String updatedAt, @Nullable String errorMsg) {
@@ -374,12 +369,15 @@ public class HolderCredentialManager extends BaseCredentialManager {
             if (db.stateIsNotDeclined()) { // already handled
                 CredentialExchangeState s = state != null ? state : CredentialExchangeState.PROBLEM;
                 db.pushStates(s, updatedAt);
-                holderCredExRepo.updateStates(db.getId(), db.getState(), db.getStateToTimestamp(), errorMsg);
+                holderCredExRepo.updateStates(db.getId(), db.getVersion(), db.getState(), db.getStateChangedAt(),
+                        errorMsg);
+                stateTransitions.record(db);
             }
         });
     }
 
     // v1 credential, signed and stored in wallet
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleV1CredentialExchangeAcked(@NonNull V1CredentialExchange credEx) {
         String label = labelStrategy.apply(credEx.getCredential());
         holderCredExRepo.findByCredentialExchangeId(credEx.getCredentialExchangeId()).ifPresent(db -> {
@@ -395,6 +393,7 @@ public class HolderCredentialManager extends BaseCredentialManager {
     }
 
     // v2 credential, signed and stored in wallet
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     public void handleV2CredentialReceived(@NonNull V20CredExRecord credEx) {
         holderCredExRepo.findByCredentialExchangeId(credEx.getCredExId()).ifPresent(
                 dbCred -> V2ToV1IndyCredentialConverter.INSTANCE().toV1Credential(credEx)
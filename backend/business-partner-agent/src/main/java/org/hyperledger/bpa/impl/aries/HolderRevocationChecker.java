@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.aries;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.aries.AriesClient;
+import org.hyperledger.aries.api.exception.AriesException;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
+import org.hyperledger.bpa.client.LedgerExplorerClient;
+import org.hyperledger.bpa.client.api.LedgerQueryResult.DomainTransaction;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
+import org.hyperledger.bpa.impl.cluster.ClusterExclusive;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.HolderRevocationRegistry;
+import org.hyperledger.bpa.repository.HolderCredExRepository;
+import org.hyperledger.bpa.repository.HolderRevocationRegistryRepository;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * Checks if credentials held by this BPA have been revoked. The credentials are
+ * grouped by revocation registry. If a ledger explorer is configured, only the
+ * entries of each registry that were added since the last check are fetched and
+ * evaluated, locally for all credentials of the registry. How far a registry
+ * was evaluated is stored, so it survives restarts and is shared by the nodes
+ * of the cluster. Otherwise, or if the explorer can not be queried, aca-py is
+ * asked per credential. Only changed credentials are written.
+ */
+@Slf4j
+@Singleton
+public class HolderRevocationChecker {
+
+    static final String EXECUTOR = "revocation-check";
+
+    @Inject
+    AriesClient ac;
+
+    @Inject
+    Optional<LedgerExplorerClient> ledger;
+
+    @Inject
+    HolderCredExRepository holderCredExRepo;
+
+    @Inject
+    HolderRevocationRegistryRepository registryRepo;
+
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
+    @Inject
+    @Named(EXECUTOR)
+    ExecutorService executor;
+
+    /**
+     * Scheduled task that checks the revocation status of all credentials issued to
+     * this BPA.
+     */
+    @Scheduled(fixedDelay = "5m", initialDelay = "1m")
+    @ClusterExclusive(value = "revocation-check", period = "5m")
+    void checkRevocationStatus() {
+        log.trace("Running revocation checks");
+        Map<String, List<BPACredentialExchange>> byRegistry = holderCredExRepo.findNotRevoked()
+                .stream()
+                // not revocable
+                .filter(cred -> StringUtils.isNotEmpty(cred.getRevRegId()))
+                .collect(Collectors.groupingBy(BPACredentialExchange::getRevRegId));
+        Scheduler scheduler = Schedulers.from(executor);
+        Flowable<Boolean> checks = ledger.isPresent()
+                ? Flowable.fromIterable(byRegistry.entrySet())
+                        .flatMap(e -> Flowable.fromIterable(checkRegistry(ledger.get(), e.getKey(), e.getValue()))
+                                .subscribeOn(scheduler))
+                : Flowable.fromIterable(byRegistry.values())
+                        .flatMapIterable(creds -> creds)
+                        .flatMap(cred -> Flowable.fromCallable(() -> checkCredential(cred))
+                                .subscribeOn(scheduler));
+        long revoked = checks.filter(Boolean::booleanValue).count().blockingGet();
+        if (revoked > 0) {
+            log.info("{} credentials have been revoked", revoked);
+        }
+    }
+
+    /**
+     * Evaluates the registry entries that were added since the last check, in the
+     * order of their seqNo. An index that is issued again after it was revoked is
+     * not revoked anymore. If the ledger explorer can not be queried, aca-py is
+     * asked per credential instead.
+     *
+     * @param l        {@link LedgerExplorerClient}
+     * @param revRegId the revocation registry id
+     * @param creds    credentials of the registry that are not revoked yet
+     * @return per credential that was revoked: true
+     */
+    List<Boolean> checkRegistry(@NonNull LedgerExplorerClient l, @NonNull String revRegId,
+            @NonNull List<BPACredentialExchange> creds) {
+        Optional<HolderRevocationRegistry> checked = registryRepo.findById(revRegId);
+        int last = checked.map(HolderRevocationRegistry::getLastSeqNo).orElse(0);
+        int known = checked.map(HolderRevocationRegistry::getEntries).orElse(0);
+        Optional<List<DomainTransaction>> entries = l.queryRevocationRegistryEntries(revRegId, known);
+        if (entries.isEmpty()) {
+            log.warn("Ledger explorer query failed for registry: {}, checking each credential", revRegId);
+            return creds.stream()
+                    .map(this::checkCredential)
+                    .filter(Boolean::booleanValue)
+                    .collect(Collectors.toList());
+        }
+        List<DomainTransaction> newEntries = entries.get()
+                .stream()
+                .filter(entry -> seqNo(entry) > last)
+                .sorted(Comparator.comparingInt(HolderRevocationChecker::seqNo))
+                .collect(Collectors.toList());
+        if (newEntries.isEmpty()) {
+            return List.of();
+        }
+        // index, revoked. The later entry wins.
+        Map<String, Boolean> revokedIndices = new HashMap<>();
+        newEntries.forEach(entry -> {
+            JsonNode value = entry.getTxn().getData().path("value");
+            value.path("issued").forEach(idx -> revokedIndices.put(idx.asText(), Boolean.FALSE));
+            value.path("revoked").forEach(idx -> revokedIndices.put(idx.asText(), Boolean.TRUE));
+        });
+        List<Boolean> result = new ArrayList<>();
+        try {
+            creds.stream()
+                    .filter(cred -> Boolean.TRUE.equals(revokedIndices.get(cred.getCredRevId())))
+                    .forEach(cred -> {
+                        markRevoked(cred);
+                        result.add(Boolean.TRUE);
+                    });
+            List<String> issued = revokedIndices.entrySet()
+                    .stream()
+                    .filter(e -> Boolean.FALSE.equals(e.getValue()))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            if (!issued.isEmpty()) {
+                holderCredExRepo.findByRoleAndRevokedTrueAndRevRegIdAndCredRevIdIn(
+                        CredentialExchangeRole.HOLDER, revRegId, issued).forEach(this::markIssuedAgain);
+            }
+            registryRepo.advance(revRegId, seqNo(newEntries.get(newEntries.size() - 1)),
+                    known + newEntries.size());
+        } catch (Exception e) {
+            log.error("Revocation check failed for registry: {}", revRegId, e);
+        }
+        return result;
+    }
+
+    boolean checkCredential(@NonNull BPACredentialExchange cred) {
+        try {
+            log.trace("Running revocation check for credential exchange: {}", cred.getReferent());
+            Boolean revoked = ac.credentialRevoked(Objects.requireNonNull(cred.getReferent()))
+                    .map(r -> r.getRevoked())
+                    .orElse(Boolean.FALSE);
+            if (Boolean.TRUE.equals(revoked)) {
+                markRevoked(cred);
+                return true;
+            }
+        } catch (AriesException e) {
+            if (e.getCode() == 404) {
+                log.error("aca-py has no credential with referent id: {}", cred.getReferent());
+                holderCredExRepo.updateReferent(cred.getId(), null);
+            }
+        } catch (Exception e) {
+            log.error("Revocation check failed", e);
+        }
+        return false;
+    }
+
+    private void markRevoked(BPACredentialExchange cred) {
+        cred.pushStates(CredentialExchangeState.REVOKED, Instant.now());
+        holderCredExRepo.updateRevoked(cred.getId(), Boolean.TRUE, cred.getStateChangedAt());
+        stateTransitions.record(cred);
+        log.debug("Credential with referent id: {} has been revoked", cred.getReferent());
+    }
+
+    private void markIssuedAgain(BPACredentialExchange cred) {
+        cred.pushStates(CredentialExchangeState.CREDENTIAL_ACKED, Instant.now());
+        holderCredExRepo.updateRevoked(cred.getId(), Boolean.FALSE, cred.getStateChangedAt());
+        stateTransitions.record(cred);
+        log.debug("Credential with referent id: {} has been issued again", cred.getReferent());
+    }
+
+    private static int seqNo(@NonNull DomainTransaction entry) {
+        return entry.getTxnMetadata() != null && entry.getTxnMetadata().getSeqNo() != null
+                ? entry.getTxnMetadata().getSeqNo()
+                : 0;
+    }
+}
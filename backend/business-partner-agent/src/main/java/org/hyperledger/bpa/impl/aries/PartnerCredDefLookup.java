@@ -18,27 +18,40 @@
 package org.hyperledger.bpa.impl.aries;
 
 import io.micronaut.context.annotation.Value;
+import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.scheduling.TaskExecutors;
 import io.micronaut.scheduling.annotation.Async;
 import io.micronaut.scheduling.annotation.Scheduled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
-import lombok.*;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.client.LedgerExplorerClient;
-import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+import org.hyperledger.bpa.impl.aries.config.SchemaChangedEvent;
+import org.hyperledger.bpa.impl.cluster.ClusterExclusive;
 import org.hyperledger.bpa.impl.util.AriesStringUtil;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.model.BPARestrictions;
 import org.hyperledger.bpa.model.BPASchema;
+import org.hyperledger.bpa.model.LedgerCredentialDefinition;
 import org.hyperledger.bpa.model.Partner;
-import org.hyperledger.bpa.repository.BPARestrictionsRepository;
-import org.hyperledger.bpa.repository.BPASchemaRepository;
-import org.hyperledger.bpa.repository.PartnerRepository;
+import org.hyperledger.bpa.model.PartnerSupportedCredential;
+import org.hyperledger.bpa.repository.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+@Slf4j
 @Singleton
 public class PartnerCredDefLookup {
 
@@ -53,6 +66,19 @@ public class PartnerCredDefLookup {
     @Inject
     PartnerRepository partnerRepo;
 
+    @Inject
+    PartnerSupportedCredentialRepository supportedCredRepo;
+
+    @Inject
+    LedgerCredentialDefinitionRepository ledgerCredDefRepo;
+
+    @Value("${bpa.ledger.syncParallelism}")
+    Integer syncParallelism;
+
+    @Inject
+    @Named(TaskExecutors.IO)
+    ExecutorService executor;
+
     @Inject
     @Setter(AccessLevel.PACKAGE)
     BPASchemaRepository schemaRepo;
@@ -64,6 +90,9 @@ public class PartnerCredDefLookup {
     @Inject
     Converter conv;
 
+    // partners that were added, or their did changed, since the last run
+    private final Set<UUID> pendingPartners = ConcurrentHashMap.newKeySet();
+
     /**
      * Get/filter partners that can issue credentials that are based on the schema's
      * id.
@@ -120,41 +149,212 @@ public class PartnerCredDefLookup {
     }
 
     /**
-     * If a BCGov ledger explorer is configured, looks up all credential definition
-     * ids on the ledger that match a configured schema. If the did in the
-     * credential definition id matches a partner's did, the partner is considered
-     * an issuer of credentials that are based on that schema.
+     * If a BCGov ledger explorer is configured, looks up the credential definitions
+     * on the ledger that match a configured schema. If the did in the credential
+     * definition id matches a partner's did, the partner is considered an issuer of
+     * credentials that are based on that schema.
+     * <p>
+     * The sync is incremental: the credential definitions are stored locally and
+     * per schema only transactions newer than the last stored one are added. The
+     * schemas are queried in parallel. The nightly run happens on one node of the
+     * cluster, partner changes are handled by {@link #processPendingPartners()}
+     * without a full sync, a schema that is added is synced right away.
      */
     @Scheduled(cron = "0 15 2 ? * *")
+    @ClusterExclusive(value = "ledger-credential-definition-sync", period = "12h")
     void lookupTypesForAllPartners() {
-        ledger.ifPresent(l -> {
-            Map<String, List<PartnerCredentialType>> didToTypes = new HashMap<>();
-            StreamSupport.stream(schemaRepo.findAll().spliterator(), false).filter(BPASchema::typeIsIndy).forEach(
-                    s -> l.queryCredentialDefinitions(s.getSeqNo().toString()).ifPresent(defs -> defs.forEach(def -> {
-                        String did = AriesStringUtil.credDefIdGetDid(def.getCredentialDefinitionId());
-                        if (didToTypes.containsKey(did)) {
-                            didToTypes.get(did).add(def);
-                        } else {
-                            List<PartnerCredentialType> types = new ArrayList<>();
-                            types.add(def);
-                            didToTypes.put(did, types);
-                        }
-                    })));
-            didToTypes.forEach(
-                    (did, types) -> partnerRepo.updateByDid(didPrefix + did,
-                            conv.toMap(new CredentialTypeWrapper(types))));
-        });
+        ledger.ifPresent(l -> sync(l, schemaRepo.findAll()));
     }
 
+    /**
+     * Syncs the credential definitions of a schema that was added, so its issuers
+     * are known before the nightly sync.
+     *
+     * @param event {@link SchemaChangedEvent}
+     */
+    @EventListener
     @Async
-    public void lookupTypesForAllPartnersAsync() {
-        lookupTypesForAllPartners();
+    public void onSchemaChanged(SchemaChangedEvent event) {
+        if (event.getSchemaId() != null) {
+            syncSchema(event.getSchemaId());
+        }
     }
 
-    @Data
-    @AllArgsConstructor
-    @NoArgsConstructor
-    private static final class CredentialTypeWrapper {
-        List<PartnerCredentialType> wrapped;
+    void syncSchema(@NonNull String schemaId) {
+        ledger.ifPresent(l -> schemaRepo.findBySchemaId(schemaId).ifPresent(s -> sync(l, List.of(s))));
+    }
+
+    private synchronized void sync(@NonNull LedgerExplorerClient l, @NonNull Iterable<BPASchema> schemas) {
+        List<LedgerCredentialDefinition> newDefs = fetchNewCredentialDefinitions(l, schemas);
+        if (!newDefs.isEmpty()) {
+            Set<String> known = ledgerCredDefRepo.findByCredentialDefinitionIdIn(newDefs
+                    .stream()
+                    .map(LedgerCredentialDefinition::getCredentialDefinitionId)
+                    .collect(Collectors.toSet()))
+                    .stream()
+                    .map(LedgerCredentialDefinition::getCredentialDefinitionId)
+                    .collect(Collectors.toSet());
+            newDefs.removeIf(def -> known.contains(def.getCredentialDefinitionId()));
+            ledgerCredDefRepo.saveAll(newDefs);
+            log.debug("Synced {} new credential definitions from the ledger", newDefs.size());
+            linkSupportedCredentials(partnerRepo.findByDidIn(newDefs
+                    .stream()
+                    .map(def -> didPrefix + def.getDid())
+                    .distinct()
+                    .collect(Collectors.toList())), newDefs);
+        }
+    }
+
+    private List<LedgerCredentialDefinition> fetchNewCredentialDefinitions(@NonNull LedgerExplorerClient l,
+            @NonNull Iterable<BPASchema> schemas) {
+        Scheduler scheduler = Schedulers.from(executor);
+        return Flowable.fromIterable(schemas)
+                .filter(BPASchema::typeIsIndy)
+                .map(s -> s.getSeqNo().toString())
+                .flatMap(seqNo -> Flowable.fromCallable(() -> fetchNewCredentialDefinitions(l, seqNo))
+                        .subscribeOn(scheduler), syncParallelism)
+                .flatMapIterable(defs -> defs)
+                .toList()
+                .blockingGet();
+    }
+
+    private List<LedgerCredentialDefinition> fetchNewCredentialDefinitions(
+            @NonNull LedgerExplorerClient l, @NonNull String schemaSeqNo) {
+        int lastSeen = ledgerCredDefRepo.findMaxTxnSeqNoBySchemaSeqNo(schemaSeqNo).orElse(0);
+        Map<String, LedgerCredentialDefinition> result = new LinkedHashMap<>();
+        l.queryCredentialDefinitionTransactions(schemaSeqNo).ifPresent(txns -> txns
+                .stream()
+                .filter(txn -> txn.getSeqNo() != null && txn.getSeqNo() > lastSeen)
+                .filter(txn -> AriesStringUtil.isCredDef(txn.getTxnId()))
+                .map(txn -> LedgerCredentialDefinition.fromCredDefId(txn.getTxnId(), txn.getSeqNo()))
+                // the explorer does a text search
+                .filter(def -> schemaSeqNo.equals(def.getSchemaSeqNo()))
+                .forEach(def -> result.putIfAbsent(def.getCredentialDefinitionId(), def)));
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Links partners to the credential definitions they have issued on the ledger,
+     * existing links are kept.
+     *
+     * @param partners partners to link
+     * @param defs     credential definitions, only the ones that were issued by one
+     *                 of the partners are linked
+     */
+    private void linkSupportedCredentials(@NonNull List<Partner> partners,
+            @NonNull List<LedgerCredentialDefinition> defs) {
+        if (partners.isEmpty() || defs.isEmpty()) {
+            return;
+        }
+        Set<String> linked = supportedCredRepo.findByPartnerIdIn(partners
+                .stream()
+                .map(Partner::getId)
+                .collect(Collectors.toList()))
+                .stream()
+                .map(sc -> sc.getPartnerId() + sc.getCredentialDefinitionId())
+                .collect(Collectors.toSet());
+        supportedCredRepo.saveAll(supportedCredentials(partners, defs, linked));
+    }
+
+    /**
+     * @param partners partners to link
+     * @param defs     credential definitions, only the ones that were issued by one
+     *                 of the partners are used
+     * @param linked   partner id plus credential definition id of the existing
+     *                 links, links that are returned are added
+     * @return the missing links
+     */
+    private List<PartnerSupportedCredential> supportedCredentials(@NonNull List<Partner> partners,
+            @NonNull List<LedgerCredentialDefinition> defs, @NonNull Set<String> linked) {
+        Map<String, List<LedgerCredentialDefinition>> didToDefs = defs
+                .stream()
+                .collect(Collectors.groupingBy(def -> didPrefix + def.getDid()));
+        List<PartnerSupportedCredential> toLink = new ArrayList<>();
+        partners.forEach(p -> didToDefs.getOrDefault(p.getDid(), List.of())
+                .stream()
+                .filter(def -> linked.add(p.getId() + def.getCredentialDefinitionId()))
+                .map(def -> PartnerSupportedCredential.from(p.getId(), def.toPartnerCredentialType()))
+                .forEach(toLink::add));
+        return toLink;
+    }
+
+    /**
+     * Re-links the partner with the credential definitions it has issued, the ones
+     * that are known locally and the ones the ledger explorer finds for its did.
+     * Multiple calls within a short time are handled together.
+     *
+     * @param partnerId the partner id
+     */
+    public void lookupTypesForPartner(@NonNull UUID partnerId) {
+        lookupTypesForPartners(List.of(partnerId));
+    }
+
+    /**
+     * @see #lookupTypesForPartner(UUID)
+     * @param partnerIds the partner ids
+     */
+    public void lookupTypesForPartners(@NonNull Collection<UUID> partnerIds) {
+        if (ledger.isPresent()) {
+            pendingPartners.addAll(partnerIds);
+        }
+    }
+
+    @Scheduled(fixedDelay = "10s", initialDelay = "1m")
+    void processPendingPartners() {
+        if (pendingPartners.isEmpty() || ledger.isEmpty()) {
+            return;
+        }
+        List<UUID> partnerIds = new ArrayList<>(pendingPartners);
+        pendingPartners.removeAll(partnerIds);
+        try {
+            List<Partner> partners = partnerRepo.findByIdIn(partnerIds);
+            Set<String> dids = partners
+                    .stream()
+                    .map(Partner::getDid)
+                    .filter(did -> did != null && did.startsWith(didPrefix))
+                    .map(did -> did.substring(didPrefix.length()))
+                    .collect(Collectors.toSet());
+            List<LedgerCredentialDefinition> defs = new ArrayList<>(ledgerCredDefRepo.findByDidIn(dids));
+            defs.addAll(fetchCredentialDefinitionsOf(ledger.get(), dids));
+            supportedCredRepo.replaceByPartnerIdIn(partnerIds,
+                    supportedCredentials(partners, defs, new HashSet<>()));
+        } catch (Exception e) {
+            log.error("Could not lookup credential types for partners: {}", partnerIds, e);
+        }
+    }
+
+    /**
+     * Queries the ledger explorer per did, so credential definitions that were
+     * created since the last sync are found without a full sync. They are not
+     * stored, as the sync of their schema would skip older transactions otherwise.
+     *
+     * @param l    {@link LedgerExplorerClient}
+     * @param dids unqualified dids
+     * @return credential definitions of the dids that are based on a configured
+     *         schema
+     */
+    private List<LedgerCredentialDefinition> fetchCredentialDefinitionsOf(
+            @NonNull LedgerExplorerClient l, @NonNull Set<String> dids) {
+        if (dids.isEmpty()) {
+            return List.of();
+        }
+        Set<String> schemaSeqNos = StreamSupport.stream(schemaRepo.findAll().spliterator(), false)
+                .filter(BPASchema::typeIsIndy)
+                .map(s -> s.getSeqNo().toString())
+                .collect(Collectors.toSet());
+        List<LedgerCredentialDefinition> result = new ArrayList<>();
+        dids.forEach(did -> l.queryCredentialDefinitionTransactions(did).ifPresent(txns -> txns
+                .stream()
+                .filter(txn -> AriesStringUtil.isCredDef(txn.getTxnId()))
+                .map(txn -> LedgerCredentialDefinition.fromCredDefId(txn.getTxnId(), txn.getSeqNo()))
+                // the explorer does a text search
+                .filter(def -> did.equals(def.getDid()) && schemaSeqNos.contains(def.getSchemaSeqNo()))
+                .forEach(result::add)));
+        return result;
+    }
+
+    @Async
+    public void lookupTypesForAllPartnersAsync() {
+        lookupTypesForAllPartners();
     }
 }
@@ -18,38 +18,60 @@
 package org.hyperledger.bpa.impl.aries;
 
 import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.context.env.Environment;
 import io.micronaut.core.util.CollectionUtils;
 import io.micronaut.core.util.StringUtils;
+import io.micronaut.scheduling.TaskExecutors;
 import io.micronaut.scheduling.annotation.Scheduled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import org.hyperledger.aries.AriesClient;
+import org.hyperledger.aries.api.connection.ConnectionRecord;
 import org.hyperledger.aries.api.connection.ConnectionState;
 import org.hyperledger.aries.api.exception.AriesException;
 import org.hyperledger.aries.api.trustping.PingEvent;
-import org.hyperledger.aries.api.trustping.PingEventState;
 import org.hyperledger.aries.api.trustping.PingRequest;
-import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.impl.cluster.ClusterExclusive;
+import org.hyperledger.bpa.impl.util.TimeUtil;
 import org.hyperledger.bpa.repository.PartnerRepository;
 
 import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
+/**
+ * Pings partners that have trust ping enabled. Partners are pinged after the
+ * configured interval, partners that do not answer are pinged less often. The
+ * job runs every few seconds and only pings the partners that are due, so the
+ * load is spread instead of pinging everyone at once.
+ */
 @Slf4j
 @Singleton
 @Requires(notEnv = { Environment.TEST })
 public class PingManager {
 
-    final static List<ConnectionState> statesToFilter = List.of(
-            ConnectionState.ACTIVE, ConnectionState.COMPLETED,
-            ConnectionState.PING_RESPONSE, ConnectionState.PING_NO_RESPONSE);
+    enum Outcome {
+        SENT,
+        /** connection exists in the BPA but not in aca-py */
+        NOT_FOUND,
+        FAILED
+    }
 
     @Inject
     AriesClient aries;
@@ -57,110 +79,187 @@ public class PingManager {
     @Inject
     PartnerRepository repo;
 
-    private boolean firstRun;
+    @Inject
+    @Named(TaskExecutors.IO)
+    ExecutorService executor;
 
-    public PingManager() {
-        super();
-        this.firstRun = true;
-    }
+    @Value("${bpa.partner.ping.interval:1m}")
+    Duration interval;
+
+    @Value("${bpa.partner.ping.maxInterval:1h}")
+    Duration maxInterval;
+
+    @Value("${bpa.partner.ping.parallelism:10}")
+    Integer parallelism;
+
+    @Value("${bpa.partner.ping.batchSize:500}")
+    Integer batchSize;
+
+    @Value("${bpa.partner.staleConnections.dryRun:false}")
+    boolean staleDryRun;
+
+    @Value("${bpa.partner.staleConnections.gracePeriod:10m}")
+    Duration staleGracePeriod;
 
-    // threadId, connectionId
-    private final Map<String, String> sent = new ConcurrentHashMap<>();
+    @Value("${bpa.partner.staleConnections.deleteRate:10}")
+    Integer staleDeleteRate;
 
-    // threadId, state
-    private final Map<String, PingEventState> received = new ConcurrentHashMap<>();
+    @Value("${bpa.partner.staleConnections.maxDeletesPerRun:1000}")
+    Integer staleMaxDeletes;
+
+    // connectionId, time the ping was sent. Only pings that aca-py accepted.
+    private final Map<String, Instant> pings = new ConcurrentHashMap<>();
+
+    // connectionId, time the response was received. Pongs can arrive on any node
+    // of the cluster, each node writes the ones it got.
+    private final Map<String, Instant> pongs = new ConcurrentHashMap<>();
 
     public void handlePingEvent(PingEvent event) {
-        if (event.stateIsResponseReceived()) {
-            received.put(event.getThreadId(), event.getState());
+        if (event.stateIsResponseReceived() && StringUtils.isNotEmpty(event.getConnectionId())) {
+            pongs.put(event.getConnectionId(), Instant.now());
         }
     }
 
-    @Scheduled(fixedDelay = "1m", initialDelay = "90s") // init delay needs to be > than aca-py connection timeout
+    @Scheduled(fixedDelay = "10s", initialDelay = "90s") // init delay needs to be > than aca-py connection timeout
+    @ClusterExclusive(value = "trust-ping", period = "10s")
     void checkConnections() {
         try {
-            List<String> connectionsToPing = repo
-                    .findByStateInAndTrustPingTrueAndAriesSupportTrue(statesToFilter)
-                    .stream().map(Partner::getConnectionId).collect(Collectors.toList());
+            Instant now = Instant.now();
+            List<String> connectionsToPing = repo.findConnectionIdsDueForPing(now, batchSize);
             if (CollectionUtils.isNotEmpty(connectionsToPing)) {
-                if (!firstRun) {
-                    setNewState();
-                }
-                sendPingToConnections(connectionsToPing);
-            }
-            if (firstRun) {
-                firstRun = false;
+                repo.startPingRound(connectionsToPing, now, interval, maxInterval);
+                Map<Outcome, Integer> stats = sendPingToConnections(connectionsToPing);
+                log.debug("Trust ping round took {}ms: {}", Duration.between(now, Instant.now()).toMillis(), stats);
             }
         } catch (Exception e) {
             log.error("Trust ping job failed.", e);
         }
     }
 
-    private void setNewState() {
-        sent.forEach((k, v) -> {
-            ConnectionState state;
-            if (received.containsKey(k)) {
-                state = ConnectionState.PING_RESPONSE;
-                repo.updateStateAndLastSeenByConnectionId(v, state, Instant.now());
-            } else {
-                state = ConnectionState.PING_NO_RESPONSE;
-                repo.updateStateByConnectionId(v, state);
+    /**
+     * Writes the sent pings before the received responses, so that a response is
+     * matched against the ping it answers.
+     */
+    @Scheduled(fixedDelay = "2s", initialDelay = "90s")
+    void flushPingEvents() {
+        if (!pings.isEmpty()) {
+            Map<String, Instant> sent = drain(pings);
+            try {
+                repo.recordPings(sent);
+            } catch (Exception e) {
+                log.error("Could not store {} sent pings", sent.size(), e);
             }
-        });
-        sent.clear();
-        received.clear();
-    }
-
-    private void sendPingToConnections(List<String> connectionsToPing) {
-        try {
-            for (String connectionId : connectionsToPing) {
-                log.debug("Sending ping to: {}", connectionId);
-                try {
-                    aries.connectionsSendPing(connectionId, new PingRequest(connectionId))
-                            .ifPresent(resp -> sent.put(resp.getThreadId(), connectionId));
-                } catch (AriesException e) {
-                    if (e.getCode() == 404) {
-                        log.error("Connection id {} exists in the BPA but not in aca-py", connectionId);
-                        repo.updateStateByConnectionId(connectionId, ConnectionState.PING_NO_RESPONSE);
-                    } else {
-                        log.error("Could not send ping request to connection {}", connectionId, e);
-                    }
-                }
+        }
+        if (!pongs.isEmpty()) {
+            Map<String, Instant> received = drain(pongs);
+            try {
+                repo.recordPongs(received);
+            } catch (Exception e) {
+                log.error("Could not store {} ping responses", received.size(), e);
             }
-        } catch (IOException e) {
-            log.error("Could not ping active connections, because aca-py is not available", e);
         }
     }
 
-    int getSentSize() {
-        return sent.size();
+    private static Map<String, Instant> drain(Map<String, Instant> events) {
+        Map<String, Instant> result = new HashMap<>(events);
+        result.forEach(events::remove);
+        return result;
+    }
+
+    private Map<Outcome, Integer> sendPingToConnections(List<String> connectionsToPing) {
+        Scheduler scheduler = Schedulers.from(executor);
+        Map<Outcome, Integer> stats = new EnumMap<>(Outcome.class);
+        Flowable.fromIterable(connectionsToPing)
+                .flatMap(connectionId -> Flowable.fromCallable(() -> sendPing(connectionId))
+                        .subscribeOn(scheduler), parallelism)
+                .blockingForEach(o -> stats.merge(o, 1, Integer::sum));
+        return stats;
     }
 
-    int getReceivedSize() {
-        return received.size();
+    Outcome sendPing(String connectionId) {
+        log.debug("Sending ping to: {}", connectionId);
+        try {
+            // taken before the call, the response can arrive before it returns
+            Instant sentAt = Instant.now();
+            aries.connectionsSendPing(connectionId, new PingRequest(connectionId));
+            pings.put(connectionId, sentAt);
+            return Outcome.SENT;
+        } catch (AriesException e) {
+            if (e.getCode() == 404) {
+                log.error("Connection id {} exists in the BPA but not in aca-py", connectionId);
+                repo.updateStateByConnectionId(connectionId, ConnectionState.PING_NO_RESPONSE);
+                return Outcome.NOT_FOUND;
+            }
+            log.error("Could not send ping request to connection {}", connectionId, e);
+        } catch (IOException e) {
+            log.error("Could not ping connection {}, because aca-py is not available", connectionId);
+        }
+        return Outcome.FAILED;
     }
 
+    /**
+     * Removes connections from aca-py that the BPA does not know, e.g. because the
+     * partner was deleted while aca-py was not reachable. Connections that were
+     * created within the grace period are kept, as their partner might not be
+     * stored yet. Deletes are spread out to not flood aca-py; in dry run mode the
+     * stale connections are only reported.
+     */
     @Scheduled(fixedDelay = "30m", initialDelay = "1m")
+    @ClusterExclusive(value = "delete-stale-connections", period = "30m")
     void deleteStaleConnections() {
-        List<String> bpaConIds = StreamSupport.stream(repo.findAll().spliterator(), false)
-                .map(Partner::getConnectionId)
-                .filter(StringUtils::isNotEmpty)
-                .collect(Collectors.toList());
-
         try {
-            List<String> acaConIds = aries.connectionIds();
-            List<String> stale = acaConIds
+            Set<String> bpaConIds = new HashSet<>(repo.findAllConnectionIds());
+            Instant createdBefore = Instant.now().minus(staleGracePeriod);
+            // aca-py 0.7 does not support paging, only the ids are kept
+            List<String> stale = aries.connections().orElse(List.of())
                     .stream()
-                    .filter(acaId -> bpaConIds
-                            .stream()
-                            .noneMatch(bpaId -> bpaId.equals(acaId)))
+                    .filter(c -> !bpaConIds.contains(c.getConnectionId()))
+                    .filter(c -> isCreatedBefore(c, createdBefore))
+                    .map(ConnectionRecord::getConnectionId)
                     .collect(Collectors.toList());
-            for (String conId : stale) {
-                aries.connectionsRemove(conId);
+            if (stale.isEmpty()) {
+                return;
             }
+            if (staleDryRun) {
+                log.info("Dry run, {} connections in aca-py are unknown to the BPA: {}", stale.size(), stale);
+                return;
+            }
+            int deleted = removeConnections(stale.subList(0, Math.min(stale.size(), staleMaxDeletes)));
+            log.info("Removed {} of {} stale connections from aca-py", deleted, stale.size());
         } catch (IOException e) {
             log.error("aca-py not reachable.", e);
         }
+    }
+
+    private int removeConnections(List<String> connectionIds) throws IOException {
+        long pause = 1000L / Math.max(1, staleDeleteRate);
+        int deleted = 0;
+        for (String conId : connectionIds) {
+            try {
+                aries.connectionsRemove(conId);
+                deleted++;
+            } catch (AriesException e) {
+                log.warn("Could not remove stale connection {}: {}", conId, e.getMessage());
+            }
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return deleted;
+    }
 
+    private static boolean isCreatedBefore(ConnectionRecord c, Instant createdBefore) {
+        if (StringUtils.isEmpty(c.getCreatedAt())) {
+            return true;
+        }
+        try {
+            // aca-py separates date and time with a space
+            return TimeUtil.fromISOInstant(c.getCreatedAt().replace(' ', 'T')).isBefore(createdBefore);
+        } catch (DateTimeException e) {
+            return true;
+        }
     }
 }
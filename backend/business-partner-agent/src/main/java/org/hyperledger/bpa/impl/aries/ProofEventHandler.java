@@ -20,6 +20,8 @@ package org.hyperledger.bpa.impl.aries;
 import io.micronaut.context.event.ApplicationEventPublisher;
 import io.micronaut.core.util.CollectionUtils;
 import io.micronaut.core.util.StringUtils;
+import io.micronaut.data.exceptions.OptimisticLockException;
+import io.micronaut.retry.annotation.Retryable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
@@ -58,6 +60,7 @@ public class ProofEventHandler {
     @Inject
     BPAMessageSource.DefaultMessageSource msg;
 
+    @Retryable(includes = OptimisticLockException.class, delay = "100ms")
     void dispatch(PresentationExchangeRecord proof) {
         if (proof.roleIsVerifierAndStateIsVerifiedOrDone() || proof.roleIsProverAndStateIsPresentationAckedOrDone()) {
             handleAckedOrVerified(proof);
@@ -44,6 +44,7 @@ import org.hyperledger.bpa.controller.api.partner.ApproveProofRequest;
 import org.hyperledger.bpa.controller.api.partner.RequestProofRequest;
 import org.hyperledger.bpa.controller.api.proof.PresentationRequestCredentials;
 import org.hyperledger.bpa.impl.activity.DidResolver;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
 import org.hyperledger.bpa.impl.notification.PresentationRequestDeclinedEvent;
 import org.hyperledger.bpa.impl.notification.PresentationRequestSentEvent;
 import org.hyperledger.bpa.impl.prooftemplates.ProofTemplateConversion;
@@ -79,6 +80,9 @@ public class ProofManager {
     @Inject
     PartnerProofRepository pProofRepo;
 
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
     @Inject
     HolderCredExRepository holderCredExRepo;
 
@@ -108,26 +112,80 @@ public class ProofManager {
     // request proof from partner via proof template
     public void sendPresentProofRequest(@NonNull UUID partnerId, @NonNull @Valid BPAProofTemplate proofTemplate,
             @NonNull ExchangeVersion version) {
+        PresentProofRequest proofRequest = proofTemplateConversion.proofRequestViaVisitorFrom(partnerId,
+                proofTemplate);
+        // the proofTemplate does not contain the proof request Non-Revocation value, if
+        // that was not part of the template and set during proof request creation.
+        // using null for issuerId and schemaId because the template could have multiple
+        // of each.
+        sendPresentProofRequest(partnerId, proofRequest, proofTemplate, version)
+                .ifPresent(this::saveProofRequest);
+    }
+
+    /**
+     * Sends the proof request to the partner, without persisting the exchange
+     *
+     * @param partnerId     the partner id
+     * @param proofRequest  {@link PresentProofRequest} including the connection id
+     * @param proofTemplate {@link BPAProofTemplate} the request was created from
+     * @param version       {@link ExchangeVersion}
+     * @return the unsaved {@link PartnerProof}
+     */
+    public Optional<PartnerProof> sendPresentProofRequest(@NonNull UUID partnerId,
+            @NonNull PresentProofRequest proofRequest, @Nullable BPAProofTemplate proofTemplate,
+            @NonNull ExchangeVersion version) {
         try {
-            PresentProofRequest proofRequest = proofTemplateConversion.proofRequestViaVisitorFrom(partnerId,
-                    proofTemplate);
-            // the proofTemplate does not contain the proof request Non-Revocation value, if
-            // that was not part of the template and set during proof request creation.
-            // using null for issuerId and schemaId because the template could have multiple
-            // of each.
+            Optional<PresentationExchangeRecord> exchange;
             if (version.isV1()) {
-                ac.presentProofSendRequest(proofRequest).ifPresent(persistProof(partnerId, proofTemplate));
+                exchange = ac.presentProofSendRequest(proofRequest);
             } else {
-                ac.presentProofV2SendRequest(V20PresSendRequestRequest
+                exchange = ac.presentProofV2SendRequest(V20PresSendRequestRequest
                         .builder()
                         .connectionId(proofRequest.getConnectionId())
                         .presentationRequest(V20PresSendRequestRequest.V20PresRequestByFormat.builder()
                                 .indy(proofRequest.getProofRequest())
                                 .build())
                         .build())
-                        .map(V20PresExRecordToV1Converter::toV1)
-                        .ifPresent(persistProof(partnerId, proofTemplate));
+                        .map(V20PresExRecordToV1Converter::toV1);
             }
+            return exchange.map(ex -> toPartnerProof(partnerId, proofTemplate, ex));
+        } catch (IOException e) {
+            throw new NetworkException(ms.getMessage("acapy.unavailable"), e);
+        }
+    }
+
+    /**
+     * Finds the proof request that was sent to the partner with the nonce. Used to
+     * not send a request twice, if the node stopped before its exchange was stored.
+     *
+     * @param partnerId     the partner id
+     * @param connectionId  the partner's connection id
+     * @param nonce         nonce of the proof request
+     * @param proofTemplate {@link BPAProofTemplate} the request was created from
+     * @param version       {@link ExchangeVersion}
+     * @return the unsaved {@link PartnerProof}
+     */
+    public Optional<PartnerProof> findSentPresentProofRequest(@NonNull UUID partnerId,
+            @NonNull String connectionId, @NonNull String nonce, @Nullable BPAProofTemplate proofTemplate,
+            @NonNull ExchangeVersion version) {
+        PresentProofRecordsFilter filter = PresentProofRecordsFilter
+                .builder()
+                .connectionId(connectionId)
+                .role(PresentationExchangeRole.VERIFIER)
+                .build();
+        try {
+            List<PresentationExchangeRecord> exchanges = version.isV1()
+                    ? ac.presentProofRecords(filter).orElse(List.of())
+                    : ac.presentProofV2Records(filter).orElse(List.of())
+                            .stream()
+                            .map(V20PresExRecordToV1Converter::toV1)
+                            .collect(Collectors.toList());
+            return exchanges
+                    .stream()
+                    .filter(ex -> ex.getPresentationRequest() != null
+                            && nonce.equals(ex.getPresentationRequest().getNonce()))
+                    .findFirst()
+                    .map(ex -> toPartnerProof(partnerId, proofTemplate, ex));
         } catch (IOException e) {
             throw new NetworkException(ms.getMessage("acapy.unavailable"), e);
         }
@@ -186,24 +244,39 @@ public class ProofManager {
 
     private Consumer<PresentationExchangeRecord> persistProof(
             @NonNull UUID partnerId, @Nullable BPAProofTemplate proofTemplate) {
-        return exchange -> {
-            final PartnerProof pp = PartnerProof
-                    .builder()
-                    .partnerId(partnerId)
-                    .state(exchange.getState())
-                    .presentationExchangeId(exchange.getPresentationExchangeId())
-                    .role(exchange.getRole())
-                    .threadId(exchange.getThreadId())
-                    .proofRequest(exchange.getPresentationRequest())
-                    .proofTemplate(proofTemplate)
-                    .exchangeVersion(exchange.getVersion() != null ? exchange.getVersion() : ExchangeVersion.V1)
-                    .pushStateChange(exchange.getState(), Instant.now())
-                    .build();
-            pProofRepo.save(pp);
-            eventPublisher.publishEventAsync(PresentationRequestSentEvent.builder()
-                    .partnerProof(pp)
-                    .build());
-        };
+        return exchange -> saveProofRequest(toPartnerProof(partnerId, proofTemplate, exchange));
+    }
+
+    private PartnerProof toPartnerProof(@NonNull UUID partnerId, @Nullable BPAProofTemplate proofTemplate,
+            @NonNull PresentationExchangeRecord exchange) {
+        return PartnerProof
+                .builder()
+                .partnerId(partnerId)
+                .state(exchange.getState())
+                .presentationExchangeId(exchange.getPresentationExchangeId())
+                .role(exchange.getRole())
+                .threadId(exchange.getThreadId())
+                .proofRequest(exchange.getPresentationRequest())
+                .proofTemplate(proofTemplate)
+                .exchangeVersion(exchange.getVersion() != null ? exchange.getVersion() : ExchangeVersion.V1)
+                .pushStateChange(exchange.getState(), Instant.now())
+                .build();
+    }
+
+    /**
+     * Persists a proof request that was sent
+     *
+     * @param pp {@link PartnerProof}
+     */
+    public void saveProofRequest(@NonNull PartnerProof pp) {
+        pProofRepo.save(pp);
+        firePresentationRequestSentEvent(pp);
+    }
+
+    private void firePresentationRequestSentEvent(@NonNull PartnerProof pp) {
+        eventPublisher.publishEventAsync(PresentationRequestSentEvent.builder()
+                .partnerProof(pp)
+                .build());
     }
 
     // manual proof request flow
@@ -373,6 +446,13 @@ public class ProofManager {
         return pProofRepo.findById(id).map(conv::toAPIObject).orElseThrow(EntityNotFoundException::new);
     }
 
+    public Map<String, Long> getPartnerProofTimeline(@NonNull UUID id) {
+        if (!pProofRepo.existsById(id)) {
+            throw new EntityNotFoundException();
+        }
+        return stateTransitions.timeline(id);
+    }
+
     public void deletePartnerProof(@NonNull UUID id) {
         pProofRepo.findById(id).ifPresent(pp -> {
             try {
@@ -391,6 +471,7 @@ public class ProofManager {
                 }
             }
             pProofRepo.deleteById(id);
+            stateTransitions.remove(id);
         });
     }
 }
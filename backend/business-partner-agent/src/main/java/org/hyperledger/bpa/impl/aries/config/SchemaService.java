@@ -18,6 +18,7 @@
 package org.hyperledger.bpa.impl.aries.config;
 
 import io.micronaut.cache.annotation.Cacheable;
+import io.micronaut.context.event.ApplicationEventPublisher;
 import io.micronaut.core.annotation.Nullable;
 import io.micronaut.core.util.CollectionUtils;
 import io.micronaut.data.exceptions.DataAccessException;
@@ -71,6 +72,9 @@ public class SchemaService {
     @Inject
     BPAMessageSource.DefaultMessageSource ms;
 
+    @Inject
+    ApplicationEventPublisher eventPublisher;
+
     public SchemaAPI createSchema(@NonNull String schemaName, @NonNull String schemaVersion,
             @NonNull List<String> attributes, @NonNull String schemaLabel, String defaultAttributeName) {
         SchemaAPI result;
@@ -140,6 +144,7 @@ public class SchemaService {
                         .type(CredentialType.INDY)
                         .build();
                 BPASchema saved = schemaRepo.save(dbS);
+                publishSchemaChanged(saved.getSchemaId());
                 result = SchemaAPI.from(saved);
             } else {
                 throw new EntityNotFoundException(ms.getMessage("api.schema.already.exists.ledger",
@@ -174,6 +179,7 @@ public class SchemaService {
                 .ldType(ldType)
                 .build();
         BPASchema saved = schemaRepo.save(dbS);
+        publishSchemaChanged(saved.getSchemaId());
         return SchemaAPI.from(saved);
     }
 
@@ -199,6 +205,7 @@ public class SchemaService {
         schemaRepo.findById(id).ifPresentOrElse(s -> {
             try {
                 schemaRepo.deleteById(id);
+                publishSchemaChanged(s.getSchemaId());
             } catch (DataAccessException e) {
                 log.error("Could not delete schema", e);
                 throw new WrongApiUsageException(ms.getMessage("api.schema.constrain.violation"));
@@ -206,6 +213,10 @@ public class SchemaService {
         }, EntityNotFoundException::new);
     }
 
+    private void publishSchemaChanged(String schemaId) {
+        eventPublisher.publishEvent(SchemaChangedEvent.builder().schemaId(schemaId).build());
+    }
+
     public Optional<BPASchema> getSchemaFor(@Nullable String schemaId) {
         if (StringUtils.isNotEmpty(schemaId)) {
             return schemaRepo.findBySchemaId(schemaId);
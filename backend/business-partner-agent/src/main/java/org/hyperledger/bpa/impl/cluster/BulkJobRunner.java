@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.cluster;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.api.exception.NetworkException;
+import org.hyperledger.bpa.repository.BulkJobRepository;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs bulk jobs in the background. Before a job runs on a node, the node
+ * claims the job's lease, so a job runs on only one node of the cluster even if
+ * several nodes resume it. The lease is renewed while the job runs, a job whose
+ * lease could not be renewed stops, see {@link #checkLease(UUID)}. Jobs that
+ * are still running but not leased, because they stopped, e.g. aca-py was not
+ * available, or because their node died, are resumed by the next node that
+ * checks for them. Jobs that fail for other reasons are given up after
+ * bpa.job.maxFailures runs.
+ */
+@Slf4j
+@Singleton
+public class BulkJobRunner {
+
+    /**
+     * A bulk job, processes the job's pending items
+     */
+    @FunctionalInterface
+    public interface JobTask {
+        void run(@NonNull UUID jobId) throws Exception;
+    }
+
+    @AllArgsConstructor
+    private static final class JobHandler {
+        private final BulkJobType type;
+        private final BulkJobRepository<?> repo;
+        private final JobTask task;
+    }
+
+    private static final class ActiveJob {
+        private final JobHandler handler;
+        private volatile Instant renewedAt;
+        private volatile boolean claimed;
+        private volatile boolean leaseLost;
+
+        private ActiveJob(JobHandler handler, Instant renewedAt) {
+            this.handler = handler;
+            this.renewedAt = renewedAt;
+        }
+    }
+
+    @Value("${bpa.job.lease}")
+    Duration lease;
+
+    @Value("${bpa.job.maxFailures}")
+    Integer maxFailures;
+
+    @Inject
+    JobLeaseManager leases;
+
+    @Inject
+    Clock clock;
+
+    @Inject
+    @Named(TaskExecutors.IO)
+    ExecutorService jobExecutor;
+
+    // jobs that are currently processed by this node
+    private final Map<UUID, ActiveJob> activeJobs = new ConcurrentHashMap<>();
+
+    // job types that can be resumed by this node
+    private final Map<BulkJobType, JobHandler> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the job in the background if it is not running on any node yet
+     *
+     * @param type  {@link BulkJobType}
+     * @param repo  the job's repository
+     * @param jobId the job id
+     * @param task  processes the job
+     */
+    public void submit(@NonNull BulkJobType type, @NonNull BulkJobRepository<?> repo, @NonNull UUID jobId,
+            @NonNull JobTask task) {
+        submit(new JobHandler(type, repo, task), jobId);
+    }
+
+    /**
+     * Resumes all jobs of the type that are not running on any node, and from now
+     * on also jobs that stop or whose node dies.
+     *
+     * @param type {@link BulkJobType}
+     * @param repo the job's repository
+     * @param task processes a job
+     */
+    public void resume(@NonNull BulkJobType type, @NonNull BulkJobRepository<?> repo, @NonNull JobTask task) {
+        JobHandler handler = new JobHandler(type, repo, task);
+        handlers.put(type, handler);
+        resume(handler);
+    }
+
+    /**
+     * Stops the calling job if its lease was lost, or could not be renewed for so
+     * long that another node might have claimed it. Jobs check their lease before
+     * every item that has an effect outside of the database.
+     *
+     * @param jobId the job id
+     * @throws LeaseLostException if the job has to stop
+     */
+    public void checkLease(@NonNull UUID jobId) {
+        ActiveJob job = activeJobs.get(jobId);
+        if (job != null && (job.leaseLost || job.renewedAt.isBefore(clock.instant().minus(lease)))) {
+            throw new LeaseLostException(job.handler.type.getLabel() + " job " + jobId + " is not leased anymore");
+        }
+    }
+
+    /**
+     * Processes the items of a batch in parallel, every item should be stored as
+     * soon as it is processed. If aca-py becomes unavailable or the job's lease is
+     * lost, items that did not start yet are not processed and the exception is
+     * rethrown once the running ones are done, so the job stops and the remaining
+     * items stay pending.
+     *
+     * @param jobId    the job the items belong to
+     * @param items    the items
+     * @param executor bounds the parallelism
+     * @param process  processes one item
+     * @param <T>      item type
+     */
+    public <T> void processParallel(@NonNull UUID jobId, @NonNull List<T> items, @NonNull ExecutorService executor,
+            @NonNull Consumer<T> process) {
+        AtomicReference<RuntimeException> stopped = new AtomicReference<>();
+        Scheduler scheduler = Schedulers.from(executor);
+        Flowable.fromIterable(items)
+                .flatMapCompletable(item -> Completable.fromAction(() -> {
+                    if (stopped.get() == null) {
+                        try {
+                            checkLease(jobId);
+                            process.accept(item);
+                        } catch (NetworkException | LeaseLostException e) {
+                            stopped.compareAndSet(null, e);
+                        }
+                    }
+                }).subscribeOn(scheduler))
+                .blockingAwait();
+        if (stopped.get() != null) {
+            throw stopped.get();
+        }
+    }
+
+    @Scheduled(fixedDelay = "1m", initialDelay = "2m")
+    void resumeUnclaimed() {
+        handlers.values().forEach(this::resume);
+    }
+
+    /**
+     * Renews the lease of the jobs this node is running, needs to run more often
+     * than the lease expires. Jobs that are not leased by this node anymore are
+     * told to stop.
+     */
+    @Scheduled(fixedDelay = "20s")
+    void heartbeat() {
+        activeJobs.forEach((jobId, job) -> {
+            if (!job.claimed) {
+                return;
+            }
+            Instant now = clock.instant();
+            try {
+                if (job.handler.repo.renew(jobId, leases.getNode(), now) > 0) {
+                    job.renewedAt = now;
+                } else {
+                    log.warn("{} job: {} is not leased by this node anymore, stopping", job.handler.type.getLabel(),
+                            jobId);
+                    job.leaseLost = true;
+                }
+            } catch (Exception e) {
+                log.warn("Could not renew the lease of {} job: {}: {}",
+                        job.handler.type.getLabel().toLowerCase(Locale.ROOT), jobId, e.getMessage());
+            }
+        });
+    }
+
+    private void resume(@NonNull JobHandler handler) {
+        findUnclaimed(handler).forEach(jobId -> {
+            log.info("Resuming {} job: {}", handler.type.getLabel().toLowerCase(Locale.ROOT), jobId);
+            submit(handler, jobId);
+        });
+    }
+
+    private void submit(@NonNull JobHandler handler, @NonNull UUID jobId) {
+        ActiveJob job = new ActiveJob(handler, clock.instant());
+        if (activeJobs.putIfAbsent(jobId, job) != null) {
+            return;
+        }
+        jobExecutor.submit(() -> {
+            try {
+                if (!claim(job, jobId)) {
+                    log.debug("{} job: {} runs on another node", handler.type.getLabel(), jobId);
+                    return;
+                }
+                try {
+                    handler.task.run(jobId);
+                } catch (LeaseLostException e) {
+                    log.warn("{} job: {} stopped, the lease was lost", handler.type.getLabel(), jobId);
+                } catch (NetworkException | IOException e) {
+                    log.error("{} job: {} stopped, job will be resumed", handler.type.getLabel(), jobId, e);
+                } catch (Exception e) {
+                    log.error("{} job: {} failed, job is given up after {} failures", handler.type.getLabel(),
+                            jobId, maxFailures, e);
+                    recordFailure(handler, jobId);
+                } finally {
+                    release(handler, jobId);
+                }
+            } finally {
+                activeJobs.remove(jobId);
+            }
+        });
+    }
+
+    private boolean claim(@NonNull ActiveJob job, @NonNull UUID jobId) {
+        Instant now = clock.instant();
+        try {
+            if (job.handler.repo.claim(jobId, leases.getNode(), now, now.minus(lease)) > 0) {
+                job.renewedAt = now;
+                job.claimed = true;
+                return true;
+            }
+        } catch (Exception e) {
+            log.warn("Could not claim {} job: {}: {}", job.handler.type.getLabel().toLowerCase(Locale.ROOT), jobId,
+                    e.getMessage());
+        }
+        return false;
+    }
+
+    private void release(@NonNull JobHandler handler, @NonNull UUID jobId) {
+        try {
+            handler.repo.release(jobId, leases.getNode());
+        } catch (Exception e) {
+            log.warn("Could not release {} job: {}: {}", handler.type.getLabel().toLowerCase(Locale.ROOT), jobId,
+                    e.getMessage());
+        }
+    }
+
+    private void recordFailure(@NonNull JobHandler handler, @NonNull UUID jobId) {
+        try {
+            handler.repo.recordFailure(jobId, maxFailures);
+        } catch (Exception e) {
+            log.warn("Could not record the failure of {} job: {}: {}",
+                    handler.type.getLabel().toLowerCase(Locale.ROOT), jobId, e.getMessage());
+        }
+    }
+
+    private List<UUID> findUnclaimed(@NonNull JobHandler handler) {
+        try {
+            return handler.repo.findUnclaimed(clock.instant().minus(lease));
+        } catch (Exception e) {
+            log.warn("Could not check for {} jobs to resume: {}", handler.type.getLabel().toLowerCase(Locale.ROOT),
+                    e.getMessage());
+            return List.of();
+        }
+    }
+}
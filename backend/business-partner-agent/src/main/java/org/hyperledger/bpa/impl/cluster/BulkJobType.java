@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Bulk jobs that are run by the {@link BulkJobRunner}
+ */
+@Getter
+@AllArgsConstructor
+public enum BulkJobType {
+    PARTNER_IMPORT("Partner import"),
+    REVOCATION("Revocation"),
+    ISSUANCE("Issuance"),
+    PROOF_REQUEST("Proof request");
+
+    /** name in log messages */
+    private final String label;
+}
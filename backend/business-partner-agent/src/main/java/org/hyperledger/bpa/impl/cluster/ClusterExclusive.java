@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.cluster;
+
+import io.micronaut.aop.Around;
+import io.micronaut.context.annotation.Type;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a scheduled job that must only run on one node of the cluster per
+ * period. Nodes that do not get the job's lease skip the run.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Around
+@Type(ClusterExclusiveInterceptor.class)
+public @interface ClusterExclusive {
+
+    /**
+     * @return the job name, the same on all nodes
+     */
+    String value();
+
+    /**
+     * @return minimum time between two runs in the cluster as duration, e.g. 5m,
+     *         usually the job's schedule. Property placeholders are resolved.
+     */
+    String period();
+}
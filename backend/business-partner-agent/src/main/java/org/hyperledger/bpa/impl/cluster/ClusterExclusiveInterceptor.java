@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.cluster;
+
+import io.micronaut.aop.MethodInterceptor;
+import io.micronaut.aop.MethodInvocationContext;
+import io.micronaut.context.env.Environment;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Singleton
+public class ClusterExclusiveInterceptor implements MethodInterceptor<Object, Object> {
+
+    @Inject
+    JobLeaseManager leases;
+
+    @Inject
+    Environment env;
+
+    private final Map<String, Duration> periods = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(MethodInvocationContext<Object, Object> context) {
+        String job = context.stringValue(ClusterExclusive.class).orElse(context.getMethodName());
+        Duration period = periods.computeIfAbsent(job, j -> context
+                .stringValue(ClusterExclusive.class, "period")
+                .map(p -> env.getPlaceholderResolver().resolveRequiredPlaceholders(p))
+                .map(p -> env.convertRequired(p, Duration.class))
+                .orElseThrow(() -> new IllegalStateException("No period set for job: " + j)));
+        leases.runExclusive(job, period, context::proceed);
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.cluster;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.data.exceptions.DataAccessException;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.controller.api.admin.ScheduledJobStatus;
+import org.hyperledger.bpa.model.ScheduledJob;
+import org.hyperledger.bpa.repository.ScheduledJobRepository;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Makes sure a scheduled job runs on only one node of the cluster per period.
+ * All nodes schedule the job, the first node that claims a run after the period
+ * has passed runs it, the others skip. The claim is a conditional update of the
+ * job's last start, it fails as well while the previous run has not finished,
+ * so a run that takes longer than the period does not overlap with the next
+ * one. A run that did not finish within the timeout, e.g. because its node
+ * died, is considered abandoned. No database connection is held while the job
+ * runs. The node that ran the job records the run, so the status of all jobs
+ * can be seen on every node.
+ */
+@Slf4j
+@Singleton
+public class JobLeaseManager {
+
+    // the nodes' schedules drift against each other, a run may be claimed this
+    // fraction of the period early
+    static final int PERIOD_TOLERANCE_DIVISOR = 10;
+
+    @Inject
+    ScheduledJobRepository jobRepo;
+
+    @Inject
+    Clock clock;
+
+    @Value("${bpa.cluster.node:}")
+    String node;
+
+    @Value("${bpa.cluster.jobTimeout:1h}")
+    Duration jobTimeout;
+
+    String getNode() {
+        if (StringUtils.isEmpty(node)) {
+            try {
+                node = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                node = "unknown";
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Runs the job if it did not run on any node within the period and no other
+     * node is running it at the moment, otherwise the run is skipped. If the lease
+     * can not be checked, e.g. because the database is down, the run is skipped
+     * too.
+     *
+     * @param job    the job name
+     * @param period minimum time between two runs in the cluster, usually the job's
+     *               schedule
+     * @param run    the job
+     */
+    public void runExclusive(@NonNull String job, @NonNull Duration period, @NonNull Runnable run) {
+        Instant started = clock.instant();
+        try {
+            jobRepo.createIfAbsent(job);
+            Instant lastStartedBefore = started
+                    .minus(period)
+                    .plus(period.dividedBy(PERIOD_TOLERANCE_DIVISOR));
+            if (jobRepo.claimRun(job, getNode(), started, lastStartedBefore, started.minus(jobTimeout)) == 0) {
+                log.debug("Job {} runs on another node or already ran within the last {}, skipping", job, period);
+                return;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not get the lease for job {}, skipping: {}", job, e.getMessage());
+            return;
+        }
+        runAndRecord(job, started, run);
+    }
+
+    /**
+     * @return last run of all jobs that have run at least once, and if they are
+     *         running at the moment
+     */
+    public List<ScheduledJobStatus> listJobs() {
+        Instant abandonedBefore = clock.instant().minus(jobTimeout);
+        return jobRepo.listOrderByName()
+                .stream()
+                .filter(j -> j.getLastStartedAt() != null)
+                .map(j -> ScheduledJobStatus.from(j, isRunning(j, abandonedBefore)))
+                .collect(Collectors.toList());
+    }
+
+    private void runAndRecord(String job, Instant started, Runnable run) {
+        String error = null;
+        try {
+            run.run();
+        } catch (RuntimeException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            throw e;
+        } finally {
+            Instant finished = clock.instant();
+            jobRepo.updateLastRun(job, finished, Duration.between(started, finished).toMillis(),
+                    error == null, error);
+        }
+    }
+
+    private static boolean isRunning(ScheduledJob job, Instant abandonedBefore) {
+        return (job.getLastFinishedAt() == null || job.getLastFinishedAt().isBefore(job.getLastStartedAt()))
+                && !job.getLastStartedAt().isBefore(abandonedBefore);
+    }
+}
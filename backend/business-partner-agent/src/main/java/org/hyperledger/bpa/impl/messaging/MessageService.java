@@ -54,7 +54,7 @@ public interface MessageService {
             if (hasConnectedSessions()) {
                 send(message);
             } else {
-                MessageQueue msg = MessageQueue.builder().message(getConv().toMap(message)).build();
+                MessageQueue msg = MessageQueue.builder().message(message).build();
                 getQueue().save(msg);
             }
         } catch (Exception e) {
@@ -66,10 +66,7 @@ public interface MessageService {
     default void sendStored() {
         StreamSupport.stream(getQueue().findAll().spliterator(), false)
                 .filter(msg -> msg.getMessage() != null)
-                .forEach(msg -> {
-                    WebSocketMessageBody toSend = getConv().fromMap(msg.getMessage(), WebSocketMessageBody.class);
-                    send(toSend);
-                });
+                .forEach(msg -> send(msg.getMessage()));
         getQueue().deleteAll();
     }
 }
@@ -67,6 +67,21 @@ public class ProofTemplateConversion {
             throw new PartnerException(ms.getMessage("api.partner.no.connection"));
         }
 
+        return PresentProofRequest.builder()
+                .proofRequest(proofRequestFrom(proofTemplate))
+                .connectionId(partner.getConnectionId())
+                .build();
+    }
+
+    /**
+     * Converts the template into a proof request that does not depend on the
+     * partner, so it can be sent to multiple partners.
+     *
+     * @param proofTemplate {@link BPAProofTemplate}
+     * @return {@link PresentProofRequest.ProofRequest}
+     */
+    @NonNull
+    public PresentProofRequest.ProofRequest proofRequestFrom(@NonNull @Valid BPAProofTemplate proofTemplate) {
         ProofTemplateElementVisitor proofTemplateElementVisitor = new ProofTemplateElementVisitor(
                 this::resolveLedgerSchemaId,
                 new RevocationTimeStampProvider(clock));
@@ -78,10 +93,7 @@ public class ProofTemplateConversion {
                 .flatMap(this::pairSchemaIdWithAttributes)
                 .forEach(proofTemplateElementVisitor::visit);
 
-        return PresentProofRequest.builder()
-                .proofRequest(proofTemplateElementVisitor.getResult())
-                .connectionId(partner.getConnectionId())
-                .build();
+        return proofTemplateElementVisitor.getResult();
     }
 
     private Optional<String> resolveLedgerSchemaId(String databaseSchemaId) {
@@ -21,7 +21,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import io.micronaut.context.annotation.Value;
@@ -38,18 +37,19 @@ import org.apache.commons.lang3.StringUtils;
 import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
 import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.aries.api.present_proof.PresentationExchangeRecord;
-import org.hyperledger.aries.config.GsonConfig;
 import org.hyperledger.bpa.api.CredentialType;
 import org.hyperledger.bpa.api.MyDocumentAPI;
 import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.api.PartnerAPI.PartnerCredential;
 import org.hyperledger.bpa.api.aries.AriesProofExchange;
 import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.config.GsonJacksonModule;
 import org.hyperledger.bpa.impl.aries.CredentialInfoResolver;
 import org.hyperledger.bpa.impl.aries.config.SchemaService;
 import org.hyperledger.bpa.impl.prooftemplates.ProofTemplateConversion;
 import org.hyperledger.bpa.model.MyDocument;
 import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.converter.LazyJson;
 import org.hyperledger.bpa.model.PartnerProof;
 
 import javax.validation.constraints.NotNull;
@@ -97,7 +97,7 @@ public class Converter {
     public PartnerAPI toAPIObject(@NonNull Partner p) {
         PartnerAPI result = PartnerAPI.from(p);
         if (p.getVerifiablePresentation() != null) {
-            result = toAPIObject(fromMap(p.getVerifiablePresentation(), VP_TYPEREF));
+            result = toAPIObject(p.getVerifiablePresentation().get());
             PartnerAPI.copyFrom(result, p);
         }
         return result;
@@ -107,12 +107,7 @@ public class Converter {
         List<PartnerCredential> pc = new ArrayList<>();
         if (partner.getVerifiableCredential() != null) {
             for (VerifiableIndyCredential c : partner.getVerifiableCredential()) {
-                JsonNode node;
-                try {
-                    node = mapper.readTree(c.getCredentialSubject().toString());
-                } catch (JsonProcessingException e) {
-                    throw new RuntimeException(e);
-                }
+                JsonNode node = GsonJacksonModule.toJsonNode(c.getCredentialSubject());
 
                 boolean verifiedCredential = false;
                 if (CollectionUtils.isNotEmpty(c.getType())) {
@@ -159,8 +154,7 @@ public class Converter {
                 .builder()
                 .did(did)
                 .valid(api.getValid())
-                .verifiablePresentation(
-                        api.getVerifiablePresentation() != null ? toMap(api.getVerifiablePresentation()) : null)
+                .verifiablePresentation(LazyJson.ofNullable(api.getVerifiablePresentation()))
                 .build();
     }
 
@@ -328,22 +322,30 @@ public class Converter {
         return result;
     }
 
-    private String getSchemaIdFromContext(VerifiableIndyCredential c) {
-        String schemaId = null;
-        JsonArray ja = GsonConfig.defaultConfig().toJsonTree(c.getContext()).getAsJsonArray();
-        for (JsonElement je : ja) {
-            if (je.isJsonObject()) {
-                JsonObject jo = je.getAsJsonObject();
-                JsonElement ctx = jo.getAsJsonObject("@context");
-                if (ctx != null) {
-                    JsonElement e = ctx.getAsJsonObject().get("sc");
-                    if (e != null) {
-                        schemaId = e.getAsString().replace(ledgerPrefix, "");
-                        break;
-                    }
+    String getSchemaIdFromContext(VerifiableIndyCredential c) {
+        if (c.getContext() == null) {
+            return null;
+        }
+        // depending on the parser the context holds gson or plain java objects
+        for (Object o : c.getContext()) {
+            Object sc = null;
+            if (o instanceof JsonObject) {
+                JsonElement ctx = ((JsonObject) o).get("@context");
+                if (ctx != null && ctx.isJsonObject()) {
+                    sc = ctx.getAsJsonObject().get("sc");
                 }
+            } else if (o instanceof Map) {
+                Object ctx = ((Map<?, ?>) o).get("@context");
+                if (ctx instanceof Map) {
+                    sc = ((Map<?, ?>) ctx).get("sc");
+                }
+            }
+            if (sc instanceof JsonElement && ((JsonElement) sc).isJsonPrimitive()) {
+                return ((JsonElement) sc).getAsString().replace(ledgerPrefix, "");
+            } else if (sc instanceof String) {
+                return ((String) sc).replace(ledgerPrefix, "");
             }
         }
-        return schemaId;
+        return null;
     }
 }
@@ -23,6 +23,7 @@ import io.micronaut.data.annotation.AutoPopulated;
 import io.micronaut.data.annotation.DateCreated;
 import io.micronaut.data.annotation.DateUpdated;
 import io.micronaut.data.annotation.TypeDef;
+import io.micronaut.data.annotation.Version;
 import io.micronaut.data.model.DataType;
 import lombok.*;
 import lombok.experimental.Accessors;
@@ -61,6 +62,9 @@ public class BPACredentialExchange
     @AutoPopulated
     private UUID id;
 
+    @Version
+    private Long version;
+
     @DateCreated
     private Instant createdAt;
 
@@ -105,8 +109,11 @@ public class BPACredentialExchange
     private CredentialExchangeState state;
 
     @Nullable
-    @TypeDef(type = DataType.JSON)
-    private StateToTimestamp<CredentialExchangeState> stateToTimestamp;
+    private Instant stateChangedAt;
+
+    /** when the credential was acknowledged, or the exchange was done */
+    @Nullable
+    private Instant issuedAt;
 
     @Nullable
     @TypeDef(type = DataType.JSON)
@@ -147,16 +154,14 @@ public class BPACredentialExchange
         return isPublic != null && isPublic;
     }
 
-    public Instant calculateIssuedAt() {
-        return stateToTimestamp != null && stateToTimestamp.getStateToTimestamp() != null
-                ? stateToTimestamp.getStateToTimestamp().entrySet()
-                        .stream()
-                        .filter(e -> CredentialExchangeState.CREDENTIAL_ACKED.equals(e.getKey())
-                                || CredentialExchangeState.DONE.equals(e.getKey()))
-                        .map(Map.Entry::getValue)
-                        .findFirst()
-                        .orElse(null)
-                : null;
+    @Override
+    public BPACredentialExchange pushStates(@NonNull CredentialExchangeState state, @Nullable Instant ts) {
+        Instant at = ts != null ? ts : Instant.now();
+        if (issuedAt == null && (CredentialExchangeState.CREDENTIAL_ACKED.equals(state)
+                || CredentialExchangeState.DONE.equals(state))) {
+            issuedAt = at;
+        }
+        return super.pushStates(state, at);
     }
 
     public @io.micronaut.core.annotation.NonNull Map<String, String> proposalAttributesToMap() {
@@ -187,10 +192,13 @@ public class BPACredentialExchange
     public static class BPACredentialExchangeBuilder {
         public BPACredentialExchange.BPACredentialExchangeBuilder pushStateChange(
                 @NonNull CredentialExchangeState state, @NonNull Instant ts) {
-            this.stateToTimestamp(StateToTimestamp.<CredentialExchangeState>builder()
-                    .stateToTimestamp(Map.of(state, ts))
-                    .build());
+            this.state(state).stateChangedAt(ts);
             return this;
         }
     }
+
+    @Override
+    protected StateTransition.EntityType entityType() {
+        return StateTransition.EntityType.CREDENTIAL_EXCHANGE;
+    }
 }
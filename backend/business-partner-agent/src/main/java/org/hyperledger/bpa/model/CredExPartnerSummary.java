@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model;
+
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.core.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hyperledger.aries.api.connection.ConnectionState;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Projection of the partner of a credential exchange, has everything the
+ * exchange listing needs without loading and converting the partners public
+ * profile.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Introspected
+public class CredExPartnerSummary {
+
+    /** {@link BPACredentialExchange} id */
+    private UUID credExId;
+
+    /** updated at of the exchange, full precision as it is used as page key */
+    private Instant updatedAt;
+
+    private UUID partnerId;
+
+    @Nullable
+    private String alias;
+
+    @Nullable
+    private String label;
+
+    @Nullable
+    private String did;
+
+    @Nullable
+    private ConnectionState state;
+
+    /** legal name from the partners organizational profile credential */
+    @Nullable
+    private String legalName;
+}
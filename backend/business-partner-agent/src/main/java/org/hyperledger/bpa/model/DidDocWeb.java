@@ -27,6 +27,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.bpa.model.converter.LazyJson;
+import org.hyperledger.bpa.model.converter.VerifiablePresentationConverter;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -66,7 +70,13 @@ public class DidDocWeb {
      * My public profile, verifiable presentation structure
      */
     @Nullable
-    @TypeDef(type = DataType.JSON)
-    private Map<String, Object> profileJson;
+    @TypeDef(type = DataType.JSON, converter = VerifiablePresentationConverter.class)
+    private LazyJson<VerifiablePresentation<VerifiableIndyCredential>> profileJson;
 
+    /**
+     * Hash over the content of the public profile, signing is skipped while it does
+     * not change
+     */
+    @Nullable
+    private String profileHash;
 }
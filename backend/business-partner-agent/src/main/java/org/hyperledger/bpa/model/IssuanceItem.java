@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.annotation.AutoPopulated;
+import io.micronaut.data.annotation.DateUpdated;
+import io.micronaut.data.annotation.TypeDef;
+import io.micronaut.data.model.DataType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import org.hyperledger.bpa.api.JobItemState;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A single credential offer within a {@link IssuanceJob}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Accessors(chain = true)
+@Entity
+@Table(name = "issuance_item")
+public class IssuanceItem implements BulkJobItem {
+
+    @Id
+    @AutoPopulated
+    private UUID id;
+
+    @DateUpdated
+    private Instant updatedAt;
+
+    private UUID jobId;
+
+    /** Position of the item within the request */
+    private Integer position;
+
+    private UUID partnerId;
+
+    /** credential attributes */
+    @TypeDef(type = DataType.JSON)
+    private Map<String, String> document;
+
+    @Enumerated(EnumType.STRING)
+    private JobItemState state;
+
+    /**
+     * Set before the offer is sent, a pending item where this is set might have
+     * been offered already
+     */
+    @Nullable
+    private Instant offerStartedAt;
+
+    /** {@link BPACredentialExchange} id, set once the offer was sent */
+    @Nullable
+    private UUID credentialExchangeId;
+
+    /** Reason why the offer failed */
+    @Nullable
+    private String error;
+}
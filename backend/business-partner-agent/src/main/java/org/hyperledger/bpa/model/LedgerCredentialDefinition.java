@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.annotation.AutoPopulated;
+import io.micronaut.data.annotation.DateCreated;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+import org.hyperledger.bpa.impl.util.AriesStringUtil;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Local copy of the credential definitions on the ledger that are based on one
+ * of the configured schemas. Synced incrementally from the ledger explorer.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "ledger_credential_definition")
+public class LedgerCredentialDefinition {
+
+    @Id
+    @AutoPopulated
+    private UUID id;
+
+    @DateCreated
+    private Instant createdAt;
+
+    /** The schemas TRX id */
+    private String schemaSeqNo;
+
+    private String credentialDefinitionId;
+
+    /** The issuers did, unqualified */
+    private String did;
+
+    /** The credential definitions tag */
+    @Nullable
+    private String type;
+
+    /** The TRX id of the credential definition */
+    @Nullable
+    private Integer txnSeqNo;
+
+    public PartnerCredentialType toPartnerCredentialType() {
+        return new PartnerCredentialType(credentialDefinitionId, type, schemaSeqNo);
+    }
+
+    public static LedgerCredentialDefinition fromCredDefId(String credDefId, @Nullable Integer txnSeqNo) {
+        return LedgerCredentialDefinition
+                .builder()
+                .credentialDefinitionId(credDefId)
+                .schemaSeqNo(AriesStringUtil.credDefIdGetSequenceNo(credDefId))
+                .did(AriesStringUtil.credDefIdGetDid(credDefId))
+                .type(AriesStringUtil.getLastSegment(credDefId))
+                .txnSeqNo(txnSeqNo)
+                .build();
+    }
+}
@@ -26,11 +26,11 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import java.time.Instant;
-import java.util.Map;
 import java.util.UUID;
 
 @NoArgsConstructor
@@ -49,5 +49,5 @@ public class MessageQueue {
 
     @Nullable
     @TypeDef(type = DataType.JSON)
-    private Map<String, Object> message;
+    private WebSocketMessageBody message;
 }
@@ -22,19 +22,21 @@ import io.micronaut.data.annotation.AutoPopulated;
 import io.micronaut.data.annotation.DateCreated;
 import io.micronaut.data.annotation.DateUpdated;
 import io.micronaut.data.annotation.TypeDef;
+import io.micronaut.data.annotation.Version;
 import io.micronaut.data.model.DataType;
 import lombok.*;
 import lombok.experimental.Accessors;
 import org.hyperledger.acy_py.generated.model.InvitationRecord;
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
 import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.bpa.api.PartnerAPI;
-import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+import org.hyperledger.bpa.model.converter.LazyJson;
+import org.hyperledger.bpa.model.converter.VerifiablePresentationConverter;
 
 import javax.persistence.*;
 import java.time.Instant;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -58,6 +60,9 @@ public class Partner extends StateChangeDecorator<Partner, ConnectionState> {
     @AutoPopulated
     private UUID id;
 
+    @Version
+    private Long version;
+
     @DateCreated
     private Instant createdAt;
 
@@ -68,6 +73,10 @@ public class Partner extends StateChangeDecorator<Partner, ConnectionState> {
     @Nullable
     private Instant lastSeen;
 
+    /** Round trip time of the last answered trust ping in ms */
+    @Nullable
+    private Integer pingRttMs;
+
     /** The fully qualified did like did:sov:123 */
     private String did;
 
@@ -86,9 +95,9 @@ public class Partner extends StateChangeDecorator<Partner, ConnectionState> {
     @Enumerated(EnumType.STRING)
     private ConnectionState state;
 
-    /** history of aries connection states - excluding ping */
-    @TypeDef(type = DataType.JSON)
-    private StateToTimestamp<ConnectionState> stateToTimestamp;
+    /** when the current aries connection state was reached */
+    @Nullable
+    private Instant stateChangedAt;
 
     /**
      * aries connection label, if incoming connection set by the partner via the
@@ -122,23 +131,23 @@ public class Partner extends StateChangeDecorator<Partner, ConnectionState> {
      * {@link PartnerAPI}
      */
     @Nullable
-    @TypeDef(type = DataType.JSON)
-    private Map<String, Object> verifiablePresentation;
+    @TypeDef(type = DataType.JSON, converter = VerifiablePresentationConverter.class)
+    private LazyJson<VerifiablePresentation<VerifiableIndyCredential>> verifiablePresentation;
 
-    /**
-     * credential offer or proof request when using OOB invitations with attachments
-     */
+    /** ETag of the last fetched public profile, used for conditional requests */
     @Nullable
-    @TypeDef(type = DataType.JSON)
-    private InvitationRecord invitationRecord;
+    private String profileEtag;
+
+    /** Last-Modified of the last fetched public profile */
+    @Nullable
+    private String profileLastModified;
 
     /**
-     * Serialized {@link PartnerCredentialType} to allow filtering partners by
-     * supported credentials
+     * credential offer or proof request when using OOB invitations with attachments
      */
     @Nullable
     @TypeDef(type = DataType.JSON)
-    private Map<String, Object> supportedCredentials;
+    private InvitationRecord invitationRecord;
 
     @Builder.Default
     @ManyToMany(cascade = { CascadeType.PERSIST, CascadeType.REFRESH })
@@ -156,11 +165,14 @@ public class Partner extends StateChangeDecorator<Partner, ConnectionState> {
             if (ts == null) {
                 ts = Instant.now();
             }
-            this.stateToTimestamp(StateToTimestamp.<ConnectionState>builder()
-                    .stateToTimestamp(Map.of(state, ts))
-                    .build());
+            this.state(state).stateChangedAt(ts);
             return this;
         }
     }
 
+    @Override
+    protected StateTransition.EntityType entityType() {
+        return StateTransition.EntityType.PARTNER;
+    }
+
 }
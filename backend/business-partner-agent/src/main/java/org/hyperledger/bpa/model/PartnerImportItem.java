@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.annotation.AutoPopulated;
+import io.micronaut.data.annotation.DateUpdated;
+import io.micronaut.data.annotation.TypeDef;
+import io.micronaut.data.model.DataType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import org.hyperledger.bpa.api.JobItemState;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A single partner within a {@link PartnerImportJob}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Accessors(chain = true)
+@Entity
+@Table(name = "partner_import_item")
+public class PartnerImportItem implements BulkJobItem {
+
+    @Id
+    @AutoPopulated
+    private UUID id;
+
+    @DateUpdated
+    private Instant updatedAt;
+
+    private UUID jobId;
+
+    /** Position of the item within the import file */
+    private Integer position;
+
+    /** The fully qualified did like did:sov:123 */
+    private String did;
+
+    @Nullable
+    private String alias;
+
+    /** tag names, tags that do not exist yet are created */
+    @Nullable
+    @TypeDef(type = DataType.JSON)
+    private List<String> tag;
+
+    @Enumerated(EnumType.STRING)
+    private JobItemState state;
+
+    /** Reason why the import failed or was skipped */
+    @Nullable
+    private String error;
+
+    /**
+     * aca-py connection id, set as soon as the connection was created. A pending
+     * item where this is set is imported with this connection.
+     */
+    @Nullable
+    private String connectionId;
+
+    /** Id of the imported partner */
+    @Nullable
+    private UUID partnerId;
+}
@@ -22,6 +22,7 @@ import io.micronaut.data.annotation.AutoPopulated;
 import io.micronaut.data.annotation.DateCreated;
 import io.micronaut.data.annotation.DateUpdated;
 import io.micronaut.data.annotation.TypeDef;
+import io.micronaut.data.annotation.Version;
 import io.micronaut.data.model.DataType;
 import lombok.*;
 import lombok.experimental.Accessors;
@@ -53,6 +54,9 @@ public class PartnerProof extends StateChangeDecorator<PartnerProof, Presentatio
     @AutoPopulated
     private UUID id;
 
+    @Version
+    private Long version;
+
     private UUID partnerId;
 
     @DateCreated
@@ -95,19 +99,22 @@ public class PartnerProof extends StateChangeDecorator<PartnerProof, Presentatio
     @ManyToOne(fetch = FetchType.LAZY)
     private BPAProofTemplate proofTemplate;
 
-    @TypeDef(type = DataType.JSON)
-    private StateToTimestamp<PresentationExchangeState> stateToTimestamp;
+    @Nullable
+    private Instant stateChangedAt;
 
     // extends lombok builder
     public static class PartnerProofBuilder {
         public PartnerProofBuilder pushStateChange(@NonNull PresentationExchangeState state, @NonNull Instant ts) {
-            this.stateToTimestamp(StateToTimestamp.<PresentationExchangeState>builder()
-                    .stateToTimestamp(Map.of(state, ts))
-                    .build());
+            this.state(state).stateChangedAt(ts);
             return this;
         }
     }
 
+    @Override
+    protected StateTransition.EntityType entityType() {
+        return StateTransition.EntityType.PROOF_EXCHANGE;
+    }
+
     public ExchangeVersion getExchangeVersion() {
         if (exchangeVersion == null) {
             return ExchangeVersion.V1;
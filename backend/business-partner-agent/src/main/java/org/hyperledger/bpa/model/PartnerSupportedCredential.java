@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model;
+
+import io.micronaut.data.annotation.AutoPopulated;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.UUID;
+
+/**
+ * Credential definition of a partner, in other words the partner can issue
+ * credentials that are based on the schema with the given seqNo. Maintained by
+ * the ledger lookup.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "partner_supported_credential")
+public class PartnerSupportedCredential {
+
+    @Id
+    @AutoPopulated
+    private UUID id;
+
+    private UUID partnerId;
+
+    /** The schemas TRX id */
+    private String seqNo;
+
+    private String credentialDefinitionId;
+
+    /** The credential definitions tag */
+    private String type;
+
+    public static PartnerSupportedCredential from(UUID partnerId, PartnerCredentialType type) {
+        return PartnerSupportedCredential
+                .builder()
+                .partnerId(partnerId)
+                .seqNo(type.getSeqno())
+                .credentialDefinitionId(type.getCredentialDefinitionId())
+                .type(type.getType())
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.annotation.AutoPopulated;
+import io.micronaut.data.annotation.DateUpdated;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import org.hyperledger.bpa.api.JobItemState;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A single credential within a {@link RevocationJob}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Accessors(chain = true)
+@Entity
+@Table(name = "revocation_item")
+public class RevocationItem implements BulkJobItem {
+
+    @Id
+    @AutoPopulated
+    private UUID id;
+
+    @DateUpdated
+    private Instant updatedAt;
+
+    private UUID jobId;
+
+    /** Position of the item within the request */
+    private Integer position;
+
+    private UUID credentialExchangeId;
+
+    @Nullable
+    private String revRegId;
+
+    @Nullable
+    private String credRevId;
+
+    @Enumerated(EnumType.STRING)
+    private JobItemState state;
+
+    /**
+     * Set when the credential has been revoked in aca-py, the item is done once the
+     * revocation has been published to the ledger
+     */
+    @Nullable
+    private Instant revokedAt;
+
+    /** Reason why the revocation failed or was skipped */
+    @Nullable
+    private String error;
+
+    public boolean isAwaitingPublication() {
+        return JobItemState.PENDING.equals(state) && revokedAt != null;
+    }
+}
@@ -18,64 +18,46 @@
 package org.hyperledger.bpa.model;
 
 import io.micronaut.core.annotation.Nullable;
-import lombok.*;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
 import org.hyperledger.bpa.impl.util.TimeUtil;
 
 import java.time.Instant;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Decorator class for all database entities that deal with (connection,
  * credential and proof) exchanges to track state changes over time. As the BPA
  * might receive events in particular order this class also sets the top level
  * state of the entity to the latest state which might not be the current state.
+ * <p>
+ * The history itself is not part of the entity, every state change is appended
+ * to the state_transition table when the entity is written.
  *
  * @param <T> database entity
  * @param <S> state
  */
-@Data
+@EqualsAndHashCode
 public abstract class StateChangeDecorator<T extends StateChangeDecorator<T, S>, S extends Enum<S>> {
 
-    abstract public T setStateToTimestamp(StateToTimestamp<S> stateToTimestamp);
+    // not a bean property, so it is not mapped
+    @EqualsAndHashCode.Exclude
+    private final List<StateTransition> pendingTransitions = new ArrayList<>();
 
-    abstract public StateToTimestamp<S> getStateToTimestamp();
+    abstract public UUID getId();
+
+    abstract public S getState();
 
     abstract public T setState(S state);
 
-    /**
-     * Records the timestamps of the different state changes, important in the
-     * manual exchanges as they can take a while to happen.
-     */
-    @Data
-    @NoArgsConstructor
-    @AllArgsConstructor
-    @Builder
-    public static final class StateToTimestamp<S extends Enum<S>> {
-
-        private Map<S, Instant> stateToTimestamp;
-
-        public Map<S, Long> toApi() {
-            return stateToTimestamp != null
-                    ? stateToTimestamp.entrySet()
-                            .stream()
-                            .sorted(Map.Entry.comparingByValue())
-                            .collect(Collectors.toMap(
-                                    Map.Entry::getKey, v -> v.getValue().toEpochMilli(), (v1, v2) -> v1,
-                                    LinkedHashMap::new))
-                    : Map.of();
-        }
+    abstract public Instant getStateChangedAt();
 
-        public @Nullable Map.Entry<S, Instant> findLatestEntry() {
-            return stateToTimestamp != null
-                    ? stateToTimestamp.entrySet()
-                            .stream()
-                            .sorted(Map.Entry.comparingByValue(Comparator.comparing(Instant::toEpochMilli)))
-                            .min(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-                            .orElse(null)
-                    : null;
-        }
-    }
+    abstract public T setStateChangedAt(Instant stateChangedAt);
+
+    abstract protected StateTransition.EntityType entityType();
 
     public T pushStates(@NonNull S state) {
         return pushStates(state, Instant.now());
@@ -85,23 +67,62 @@ public abstract class StateChangeDecorator<T extends StateChangeDecorator<T, S>,
         return pushStates(state, TimeUtil.fromISOInstant(ts));
     }
 
+    /**
+     * Records the state change and sets the state of the entity if the change is
+     * newer than the current state.
+     *
+     * @param state the new state
+     * @param ts    when the state changed, now if null
+     * @return the entity
+     */
     @SuppressWarnings("unchecked")
     public T pushStates(@NonNull S state, @Nullable Instant ts) {
         if (ts == null) {
             ts = Instant.now();
         }
-        if (getStateToTimestamp() == null || getStateToTimestamp().getStateToTimestamp() == null) {
-            Map<S, Instant> states = new HashMap<>();
-            states.put(state, ts);
-            setStateToTimestamp(StateToTimestamp
-                    .<S>builder()
-                    .stateToTimestamp(states)
-                    .build());
-        } else {
-            getStateToTimestamp().getStateToTimestamp().put(state, ts);
+        if (getId() == null && pendingTransitions.isEmpty() && getState() != null
+                && getStateChangedAt() != null) {
+            // initial state that was set via the builder
+            pendingTransitions.add(transition(getState(), getStateChangedAt()));
+        }
+        pendingTransitions.add(transition(state, ts));
+        if (getStateChangedAt() == null || !ts.isBefore(getStateChangedAt())) {
+            setState(state);
+            setStateChangedAt(ts);
         }
-        S latest = Objects.requireNonNull(getStateToTimestamp().findLatestEntry()).getKey();
-        setState(Objects.requireNonNull(latest));
         return (T) this;
     }
+
+    /**
+     * @return the state changes that were not written yet, the list is emptied
+     */
+    public List<StateTransition> drainTransitions() {
+        List<StateTransition> result = new ArrayList<>(pendingTransitions);
+        pendingTransitions.clear();
+        result.forEach(t -> t.setEntityId(getId()));
+        return result;
+    }
+
+    /**
+     * @return the state of a new entity that was set via the builder, as there is
+     *         no pending state change in this case
+     */
+    public Optional<StateTransition> initialTransition() {
+        if (getState() == null) {
+            return Optional.empty();
+        }
+        StateTransition result = transition(getState(),
+                getStateChangedAt() != null ? getStateChangedAt() : Instant.now());
+        result.setEntityId(getId());
+        return Optional.of(result);
+    }
+
+    private StateTransition transition(S state, Instant ts) {
+        return StateTransition
+                .builder()
+                .entityType(entityType())
+                .state(state.name())
+                .ts(ts)
+                .build();
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model.converter;
+
+import io.micronaut.core.annotation.Nullable;
+import lombok.NonNull;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Content of a jsonb column that is only deserialized when it is accessed, so
+ * that queries that load the entity but never touch the column do not pay for
+ * the mapping.
+ *
+ * @param <T> the type the json is mapped to
+ */
+public final class LazyJson<T> {
+
+    private final String json;
+
+    private final Function<String, T> reader;
+
+    private volatile T value;
+
+    private LazyJson(@Nullable String json, @Nullable Function<String, T> reader, @Nullable T value) {
+        this.json = json;
+        this.reader = reader;
+        this.value = value;
+    }
+
+    public static <T> LazyJson<T> of(@NonNull T value) {
+        return new LazyJson<>(null, null, value);
+    }
+
+    public static <T> LazyJson<T> ofNullable(@Nullable T value) {
+        return value != null ? of(value) : null;
+    }
+
+    public static <T> LazyJson<T> fromJson(@NonNull String json, @NonNull Function<String, T> reader) {
+        return new LazyJson<>(json, reader, null);
+    }
+
+    /**
+     * @return the mapped value, deserialized on first access
+     */
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    result = reader.apply(json);
+                    value = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the json was not mapped yet
+     */
+    public boolean isRaw() {
+        return value == null;
+    }
+
+    /**
+     * @return the json as it was read from the database, null if the instance was
+     *         created from a value
+     */
+    @Nullable
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LazyJson)) {
+            return false;
+        }
+        return Objects.equals(get(), ((LazyJson<?>) o).get());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(get());
+    }
+
+    @Override
+    public String toString() {
+        return isRaw() ? json : String.valueOf(value);
+    }
+}
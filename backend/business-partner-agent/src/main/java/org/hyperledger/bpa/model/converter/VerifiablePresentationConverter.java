@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model.converter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.core.convert.ConversionContext;
+import io.micronaut.data.model.runtime.convert.AttributeConverter;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.bpa.impl.util.Converter;
+
+/**
+ * Maps a jsonb column straight into a {@link VerifiablePresentation}, without
+ * the intermediate {@link java.util.Map}. Reading is deferred until the value
+ * is accessed, and untouched values are written back as they were read.
+ */
+@Singleton
+public class VerifiablePresentationConverter
+        implements AttributeConverter<LazyJson<VerifiablePresentation<VerifiableIndyCredential>>, String> {
+
+    @Inject
+    @Setter(AccessLevel.PACKAGE)
+    ObjectMapper mapper;
+
+    @Override
+    public String convertToPersistedValue(LazyJson<VerifiablePresentation<VerifiableIndyCredential>> entityValue,
+            ConversionContext context) {
+        if (entityValue == null) {
+            return null;
+        }
+        if (entityValue.isRaw()) {
+            return entityValue.getJson();
+        }
+        try {
+            return mapper.writeValueAsString(entityValue.get());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize verifiable presentation", e);
+        }
+    }
+
+    @Override
+    public LazyJson<VerifiablePresentation<VerifiableIndyCredential>> convertToEntityValue(String persistedValue,
+            ConversionContext context) {
+        if (persistedValue == null) {
+            return null;
+        }
+        return LazyJson.fromJson(persistedValue, json -> {
+            try {
+                return mapper.readValue(json, Converter.VP_TYPEREF);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not deserialize verifiable presentation", e);
+            }
+        });
+    }
+}
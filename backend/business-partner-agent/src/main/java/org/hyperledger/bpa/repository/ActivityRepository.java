@@ -18,7 +18,6 @@
 package org.hyperledger.bpa.repository;
 
 import io.micronaut.core.annotation.NonNull;
-import io.micronaut.data.annotation.Join;
 import io.micronaut.data.jdbc.annotation.JdbcRepository;
 import io.micronaut.data.model.query.builder.sql.Dialect;
 import io.micronaut.data.repository.CrudRepository;
@@ -26,38 +25,14 @@ import org.hyperledger.bpa.controller.api.activity.ActivityRole;
 import org.hyperledger.bpa.controller.api.activity.ActivityType;
 import org.hyperledger.bpa.model.Activity;
 
-import java.time.Instant;
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @JdbcRepository(dialect = Dialect.POSTGRES)
-public interface ActivityRepository extends CrudRepository<Activity, UUID> {
+public interface ActivityRepository extends CrudRepository<Activity, UUID>, ActivityReadQueries {
 
     Optional<Activity> findByLinkIdAndTypeAndRole(@NonNull UUID linkId,
             @NonNull ActivityType type,
             @NonNull ActivityRole role);
 
-    @Join(value = "partner", type = Join.Type.LEFT_FETCH)
-    List<Activity> listOrderByUpdatedAtDesc();
-
-    @Join(value = "partner", type = Join.Type.LEFT_FETCH)
-    List<Activity> findByTypeOrderByUpdatedAt(@NonNull ActivityType type);
-
-    @Join(value = "partner", type = Join.Type.LEFT_FETCH)
-    List<Activity> findByCompletedFalseOrderByUpdatedAtDesc();
-
-    @Join(value = "partner", type = Join.Type.LEFT_FETCH)
-    List<Activity> findByTypeAndCompletedFalseOrderByUpdatedAtDesc(@NonNull ActivityType type);
-
-    @Join(value = "partner", type = Join.Type.LEFT_FETCH)
-    List<Activity> findByCompletedTrueOrderByUpdatedAtDesc();
-
-    @Join(value = "partner", type = Join.Type.LEFT_FETCH)
-    List<Activity> findByTypeAndCompletedTrueOrderByUpdatedAtDesc(@NonNull ActivityType type);
-
-    Long countByCompletedFalse();
-
-    Long countByCompletedFalseAndCreatedAtAfter(Instant createdAt);
-
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.data.annotation.Id;
+import io.micronaut.data.repository.CrudRepository;
+import org.hyperledger.bpa.api.JobState;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Lease of a bulk job. Every job repository implements the methods with native
+ * queries on its own table, which needs the columns id, state, owner,
+ * heartbeat_at and failures.
+ *
+ * @param <J> the job entity
+ */
+public interface BulkJobRepository<J> extends CrudRepository<J, UUID> {
+
+    void updateState(@Id UUID id, JobState state);
+
+    /**
+     * Claims a running job, if it is not leased or the lease expired
+     *
+     * @param id            the job id
+     * @param owner         the node that runs the job
+     * @param now           start of the lease
+     * @param expiredBefore leases that were not renewed since can be taken over
+     * @return 1 if the job was claimed, 0 otherwise
+     */
+    int claim(@NonNull UUID id, @NonNull String owner, @NonNull Instant now, @NonNull Instant expiredBefore);
+
+    /**
+     * @param id    the job id
+     * @param owner the node that runs the job
+     * @param now   new start of the lease
+     * @return 1 if the lease was renewed, 0 if the job is not leased by the node
+     *         anymore
+     */
+    int renew(@NonNull UUID id, @NonNull String owner, @NonNull Instant now);
+
+    void release(@NonNull UUID id, @NonNull String owner);
+
+    /**
+     * @param expiredBefore leases that were not renewed since are expired
+     * @return running jobs that are not leased
+     */
+    List<UUID> findUnclaimed(@NonNull Instant expiredBefore);
+
+    /**
+     * Counts a failed run of the job, the job is set to failed once it failed
+     * maxFailures times
+     *
+     * @param id          the job id
+     * @param maxFailures failed runs before the job is given up
+     */
+    void recordFailure(@NonNull UUID id, int maxFailures);
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.GenericRepository;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface CredExArchiveRepository extends GenericRepository<BPACredentialExchange, UUID> {
+
+    /**
+     * Moves terminal exchanges from bpa_credential_exchange to the archive, see the
+     * archive_credential_exchanges function for what is considered terminal.
+     *
+     * @param olderThan only exchanges whose last state change is before
+     * @param batchSize max number of exchanges to move
+     * @return number of moved exchanges
+     */
+    @Query("SELECT archive_credential_exchanges(:olderThan, :batchSize)")
+    Integer archive(@NonNull Instant olderThan, int batchSize);
+}
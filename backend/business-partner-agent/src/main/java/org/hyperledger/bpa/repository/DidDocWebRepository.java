@@ -18,11 +18,16 @@
 package org.hyperledger.bpa.repository;
 
 import io.micronaut.data.annotation.Id;
+import io.micronaut.data.annotation.Query;
 import io.micronaut.data.jdbc.annotation.JdbcRepository;
 import io.micronaut.data.model.query.builder.sql.Dialect;
 import io.micronaut.data.repository.CrudRepository;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.bpa.model.DidDocWeb;
+import org.hyperledger.bpa.model.converter.LazyJson;
 
+import java.time.Instant;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
@@ -33,7 +38,15 @@ public interface DidDocWebRepository extends CrudRepository<DidDocWeb, UUID> {
 
     void updateDidDoc(@Id UUID id, Map<String, Object> didDoc);
 
-    void updateProfileJson(@Id UUID id, Map<String, Object> profileJson);
+    void updateProfileJsonAndProfileHash(@Id UUID id,
+            LazyJson<VerifiablePresentation<VerifiableIndyCredential>> profileJson, String profileHash);
+
+    /**
+     * @return updated at of the did doc, changes with every write of the did
+     *         document or the public profile
+     */
+    @Query("SELECT COALESCE(updated_at, CAST('epoch' AS timestamp)) FROM did_doc_web LIMIT 1")
+    Optional<Instant> findVersion();
 
     /**
      * Like with the highlander there can only be one.
@@ -21,6 +21,7 @@ import io.micronaut.core.annotation.Nullable;
 import io.micronaut.data.annotation.Id;
 import io.micronaut.data.annotation.Join;
 import io.micronaut.data.annotation.Query;
+import io.micronaut.data.annotation.Version;
 import io.micronaut.data.jdbc.annotation.JdbcRepository;
 import io.micronaut.data.model.query.builder.sql.Dialect;
 import io.micronaut.data.repository.CrudRepository;
@@ -28,15 +29,15 @@ import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
 import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
 import org.hyperledger.aries.api.issue_credential_v1.V1CredentialExchange;
 import org.hyperledger.bpa.model.BPACredentialExchange;
-import org.hyperledger.bpa.model.StateChangeDecorator;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @JdbcRepository(dialect = Dialect.POSTGRES)
-public interface HolderCredExRepository extends CrudRepository<BPACredentialExchange, UUID> {
+public interface HolderCredExRepository extends CrudRepository<BPACredentialExchange, UUID>, HolderCredExReadQueries {
 
     // find
 
@@ -52,33 +53,46 @@ public interface HolderCredExRepository extends CrudRepository<BPACredentialExch
 
     List<BPACredentialExchange> findByRoleAndIsPublicTrue(CredentialExchangeRole role);
 
-    @Query("SELECT * FROM bpa_credential_exchange WHERE credential->>'schemaId' = :schemaId "
-            + "AND credential->>'credentialDefinitionId' = :credentialDefinitionId "
+    @Query("SELECT * FROM bpa_credential_exchange WHERE credential_schema_id = :schemaId "
+            + "AND credential_cred_def_id = :credentialDefinitionId "
             + "AND role = 'HOLDER'")
     List<BPACredentialExchange> findBySchemaIdAndCredentialDefinitionId(String schemaId, String credentialDefinitionId);
 
+    // the conditions have to match the ones of the partial index
     @Query("SELECT * FROM bpa_credential_exchange WHERE type = 'INDY' "
-            + "AND referent IS NOT NULL AND (revoked IS NULL OR revoked = false) "
-            + "AND role = 'HOLDER'")
+            + "AND role = 'HOLDER' AND referent IS NOT NULL AND revoked IS NOT TRUE")
     List<BPACredentialExchange> findNotRevoked();
 
+    List<BPACredentialExchange> findByRoleAndRevokedTrueAndRevRegIdAndCredRevIdIn(CredentialExchangeRole role,
+            String revRegId, Collection<String> credRevId);
+
+    /**
+     * Finds received holder credentials that contain all the given attribute values
+     *
+     * @param attributes json object of attribute name to value
+     * @return list of {@link BPACredentialExchange}
+     */
+    @Query("SELECT * FROM bpa_credential_exchange WHERE credential->'attrs' @> CAST(:attributes AS jsonb) "
+            + "AND role = 'HOLDER' AND state IN ('CREDENTIAL_ACKED', 'DONE')")
+    List<BPACredentialExchange> findCredentialsByAttributes(String attributes);
+
     // update
 
     void updateIsPublic(@Id UUID id, Boolean isPublic);
 
     void updateState(@Id UUID id, CredentialExchangeState state);
 
-    void updateStates(@Id UUID id, CredentialExchangeState state,
-            StateChangeDecorator.StateToTimestamp<CredentialExchangeState> stateToTimestamp, @Nullable String errorMsg);
+    void updateStates(@Id UUID id, @Version Long version, CredentialExchangeState state,
+            @Nullable Instant stateChangedAt, @Nullable String errorMsg);
 
-    void updateOnCredentialOfferEvent(@Id UUID id, CredentialExchangeState state,
-            StateChangeDecorator.StateToTimestamp<CredentialExchangeState> stateToTimestamp,
+    void updateOnCredentialOfferEvent(@Id UUID id, @Version Long version, CredentialExchangeState state,
+            @Nullable Instant stateChangedAt,
             V1CredentialExchange.CredentialProposalDict.CredentialProposal credentialOffer);
 
     void updateLabel(@Id UUID id, String label);
 
     Number updateRevoked(@Id UUID id, Boolean revoked,
-            StateChangeDecorator.StateToTimestamp<CredentialExchangeState> stateToTimestamp);
+            @Nullable Instant stateChangedAt);
 
     Number updateReferent(@Id UUID id, @Nullable String referent);
 
@@ -88,11 +102,4 @@ public interface HolderCredExRepository extends CrudRepository<BPACredentialExch
     @Query("UPDATE bpa_credential_exchange SET partner_id = null WHERE partner_id = :partnerId AND role = 'HOLDER'")
     Number setPartnerIdToNull(UUID partnerId);
 
-    // count
-
-    Long countByRoleEqualsAndStateEquals(CredentialExchangeRole role, CredentialExchangeState state);
-
-    Long countByRoleEqualsAndStateEqualsAndCreatedAtAfter(
-            CredentialExchangeRole role, CredentialExchangeState state, Instant issuedAt);
-
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.CrudRepository;
+import org.hyperledger.bpa.model.HolderRevocationRegistry;
+
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface HolderRevocationRegistryRepository extends CrudRepository<HolderRevocationRegistry, String> {
+
+    /**
+     * Stores how far the entries of the registry were evaluated, a concurrent check
+     * can not move it back
+     *
+     * @param revRegId  the revocation registry id
+     * @param lastSeqNo seqNo of the last evaluated entry
+     * @param entries   number of evaluated entries
+     */
+    @Query("INSERT INTO holder_revocation_registry (rev_reg_id, last_seq_no, entries) "
+            + "VALUES (:revRegId, :lastSeqNo, :entries) ON CONFLICT (rev_reg_id) DO UPDATE "
+            + "SET last_seq_no = EXCLUDED.last_seq_no, entries = EXCLUDED.entries "
+            + "WHERE holder_revocation_registry.last_seq_no < EXCLUDED.last_seq_no")
+    void advance(@NonNull String revRegId, int lastSeqNo, int entries);
+}
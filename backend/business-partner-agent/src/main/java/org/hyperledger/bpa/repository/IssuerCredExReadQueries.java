@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.annotation.Join;
+import io.micronaut.data.annotation.Query;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.CredExPartnerSummary;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read only credential exchange listings, can be served by the replica
+ */
+public interface IssuerCredExReadQueries {
+
+    /**
+     * One page of credential exchanges that have a partner, newest first. Paging is
+     * keyset based, the next page starts after the updated at timestamp and id of
+     * the last exchange of the previous page.
+     *
+     * @param role            CredentialExchangeRole name, null for all
+     * @param partnerId       partner id, null for all
+     * @param beforeUpdatedAt updated at of the last exchange of the previous page
+     * @param beforeId        id of the last exchange of the previous page
+     * @param size            page size
+     * @return {@link CredExPartnerSummary} per exchange
+     */
+    @Query("SELECT c.id AS cred_ex_id, c.updated_at, p.id AS partner_id, p.alias, p.label, p.did, p.state, "
+            + "(SELECT vc -> 'credentialSubject' ->> 'legalName' FROM jsonb_array_elements("
+            + "CASE WHEN jsonb_typeof(p.verifiable_presentation -> 'verifiableCredential') = 'array' "
+            + "THEN p.verifiable_presentation -> 'verifiableCredential' ELSE CAST('[]' AS jsonb) END) vc "
+            + "WHERE vc -> 'type' @> CAST('\"OrganizationalProfileCredential\"' AS jsonb) LIMIT 1) AS legal_name "
+            + "FROM bpa_credential_exchange c JOIN partner p ON p.id = c.partner_id "
+            + "WHERE (CAST(:role AS varchar) IS NULL OR c.role = CAST(:role AS varchar)) "
+            + "AND (CAST(:partnerId AS uuid) IS NULL OR c.partner_id = CAST(:partnerId AS uuid)) "
+            + "AND (CAST(:beforeUpdatedAt AS timestamp) IS NULL "
+            + "OR (c.updated_at, c.id) < (CAST(:beforeUpdatedAt AS timestamp), CAST(:beforeId AS uuid))) "
+            + "ORDER BY c.updated_at DESC, c.id DESC LIMIT :size")
+    List<CredExPartnerSummary> listPartnerSummaries(@Nullable String role, @Nullable UUID partnerId,
+            @Nullable Instant beforeUpdatedAt, @Nullable UUID beforeId, int size);
+
+    @Join(value = "schema", type = Join.Type.LEFT_FETCH)
+    @Join(value = "credDef", type = Join.Type.LEFT_FETCH)
+    List<BPACredentialExchange> listByIdIn(@NonNull Collection<UUID> id);
+}
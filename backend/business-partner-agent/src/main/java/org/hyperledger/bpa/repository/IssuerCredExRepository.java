@@ -21,20 +21,23 @@ import io.micronaut.core.annotation.NonNull;
 import io.micronaut.core.annotation.Nullable;
 import io.micronaut.data.annotation.Id;
 import io.micronaut.data.annotation.Join;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.annotation.Version;
 import io.micronaut.data.jdbc.annotation.JdbcRepository;
 import io.micronaut.data.model.query.builder.sql.Dialect;
 import io.micronaut.data.repository.CrudRepository;
 import org.hyperledger.aries.api.credentials.Credential;
 import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
 import org.hyperledger.bpa.model.BPACredentialExchange;
-import org.hyperledger.bpa.model.StateChangeDecorator;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @JdbcRepository(dialect = Dialect.POSTGRES)
-public interface IssuerCredExRepository extends CrudRepository<BPACredentialExchange, UUID> {
+public interface IssuerCredExRepository extends CrudRepository<BPACredentialExchange, UUID>, IssuerCredExReadQueries {
 
     @NonNull
     @Join(value = "schema", type = Join.Type.LEFT_FETCH)
@@ -53,27 +56,41 @@ public interface IssuerCredExRepository extends CrudRepository<BPACredentialExch
     @Join(value = "partner", type = Join.Type.LEFT_FETCH)
     Optional<BPACredentialExchange> findByCredentialExchangeId(@NonNull String credentialExchangeId);
 
-    int countIdByCredDefId(@NonNull UUID credDefId);
+    List<BPACredentialExchange> findByIdIn(@NonNull Collection<UUID> id);
 
-    @Join(value = "schema", type = Join.Type.LEFT_FETCH)
-    @Join(value = "credDef", type = Join.Type.LEFT_FETCH)
-    @Join(value = "partner", type = Join.Type.LEFT_FETCH)
-    List<BPACredentialExchange> listOrderByUpdatedAtDesc();
+    /**
+     * Issued credentials of a partner that can still be revoked
+     */
+    @Query("SELECT id FROM bpa_credential_exchange WHERE partner_id = :partnerId AND role = 'ISSUER' "
+            + "AND rev_reg_id IS NOT NULL AND cred_rev_id IS NOT NULL AND revoked IS NOT TRUE ORDER BY created_at")
+    List<UUID> findRevocableIdsByPartnerId(@NonNull UUID partnerId);
+
+    int countIdByCredDefId(@NonNull UUID credDefId);
 
     Number updateCredential(@Id UUID id, Credential credential);
 
-    Number updateAfterEventWithRevocationInfo(@Id UUID id,
+    Number updateAfterEventWithRevocationInfo(@Id UUID id, @Version Long version,
             CredentialExchangeState state,
-            StateChangeDecorator.StateToTimestamp<CredentialExchangeState> stateToTimestamp,
+            @Nullable Instant stateChangedAt,
+            @Nullable Instant issuedAt,
             @Nullable String revRegId,
             @Nullable String credRevId,
             @Nullable String errorMsg);
 
-    Number updateAfterEventNoRevocationInfo(@Id UUID id,
+    Number updateAfterEventNoRevocationInfo(@Id UUID id, @Version Long version,
             CredentialExchangeState state,
-            StateChangeDecorator.StateToTimestamp<CredentialExchangeState> stateToTimestamp,
+            @Nullable Instant stateChangedAt,
+            @Nullable Instant issuedAt,
             @Nullable String errorMsg);
 
+    /**
+     * The credential is already revoked at this point, so the update does not check
+     * the version, but still increments it
+     */
+    @Query("UPDATE bpa_credential_exchange SET revoked = true, state = 'REVOKED', state_changed_at = :stateChangedAt, "
+            + "version = version + 1 WHERE id = :id")
+    Number updateRevoked(UUID id, Instant stateChangedAt);
+
     Number updateRevocationInfo(@Id UUID id, String revRegId, @Nullable String credRevId);
 
     Number updateReferent(@Id UUID id, String referent);
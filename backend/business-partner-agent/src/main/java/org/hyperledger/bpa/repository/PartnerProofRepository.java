@@ -26,14 +26,13 @@ import io.micronaut.data.repository.CrudRepository;
 import org.hyperledger.aries.api.present_proof.PresentationExchangeState;
 import org.hyperledger.bpa.model.PartnerProof;
 
-import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 @JdbcRepository(dialect = Dialect.POSTGRES)
-public interface PartnerProofRepository extends CrudRepository<PartnerProof, UUID> {
+public interface PartnerProofRepository extends CrudRepository<PartnerProof, UUID>, PartnerProofReadQueries {
 
     @Override
     @NonNull
@@ -68,8 +67,4 @@ public interface PartnerProofRepository extends CrudRepository<PartnerProof, UUI
     long updateReceivedProof(@Id UUID id, Boolean valid, PresentationExchangeState state,
             Map<String, Object> proof);
 
-    Long countByStateEquals(PresentationExchangeState state);
-
-    Long countByStateEqualsAndCreatedAtAfter(PresentationExchangeState state, Instant createdAt);
-
 }
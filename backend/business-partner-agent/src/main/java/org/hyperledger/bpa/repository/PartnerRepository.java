@@ -22,21 +22,28 @@ import io.micronaut.core.annotation.Nullable;
 import io.micronaut.data.annotation.Id;
 import io.micronaut.data.annotation.Join;
 import io.micronaut.data.annotation.Query;
+import io.micronaut.data.annotation.Version;
 import io.micronaut.data.jdbc.annotation.JdbcRepository;
 import io.micronaut.data.model.query.builder.sql.Dialect;
 import io.micronaut.data.repository.CrudRepository;
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.bpa.model.Partner;
-import org.hyperledger.bpa.model.StateChangeDecorator;
+import org.hyperledger.bpa.model.converter.LazyJson;
 
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @JdbcRepository(dialect = Dialect.POSTGRES)
-public interface PartnerRepository extends CrudRepository<Partner, UUID> {
+public interface PartnerRepository extends CrudRepository<Partner, UUID>, PartnerReadQueries {
 
     // find
 
@@ -56,46 +63,76 @@ public interface PartnerRepository extends CrudRepository<Partner, UUID> {
 
     List<Partner> findByDidIn(List<String> did);
 
+    List<Partner> findByIdIn(Collection<UUID> id);
+
+    /**
+     * @param id         exclusive lower bound of the partner id
+     * @param unknownDid did of partners whose did is not known
+     * @param peerDids   like pattern of did's that are not on a ledger
+     * @param max        max number of partners
+     * @return partners with a did that might be resolved, ordered by id
+     */
+    @Query("SELECT * FROM partner WHERE id > :id AND did IS NOT NULL AND did != :unknownDid "
+            + "AND did NOT LIKE :peerDids ORDER BY id LIMIT :max")
+    List<Partner> findResolvableByIdGreaterThan(UUID id, String unknownDid, String peerDids, int max);
+
     Optional<Partner> findByInvitationMsgId(String invitationMsgId);
 
-    @Query("SELECT distinct partner.* FROM partner,jsonb_to_recordset(partner.supported_credentials->'wrapped') as items(seqno text) where items.seqno = :seqNo")
+    @Query("SELECT DISTINCT partner.* FROM partner INNER JOIN partner_supported_credential psc ON psc.partner_id = partner.id WHERE psc.seq_no = :seqNo")
     List<Partner> findBySupportedCredential(String seqNo);
 
     List<Partner> findByStateInAndTrustPingTrueAndAriesSupportTrue(List<ConnectionState> state);
 
+    @Query("SELECT connection_id FROM partner WHERE connection_id IS NOT NULL AND connection_id != ''")
+    List<String> findAllConnectionIds();
+
+    @Query("SELECT p.id FROM partner p JOIN partner_tag pt ON pt.partner_id = p.id JOIN tag t ON t.id = pt.tag_id "
+            + "WHERE t.name = :tag ORDER BY p.created_at")
+    List<UUID> findIdsByTagName(@NonNull String tag);
+
+    /**
+     * @param now current time
+     * @param max max number of connections
+     * @return connections of partners with trust ping enabled whose next ping is
+     *         due, the ones that were never pinged first
+     */
+    @Query("SELECT connection_id FROM partner WHERE trust_ping AND aries_support AND connection_id IS NOT NULL "
+            + "AND state IN ('ACTIVE', 'COMPLETED', 'PING_RESPONSE', 'PING_NO_RESPONSE') "
+            + "AND (next_ping_at IS NULL OR next_ping_at <= :now) ORDER BY next_ping_at NULLS FIRST LIMIT :max")
+    List<String> findConnectionIdsDueForPing(Instant now, int max);
+
     // delete
 
-    @Query("delete from partner_tag where partner_id = :id; delete from partner where id = :id")
+    @Query("delete from partner_tag where partner_id = :id; "
+            + "delete from state_transition where entity_id = :id "
+            + "or entity_id in (select id from partner_proof where partner_id = :id) "
+            + "or entity_id in (select id from bpa_credential_exchange where partner_id = :id); "
+            + "delete from partner where id = :id")
     void deleteByPartnerId(@NonNull UUID id);
 
     // count
 
-    Long countByStateNotEquals(ConnectionState state);
-
     Long countByCreatedAtAfter(Instant createdAt);
 
-    Long countByStateNotEqualsAndCreatedAtAfter(ConnectionState state, Instant createdAt);
-
     // update
 
-    void updateState(@Id UUID id, ConnectionState state,
-            StateChangeDecorator.StateToTimestamp<ConnectionState> stateToTimestamp);
+    void updateState(@Id UUID id, @Version Long version, ConnectionState state,
+            @Nullable Instant stateChangedAt);
 
-    void updateStateAndLabel(@Id UUID id, ConnectionState state,
-            StateChangeDecorator.StateToTimestamp<ConnectionState> stateToTimestamp, @Nullable String label);
+    void updateStateAndLabel(@Id UUID id, @Version Long version, ConnectionState state,
+            @Nullable Instant stateChangedAt, @Nullable String label);
 
     int updateAlias(@Id UUID id, @Nullable String alias, @Nullable Boolean trustPing);
 
     int updateDid(@Id UUID id, String did);
 
-    Number updateByDid(String did, Map<String, Object> supportedCredentials);
-
     Number updateVerifiablePresentation(@Id UUID id,
-            Map<String, Object> verifiablePresentation, @Nullable Boolean valid,
-            String label, String did);
+            LazyJson<VerifiablePresentation<VerifiableIndyCredential>> verifiablePresentation,
+            @Nullable Boolean valid, String label, String did);
 
     Number updateVerifiablePresentation(@Id UUID id,
-            Map<String, Object> verifiablePresentation, @Nullable Boolean valid);
+            LazyJson<VerifiablePresentation<VerifiableIndyCredential>> verifiablePresentation,
+            @Nullable Boolean valid);
 
     // The queries below are native queries to prevent changes to the last updated
     // timestamp. As this timestamp indicates user interaction, whereas the queries
@@ -104,7 +141,110 @@ public interface PartnerRepository extends CrudRepository<Partner, UUID> {
     @Query("UPDATE partner SET state = :newState WHERE connection_id = :connectionId AND (state IS NULL OR state != :newState)")
     void updateStateByConnectionId(String connectionId, ConnectionState newState);
 
+    @Query("UPDATE partner SET verifiable_presentation = CAST(:verifiablePresentation AS jsonb), valid = :valid, profile_etag = :profileEtag, profile_last_modified = :profileLastModified WHERE id = :id")
+    void updateProfile(@Id UUID id, String verifiablePresentation, @Nullable Boolean valid,
+            @Nullable String profileEtag, @Nullable String profileLastModified);
+
+    @Query("UPDATE partner SET profile_etag = :profileEtag, profile_last_modified = :profileLastModified WHERE id = :id")
+    void updateProfileValidators(@Id UUID id, @Nullable String profileEtag, @Nullable String profileLastModified);
+
     @Query("UPDATE partner SET state = :newState, last_seen = :lastSeen WHERE connection_id = :connectionId")
     void updateStateAndLastSeenByConnectionId(String connectionId, ConnectionState newState, Instant lastSeen);
 
+    // Trust ping state changes of many partners are written with one statement,
+    // the values per partner are passed in as arrays. Timestamps are passed as
+    // text, there is no array type for them, see toTimestamps(Collection).
+
+    // the previous ping of the partner was not answered
+    String PING_NO_RESPONSE = "p.ping_sent_at IS NOT NULL AND (p.last_seen IS NULL OR p.last_seen < p.ping_sent_at)";
+
+    /**
+     * Starts a ping round for the given connections. The outcome of the previous
+     * ping is evaluated: partners that did not answer it are set to
+     * PING_NO_RESPONSE and their next ping is delayed by twice the time of the one
+     * before, up to the max interval. Partners that answered are pinged again after
+     * the interval. A random delay of up to a quarter of the interval is added, so
+     * that partners do not stay in the same round forever. The time the new ping
+     * was sent is stored separately once it went out, see
+     * {@link #recordPings(Map)}, so a ping that could not be sent is not awaited.
+     *
+     * @param connectionIds the connections that are pinged now
+     * @param startedAt     start of the round
+     * @param interval      time between two pings of a partner that answers
+     * @param maxInterval   upper limit of the back off
+     * @return number of updated partners
+     */
+    default int startPingRound(@NonNull List<String> connectionIds, @NonNull Instant startedAt,
+            @NonNull Duration interval, @NonNull Duration maxInterval) {
+        if (connectionIds.isEmpty()) {
+            return 0;
+        }
+        long maxJitter = Math.max(1, interval.toMillis() / 4);
+        return updatePingRound(connectionIds.toArray(String[]::new),
+                ThreadLocalRandom.current().longs(connectionIds.size(), 0, maxJitter).toArray(),
+                startedAt, interval.toMillis(), maxInterval.toMillis());
+    }
+
+    @Query("UPDATE partner p SET "
+            + "state = CASE WHEN " + PING_NO_RESPONSE + " THEN 'PING_NO_RESPONSE' ELSE p.state END, "
+            + "ping_failures = CASE WHEN " + PING_NO_RESPONSE + " THEN p.ping_failures + 1 ELSE 0 END, "
+            + "next_ping_at = CAST(:startedAt AS timestamp) + (LEAST(:intervalMs * power(2, CASE WHEN "
+            + PING_NO_RESPONSE + " THEN LEAST(p.ping_failures + 1, 20) ELSE 0 END), :maxIntervalMs) "
+            + "+ v.jitter_ms) * interval '1 millisecond' "
+            + "FROM unnest(CAST(:connectionIds AS text[]), CAST(:jitterMs AS bigint[])) AS v(connection_id, jitter_ms) "
+            + "WHERE p.connection_id = v.connection_id")
+    int updatePingRound(String[] connectionIds, long[] jitterMs, Instant startedAt, long intervalMs,
+            long maxIntervalMs);
+
+    /**
+     * Stores when the pings were sent, only pings that reached aca-py are passed
+     * in.
+     *
+     * @param sentAt connection id, time the ping was sent
+     * @return number of updated partners
+     */
+    default int recordPings(@NonNull Map<String, Instant> sentAt) {
+        if (sentAt.isEmpty()) {
+            return 0;
+        }
+        return updatePingSentAt(sentAt.keySet().toArray(String[]::new), toTimestamps(sentAt.values()));
+    }
+
+    @Query("UPDATE partner p SET ping_sent_at = v.sent_at "
+            + "FROM unnest(CAST(:connectionIds AS text[]), CAST(:sentAt AS timestamp[])) AS v(connection_id, sent_at) "
+            + "WHERE p.connection_id = v.connection_id")
+    int updatePingSentAt(String[] connectionIds, String[] sentAt);
+
+    /**
+     * Stores received ping responses, and the round trip time if the response is
+     * the first one since the last ping.
+     *
+     * @param receivedAt connection id, time the response was received
+     * @return number of updated partners
+     */
+    default int recordPongs(@NonNull Map<String, Instant> receivedAt) {
+        if (receivedAt.isEmpty()) {
+            return 0;
+        }
+        return updatePingResponse(receivedAt.keySet().toArray(String[]::new), toTimestamps(receivedAt.values()));
+    }
+
+    @Query("UPDATE partner p SET "
+            + "state = 'PING_RESPONSE', last_seen = v.received_at, ping_failures = 0, "
+            + "ping_rtt_ms = CASE WHEN " + PING_NO_RESPONSE + " AND v.received_at >= p.ping_sent_at "
+            + "THEN CAST(EXTRACT(EPOCH FROM v.received_at - p.ping_sent_at) * 1000 AS integer) "
+            + "ELSE p.ping_rtt_ms END "
+            + "FROM unnest(CAST(:connectionIds AS text[]), CAST(:receivedAt AS timestamp[])) "
+            + "AS v(connection_id, received_at) WHERE p.connection_id = v.connection_id")
+    int updatePingResponse(String[] connectionIds, String[] receivedAt);
+
+    /**
+     * @param instants points in time
+     * @return the instants in the same order and in the same local time that a
+     *         single {@link Instant} parameter is written with
+     */
+    static String[] toTimestamps(@NonNull Collection<Instant> instants) {
+        return instants.stream().map(i -> Timestamp.from(i).toString()).toArray(String[]::new);
+    }
+
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.CrudRepository;
+import io.micronaut.transaction.annotation.TransactionalAdvice;
+import org.hyperledger.bpa.model.PartnerSupportedCredential;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface PartnerSupportedCredentialRepository extends CrudRepository<PartnerSupportedCredential, UUID> {
+
+    List<PartnerSupportedCredential> findByPartnerId(@NonNull UUID partnerId);
+
+    List<PartnerSupportedCredential> findByPartnerIdIn(@NonNull Collection<UUID> partnerId);
+
+    void deleteByPartnerIdIn(@NonNull Collection<UUID> partnerId);
+
+    /**
+     * Replaces the supported credentials of the given partners in one transaction,
+     * so concurrent readers never see the partners without them.
+     *
+     * @param partnerIds  partners whose supported credentials are replaced
+     * @param credentials the new supported credentials of these partners
+     */
+    @TransactionalAdvice
+    default void replaceByPartnerIdIn(@NonNull Collection<UUID> partnerIds,
+            @NonNull List<PartnerSupportedCredential> credentials) {
+        if (partnerIds.isEmpty()) {
+            return;
+        }
+        deleteByPartnerIdIn(partnerIds);
+        saveAll(credentials);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import org.hyperledger.bpa.model.ProofRequestJob;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface ProofRequestJobRepository extends BulkJobRepository<ProofRequestJob> {
+
+    @Override
+    @Query("UPDATE proof_request_job SET owner = :owner, heartbeat_at = :now WHERE id = :id AND state = 'RUNNING' "
+            + "AND (owner IS NULL OR owner = :owner OR heartbeat_at < :expiredBefore)")
+    int claim(@NonNull UUID id, @NonNull String owner, @NonNull Instant now, @NonNull Instant expiredBefore);
+
+    @Override
+    @Query("UPDATE proof_request_job SET heartbeat_at = :now WHERE id = :id AND owner = :owner")
+    int renew(@NonNull UUID id, @NonNull String owner, @NonNull Instant now);
+
+    @Override
+    @Query("UPDATE proof_request_job SET owner = NULL WHERE id = :id AND owner = :owner")
+    void release(@NonNull UUID id, @NonNull String owner);
+
+    @Override
+    @Query("SELECT id FROM proof_request_job WHERE state = 'RUNNING' AND (owner IS NULL OR heartbeat_at < :expiredBefore)")
+    List<UUID> findUnclaimed(@NonNull Instant expiredBefore);
+
+    @Override
+    @Query("UPDATE proof_request_job SET failures = failures + 1, "
+            + "state = CASE WHEN failures + 1 >= :maxFailures THEN 'FAILED' ELSE state END WHERE id = :id")
+    void recordFailure(@NonNull UUID id, int maxFailures);
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.Pageable;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.model.RevocationItem;
+
+import java.util.List;
+import java.util.UUID;
+
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface RevocationItemRepository extends BulkItemRepository<RevocationItem> {
+
+    /** items that still have to be revoked in aca-py */
+    List<RevocationItem> findByJobIdAndStateAndRevokedAtIsNullOrderByPosition(@NonNull UUID jobId,
+            @NonNull JobItemState state, @NonNull Pageable pageable);
+
+    /** items that are revoked in aca-py, but not published yet */
+    List<RevocationItem> findByJobIdAndStateAndRevokedAtIsNotNull(@NonNull UUID jobId, @NonNull JobItemState state);
+
+    long countByJobIdAndStateAndRevokedAtIsNotNull(@NonNull UUID jobId, @NonNull JobItemState state);
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.CrudRepository;
+import org.hyperledger.bpa.model.ScheduledJob;
+
+import java.time.Instant;
+import java.util.List;
+
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface ScheduledJobRepository extends CrudRepository<ScheduledJob, String> {
+
+    List<ScheduledJob> listOrderByName();
+
+    @Query("INSERT INTO scheduled_job (name) VALUES (:name) ON CONFLICT (name) DO NOTHING")
+    void createIfAbsent(@NonNull String name);
+
+    /**
+     * Claims the next run of the job, only one node can claim a run per period and
+     * only once the previous run has finished or was abandoned
+     *
+     * @param name              the job name
+     * @param node              the node that runs the job
+     * @param startedAt         start of the run
+     * @param lastStartedBefore the previous run must have started before
+     * @param abandonedBefore   a previous run that started before and did not
+     *                          finish is not waited for
+     * @return 1 if the run was claimed, 0 otherwise
+     */
+    @Query("UPDATE scheduled_job SET node = :node, last_started_at = :startedAt, runs = runs + 1 "
+            + "WHERE name = :name AND (last_started_at IS NULL OR (last_started_at < :lastStartedBefore "
+            + "AND (last_finished_at >= last_started_at OR last_started_at < :abandonedBefore)))")
+    int claimRun(@NonNull String name, @NonNull String node, @NonNull Instant startedAt,
+            @NonNull Instant lastStartedBefore, @NonNull Instant abandonedBefore);
+
+    @Query("UPDATE scheduled_job SET last_finished_at = :finishedAt, last_duration_ms = :durationMs, "
+            + "last_success = :success, last_error = :error WHERE name = :name")
+    void updateLastRun(@NonNull String name, @NonNull Instant finishedAt, long durationMs, boolean success,
+            @Nullable String error);
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository.replica;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.data.annotation.Repository;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.GenericRepository;
+import org.hyperledger.bpa.config.ReplicaDataSourceFactory;
+import org.hyperledger.bpa.model.PartnerProof;
+import org.hyperledger.bpa.repository.PartnerProofReadQueries;
+
+import java.util.UUID;
+
+/**
+ * Presentation exchange counts served by the read replica
+ */
+@JdbcRepository(dialect = Dialect.POSTGRES)
+@Repository(ReplicaDataSourceFactory.REPLICA)
+@Requires(property = "bpa.pg.replica.url", pattern = ".+")
+public interface ReplicaPartnerProofRepository extends GenericRepository<PartnerProof, UUID>, PartnerProofReadQueries {
+}
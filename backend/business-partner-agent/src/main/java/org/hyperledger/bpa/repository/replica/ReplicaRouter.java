@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository.replica;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.transaction.jdbc.DelegatingDataSource;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.config.ReplicaDataSourceFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Decides if a read only query runs on the replica or on the primary. The
+ * replica is only used while its replay lag is below the configured maximum, if
+ * a query fails on the replica it is repeated on the primary and the replica is
+ * not used until the next successful lag check.
+ */
+@Slf4j
+@Singleton
+public class ReplicaRouter {
+
+    // 0 if everything received has been replayed, or if the database is not a
+    // standby
+    static final String LAG_QUERY = "SELECT COALESCE(CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() "
+            + "THEN 0 ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END, 0)";
+
+    @Inject
+    @Named(ReplicaDataSourceFactory.REPLICA)
+    Optional<DataSource> replicaDataSource;
+
+    @Value("${bpa.pg.replica.maxLag:30s}")
+    Duration maxLag;
+
+    private volatile boolean replicaAvailable = false;
+
+    /**
+     * Runs the query on the replica if it is in sync, otherwise on the primary.
+     *
+     * @param primary the primary repository
+     * @param replica the replica repository, empty if no replica is configured
+     * @param query   the read only query
+     * @param <Q>     the query interface both repositories implement
+     * @param <T>     the result type
+     * @return the query result
+     */
+    public <Q, T> T read(@NonNull Q primary, @NonNull Optional<? extends Q> replica, @NonNull Function<Q, T> query) {
+        if (replica.isPresent() && replicaAvailable) {
+            try {
+                return query.apply(replica.get());
+            } catch (RuntimeException e) {
+                replicaAvailable = false;
+                log.warn("Query on the read replica failed, falling back to the primary", e);
+            }
+        }
+        return query.apply(primary);
+    }
+
+    @Scheduled(fixedDelay = "10s")
+    void checkReplicaLag() {
+        replicaDataSource.ifPresent(ds -> {
+            try (Connection c = DelegatingDataSource.unwrapDataSource(ds).getConnection();
+                    Statement st = c.createStatement();
+                    ResultSet rs = st.executeQuery(LAG_QUERY)) {
+                rs.next();
+                Duration lag = Duration.ofMillis(Math.round(rs.getDouble(1) * 1000));
+                boolean inSync = lag.compareTo(maxLag) <= 0;
+                if (inSync != replicaAvailable) {
+                    log.info("Read replica lag: {}, replica is {}", lag, inSync ? "used" : "not used");
+                }
+                replicaAvailable = inSync;
+            } catch (Exception e) {
+                replicaAvailable = false;
+                log.warn("Could not check the read replica lag: {}", e.getMessage());
+            }
+        });
+    }
+
+    boolean isReplicaAvailable() {
+        return replicaAvailable;
+    }
+}
@@ -0,0 +1,25 @@
+CREATE TABLE partner_import_job (
+    id uuid PRIMARY KEY,
+    state character varying(255) NOT NULL,
+    trust_ping boolean,
+    total integer NOT NULL,
+    created_at timestamp without time zone,
+    updated_at timestamp without time zone
+);
+
+CREATE TABLE partner_import_item (
+    id uuid PRIMARY KEY,
+    job_id uuid NOT NULL,
+    position integer NOT NULL,
+    did character varying(255) NOT NULL,
+    alias character varying(255),
+    tag jsonb,
+    state character varying(255) NOT NULL,
+    error text,
+    partner_id uuid,
+    updated_at timestamp without time zone,
+    CONSTRAINT partner_import_item_fk_1
+        FOREIGN KEY(job_id) REFERENCES partner_import_job ON DELETE CASCADE
+);
+
+CREATE INDEX partner_import_item_job_state_idx ON partner_import_item (job_id, state, position);
@@ -0,0 +1,22 @@
+CREATE TABLE partner_supported_credential (
+    id uuid PRIMARY KEY,
+    partner_id uuid NOT NULL,
+    seq_no character varying(255) NOT NULL,
+    credential_definition_id character varying(255) NOT NULL,
+    type character varying(255),
+    CONSTRAINT partner_supported_credential_fk_1
+        FOREIGN KEY(partner_id) REFERENCES partner ON DELETE CASCADE,
+    CONSTRAINT partner_supported_credential_uq_1
+        UNIQUE (partner_id, credential_definition_id)
+);
+
+CREATE INDEX partner_supported_credential_seq_no_idx ON partner_supported_credential (seq_no);
+CREATE INDEX partner_supported_credential_cred_def_id_idx ON partner_supported_credential (credential_definition_id);
+
+INSERT INTO partner_supported_credential (id, partner_id, seq_no, credential_definition_id, type)
+SELECT md5(partner.id::text || items."credentialDefinitionId")::uuid, partner.id, items.seqno,
+       items."credentialDefinitionId", items.type
+FROM partner, jsonb_to_recordset(partner.supported_credentials->'wrapped')
+    AS items(seqno text, "credentialDefinitionId" text, type text)
+WHERE items.seqno IS NOT NULL AND items."credentialDefinitionId" IS NOT NULL
+ON CONFLICT DO NOTHING;
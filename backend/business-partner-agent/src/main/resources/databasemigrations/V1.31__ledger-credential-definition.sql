@@ -0,0 +1,12 @@
+CREATE TABLE ledger_credential_definition (
+    id uuid PRIMARY KEY,
+    created_at timestamp without time zone,
+    schema_seq_no character varying(255) NOT NULL,
+    credential_definition_id character varying(255) NOT NULL UNIQUE,
+    did character varying(255) NOT NULL,
+    type character varying(255),
+    txn_seq_no integer
+);
+
+CREATE INDEX ledger_credential_definition_schema_idx ON ledger_credential_definition (schema_seq_no, txn_seq_no);
+CREATE INDEX ledger_credential_definition_did_idx ON ledger_credential_definition (did);
@@ -0,0 +1,2 @@
+ALTER TABLE partner ADD COLUMN profile_etag character varying(255);
+ALTER TABLE partner ADD COLUMN profile_last_modified character varying(255);
@@ -0,0 +1,54 @@
+CREATE TABLE state_transition (
+    id bigserial PRIMARY KEY,
+    entity_type character varying(255) NOT NULL,
+    entity_id uuid NOT NULL,
+    state character varying(255) NOT NULL,
+    ts timestamp without time zone NOT NULL
+);
+
+CREATE INDEX state_transition_entity_idx ON state_transition (entity_id, ts);
+
+ALTER TABLE partner ADD COLUMN state_changed_at timestamp without time zone;
+ALTER TABLE partner_proof ADD COLUMN state_changed_at timestamp without time zone;
+ALTER TABLE bpa_credential_exchange ADD COLUMN state_changed_at timestamp without time zone;
+ALTER TABLE bpa_credential_exchange ADD COLUMN issued_at timestamp without time zone;
+
+-- instants were either written as epoch seconds or as iso strings, both are
+-- stored as utc independent of the session time zone
+CREATE FUNCTION state_ts(value jsonb) RETURNS timestamp without time zone AS $$
+    SELECT CASE WHEN jsonb_typeof(value) = 'number'
+        THEN to_timestamp((value #>> '{}')::double precision) AT TIME ZONE 'UTC'
+        ELSE (value #>> '{}')::timestamp with time zone AT TIME ZONE 'UTC'
+    END
+$$ LANGUAGE SQL IMMUTABLE;
+
+INSERT INTO state_transition (entity_type, entity_id, state, ts)
+SELECT 'PARTNER', p.id, s.key, state_ts(s.value)
+FROM partner p, jsonb_each(p.state_to_timestamp -> 'stateToTimestamp') s
+WHERE jsonb_typeof(p.state_to_timestamp -> 'stateToTimestamp') = 'object';
+
+INSERT INTO state_transition (entity_type, entity_id, state, ts)
+SELECT 'PROOF_EXCHANGE', p.id, s.key, state_ts(s.value)
+FROM partner_proof p, jsonb_each(p.state_to_timestamp -> 'stateToTimestamp') s
+WHERE jsonb_typeof(p.state_to_timestamp -> 'stateToTimestamp') = 'object';
+
+INSERT INTO state_transition (entity_type, entity_id, state, ts)
+SELECT 'CREDENTIAL_EXCHANGE', c.id, s.key, state_ts(s.value)
+FROM bpa_credential_exchange c, jsonb_each(c.state_to_timestamp -> 'stateToTimestamp') s
+WHERE jsonb_typeof(c.state_to_timestamp -> 'stateToTimestamp') = 'object';
+
+UPDATE partner p SET state_changed_at = t.ts
+FROM (SELECT entity_id, max(ts) AS ts FROM state_transition GROUP BY entity_id) t WHERE t.entity_id = p.id;
+UPDATE partner_proof p SET state_changed_at = t.ts
+FROM (SELECT entity_id, max(ts) AS ts FROM state_transition GROUP BY entity_id) t WHERE t.entity_id = p.id;
+UPDATE bpa_credential_exchange c SET state_changed_at = t.ts
+FROM (SELECT entity_id, max(ts) AS ts FROM state_transition GROUP BY entity_id) t WHERE t.entity_id = c.id;
+UPDATE bpa_credential_exchange c SET issued_at = t.ts
+FROM (SELECT entity_id, min(ts) AS ts FROM state_transition
+      WHERE state IN ('CREDENTIAL_ACKED', 'DONE') GROUP BY entity_id) t WHERE t.entity_id = c.id;
+
+DROP FUNCTION state_ts(jsonb);
+
+ALTER TABLE partner DROP COLUMN state_to_timestamp;
+ALTER TABLE partner_proof DROP COLUMN state_to_timestamp;
+ALTER TABLE bpa_credential_exchange DROP COLUMN state_to_timestamp;
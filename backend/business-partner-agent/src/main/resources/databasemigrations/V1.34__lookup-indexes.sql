@@ -0,0 +1,16 @@
+-- lookups that run on (almost) every aca-py event
+CREATE INDEX partner_connection_id_idx ON partner (connection_id) WHERE connection_id IS NOT NULL;
+CREATE INDEX partner_invitation_msg_id_idx ON partner (invitation_msg_id) WHERE invitation_msg_id IS NOT NULL;
+CREATE INDEX partner_did_idx ON partner (did);
+
+CREATE INDEX bpa_credential_exchange_credential_exchange_id_idx ON bpa_credential_exchange (credential_exchange_id);
+CREATE INDEX bpa_credential_exchange_referent_idx ON bpa_credential_exchange (referent) WHERE referent IS NOT NULL;
+CREATE INDEX bpa_credential_exchange_partner_id_idx ON bpa_credential_exchange (partner_id);
+
+CREATE INDEX partner_proof_presentation_exchange_id_idx ON partner_proof (presentation_exchange_id);
+CREATE INDEX partner_proof_thread_id_idx ON partner_proof (thread_id) WHERE thread_id IS NOT NULL;
+CREATE INDEX partner_proof_partner_id_idx ON partner_proof (partner_id, role);
+
+CREATE INDEX activity_link_id_idx ON activity (link_id, type, role);
+
+CREATE INDEX chat_message_partner_id_idx ON chat_message (partner_id, created_at);
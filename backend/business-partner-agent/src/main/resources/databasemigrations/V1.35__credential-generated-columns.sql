@@ -0,0 +1,20 @@
+-- extracted from the credential json, so lookups do not have to parse it
+ALTER TABLE bpa_credential_exchange
+    ADD COLUMN credential_schema_id character varying(255) GENERATED ALWAYS AS (credential->>'schemaId') STORED,
+    ADD COLUMN credential_cred_def_id character varying(255)
+        GENERATED ALWAYS AS (credential->>'credentialDefinitionId') STORED,
+    ADD COLUMN credential_rev_reg_id character varying(255) GENERATED ALWAYS AS (credential->>'revRegId') STORED;
+
+CREATE INDEX bpa_credential_exchange_credential_ids_idx
+    ON bpa_credential_exchange (credential_schema_id, credential_cred_def_id) WHERE role = 'HOLDER';
+CREATE INDEX bpa_credential_exchange_credential_rev_reg_idx
+    ON bpa_credential_exchange (credential_rev_reg_id) WHERE credential_rev_reg_id IS NOT NULL;
+
+-- holder credentials that need a revocation check
+CREATE INDEX bpa_credential_exchange_not_revoked_idx
+    ON bpa_credential_exchange (referent)
+    WHERE type = 'INDY' AND role = 'HOLDER' AND referent IS NOT NULL AND revoked IS NOT TRUE;
+
+-- attribute value search, e.g. credential->'attrs' @> '{"name": "value"}'
+CREATE INDEX bpa_credential_exchange_attrs_idx
+    ON bpa_credential_exchange USING GIN ((credential->'attrs') jsonb_path_ops);
@@ -0,0 +1,62 @@
+-- Terminal credential exchanges are moved here by the retention job. The archive is partitioned by month, so old
+-- months can be detached or dropped without touching the hot table. Columns are copied by name, columns that are
+-- added to bpa_credential_exchange later on are only archived if they are added here and to both column lists of
+-- archive_credential_exchanges.
+CREATE TABLE bpa_credential_exchange_archive (
+    LIKE bpa_credential_exchange INCLUDING DEFAULTS,
+    archived_at timestamp without time zone NOT NULL DEFAULT now()
+) PARTITION BY RANGE (created_at);
+
+-- exchanges without a created_at, monthly partitions are created on demand
+CREATE TABLE bpa_credential_exchange_archive_default PARTITION OF bpa_credential_exchange_archive DEFAULT;
+
+CREATE INDEX bpa_credential_exchange_archive_partner_idx ON bpa_credential_exchange_archive (partner_id);
+
+-- Moves up to batch_size terminal exchanges whose last state change is before older_than into the archive:
+-- declined and failed exchanges, revoked credentials and issued credentials that can not be revoked.
+-- Held credentials that were received are the wallet and stay, as do issued credentials that can still be revoked.
+CREATE FUNCTION archive_credential_exchanges(older_than timestamp without time zone, batch_size integer)
+RETURNS integer AS $$
+DECLARE
+    ids uuid[];
+    month timestamp without time zone;
+    moved integer;
+BEGIN
+    SELECT array_agg(id) INTO ids FROM (
+        SELECT id FROM bpa_credential_exchange
+        WHERE COALESCE(state_changed_at, updated_at, created_at) < older_than
+            AND (state IN ('DECLINED', 'PROBLEM')
+                OR (role = 'ISSUER' AND (state = 'REVOKED'
+                    OR (state IN ('CREDENTIAL_ACKED', 'DONE') AND rev_reg_id IS NULL))))
+        ORDER BY created_at
+        LIMIT batch_size
+        FOR UPDATE SKIP LOCKED) candidates;
+    IF ids IS NULL THEN
+        RETURN 0;
+    END IF;
+
+    FOR month IN SELECT DISTINCT date_trunc('month', created_at) FROM bpa_credential_exchange
+            WHERE id = ANY(ids) AND created_at IS NOT NULL LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF bpa_credential_exchange_archive '
+            || 'FOR VALUES FROM (%L) TO (%L)',
+            'bpa_credential_exchange_archive_' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+    END LOOP;
+
+    WITH moved_rows AS (DELETE FROM bpa_credential_exchange WHERE id = ANY(ids) RETURNING *)
+    INSERT INTO bpa_credential_exchange_archive (id, created_at, updated_at, schema_id, cred_def_id, partner_id,
+        type, label, thread_id, credential_exchange_id, role, state, state_changed_at, issued_at, exchange_version,
+        credential_proposal, credential_offer, credential, cred_rev_id, rev_reg_id, revoked, error_msg, is_public,
+        issuer, referent, credential_schema_id, credential_cred_def_id, credential_rev_reg_id, archived_at)
+    SELECT m.id, m.created_at, m.updated_at, m.schema_id, m.cred_def_id, m.partner_id,
+        m.type, m.label, m.thread_id, m.credential_exchange_id, m.role, m.state, m.state_changed_at, m.issued_at,
+        m.exchange_version, m.credential_proposal, m.credential_offer, m.credential, m.cred_rev_id, m.rev_reg_id,
+        m.revoked, m.error_msg, m.is_public, m.issuer, m.referent, m.credential_schema_id, m.credential_cred_def_id,
+        m.credential_rev_reg_id, now()
+    FROM moved_rows m;
+    GET DIAGNOSTICS moved = ROW_COUNT;
+
+    -- the state history is not archived
+    DELETE FROM state_transition WHERE entity_id = ANY(ids);
+    RETURN moved;
+END;
+$$ LANGUAGE plpgsql;
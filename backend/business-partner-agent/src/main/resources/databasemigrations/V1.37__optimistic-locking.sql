@@ -0,0 +1,4 @@
+-- incremented on every versioned update, an update with an outdated version changes nothing
+ALTER TABLE partner ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE partner_proof ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE bpa_credential_exchange ADD COLUMN version bigint NOT NULL DEFAULT 0;
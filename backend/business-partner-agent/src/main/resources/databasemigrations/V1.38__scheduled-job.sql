@@ -0,0 +1,13 @@
+-- last run of the scheduled jobs that run on only one node of the cluster per period
+CREATE TABLE scheduled_job (
+    name character varying(255) PRIMARY KEY,
+    -- second key of the advisory lock that is held while the job runs
+    lock_key serial UNIQUE,
+    node character varying(255),
+    last_started_at timestamp without time zone,
+    last_finished_at timestamp without time zone,
+    last_duration_ms bigint,
+    last_success boolean,
+    last_error text,
+    runs bigint NOT NULL DEFAULT 0
+);
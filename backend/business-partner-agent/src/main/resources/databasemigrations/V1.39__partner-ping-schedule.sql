@@ -0,0 +1,8 @@
+-- per partner trust ping schedule, written by the ping job only
+ALTER TABLE partner ADD COLUMN ping_sent_at timestamp without time zone;
+ALTER TABLE partner ADD COLUMN next_ping_at timestamp without time zone;
+-- rounds in a row without a response, the ping interval doubles with each one
+ALTER TABLE partner ADD COLUMN ping_failures integer NOT NULL DEFAULT 0;
+ALTER TABLE partner ADD COLUMN ping_rtt_ms integer;
+
+CREATE INDEX partner_next_ping_at_idx ON partner (next_ping_at NULLS FIRST) WHERE trust_ping;
@@ -0,0 +1,25 @@
+CREATE TABLE revocation_job (
+    id uuid PRIMARY KEY,
+    state character varying(255) NOT NULL,
+    total integer NOT NULL,
+    created_at timestamp without time zone,
+    updated_at timestamp without time zone
+);
+
+CREATE TABLE revocation_item (
+    id uuid PRIMARY KEY,
+    job_id uuid NOT NULL,
+    position integer NOT NULL,
+    credential_exchange_id uuid NOT NULL,
+    rev_reg_id character varying(255),
+    cred_rev_id character varying(255),
+    state character varying(255) NOT NULL,
+    -- revoked in aca-py, but not published to the ledger yet
+    revoked_at timestamp without time zone,
+    error text,
+    updated_at timestamp without time zone,
+    CONSTRAINT revocation_item_fk_1
+        FOREIGN KEY(job_id) REFERENCES revocation_job ON DELETE CASCADE
+);
+
+CREATE INDEX revocation_item_job_state_idx ON revocation_item (job_id, state, position);
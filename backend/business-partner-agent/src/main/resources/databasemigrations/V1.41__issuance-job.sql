@@ -0,0 +1,25 @@
+CREATE TABLE issuance_job (
+    id uuid PRIMARY KEY,
+    state character varying(255) NOT NULL,
+    cred_def_id uuid NOT NULL,
+    exchange_version character varying(255),
+    total integer NOT NULL,
+    created_at timestamp without time zone,
+    updated_at timestamp without time zone
+);
+
+CREATE TABLE issuance_item (
+    id uuid PRIMARY KEY,
+    job_id uuid NOT NULL,
+    position integer NOT NULL,
+    partner_id uuid NOT NULL,
+    document jsonb NOT NULL,
+    state character varying(255) NOT NULL,
+    credential_exchange_id uuid,
+    error text,
+    updated_at timestamp without time zone,
+    CONSTRAINT issuance_item_fk_1
+        FOREIGN KEY(job_id) REFERENCES issuance_job ON DELETE CASCADE
+);
+
+CREATE INDEX issuance_item_job_state_idx ON issuance_item (job_id, state, position);
@@ -0,0 +1,3 @@
+-- keyset pagination of the credential exchange listing
+CREATE INDEX bpa_credential_exchange_role_updated_idx ON bpa_credential_exchange (role, updated_at DESC, id DESC);
+CREATE INDEX bpa_credential_exchange_partner_updated_idx ON bpa_credential_exchange (partner_id, updated_at DESC, id DESC);
@@ -0,0 +1,25 @@
+CREATE TABLE proof_request_job (
+    id uuid PRIMARY KEY,
+    state character varying(255) NOT NULL,
+    proof_template_id uuid NOT NULL,
+    tag character varying(255) NOT NULL,
+    exchange_version character varying(255),
+    total integer NOT NULL,
+    created_at timestamp without time zone,
+    updated_at timestamp without time zone
+);
+
+CREATE TABLE proof_request_item (
+    id uuid PRIMARY KEY,
+    job_id uuid NOT NULL,
+    position integer NOT NULL,
+    partner_id uuid NOT NULL,
+    state character varying(255) NOT NULL,
+    partner_proof_id uuid,
+    error text,
+    updated_at timestamp without time zone,
+    CONSTRAINT proof_request_item_fk_1
+        FOREIGN KEY(job_id) REFERENCES proof_request_job ON DELETE CASCADE
+);
+
+CREATE INDEX proof_request_item_job_state_idx ON proof_request_item (job_id, state, position);
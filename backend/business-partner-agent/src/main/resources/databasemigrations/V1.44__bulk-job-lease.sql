@@ -0,0 +1,12 @@
+-- node that runs the job, the lease expires if the heartbeat is not renewed
+ALTER TABLE partner_import_job ADD COLUMN owner character varying(255);
+ALTER TABLE partner_import_job ADD COLUMN heartbeat_at timestamp without time zone;
+
+ALTER TABLE revocation_job ADD COLUMN owner character varying(255);
+ALTER TABLE revocation_job ADD COLUMN heartbeat_at timestamp without time zone;
+
+ALTER TABLE issuance_job ADD COLUMN owner character varying(255);
+ALTER TABLE issuance_job ADD COLUMN heartbeat_at timestamp without time zone;
+
+ALTER TABLE proof_request_job ADD COLUMN owner character varying(255);
+ALTER TABLE proof_request_job ADD COLUMN heartbeat_at timestamp without time zone;
@@ -0,0 +1,2 @@
+-- replaced by partner_supported_credential, no longer written since the incremental ledger sync
+ALTER TABLE partner DROP COLUMN supported_credentials;
@@ -0,0 +1,5 @@
+-- failed runs of a job, the job is given up after bpa.job.maxFailures
+ALTER TABLE partner_import_job ADD COLUMN failures integer NOT NULL DEFAULT 0;
+ALTER TABLE revocation_job ADD COLUMN failures integer NOT NULL DEFAULT 0;
+ALTER TABLE issuance_job ADD COLUMN failures integer NOT NULL DEFAULT 0;
+ALTER TABLE proof_request_job ADD COLUMN failures integer NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- set before an offer is sent, so that a resumed job finds offers whose exchange was not stored
+ALTER TABLE issuance_item ADD COLUMN offer_started_at timestamp without time zone;
+
+-- to find out if an exchange already belongs to an item
+CREATE INDEX issuance_item_cred_ex_idx ON issuance_item (credential_exchange_id);
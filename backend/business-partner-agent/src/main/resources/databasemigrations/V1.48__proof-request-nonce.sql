@@ -0,0 +1,2 @@
+-- set before a request is sent, so that a resumed job finds requests whose exchange was not stored
+ALTER TABLE proof_request_item ADD COLUMN nonce character varying(255);
@@ -0,0 +1,2 @@
+-- set once the connection was created, so that a resumed job neither creates a second connection nor skips the partner
+ALTER TABLE partner_import_item ADD COLUMN connection_id character varying(255);
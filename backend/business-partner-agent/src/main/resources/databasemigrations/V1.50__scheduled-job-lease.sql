@@ -0,0 +1,3 @@
+-- a run is claimed by the conditional update of last_started_at alone, no
+-- advisory lock is held while the job runs
+ALTER TABLE scheduled_job DROP COLUMN lock_key;
@@ -0,0 +1,10 @@
+-- ledger entries of a revocation registry that were evaluated by the holder revocation check
+CREATE TABLE holder_revocation_registry (
+    rev_reg_id character varying(255) PRIMARY KEY,
+    last_seq_no integer NOT NULL,
+    entries integer NOT NULL
+);
+
+-- revoked credentials of a registry, to find the ones whose index was issued again
+CREATE INDEX bpa_credential_exchange_revoked_idx
+    ON bpa_credential_exchange (rev_reg_id, cred_rev_id) WHERE revoked;
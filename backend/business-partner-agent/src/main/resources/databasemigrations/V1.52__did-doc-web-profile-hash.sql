@@ -0,0 +1,2 @@
+-- hash over the content of the public profile, shared by all nodes
+ALTER TABLE did_doc_web ADD COLUMN profile_hash character varying(255);
@@ -18,10 +18,12 @@
 package org.hyperledger.bpa.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.bpa.model.CredExPartnerSummary;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.UUID;
 
 public class PartnerAPITest {
 
@@ -33,6 +35,17 @@ public class PartnerAPITest {
         Assertions.assertEquals("my-alias", p.getName());
     }
 
+    @Test
+    void testGetLegalNameFromSummary() {
+        PartnerAPI p = PartnerAPI.from(CredExPartnerSummary.builder()
+                .partnerId(UUID.randomUUID())
+                .label("aca-py label")
+                .legalName("Customer AG")
+                .build());
+        Assertions.assertEquals("Customer AG", p.getName());
+        Assertions.assertNull(p.getCredential());
+    }
+
     @Test
     void testGetLegalNameNoMatch() throws Exception {
         PartnerAPI p = PartnerAPI.builder()
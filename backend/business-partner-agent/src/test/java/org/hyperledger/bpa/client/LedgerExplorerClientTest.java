@@ -17,16 +17,118 @@
  */
 package org.hyperledger.bpa.client;
 
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
 import org.hyperledger.bpa.BaseTest;
+import org.hyperledger.bpa.client.api.LedgerQueryResult.DomainTransaction;
+import org.hyperledger.bpa.client.api.LedgerQueryResult.DomainTransaction.TxnMetadata;
 import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class LedgerExplorerClientTest extends BaseTest {
 
+    private static final String REV_REG = "M6Mbe3qx7vB4wpZF4sBRjt:4:M6Mbe3qx7vB4wpZF4sBRjt:3:CL:571:bank_account:"
+            + "CL_ACCUM:a9bbf3ea-1b66-4e30-bd2c-2c0a38cf0c93";
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setup() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    void testRevocationRegistryEntriesArePaged() throws Exception {
+        int pageSize = LedgerExplorerClient.PAGE_SIZE;
+        server.enqueue(new MockResponse().setBody(page(1, pageSize, pageSize + 1)));
+        server.enqueue(new MockResponse().setBody(page(pageSize + 1, 1, pageSize + 1)));
+
+        Optional<List<DomainTransaction>> entries = client().queryRevocationRegistryEntries(REV_REG, 0);
+
+        assertTrue(entries.isPresent());
+        assertEquals(pageSize + 1, entries.get().size());
+        assertEquals(2, server.getRequestCount());
+        assertEquals("1", server.takeRequest().getRequestUrl().queryParameter("page"));
+        assertEquals("2", server.takeRequest().getRequestUrl().queryParameter("page"));
+    }
+
+    @Test
+    void testPagesWithKnownEntriesAreSkipped() throws Exception {
+        int pageSize = LedgerExplorerClient.PAGE_SIZE;
+        server.enqueue(new MockResponse().setBody(page(pageSize + 1, 2, pageSize + 2)));
+
+        Optional<List<DomainTransaction>> entries = client().queryRevocationRegistryEntries(REV_REG, pageSize + 1);
+
+        assertTrue(entries.isPresent());
+        assertEquals(2, entries.get().size());
+        assertEquals(1, server.getRequestCount());
+        assertEquals("2", server.takeRequest().getRequestUrl().queryParameter("page"));
+    }
+
+    @Test
+    void testFailingPageFailsTheQuery() {
+        int pageSize = LedgerExplorerClient.PAGE_SIZE;
+        server.enqueue(new MockResponse().setBody(page(1, pageSize, pageSize + 1)));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        assertTrue(client().queryRevocationRegistryEntries(REV_REG, 0).isEmpty());
+    }
+
+    @Test
+    void testCredentialDefinitionTransactionsArePaged() throws Exception {
+        int pageSize = LedgerExplorerClient.PAGE_SIZE;
+        server.enqueue(new MockResponse().setBody(credDefPage(1, pageSize, pageSize + 1)));
+        server.enqueue(new MockResponse().setBody(credDefPage(pageSize + 1, 1, pageSize + 1)));
+
+        Optional<List<TxnMetadata>> txns = client().queryCredentialDefinitionTransactions("571");
+
+        assertTrue(txns.isPresent());
+        assertEquals(pageSize + 1, txns.get().size());
+        assertEquals(pageSize + 1, txns.get().get(pageSize).getSeqNo());
+        assertEquals("102", server.takeRequest().getRequestUrl().queryParameter("type"));
+        assertEquals("2", server.takeRequest().getRequestUrl().queryParameter("page"));
+    }
+
+    private LedgerExplorerClient client() {
+        LedgerExplorerClient c = new LedgerExplorerClient();
+        c.setUrl(server.url("").toString().replaceAll("/$", ""));
+        c.setMapper(mapper);
+        return c;
+    }
+
+    private static String page(int firstSeqNo, int count, int total) {
+        String results = IntStream.range(firstSeqNo, firstSeqNo + count)
+                .mapToObj(seqNo -> "{\"txn\":{\"type\":\"114\",\"data\":{\"revocRegDefId\":\"" + REV_REG
+                        + "\",\"value\":{\"revoked\":[]}}},\"txnMetadata\":{\"seqNo\":" + seqNo + "}}")
+                .collect(Collectors.joining(","));
+        return "{\"total\":" + total + ",\"results\":[" + results + "]}";
+    }
+
+    private static String credDefPage(int firstSeqNo, int count, int total) {
+        String results = IntStream.range(firstSeqNo, firstSeqNo + count)
+                .mapToObj(seqNo -> "{\"txn\":{\"type\":\"102\"},\"txnMetadata\":{\"seqNo\":" + seqNo
+                        + ",\"txnId\":\"M6Mbe3qx7vB4wpZF4sBRjt:3:CL:571:tag" + seqNo + "\"}}")
+                .collect(Collectors.joining(","));
+        return "{\"total\":" + total + ",\"results\":[" + results + "]}";
+    }
+
     @Test
     @Disabled
     // TODO migrate to okhttp mock
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GsonJacksonModuleTest {
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new GsonJacksonModule());
+
+    private final JsonObject subject = JsonParser.parseString("{\"id\":\"did:sov:1\",\"name\":\"Bob\"," +
+            "\"age\":42,\"big\":123456789012345678901234567890,\"ratio\":0.5,\"active\":true,\"none\":null," +
+            "\"nested\":{\"list\":[1,\"two\",{\"three\":3}]}}").getAsJsonObject();
+
+    @Test
+    void testTreeRoundTrip() {
+        JsonNode node = GsonJacksonModule.toJsonNode(subject);
+        assertTrue(node.get("age").isIntegralNumber());
+        assertEquals(42, node.get("age").intValue());
+        assertEquals(new BigInteger("123456789012345678901234567890"), node.get("big").bigIntegerValue());
+        assertEquals(0.5, node.get("ratio").doubleValue());
+        assertTrue(node.get("none").isNull());
+        assertEquals("two", node.get("nested").get("list").get(1).textValue());
+
+        JsonObject back = GsonJacksonModule.toJsonElement(node).getAsJsonObject();
+        assertEquals(subject, JsonParser.parseString(back.toString()));
+    }
+
+    @Test
+    void testCredentialSubjectIsWrittenAsTree() throws Exception {
+        VerifiablePresentation<VerifiableIndyCredential> vp = VerifiablePresentation
+                .<VerifiableIndyCredential>builder()
+                .verifiableCredential(List.of(VerifiableIndyCredential.builder()
+                        .credentialSubject(subject)
+                        .build()))
+                .build();
+
+        Map<String, Object> map = mapper.convertValue(vp, Converter.STRING_OBJECT_MAP);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> cs = (Map<String, Object>) ((List<Map<String, Object>>) map.get("verifiableCredential"))
+                .get(0).get("credentialSubject");
+        assertEquals(42, cs.get("age"));
+        assertEquals(Boolean.TRUE, cs.get("active"));
+
+        VerifiablePresentation<VerifiableIndyCredential> fromMap = mapper.convertValue(map, Converter.VP_TYPEREF);
+        JsonObject read = fromMap.getVerifiableCredential().get(0).getCredentialSubject();
+        assertEquals(42, read.get("age").getAsInt());
+        assertEquals("did:sov:1", read.get("id").getAsString());
+
+        byte[] json = mapper.writeValueAsBytes(vp);
+        VerifiablePresentation<VerifiableIndyCredential> fromBytes = mapper.readValue(json, Converter.VP_TYPEREF);
+        assertEquals(read, fromBytes.getVerifiableCredential().get(0).getCredentialSubject());
+    }
+
+    @Test
+    void testArrayDeserializer() throws Exception {
+        JsonArray ja = mapper.readValue("[1,{\"a\":\"b\"}]", JsonArray.class);
+        assertEquals(2, ja.size());
+        assertEquals("b", ja.get(1).getAsJsonObject().get("a").getAsString());
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.data.model.Pageable;
+import lombok.NonNull;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.impl.cluster.BulkJobRunner;
+import org.hyperledger.bpa.impl.cluster.BulkJobType;
+import org.hyperledger.bpa.impl.cluster.LeaseLostException;
+import org.hyperledger.bpa.model.IssuanceItem;
+import org.hyperledger.bpa.model.IssuanceJob;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.repository.BulkItemRepository;
+import org.hyperledger.bpa.repository.BulkJobRepository;
+import org.hyperledger.bpa.repository.IssuanceItemRepository;
+import org.hyperledger.bpa.repository.IssuanceJobRepository;
+import org.hyperledger.bpa.repository.PartnerRepository;
+import org.hyperledger.bpa.util.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AbstractBulkJobManagerTest {
+
+    @Mock
+    IssuanceJobRepository jobRepo;
+
+    @Mock
+    IssuanceItemRepository itemRepo;
+
+    @Mock
+    PartnerRepository partnerRepo;
+
+    @Mock
+    BulkJobRunner jobRunner;
+
+    @Mock
+    BPAMessageSource.DefaultMessageSource msg;
+
+    private final UUID jobId = UUID.randomUUID();
+
+    private final List<List<IssuanceItem>> processed = new ArrayList<>();
+
+    private TestManager mgmt;
+
+    @BeforeEach
+    void setup() {
+        mgmt = new TestManager();
+        mgmt.jobRunner = jobRunner;
+        mgmt.partnerRepo = partnerRepo;
+        mgmt.msg = msg;
+    }
+
+    @Test
+    void testRunProcessesBatchesUntilNoneIsPending() throws Exception {
+        List<IssuanceItem> first = List.of(item(0, null), item(1, null));
+        List<IssuanceItem> second = List.of(item(2, null));
+        mockJob();
+        when(itemRepo.findByJobIdAndStateOrderByPosition(eq(jobId), eq(JobItemState.PENDING), any(Pageable.class)))
+                .thenReturn(first)
+                .thenReturn(second)
+                .thenReturn(List.of());
+
+        mgmt.run(jobId);
+
+        assertEquals(List.of(first, second), processed);
+        assertTrue(mgmt.finished);
+        verify(jobRunner, times(2)).checkLease(jobId);
+        verify(jobRepo).updateState(jobId, JobState.COMPLETED);
+    }
+
+    @Test
+    void testRunStopsWhenTheLeaseIsLost() {
+        mockJob();
+        when(itemRepo.findByJobIdAndStateOrderByPosition(eq(jobId), eq(JobItemState.PENDING), any(Pageable.class)))
+                .thenReturn(List.of(item(0, null)));
+        doThrow(new LeaseLostException("lost")).when(jobRunner).checkLease(jobId);
+
+        assertThrows(LeaseLostException.class, () -> mgmt.run(jobId));
+
+        assertTrue(processed.isEmpty());
+        assertFalse(mgmt.finished);
+        verify(jobRepo, never()).updateState(any(), any());
+    }
+
+    @Test
+    void testRunIgnoresDeletedJob() throws Exception {
+        when(jobRepo.findById(jobId)).thenReturn(Optional.empty());
+
+        mgmt.run(jobId);
+
+        verifyNoInteractions(itemRepo);
+        verify(jobRepo, never()).updateState(any(), any());
+    }
+
+    @Test
+    void testWithConnectedPartnerFailsUnknownAndUnconnectedPartners() {
+        Partner ok = partner("conn-ok");
+        Partner noConnection = partner(null);
+        IssuanceItem okItem = item(0, ok.getId());
+        IssuanceItem unknownItem = item(1, UUID.randomUUID());
+        IssuanceItem noConnectionItem = item(2, noConnection.getId());
+        when(partnerRepo.findByIdIn(anyCollection())).thenReturn(List.of(ok, noConnection));
+        when(msg.getMessage(eq("api.partner.not.found"), anyMap())).thenReturn("not found");
+        when(msg.getMessage("api.partner.no.connection")).thenReturn("no connection");
+
+        List<Pair<IssuanceItem, Partner>> result = mgmt.withConnectedPartner(
+                List.of(okItem, unknownItem, noConnectionItem), IssuanceItem::getPartnerId, null);
+
+        assertEquals(1, result.size());
+        assertSame(okItem, result.get(0).getLeft());
+        assertSame(ok, result.get(0).getRight());
+        assertEquals(JobItemState.PENDING, okItem.getState());
+        assertEquals(JobItemState.FAILED, unknownItem.getState());
+        assertEquals("not found", unknownItem.getError());
+        assertEquals(JobItemState.FAILED, noConnectionItem.getState());
+        assertEquals("no connection", noConnectionItem.getError());
+        verify(itemRepo).updateAll(List.of(unknownItem, noConnectionItem));
+    }
+
+    @Test
+    void testWithConnectedPartnerFailsAllItemsOnJobError() {
+        Partner ok = partner("conn-ok");
+        IssuanceItem okItem = item(0, ok.getId());
+        when(partnerRepo.findByIdIn(anyCollection())).thenReturn(List.of(ok));
+
+        assertTrue(mgmt.withConnectedPartner(List.of(okItem), IssuanceItem::getPartnerId, "gone").isEmpty());
+
+        assertEquals(JobItemState.FAILED, okItem.getState());
+        assertEquals("gone", okItem.getError());
+        verify(itemRepo).updateAll(List.of(okItem));
+    }
+
+    @Test
+    void testWithConnectedPartnerStoresNothingIfAllAreConnected() {
+        Partner ok = partner("conn-ok");
+        when(partnerRepo.findByIdIn(anyCollection())).thenReturn(List.of(ok));
+
+        assertEquals(1, mgmt.withConnectedPartner(List.of(item(0, ok.getId())), IssuanceItem::getPartnerId, null)
+                .size());
+
+        verify(itemRepo, never()).updateAll(anyIterable());
+    }
+
+    private void mockJob() {
+        when(jobRepo.findById(jobId)).thenReturn(Optional.of(IssuanceJob.builder()
+                .id(jobId).state(JobState.RUNNING).total(3).build()));
+    }
+
+    private IssuanceItem item(int position, UUID partnerId) {
+        return IssuanceItem.builder()
+                .id(UUID.randomUUID())
+                .jobId(jobId)
+                .position(position)
+                .partnerId(partnerId)
+                .state(JobItemState.PENDING)
+                .build();
+    }
+
+    private static Partner partner(String connectionId) {
+        return Partner.builder()
+                .id(UUID.randomUUID())
+                .connectionId(connectionId)
+                .build();
+    }
+
+    private class TestManager extends AbstractBulkJobManager<IssuanceJob, IssuanceItem> {
+
+        private boolean finished;
+
+        @Override
+        protected BulkJobType type() {
+            return BulkJobType.ISSUANCE;
+        }
+
+        @Override
+        protected BulkJobRepository<IssuanceJob> jobRepo() {
+            return jobRepo;
+        }
+
+        @Override
+        protected BulkItemRepository<IssuanceItem> itemRepo() {
+            return itemRepo;
+        }
+
+        @Override
+        protected int batchSize() {
+            return 10;
+        }
+
+        @Override
+        protected BatchTask<IssuanceItem> prepare(@NonNull IssuanceJob job) {
+            return processed::add;
+        }
+
+        @Override
+        protected void finish(@NonNull UUID id) {
+            finished = true;
+        }
+    }
+}
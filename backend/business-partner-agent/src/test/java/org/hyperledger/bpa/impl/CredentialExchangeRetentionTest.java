@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import org.hyperledger.bpa.repository.CredExArchiveRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CredentialExchangeRetentionTest {
+
+    private static final Instant NOW = Instant.parse("2021-11-30T12:00:00Z");
+
+    @Mock
+    CredExArchiveRepository archiveRepo;
+
+    @InjectMocks
+    CredentialExchangeRetention retention;
+
+    @BeforeEach
+    void setup() {
+        retention.clock = Clock.fixed(NOW, ZoneOffset.UTC);
+        retention.after = Duration.ofDays(90);
+        retention.batchSize = 10;
+    }
+
+    @Test
+    void testArchivesInBatchesUntilDone() {
+        when(archiveRepo.archive(any(), anyInt())).thenReturn(10, 10, 3);
+        retention.archiveTerminalExchanges();
+        verify(archiveRepo, times(3)).archive(NOW.minus(Duration.ofDays(90)), 10);
+    }
+
+    @Test
+    void testNothingToArchive() {
+        when(archiveRepo.archive(any(), anyInt())).thenReturn(0);
+        retention.archiveTerminalExchanges();
+        verify(archiveRepo, times(1)).archive(any(), anyInt());
+    }
+
+    @Test
+    void testFailureStopsRun() {
+        when(archiveRepo.archive(any(), anyInt())).thenReturn(10).thenThrow(new IllegalStateException());
+        retention.archiveTerminalExchanges();
+        verify(archiveRepo, times(2)).archive(any(), anyInt());
+    }
+}
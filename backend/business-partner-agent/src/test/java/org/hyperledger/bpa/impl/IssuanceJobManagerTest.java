@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import org.hyperledger.aries.api.exception.AriesException;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.controller.api.issuer.BulkIssueCredentialRequest.BulkIssueCredentialRow;
+import org.hyperledger.bpa.impl.cluster.BulkJobRunner;
+import org.hyperledger.bpa.model.BPACredentialDefinition;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.IssuanceItem;
+import org.hyperledger.bpa.model.IssuanceJob;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.repository.BPACredentialDefinitionRepository;
+import org.hyperledger.bpa.repository.IssuanceItemRepository;
+import org.hyperledger.bpa.repository.IssuanceJobRepository;
+import org.hyperledger.bpa.repository.IssuerCredExRepository;
+import org.hyperledger.bpa.repository.PartnerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IssuanceJobManagerTest {
+
+    @Mock
+    IssuanceJobRepository jobRepo;
+
+    @Mock
+    IssuanceItemRepository itemRepo;
+
+    @Mock
+    BPACredentialDefinitionRepository credDefRepo;
+
+    @Mock
+    PartnerRepository partnerRepo;
+
+    @Mock
+    IssuerCredExRepository credExRepo;
+
+    @Mock
+    IssuerCredentialManager im;
+
+    @Mock
+    BPAMessageSource.DefaultMessageSource msg;
+
+    @InjectMocks
+    IssuanceJobManager mgmt;
+
+    private final UUID jobId = UUID.randomUUID();
+
+    private final BPACredentialDefinition credDef = BPACredentialDefinition.builder().id(UUID.randomUUID()).build();
+
+    @BeforeEach
+    void setup() {
+        mgmt.batchSize = 10;
+        mgmt.offerExecutor = Executors.newFixedThreadPool(2);
+        mgmt.jobRunner = new BulkJobRunner();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mgmt.offerExecutor.shutdown();
+    }
+
+    @Test
+    void testParseCsv() {
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        List<BulkIssueCredentialRow> rows = mgmt.parseCsv("partnerId,name,iban\r\n"
+                + p1 + ",Supplier 1, DE123 \n"
+                + "\n"
+                + p2 + ",,\n"
+                + p2 + ",\"Main Street 1, Berlin\",DE456");
+        assertEquals(3, rows.size());
+        assertEquals(p1, rows.get(0).getPartnerId());
+        assertEquals(Map.of("name", "Supplier 1", "iban", "DE123"), rows.get(0).getDocument());
+        assertEquals(Map.of("name", "", "iban", ""), rows.get(1).getDocument());
+        assertEquals(Map.of("name", "Main Street 1, Berlin", "iban", "DE456"), rows.get(2).getDocument());
+
+        assertThrows(WrongApiUsageException.class, () -> mgmt.parseCsv("partnerId,name"));
+        assertThrows(WrongApiUsageException.class, () -> mgmt.parseCsv("did,name\n" + p1 + ",a"));
+        assertThrows(WrongApiUsageException.class, () -> mgmt.parseCsv("partnerId,name\n" + p1 + ",a,b"));
+        assertThrows(WrongApiUsageException.class, () -> mgmt.parseCsv("partnerId,name\nnot-a-uuid,a"));
+        assertThrows(WrongApiUsageException.class, () -> mgmt.parseCsv("partnerId,name\n" + p1 + ",\"a"));
+    }
+
+    @Test
+    void testOfferStoresTheExchangeAndReportsFailures() throws Exception {
+        Partner ok = partner("conn-ok");
+        Partner broken = partner("conn-broken");
+        IssuanceItem okItem = item(0, ok.getId());
+        IssuanceItem brokenItem = item(1, broken.getId());
+
+        when(credDefRepo.findById(credDef.getId())).thenReturn(Optional.of(credDef));
+        when(partnerRepo.findByIdIn(anyCollection())).thenReturn(List.of(ok, broken));
+        when(im.offerCredential(eq(ok), eq(credDef), anyMap(), isNull()))
+                .thenReturn(BPACredentialExchange.builder().build());
+        when(credExRepo.save(any())).thenAnswer(inv -> inv.getArgument(0, BPACredentialExchange.class)
+                .setId(UUID.randomUUID()));
+        when(im.offerCredential(eq(broken), eq(credDef), anyMap(), isNull()))
+                .thenThrow(new AriesException(400, "Bad Request"));
+
+        mgmt.prepare(IssuanceJob.builder().id(jobId).credDefId(credDef.getId()).build())
+                .process(List.of(okItem, brokenItem));
+
+        verify(credExRepo, times(1)).save(any());
+        verify(itemRepo).updateOfferStartedAt(eq(okItem.getId()), notNull());
+        verify(itemRepo).update(okItem);
+        verify(itemRepo).update(brokenItem);
+        assertEquals(JobItemState.DONE, okItem.getState());
+        assertNotNull(okItem.getCredentialExchangeId());
+        assertEquals(JobItemState.FAILED, brokenItem.getState());
+        assertEquals("Bad Request", brokenItem.getError());
+        verify(im, times(1)).fireCredentialIssuedEvent(any());
+    }
+
+    @Test
+    void testResumedItemUsesTheOfferThatWasSentBefore() throws Exception {
+        Partner partner = partner("conn-ok");
+        IssuanceItem sentItem = item(0, partner.getId()).setOfferStartedAt(Instant.now());
+        IssuanceItem notSentItem = item(1, partner.getId()).setOfferStartedAt(Instant.now());
+        BPACredentialExchange otherItems = BPACredentialExchange.builder().credentialExchangeId("other").build();
+        BPACredentialExchange notStored = BPACredentialExchange.builder().credentialExchangeId("lost").build();
+
+        when(credDefRepo.findById(credDef.getId())).thenReturn(Optional.of(credDef));
+        when(partnerRepo.findByIdIn(anyCollection())).thenReturn(List.of(partner));
+        when(im.findSentOffers(eq(partner), eq(credDef), anyMap(), isNull(), any(Instant.class)))
+                .thenReturn(List.of(otherItems, notStored))
+                .thenReturn(List.of(otherItems));
+        BPACredentialExchange stored = BPACredentialExchange.builder().id(UUID.randomUUID()).build();
+        when(credExRepo.findByCredentialExchangeId("other")).thenReturn(Optional.of(stored));
+        when(itemRepo.existsByCredentialExchangeId(stored.getId())).thenReturn(Boolean.TRUE);
+        when(credExRepo.findByCredentialExchangeId("lost")).thenReturn(Optional.empty());
+        when(credExRepo.save(any())).thenAnswer(inv -> inv.getArgument(0, BPACredentialExchange.class)
+                .setId(UUID.randomUUID()));
+        when(im.offerCredential(eq(partner), eq(credDef), anyMap(), isNull()))
+                .thenReturn(BPACredentialExchange.builder().build());
+
+        IssuanceJob job = IssuanceJob.builder().id(jobId).credDefId(credDef.getId()).build();
+        mgmt.prepare(job).process(List.of(sentItem));
+        mgmt.prepare(job).process(List.of(notSentItem));
+
+        verify(credExRepo).save(notStored);
+        assertEquals(notStored.getId(), sentItem.getCredentialExchangeId());
+        assertEquals(JobItemState.DONE, sentItem.getState());
+        verify(itemRepo, never()).updateOfferStartedAt(eq(sentItem.getId()), any());
+        verify(im, times(1)).offerCredential(any(), any(), anyMap(), any());
+        verify(itemRepo).updateOfferStartedAt(eq(notSentItem.getId()), notNull());
+        assertEquals(JobItemState.DONE, notSentItem.getState());
+        verify(im, times(2)).fireCredentialIssuedEvent(any());
+    }
+
+    private IssuanceItem item(int position, UUID partnerId) {
+        return IssuanceItem.builder()
+                .id(UUID.randomUUID())
+                .jobId(jobId)
+                .position(position)
+                .partnerId(partnerId)
+                .document(Map.of("name", "value"))
+                .state(JobItemState.PENDING)
+                .build();
+    }
+
+    private static Partner partner(String connectionId) {
+        return Partner.builder()
+                .id(UUID.randomUUID())
+                .connectionId(connectionId)
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.data.exceptions.OptimisticLockException;
+import io.micronaut.test.annotation.MockBean;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.aries.AriesClient;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
+import org.hyperledger.aries.api.issue_credential_v2.V20CredExRecord;
+import org.hyperledger.bpa.config.AcaPyConfig;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.repository.IssuerCredExRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the credential request handler through the bean context, so that the
+ * {@link io.micronaut.retry.annotation.Retryable} interceptor is in place.
+ */
+@MicronautTest
+class IssuerCredentialManagerRetryTest {
+
+    @Inject
+    IssuerCredentialManager mgmt;
+
+    @Inject
+    IssuerCredExRepository credExRepo;
+
+    @Inject
+    AriesClient ac;
+
+    @Inject
+    AcaPyConfig acaPyConfig;
+
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
+    @MockBean(IssuerCredExRepository.class)
+    IssuerCredExRepository credExRepo() {
+        return Mockito.mock(IssuerCredExRepository.class);
+    }
+
+    @MockBean(AriesClient.class)
+    AriesClient ariesClient() {
+        return Mockito.mock(AriesClient.class);
+    }
+
+    @MockBean(AcaPyConfig.class)
+    AcaPyConfig acaPyConfig() {
+        return Mockito.mock(AcaPyConfig.class);
+    }
+
+    @MockBean(StateTransitionRecorder.class)
+    StateTransitionRecorder stateTransitions() {
+        return Mockito.mock(StateTransitionRecorder.class);
+    }
+
+    @Test
+    void testCredentialRequestIsIssuedOnceWhenRetried() throws Exception {
+        V20CredExRecord ex = new V20CredExRecord();
+        ex.setCredExId("ex1");
+        ex.setState(CredentialExchangeState.REQUEST_RECEIVED);
+        ex.setUpdatedAt("2022-01-01T10:00:00.000000Z");
+        when(credExRepo.findByCredentialExchangeId("ex1")).thenAnswer(i -> Optional.of(BPACredentialExchange
+                .builder()
+                .id(UUID.randomUUID())
+                .version(1L)
+                .state(CredentialExchangeState.OFFER_SENT)
+                .build()));
+        when(acaPyConfig.getAutoRespondCredentialRequest()).thenReturn(Boolean.FALSE);
+        doThrow(new OptimisticLockException("stale")).doReturn(1)
+                .when(credExRepo).updateAfterEventNoRevocationInfo(any(), any(), any(), any(), any(), any());
+
+        mgmt.handleV2CredentialRequest(ex);
+
+        // the first attempt loses the version check and is retried once
+        verify(credExRepo, times(2)).findByCredentialExchangeId("ex1");
+        verify(credExRepo, times(2)).updateAfterEventNoRevocationInfo(any(), any(), any(), any(), any(), any());
+        verify(stateTransitions, times(1)).record(any());
+        verify(ac, times(1)).issueCredentialV2RecordsIssue(eq("ex1"), any());
+    }
+}
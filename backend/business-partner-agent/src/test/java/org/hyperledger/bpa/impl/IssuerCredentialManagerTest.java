@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import org.hyperledger.aries.AriesClient;
+import org.hyperledger.aries.api.credentials.CredentialAttributes;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
+import org.hyperledger.aries.api.issue_credential_v1.V1CredentialExchange;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.model.BPACredentialDefinition;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.BPASchema;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.util.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IssuerCredentialManagerTest {
+
+    @Mock
+    BPAMessageSource.DefaultMessageSource msg;
+
+    @Mock
+    AriesClient ac;
+
+    @InjectMocks
+    IssuerCredentialManager mgmt;
+
+    @Test
+    void testCursorKeepsMicroseconds() {
+        Instant updatedAt = Instant.parse("2022-01-01T10:00:00.123456Z");
+        UUID id = UUID.randomUUID();
+
+        Pair<Instant, UUID> key = mgmt.decodeCursor(IssuerCredentialManager.encodeCursor(updatedAt, id));
+
+        assertEquals(updatedAt, key.getLeft());
+        assertEquals(id, key.getRight());
+    }
+
+    @Test
+    void testFindSentOffersMatchesCredDefAttributesAndTime() throws Exception {
+        Partner partner = Partner.builder().id(UUID.randomUUID()).connectionId("con1").build();
+        BPACredentialDefinition credDef = BPACredentialDefinition.builder()
+                .credentialDefinitionId("cd1")
+                .schema(BPASchema.builder().schemaId("s1").build())
+                .build();
+        Map<String, String> document = Map.of("name", "a");
+        when(ac.issueCredentialRecords(any())).thenReturn(Optional.of(List.of(
+                v1Offer("later", "cd1", document, "2022-01-01 10:00:10.000000Z"),
+                v1Offer("match", "cd1", document, "2022-01-01 10:00:05.000000Z"),
+                v1Offer("older", "cd1", document, "2022-01-01 09:59:00.000000Z"),
+                v1Offer("otherAttributes", "cd1", Map.of("name", "b"), "2022-01-01 10:00:05.000000Z"),
+                v1Offer("otherCredDef", "cd2", document, "2022-01-01 10:00:05.000000Z"),
+                v1Offer("noProposal", "cd1", null, "2022-01-01 10:00:05.000000Z"))));
+
+        List<BPACredentialExchange> sent = mgmt.findSentOffers(partner, credDef, document, null,
+                Instant.parse("2022-01-01T10:00:00Z"));
+
+        assertEquals(List.of("match", "later"), sent.stream()
+                .map(BPACredentialExchange::getCredentialExchangeId)
+                .collect(Collectors.toList()));
+        assertEquals(partner, sent.get(0).getPartner());
+        assertEquals(document, sent.get(0).getCredential().getAttrs());
+        assertEquals(CredentialExchangeState.OFFER_SENT, sent.get(0).getState());
+    }
+
+    @Test
+    void testInvalidCursor() {
+        assertThrows(WrongApiUsageException.class, () -> mgmt.decodeCursor("1640995200"));
+        assertThrows(WrongApiUsageException.class, () -> mgmt.decodeCursor("not a cursor"));
+    }
+
+    private static V1CredentialExchange v1Offer(String id, String credDefId, Map<String, String> attributes,
+            String createdAt) {
+        V1CredentialExchange ex = new V1CredentialExchange();
+        ex.setCredentialExchangeId(id);
+        ex.setCredentialDefinitionId(credDefId);
+        ex.setCreatedAt(createdAt);
+        if (attributes != null) {
+            ex.setCredentialProposalDict(V1CredentialExchange.CredentialProposalDict
+                    .builder()
+                    .credentialProposal(new V1CredentialExchange.CredentialProposalDict.CredentialProposal(null,
+                            CredentialAttributes.fromMap(attributes)))
+                    .build());
+        }
+        return ex;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import org.hyperledger.aries.api.connection.ConnectionRecord;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.api.exception.PartnerException;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.controller.api.partner.ImportPartnersRequest.ImportPartner;
+import org.hyperledger.bpa.impl.activity.PartnerLookup;
+import org.hyperledger.bpa.impl.aries.ConnectionManager;
+import org.hyperledger.bpa.impl.aries.PartnerCredDefLookup;
+import org.hyperledger.bpa.impl.cluster.BulkJobRunner;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.PartnerImportItem;
+import org.hyperledger.bpa.model.PartnerImportJob;
+import org.hyperledger.bpa.repository.PartnerImportItemRepository;
+import org.hyperledger.bpa.repository.PartnerImportJobRepository;
+import org.hyperledger.bpa.repository.PartnerRepository;
+import org.hyperledger.bpa.repository.TagRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartnerImportManagerTest {
+
+    @Mock
+    PartnerImportJobRepository jobRepo;
+
+    @Mock
+    PartnerImportItemRepository itemRepo;
+
+    @Mock
+    PartnerRepository partnerRepo;
+
+    @Mock
+    TagRepository tagRepo;
+
+    @Mock
+    PartnerLookup partnerLookup;
+
+    @Mock
+    ConnectionManager cm;
+
+    @Mock
+    PartnerCredDefLookup credLookup;
+
+    @Mock
+    Converter converter;
+
+    @Mock
+    WebhookService webhook;
+
+    @Mock
+    BPAMessageSource.DefaultMessageSource ms;
+
+    @InjectMocks
+    PartnerImportManager mgmt;
+
+    @BeforeEach
+    void setup() {
+        mgmt.ledgerPrefix = "did:sov:";
+        mgmt.batchSize = 10;
+        mgmt.lookupExecutor = Executors.newFixedThreadPool(2);
+        mgmt.jobRunner = new BulkJobRunner();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mgmt.lookupExecutor.shutdown();
+    }
+
+    @Test
+    void testParseCsv() {
+        List<ImportPartner> partners = mgmt.parseCsv("did,alias,tags\n"
+                + "did:sov:123,Supplier 1,supplier;eu\r\n"
+                + "\n"
+                + " did:web:example.com \n"
+                + "did:sov:456,,");
+        assertEquals(3, partners.size());
+        assertEquals("did:sov:123", partners.get(0).getDid());
+        assertEquals("Supplier 1", partners.get(0).getAlias());
+        assertEquals(List.of("supplier", "eu"), partners.get(0).getTag());
+        assertEquals("did:web:example.com", partners.get(1).getDid());
+        assertNull(partners.get(1).getAlias());
+        assertNull(partners.get(1).getTag());
+        assertNull(partners.get(2).getAlias());
+        assertEquals(List.of(), partners.get(2).getTag());
+
+        assertThrows(WrongApiUsageException.class, () -> mgmt.parseCsv("did,alias"));
+        assertThrows(WrongApiUsageException.class, () -> mgmt.parseCsv(",alias"));
+    }
+
+    @Test
+    void testImportBatchSkipsKnownAndReportsFailures() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        PartnerImportItem known = item(jobId, 0, "did:sov:known");
+        PartnerImportItem ok = item(jobId, 1, "did:sov:ok");
+        PartnerImportItem duplicate = item(jobId, 2, "did:sov:ok");
+        PartnerImportItem broken = item(jobId, 3, "did:sov:broken");
+
+        when(partnerRepo.findByDidIn(anyList())).thenReturn(List.of(Partner.builder().did("did:sov:known").build()));
+        when(partnerLookup.lookupPartner("did:sov:ok")).thenReturn(PartnerAPI.builder().ariesSupport(true).build());
+        when(partnerLookup.lookupPartner("did:sov:broken")).thenThrow(new PartnerException("no did doc"));
+        when(converter.toModelObject(eq("did:sov:ok"), any(PartnerAPI.class)))
+                .thenReturn(Partner.builder().did("did:sov:ok").build());
+        ConnectionRecord con = new ConnectionRecord();
+        con.setConnectionId("con1");
+        when(cm.createConnection("did:sov:ok")).thenReturn(Optional.of(con));
+        when(partnerRepo.save(any())).thenAnswer(inv -> inv.getArgument(0, Partner.class).setId(UUID.randomUUID()));
+
+        mgmt.prepare(PartnerImportJob.builder().id(jobId).trustPing(Boolean.TRUE).build())
+                .process(List.of(known, ok, duplicate, broken));
+
+        assertEquals(JobItemState.SKIPPED, known.getState());
+        assertEquals(JobItemState.DONE, ok.getState());
+        assertEquals(JobItemState.SKIPPED, duplicate.getState());
+        assertEquals(JobItemState.FAILED, broken.getState());
+        assertEquals("no did doc", broken.getError());
+        verify(partnerRepo, times(1)).save(argThat(p -> "con1".equals(p.getConnectionId())
+                && Boolean.TRUE.equals(p.getTrustPing())));
+        assertNotNull(ok.getPartnerId());
+        verify(itemRepo).updateConnectionId(ok.getId(), "con1");
+        verify(itemRepo).updateAll(List.of(known, duplicate));
+        verify(itemRepo).update(ok);
+        verify(itemRepo).update(broken);
+        verify(credLookup, times(1)).lookupTypesForPartner(ok.getPartnerId());
+    }
+
+    @Test
+    void testResumedItemsUseTheirConnection() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        PartnerImportItem saved = item(jobId, 0, "did:sov:saved").setConnectionId("con1");
+        PartnerImportItem notSaved = item(jobId, 1, "did:sov:notSaved").setConnectionId("con2");
+        PartnerImportItem otherConnection = item(jobId, 2, "did:sov:other").setConnectionId("con3");
+        Partner savedPartner = Partner.builder().id(UUID.randomUUID()).did("did:sov:saved").connectionId("con1")
+                .build();
+
+        when(partnerRepo.findByDidIn(anyList())).thenReturn(List.of(savedPartner,
+                Partner.builder().id(UUID.randomUUID()).did("did:sov:other").connectionId("con4").build()));
+        when(partnerLookup.lookupPartner("did:sov:notSaved")).thenReturn(PartnerAPI.builder().build());
+        when(converter.toModelObject(eq("did:sov:notSaved"), any(PartnerAPI.class)))
+                .thenReturn(Partner.builder().did("did:sov:notSaved").build());
+        when(partnerRepo.save(any())).thenAnswer(inv -> inv.getArgument(0, Partner.class).setId(UUID.randomUUID()));
+
+        mgmt.prepare(PartnerImportJob.builder().id(jobId).trustPing(Boolean.FALSE).build())
+                .process(List.of(saved, notSaved, otherConnection));
+
+        assertEquals(JobItemState.DONE, saved.getState());
+        assertEquals(savedPartner.getId(), saved.getPartnerId());
+        assertEquals(JobItemState.DONE, notSaved.getState());
+        assertEquals(JobItemState.SKIPPED, otherConnection.getState());
+        verify(itemRepo).updateAll(List.of(saved, otherConnection));
+        verify(partnerRepo, times(1)).save(argThat(p -> "con2".equals(p.getConnectionId())));
+        verify(cm, never()).createConnection(any());
+        verify(credLookup).lookupTypesForPartner(savedPartner.getId());
+        verify(credLookup).lookupTypesForPartner(notSaved.getPartnerId());
+    }
+
+    private static PartnerImportItem item(UUID jobId, int position, String did) {
+        return PartnerImportItem.builder()
+                .id(UUID.randomUUID())
+                .jobId(jobId)
+                .position(position)
+                .did(did)
+                .state(JobItemState.PENDING)
+                .build();
+    }
+}
@@ -17,16 +17,22 @@
  */
 package org.hyperledger.bpa.impl;
 
+import io.micronaut.test.annotation.MockBean;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
+import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.controller.api.partner.UpdatePartnerRequest;
+import org.hyperledger.bpa.impl.activity.PartnerLookup;
 import org.hyperledger.bpa.model.Partner;
 import org.hyperledger.bpa.model.Tag;
 import org.hyperledger.bpa.repository.PartnerRepository;
 import org.hyperledger.bpa.repository.TagRepository;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -42,6 +48,14 @@ public class PartnerManagerTest {
     @Inject
     PartnerRepository partnerRepo;
 
+    @Inject
+    PartnerLookup partnerLookup;
+
+    @MockBean(PartnerLookup.class)
+    PartnerLookup partnerLookup() {
+        return Mockito.mock(PartnerLookup.class);
+    }
+
     @Test
     void testAddAndRemovePartnerTag() {
         Tag t1 = tagRepo.save(Tag
@@ -99,6 +113,25 @@ public class PartnerManagerTest {
         Assertions.assertEquals(0, dbTag1.get().getPartners().size());
     }
 
+    @Test
+    void testRefreshPartnerKeepsConcurrentStateChange() {
+        Partner partner = partnerRepo.save(buildPartnerWithoutTag()
+                .state(ConnectionState.REQUEST)
+                .build());
+        Mockito.when(partnerLookup.lookupPartner(partner.getDid())).thenAnswer(inv -> {
+            // a connection event is handled while the profile is resolved
+            partnerRepo.updateState(partner.getId(), partner.getVersion(), ConnectionState.ACTIVE, Instant.now());
+            return PartnerAPI.builder().valid(Boolean.TRUE).build();
+        });
+
+        Optional<PartnerAPI> refreshed = partnerManager.refreshPartner(partner.getId());
+
+        Assertions.assertTrue(refreshed.isPresent());
+        Partner dbP = partnerRepo.findById(partner.getId()).orElseThrow();
+        Assertions.assertEquals(ConnectionState.ACTIVE, dbP.getState());
+        Assertions.assertEquals(Boolean.TRUE, dbP.getValid());
+    }
+
     private void checkTagOnPartner(UUID partnerId, String... tagName) {
         Optional<Partner> dbP = partnerRepo.findById(partnerId);
         Assertions.assertTrue(dbP.isPresent());
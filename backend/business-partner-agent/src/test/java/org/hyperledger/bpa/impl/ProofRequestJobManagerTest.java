@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import org.hyperledger.aries.api.ExchangeVersion;
+import org.hyperledger.aries.api.exception.AriesException;
+import org.hyperledger.aries.api.present_proof.PresentProofRequest;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.controller.api.prooftemplates.BulkProofRequest;
+import org.hyperledger.bpa.impl.aries.ProofManager;
+import org.hyperledger.bpa.impl.cluster.BulkJobRunner;
+import org.hyperledger.bpa.impl.prooftemplates.ProofTemplateConversion;
+import org.hyperledger.bpa.model.BPAProofTemplate;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.PartnerProof;
+import org.hyperledger.bpa.model.ProofRequestItem;
+import org.hyperledger.bpa.model.ProofRequestJob;
+import org.hyperledger.bpa.repository.BPAProofTemplateRepository;
+import org.hyperledger.bpa.repository.PartnerProofRepository;
+import org.hyperledger.bpa.repository.PartnerRepository;
+import org.hyperledger.bpa.repository.ProofRequestItemRepository;
+import org.hyperledger.bpa.repository.ProofRequestJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProofRequestJobManagerTest {
+
+    @Mock
+    ProofRequestJobRepository jobRepo;
+
+    @Mock
+    ProofRequestItemRepository itemRepo;
+
+    @Mock
+    BPAProofTemplateRepository templateRepo;
+
+    @Mock
+    PartnerRepository partnerRepo;
+
+    @Mock
+    PartnerProofRepository proofRepo;
+
+    @Mock
+    ProofTemplateConversion conversion;
+
+    @Mock
+    ProofManager proofManager;
+
+    @Mock
+    BPAMessageSource.DefaultMessageSource msg;
+
+    @InjectMocks
+    ProofRequestJobManager mgmt;
+
+    private final UUID jobId = UUID.randomUUID();
+
+    private final BPAProofTemplate template = BPAProofTemplate.builder().id(UUID.randomUUID()).build();
+
+    private final PresentProofRequest.ProofRequest proofRequest = PresentProofRequest.ProofRequest.builder()
+            .name("test")
+            .build();
+
+    @BeforeEach
+    void setup() {
+        mgmt.batchSize = 10;
+        mgmt.ratePerSecond = 1000;
+        mgmt.requestExecutor = Executors.newFixedThreadPool(2);
+        mgmt.jobRunner = new BulkJobRunner();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mgmt.requestExecutor.shutdown();
+    }
+
+    @Test
+    void testNoPartnersWithTag() {
+        when(templateRepo.findById(template.getId())).thenReturn(Optional.of(template));
+        when(partnerRepo.findIdsByTagName("supplier")).thenReturn(List.of());
+
+        assertThrows(WrongApiUsageException.class, () -> mgmt.startProofRequests(template.getId(),
+                BulkProofRequest.builder().tag("supplier").build()));
+        verifyNoInteractions(jobRepo, itemRepo);
+    }
+
+    @Test
+    void testRequestConvertsOnceAndStoresEveryExchange() throws Exception {
+        Partner ok1 = partner("conn-1");
+        Partner ok2 = partner("conn-2");
+        Partner broken = partner("conn-broken");
+        ProofRequestItem ok1Item = item(0, ok1.getId());
+        ProofRequestItem ok2Item = item(1, ok2.getId());
+        ProofRequestItem brokenItem = item(2, broken.getId());
+
+        when(templateRepo.findById(template.getId())).thenReturn(Optional.of(template));
+        when(conversion.proofRequestFrom(template)).thenReturn(proofRequest);
+        when(partnerRepo.findByIdIn(anyCollection())).thenReturn(List.of(ok1, ok2, broken));
+        when(proofManager.sendPresentProofRequest(argThat(id -> !broken.getId().equals(id)),
+                any(PresentProofRequest.class), eq(template), eq(ExchangeVersion.V1)))
+                        .thenAnswer(inv -> Optional.of(PartnerProof.builder().id(UUID.randomUUID())
+                                .partnerId(inv.getArgument(0)).build()));
+        when(proofManager.sendPresentProofRequest(eq(broken.getId()), any(PresentProofRequest.class),
+                eq(template), eq(ExchangeVersion.V1)))
+                        .thenThrow(new AriesException(400, "Bad Request"));
+
+        AbstractBulkJobManager.BatchTask<ProofRequestItem> task = mgmt.prepare(ProofRequestJob.builder()
+                .id(jobId)
+                .proofTemplateId(template.getId())
+                .exchangeVersion(ExchangeVersion.V1)
+                .build());
+        task.process(List.of(ok1Item, ok2Item));
+        task.process(List.of(brokenItem));
+
+        verify(conversion, times(1)).proofRequestFrom(template);
+        verify(proofManager, times(2)).saveProofRequest(any());
+        ArgumentCaptor<PresentProofRequest> sent = ArgumentCaptor.forClass(PresentProofRequest.class);
+        verify(proofManager, times(3)).sendPresentProofRequest(any(), sent.capture(), any(), any());
+        assertEquals(3, sent.getAllValues().stream().map(r -> r.getProofRequest().getNonce()).distinct().count());
+        assertNull(proofRequest.getNonce());
+        verify(itemRepo).updateNonce(ok1Item.getId(), ok1Item.getNonce());
+        assertEquals(ok1Item.getNonce(), sent.getAllValues().stream()
+                .filter(r -> "conn-1".equals(r.getConnectionId()))
+                .findFirst()
+                .map(r -> r.getProofRequest().getNonce())
+                .orElse(null));
+        verify(itemRepo).update(ok1Item);
+        verify(itemRepo).update(brokenItem);
+        assertEquals(JobItemState.DONE, ok1Item.getState());
+        assertNotNull(ok1Item.getPartnerProofId());
+        assertEquals(JobItemState.DONE, ok2Item.getState());
+        assertEquals(JobItemState.FAILED, brokenItem.getState());
+        assertEquals("Bad Request", brokenItem.getError());
+    }
+
+    @Test
+    void testResumedItemUsesTheRequestThatWasSentBefore() throws Exception {
+        Partner partner = partner("conn-1");
+        ProofRequestItem sentItem = item(0, partner.getId()).setNonce("1");
+        ProofRequestItem notSentItem = item(1, partner.getId()).setNonce("2");
+        PartnerProof lost = PartnerProof.builder().id(UUID.randomUUID()).presentationExchangeId("lost").build();
+
+        when(templateRepo.findById(template.getId())).thenReturn(Optional.of(template));
+        when(conversion.proofRequestFrom(template)).thenReturn(proofRequest);
+        when(partnerRepo.findByIdIn(anyCollection())).thenReturn(List.of(partner));
+        when(proofManager.findSentPresentProofRequest(partner.getId(), "conn-1", "1", template, ExchangeVersion.V1))
+                .thenReturn(Optional.of(lost));
+        when(proofManager.findSentPresentProofRequest(partner.getId(), "conn-1", "2", template, ExchangeVersion.V1))
+                .thenReturn(Optional.empty());
+        when(proofRepo.findByPresentationExchangeId("lost")).thenReturn(Optional.empty());
+        when(proofManager.sendPresentProofRequest(eq(partner.getId()), any(PresentProofRequest.class),
+                eq(template), eq(ExchangeVersion.V1)))
+                        .thenReturn(Optional.of(PartnerProof.builder().id(UUID.randomUUID()).build()));
+
+        mgmt.prepare(ProofRequestJob.builder()
+                .id(jobId)
+                .proofTemplateId(template.getId())
+                .exchangeVersion(ExchangeVersion.V1)
+                .build())
+                .process(List.of(sentItem, notSentItem));
+
+        verify(proofManager).saveProofRequest(lost);
+        assertEquals(JobItemState.DONE, sentItem.getState());
+        assertEquals(lost.getId(), sentItem.getPartnerProofId());
+        verify(proofManager, times(1)).sendPresentProofRequest(any(), any(PresentProofRequest.class), any(), any());
+        assertNotEquals("2", notSentItem.getNonce());
+        verify(itemRepo).updateNonce(notSentItem.getId(), notSentItem.getNonce());
+        assertEquals(JobItemState.DONE, notSentItem.getState());
+    }
+
+    @Test
+    void testNewNonceIsANaturalNumber() {
+        assertTrue(ProofRequestJobManager.newNonce().matches("\\d+"));
+        assertNotEquals(ProofRequestJobManager.newNonce(), ProofRequestJobManager.newNonce());
+    }
+
+    private ProofRequestItem item(int position, UUID partnerId) {
+        return ProofRequestItem.builder()
+                .id(UUID.randomUUID())
+                .jobId(jobId)
+                .position(position)
+                .partnerId(partnerId)
+                .state(JobItemState.PENDING)
+                .build();
+    }
+
+    private static Partner partner(String connectionId) {
+        return Partner.builder()
+                .id(UUID.randomUUID())
+                .connectionId(connectionId)
+                .build();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.data.model.Pageable;
+import org.hyperledger.acy_py.generated.model.PublishRevocations;
+import org.hyperledger.aries.AriesClient;
+import org.hyperledger.aries.api.exception.AriesException;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
+import org.hyperledger.aries.api.revocation.RevokeRequest;
+import org.hyperledger.bpa.api.JobItemState;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.api.exception.IssuerException;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.config.RuntimeConfig;
+import org.hyperledger.bpa.controller.api.issuer.RevokeCredentialsRequest;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
+import org.hyperledger.bpa.impl.cluster.BulkJobRunner;
+import org.hyperledger.bpa.impl.cluster.BulkJobType;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.RevocationItem;
+import org.hyperledger.bpa.model.RevocationJob;
+import org.hyperledger.bpa.repository.IssuerCredExRepository;
+import org.hyperledger.bpa.repository.RevocationItemRepository;
+import org.hyperledger.bpa.repository.RevocationJobRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RevocationJobManagerTest {
+
+    @Mock
+    AriesClient ac;
+
+    @Mock
+    RevocationJobRepository jobRepo;
+
+    @Mock
+    RevocationItemRepository itemRepo;
+
+    @Mock
+    IssuerCredExRepository credExRepo;
+
+    @Mock
+    StateTransitionRecorder stateTransitions;
+
+    @Mock
+    RuntimeConfig config;
+
+    @Mock
+    BulkJobRunner jobRunner;
+
+    @Mock
+    BPAMessageSource.DefaultMessageSource msg;
+
+    @InjectMocks
+    RevocationJobManager mgmt;
+
+    @Test
+    void testNoTailsServer() {
+        when(config.getTailsServerConfigured()).thenReturn(Boolean.FALSE);
+        RevokeCredentialsRequest req = RevokeCredentialsRequest.builder().ids(List.of(UUID.randomUUID())).build();
+        assertThrows(IssuerException.class, () -> mgmt.startRevocation(req));
+        verifyNoInteractions(jobRepo, ac);
+    }
+
+    @Test
+    void testStartRevocationSkipsIneligibleCredentials() {
+        UUID missing = UUID.randomUUID();
+        BPACredentialExchange notRevocable = credEx(null, null, null);
+        BPACredentialExchange revoked = credEx("reg1", "1", Boolean.TRUE);
+        BPACredentialExchange ok = credEx("reg1", "2", null);
+        UUID jobId = UUID.randomUUID();
+
+        when(config.getTailsServerConfigured()).thenReturn(Boolean.TRUE);
+        when(jobRepo.save(any(RevocationJob.class))).thenAnswer(inv -> inv.getArgument(0, RevocationJob.class)
+                .setId(jobId));
+        when(credExRepo.findByIdIn(anyCollection())).thenReturn(List.of(notRevocable, revoked, ok));
+
+        mgmt.startRevocation(RevokeCredentialsRequest.builder()
+                .ids(List.of(missing, notRevocable.getId(), revoked.getId(), ok.getId(), ok.getId()))
+                .build());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RevocationItem>> captor = ArgumentCaptor.forClass(List.class);
+        verify(itemRepo).saveAll(captor.capture());
+        List<RevocationItem> items = captor.getValue();
+        assertEquals(4, items.size());
+        assertEquals(List.of(JobItemState.SKIPPED, JobItemState.SKIPPED, JobItemState.SKIPPED, JobItemState.PENDING),
+                items.stream().map(RevocationItem::getState).collect(Collectors.toList()));
+        assertEquals("reg1", items.get(3).getRevRegId());
+        assertEquals("2", items.get(3).getCredRevId());
+        verify(jobRunner).submit(eq(BulkJobType.REVOCATION), any(), eq(jobId), any());
+    }
+
+    @Test
+    void testRevokeThenPublishOncePerRegistry() throws Exception {
+        mgmt.batchSize = 10;
+        UUID jobId = UUID.randomUUID();
+        RevocationItem a1 = item(jobId, 0, "regA", "1");
+        RevocationItem b1 = item(jobId, 1, "regB", "1");
+        RevocationItem broken = item(jobId, 2, "regA", "2");
+        RevocationItem a3 = item(jobId, 3, "regA", "3");
+        List<RevocationItem> items = List.of(a1, b1, broken, a3);
+
+        when(jobRepo.findById(jobId)).thenReturn(Optional.of(RevocationJob.builder()
+                .id(jobId).state(JobState.RUNNING).total(4).build()));
+        when(itemRepo.findByJobIdAndStateAndRevokedAtIsNullOrderByPosition(eq(jobId), eq(JobItemState.PENDING),
+                any(Pageable.class)))
+                        .thenReturn(items)
+                        .thenReturn(List.of());
+        when(itemRepo.findByJobIdAndStateAndRevokedAtIsNotNull(jobId, JobItemState.PENDING))
+                .thenAnswer(inv -> items.stream().filter(RevocationItem::isAwaitingPublication)
+                        .collect(Collectors.toList()));
+        when(ac.revocationRevoke(any(RevokeRequest.class))).thenAnswer(inv -> {
+            if ("2".equals(inv.getArgument(0, RevokeRequest.class).getCredRevId())) {
+                throw new AriesException(400, "Bad Request");
+            }
+            assertEquals(Boolean.FALSE, inv.getArgument(0, RevokeRequest.class).getPublish());
+            return Optional.empty();
+        });
+        when(credExRepo.findByIdIn(anyCollection())).thenAnswer(inv -> List.of(credEx("reg", "1", null)));
+
+        mgmt.run(jobId);
+
+        ArgumentCaptor<PublishRevocations> published = ArgumentCaptor.forClass(PublishRevocations.class);
+        verify(ac, times(2)).revocationPublishRevocations(published.capture());
+        assertEquals(Map.of("regA", List.of("1", "3")), published.getAllValues().get(0).getRrid2crid());
+        assertEquals(Map.of("regB", List.of("1")), published.getAllValues().get(1).getRrid2crid());
+
+        assertEquals(JobItemState.DONE, a1.getState());
+        assertEquals(JobItemState.DONE, b1.getState());
+        assertEquals(JobItemState.DONE, a3.getState());
+        assertEquals(JobItemState.FAILED, broken.getState());
+        assertEquals("Bad Request", broken.getError());
+        verify(credExRepo, times(2)).updateRevoked(any(UUID.class), any(Instant.class));
+        verify(jobRepo).updateState(jobId, JobState.COMPLETED);
+    }
+
+    @Test
+    void testFailedPublicationStaysPendingAndStopsTheJob() throws Exception {
+        mgmt.batchSize = 10;
+        UUID jobId = UUID.randomUUID();
+        RevocationItem a1 = item(jobId, 0, "regA", "1").setRevokedAt(Instant.now());
+        RevocationItem b1 = item(jobId, 1, "regB", "1").setRevokedAt(Instant.now());
+
+        when(jobRepo.findById(jobId)).thenReturn(Optional.of(RevocationJob.builder()
+                .id(jobId).state(JobState.RUNNING).total(2).build()));
+        when(itemRepo.findByJobIdAndStateAndRevokedAtIsNullOrderByPosition(eq(jobId), eq(JobItemState.PENDING),
+                any(Pageable.class))).thenReturn(List.of());
+        when(itemRepo.findByJobIdAndStateAndRevokedAtIsNotNull(jobId, JobItemState.PENDING))
+                .thenReturn(List.of(a1, b1));
+        when(ac.revocationPublishRevocations(any(PublishRevocations.class))).thenAnswer(inv -> {
+            if (inv.getArgument(0, PublishRevocations.class).getRrid2crid().containsKey("regA")) {
+                throw new AriesException(500, "Ledger unavailable");
+            }
+            return Optional.empty();
+        });
+        when(credExRepo.findByIdIn(anyCollection())).thenAnswer(inv -> List.of(credEx("regB", "1", null)));
+
+        assertThrows(AriesException.class, () -> mgmt.run(jobId));
+
+        verify(ac, times(2)).revocationPublishRevocations(any(PublishRevocations.class));
+        assertEquals(JobItemState.PENDING, a1.getState());
+        assertTrue(a1.isAwaitingPublication());
+        assertNull(a1.getError());
+        assertEquals(JobItemState.DONE, b1.getState());
+        verify(itemRepo).updateAll(List.of(b1));
+        verify(credExRepo, times(1)).updateRevoked(any(UUID.class), any(Instant.class));
+        verify(jobRepo, never()).updateState(jobId, JobState.COMPLETED);
+    }
+
+    private static RevocationItem item(UUID jobId, int position, String revRegId, String credRevId) {
+        return RevocationItem.builder()
+                .id(UUID.randomUUID())
+                .jobId(jobId)
+                .position(position)
+                .credentialExchangeId(UUID.randomUUID())
+                .revRegId(revRegId)
+                .credRevId(credRevId)
+                .state(JobItemState.PENDING)
+                .build();
+    }
+
+    private static BPACredentialExchange credEx(String revRegId, String credRevId, Boolean revoked) {
+        return BPACredentialExchange.builder()
+                .id(UUID.randomUUID())
+                .role(CredentialExchangeRole.ISSUER)
+                .revRegId(revRegId)
+                .credRevId(credRevId)
+                .revoked(revoked)
+                .build();
+    }
+}
@@ -17,13 +17,31 @@
  */
 package org.hyperledger.bpa.impl.activity;
 
+import io.micronaut.cache.CacheManager;
+import io.micronaut.cache.SyncCache;
 import org.hyperledger.aries.api.resolver.DIDDocument;
 import org.hyperledger.bpa.BaseTest;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.api.exception.PartnerException;
+import org.hyperledger.bpa.client.DidDocClient;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.controller.api.partner.PartnerLookupResult;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 class PartnerLookupTest extends BaseTest {
 
@@ -46,4 +64,100 @@ class PartnerLookupTest extends BaseTest {
         assertTrue(matchKey.get().startsWith("C2VBLJff"));
     }
 
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    void testLookupPartnersReportsResultPerDid() {
+        PartnerLookup lookup = new PartnerLookup();
+        lookup.ur = mock(DidDocClient.class);
+        lookup.ms = mock(BPAMessageSource.DefaultMessageSource.class);
+        lookup.cacheManager = mock(CacheManager.class);
+        lookup.lookupExecutor = Executors.newFixedThreadPool(2);
+
+        SyncCache lookupCache = mock(SyncCache.class);
+        when(lookup.cacheManager.getCache(PartnerLookup.PARTNER_LOOKUP_CACHE)).thenReturn(lookupCache);
+        when(lookupCache.get(any(), any(Class.class), any(Supplier.class)))
+                .thenAnswer(inv -> inv.getArgument(2, Supplier.class).get());
+
+        when(lookup.ms.getMessage(anyString())).thenReturn("no did doc");
+        when(lookup.ur.getDidDocument("did:web:known")).thenReturn(Optional.of(DIDDocument
+                .builder()
+                .id("did:web:known")
+                .service(List.of())
+                .build()));
+        when(lookup.ur.getDidDocument("did:web:unknown")).thenReturn(Optional.empty());
+
+        Map<String, PartnerLookupResult> result = lookup
+                .lookupPartners(List.of("did:web:known", "did:web:unknown", "did:web:known", " "))
+                .toList()
+                .blockingGet()
+                .stream()
+                .collect(Collectors.toMap(PartnerLookupResult::getDid, Function.identity()));
+
+        assertEquals(2, result.size());
+        assertTrue(result.get("did:web:known").isResolved());
+        assertEquals("did:web:known", result.get("did:web:known").getPartner().getDid());
+        assertFalse(result.get("did:web:unknown").isResolved());
+        assertEquals("no did doc", result.get("did:web:unknown").getError());
+        verify(lookup.ur, times(1)).getDidDocument("did:web:known");
+        assertThrows(PartnerException.class, () -> lookup.lookupPartner("did:web:unknown"));
+
+        lookup.lookupExecutor.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    void testRefreshExpiringLookupsThatWereRead() {
+        PartnerLookup lookup = new PartnerLookup();
+        lookup.ur = mock(DidDocClient.class);
+        lookup.cacheManager = mock(CacheManager.class);
+        lookup.lookupExecutor = Executors.newFixedThreadPool(2);
+        lookup.cacheTtl = Duration.ofSeconds(180);
+        lookup.refreshBeforeExpiry = Duration.ofSeconds(60);
+
+        SyncCache lookupCache = mock(SyncCache.class);
+        SyncCache urCache = mock(SyncCache.class);
+        when(lookup.cacheManager.getCache(PartnerLookup.PARTNER_LOOKUP_CACHE)).thenReturn(lookupCache);
+        when(lookup.cacheManager.getCache(PartnerLookup.UR_CACHE)).thenReturn(urCache);
+        when(lookup.ur.getDidDocument("did:web:expiring")).thenReturn(Optional.of(DIDDocument
+                .builder()
+                .id("did:web:expiring")
+                .service(List.of())
+                .build()));
+
+        Instant now = Instant.now();
+        lookup.resolvedAt.put("did:web:fresh", now);
+        lookup.resolvedAt.put("did:web:expiring", now.minusSeconds(150));
+        lookup.resolvedAt.put("did:web:other", now.minusSeconds(150));
+        lookup.resolvedAt.put("did:web:expired", now.minusSeconds(200));
+        lookup.accessedAt.put("did:web:fresh", now);
+        lookup.accessedAt.put("did:web:expiring", now.minusSeconds(10));
+        lookup.accessedAt.put("did:web:other", now.minusSeconds(160));
+
+        lookup.refreshExpiringLookups();
+
+        verify(urCache, times(1)).invalidate("did:web:expiring");
+        verify(lookupCache, times(1)).put(eq("did:web:expiring"), any(PartnerAPI.class));
+        verify(lookup.ur, never()).getDidDocument("did:web:other");
+        assertEquals(Set.of("did:web:fresh", "did:web:expiring", "did:web:other"), lookup.resolvedAt.keySet());
+        assertTrue(lookup.resolvedAt.get("did:web:expiring").isAfter(now.minusSeconds(1)));
+
+        lookup.lookupExecutor.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    void testCacheHitIsTrackedAsAccess() {
+        PartnerLookup lookup = new PartnerLookup();
+        lookup.cacheManager = mock(CacheManager.class);
+        SyncCache lookupCache = mock(SyncCache.class);
+        when(lookup.cacheManager.getCache(PartnerLookup.PARTNER_LOOKUP_CACHE)).thenReturn(lookupCache);
+        when(lookupCache.get(eq("did:web:cached"), eq(PartnerAPI.class), any(Supplier.class)))
+                .thenReturn(PartnerAPI.builder().did("did:web:cached").build());
+
+        Instant before = Instant.now();
+        assertEquals("did:web:cached", lookup.lookupPartner("did:web:cached").getDid());
+
+        assertFalse(lookup.accessedAt.get("did:web:cached").isBefore(before));
+        assertFalse(lookup.resolvedAt.containsKey("did:web:cached"));
+    }
 }
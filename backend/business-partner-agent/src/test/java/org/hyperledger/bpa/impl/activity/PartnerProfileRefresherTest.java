@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.activity;
+
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.aries.api.resolver.DIDDocument;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.api.exception.NetworkException;
+import org.hyperledger.bpa.client.DidDocClient;
+import org.hyperledger.bpa.client.api.ConditionalResponse;
+import org.hyperledger.bpa.impl.WebhookService;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.converter.LazyJson;
+import org.hyperledger.bpa.repository.PartnerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartnerProfileRefresherTest {
+
+    private static final String URL = "https://bpa.example.com/profile.jsonld";
+
+    @Mock
+    PartnerRepository partnerRepo;
+
+    @Mock
+    DidDocClient ur;
+
+    @Mock
+    PartnerLookup partnerLookup;
+
+    @Mock
+    Converter conv;
+
+    @Mock
+    WebhookService webhook;
+
+    @InjectMocks
+    PartnerProfileRefresher refresher;
+
+    private final VerifiablePresentation<VerifiableIndyCredential> vp = new VerifiablePresentation<>();
+
+    private Partner partner;
+
+    @BeforeEach
+    void setup() {
+        partner = Partner.builder()
+                .id(UUID.randomUUID())
+                .did("did:web:partner")
+                .profileEtag("\"v1\"")
+                .verifiablePresentation(LazyJson.of(VerifiablePresentation.<VerifiableIndyCredential>builder()
+                        .id("v1")
+                        .build()))
+                .build();
+        DIDDocument didDoc = mock(DIDDocument.class);
+        lenient().when(didDoc.findPublicProfileUrl()).thenReturn(Optional.of(URL));
+        lenient().when(ur.getDidDocument(partner.getDid())).thenReturn(Optional.of(didDoc));
+    }
+
+    @Test
+    void testNotModified() {
+        when(ur.getPublicProfile(URL, "\"v1\"", null))
+                .thenReturn(ConditionalResponse.<VerifiablePresentation<VerifiableIndyCredential>>builder()
+                        .notModified(true)
+                        .build());
+
+        assertEquals(PartnerProfileRefresher.Outcome.NOT_MODIFIED, refresher.refreshProfile(partner));
+        verifyNoInteractions(partnerRepo, partnerLookup, webhook);
+    }
+
+    @Test
+    void testSameContentOnlyStoresValidators() {
+        when(ur.getPublicProfile(URL, "\"v1\"", null))
+                .thenReturn(response(VerifiablePresentation.<VerifiableIndyCredential>builder().id("v1").build()));
+
+        assertEquals(PartnerProfileRefresher.Outcome.UNCHANGED, refresher.refreshProfile(partner));
+        verify(partnerRepo, times(1)).updateProfileValidators(partner.getId(), "\"v2\"", null);
+        verify(partnerRepo, never()).updateProfile(any(), any(), any(), any(), any());
+        verifyNoInteractions(partnerLookup);
+    }
+
+    @Test
+    void testChangedContentIsVerifiedAndStored() {
+        when(ur.getPublicProfile(URL, "\"v1\"", null)).thenReturn(response(vp));
+        when(conv.writeValueAsString(vp)).thenReturn(Optional.of("{\"id\":\"v2\"}"));
+        when(partnerLookup.verifyProfile(eq(vp), any())).thenReturn(PartnerAPI.builder().valid(Boolean.TRUE).build());
+
+        assertEquals(PartnerProfileRefresher.Outcome.UPDATED, refresher.refreshProfile(partner));
+        verify(partnerRepo, times(1)).updateProfile(partner.getId(), "{\"id\":\"v2\"}", Boolean.TRUE, "\"v2\"",
+                null);
+        verify(partnerLookup, times(1)).invalidate(partner.getDid());
+    }
+
+    @Test
+    void testUnresolvableDidWithoutProfileIsSkipped() {
+        Partner pairwise = Partner.builder().id(UUID.randomUUID()).did("did:sov:pairwise").build();
+        when(ur.getDidDocument(pairwise.getDid())).thenThrow(new NetworkException("not found"));
+
+        assertEquals(PartnerProfileRefresher.Outcome.SKIPPED, refresher.refreshProfile(pairwise));
+        verify(ur, never()).getPublicProfile(any(), any(), any());
+    }
+
+    @Test
+    void testUnresolvableDidWithProfileFails() {
+        when(ur.getDidDocument(partner.getDid())).thenThrow(new NetworkException("not found"));
+
+        assertEquals(PartnerProfileRefresher.Outcome.FAILED, refresher.refreshProfile(partner));
+    }
+
+    private ConditionalResponse<VerifiablePresentation<VerifiableIndyCredential>> response(
+            VerifiablePresentation<VerifiableIndyCredential> body) {
+        return ConditionalResponse.<VerifiablePresentation<VerifiableIndyCredential>>builder()
+                .body(body)
+                .etag("\"v2\"")
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.activity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.bpa.impl.activity.PublicDocumentCache.SerializedDocument;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.model.DidDocWeb;
+import org.hyperledger.bpa.model.converter.LazyJson;
+import org.hyperledger.bpa.repository.DidDocWebRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PublicDocumentCacheTest {
+
+    @Test
+    void testProfileIsLoadedOncePerVersion() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        PublicDocumentCache cache = new PublicDocumentCache();
+        cache.mapper = mapper;
+        cache.didRepo = mock(DidDocWebRepository.class);
+        Instant v1 = Instant.parse("2022-01-01T10:00:00.123456Z");
+        Instant v2 = v1.plusSeconds(1);
+        when(cache.didRepo.findVersion()).thenReturn(Optional.of(v1), Optional.of(v1), Optional.of(v2));
+        when(cache.didRepo.findDidDocSingle())
+                .thenReturn(Optional.of(didDocWeb(v1, "{ \"id\" : \"v1\" }")))
+                .thenReturn(Optional.of(didDocWeb(v2, "{\"id\":\"v2\"}")));
+
+        SerializedDocument first = cache.getProfile().orElseThrow();
+        // serialized like after an update, not as the json happens to be stored
+        VerifiablePresentation<VerifiableIndyCredential> vp = VerifiablePresentation.<VerifiableIndyCredential>builder()
+                .id("v1")
+                .build();
+        assertEquals(SerializedDocument.of(mapper.writeValueAsBytes(vp)).getEtag(), first.getEtag());
+        assertArrayEquals(first.getJson(),
+                new GZIPInputStream(new ByteArrayInputStream(first.getGzip())).readAllBytes());
+        assertSame(first, cache.getProfile().orElseThrow());
+        verify(cache.didRepo, times(1)).findDidDocSingle();
+
+        // written by another node
+        SerializedDocument second = cache.getProfile().orElseThrow();
+        assertNotEquals(first.getEtag(), second.getEtag());
+        verify(cache.didRepo, times(2)).findDidDocSingle();
+    }
+
+    @Test
+    void testNoDidDocument() {
+        PublicDocumentCache cache = new PublicDocumentCache();
+        cache.didRepo = mock(DidDocWebRepository.class);
+        when(cache.didRepo.findVersion()).thenReturn(Optional.empty());
+
+        assertTrue(cache.getProfile().isEmpty());
+        assertTrue(cache.getDidDocument().isEmpty());
+        verify(cache.didRepo, never()).findDidDocSingle();
+    }
+
+    private static DidDocWeb didDocWeb(Instant updatedAt, String profileJson) {
+        ObjectMapper mapper = new ObjectMapper();
+        return DidDocWeb
+                .builder()
+                .updatedAt(updatedAt)
+                .profileJson(LazyJson.fromJson(profileJson, json -> {
+                    try {
+                        return mapper.readValue(json, Converter.VP_TYPEREF);
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }))
+                .build();
+    }
+
+    @Test
+    void testMatchesIfNoneMatch() {
+        SerializedDocument doc = SerializedDocument.of("{}".getBytes());
+        assertTrue(doc.getEtag().startsWith("\"") && doc.getEtag().endsWith("\""));
+        assertTrue(doc.matches(doc.getEtag()));
+        assertTrue(doc.matches("\"other\", W/" + doc.getEtag()));
+        assertTrue(doc.matches("*"));
+        assertFalse(doc.matches("\"other\""));
+        assertFalse(doc.matches(null));
+    }
+}
@@ -21,30 +21,41 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
+import io.micronaut.scheduling.TaskScheduler;
 import org.hyperledger.aries.api.credentials.Credential;
 import org.hyperledger.aries.api.jsonld.VerifiableCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.aries.config.GsonConfig;
 import org.hyperledger.bpa.api.CredentialType;
+import org.hyperledger.bpa.impl.aries.config.SchemaChangedEvent;
 import org.hyperledger.bpa.impl.aries.config.SchemaService;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.model.BPACredentialExchange;
 import org.hyperledger.bpa.model.BPASchema;
+import org.hyperledger.bpa.model.DidDocWeb;
 import org.hyperledger.bpa.model.MyDocument;
+import org.hyperledger.bpa.model.converter.LazyJson;
+import org.hyperledger.bpa.repository.DidDocWebRepository;
+import org.hyperledger.bpa.repository.HolderCredExRepository;
+import org.hyperledger.bpa.repository.MyDocumentRepository;
 import org.hyperledger.bpa.repository.PartnerRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class VPManagerTest {
@@ -62,6 +73,21 @@ class VPManagerTest {
     @Mock
     private PartnerRepository partnerRepository;
 
+    @Mock
+    private MyDocumentRepository docRepo;
+
+    @Mock
+    private HolderCredExRepository holderCredExRepo;
+
+    @Mock
+    private DidDocWebRepository didRepo;
+
+    @Mock
+    private CryptoManager crypto;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
     @InjectMocks
     private final VPManager vpm = new VPManager();
 
@@ -160,6 +186,124 @@ class VPManagerTest {
         // System.out.println(GsonConfig.prettyPrinter().toJson(indyCred));
     }
 
+    @Test
+    void testProfileWith200CredentialsResolvesSchemaContextOnce() {
+        String schema1 = "8faozNpSjFfPJXYtgcPtmJ:2:commercialregister:1.2";
+        String schema2 = "M6Mbe3qx7vB4wpZF4sBRjt:2:bank_account:1.0";
+        when(schemaService.getSchemaFor(schema1)).thenReturn(Optional.of(BPASchema.builder()
+                .schemaId(schema1)
+                .schemaAttributeNames(Set.of("did", "companyName"))
+                .build()));
+        when(schemaService.getSchemaFor(schema2)).thenReturn(Optional.of(BPASchema.builder()
+                .schemaId(schema2)
+                .schemaAttributeNames(Set.of("iban", "bic"))
+                .build()));
+        when(identity.getDidPrefix()).thenReturn("did:sov:");
+
+        List<VerifiableCredential.VerifiableIndyCredential> vcs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String schemaId = i % 2 == 0 ? schema1 : schema2;
+            vcs.add(vpm.buildFromCredential(credential(schemaId, Map.of("companyName", "Company " + i))));
+        }
+
+        assertEquals(200, vcs.size());
+        assertEquals(vcs.get(0).getContext().get(2), vcs.get(198).getContext().get(2));
+        verify(schemaService, times(1)).getSchemaFor(schema1);
+        verify(schemaService, times(1)).getSchemaFor(schema2);
+
+        // deleting a schema drops its context
+        vpm.onSchemaChanged(SchemaChangedEvent.builder().schemaId(schema1).build());
+        vpm.buildFromCredential(credential(schema1, Map.of()));
+        verify(schemaService, times(2)).getSchemaFor(schema1);
+    }
+
+    private static BPACredentialExchange credential(String schemaId, Map<String, String> attrs) {
+        return BPACredentialExchange
+                .builder()
+                .id(UUID.randomUUID())
+                .credential(Credential
+                        .builder()
+                        .schemaId(schemaId)
+                        .credentialDefinitionId("8faozNpSjFfPJXYtgcPtmJ:3:CL:1041:tag")
+                        .attrs(attrs)
+                        .build())
+                .type(CredentialType.INDY)
+                .build();
+    }
+
+    @Test
+    void testContentHashIgnoresIssuanceDate() {
+        List<VerifiableCredential.VerifiableIndyCredential> first = List.of(vc("2021-01-01T00:00:00Z", "label"));
+        List<VerifiableCredential.VerifiableIndyCredential> second = List.of(vc("2021-06-01T00:00:00Z", "label"));
+        List<VerifiableCredential.VerifiableIndyCredential> changed = List.of(vc("2021-06-01T00:00:00Z", "other"));
+
+        assertEquals(VPManager.contentHash(first), VPManager.contentHash(second));
+        assertNotEquals(VPManager.contentHash(first), VPManager.contentHash(changed));
+        assertNotEquals(VPManager.contentHash(first), VPManager.contentHash(List.of()));
+    }
+
+    @Test
+    void testRegenerationRequestsAreCoalesced() {
+        vpm.regenerationDelay = Duration.ofSeconds(1);
+
+        vpm.recreateVerifiablePresentation();
+        vpm.recreateVerifiablePresentation();
+        vpm.recreateVerifiablePresentation();
+
+        ArgumentCaptor<Runnable> pass = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler, times(1)).schedule(eq(Duration.ofSeconds(1)), pass.capture());
+
+        // changes that happen once the pass started need another one
+        pass.getValue().run();
+        vpm.recreateVerifiablePresentation();
+        verify(taskScheduler, times(2)).schedule(eq(Duration.ofSeconds(1)), any(Runnable.class));
+    }
+
+    @Test
+    void testSigningIsSkippedWhileTheStoredContentIsTheSame() {
+        String hash = VPManager.contentHash(List.of());
+        VerifiablePresentation<VerifiableCredential.VerifiableIndyCredential> vp = VerifiablePresentation.<VerifiableCredential.VerifiableIndyCredential>builder()
+                .build();
+        DidDocWeb stored = DidDocWeb.builder()
+                .id(UUID.randomUUID())
+                .profileJson(LazyJson.of(vp))
+                .profileHash(hash)
+                .build();
+        when(didRepo.findDidDocSingle()).thenReturn(Optional.of(stored));
+
+        // signed before, possibly by another node
+        vpm.regenerate();
+        verifyNoInteractions(crypto);
+        assertEquals(1L, vpm.getRegenerationStats().getSkipped());
+
+        stored.setProfileHash("other content");
+        when(crypto.sign(any())).thenReturn(Optional.of(vp));
+        vpm.regenerate();
+        verify(didRepo, times(1)).updateProfileJsonAndProfileHash(eq(stored.getId()), any(), eq(hash));
+        assertEquals(1L, vpm.getRegenerationStats().getSigned());
+    }
+
+    @Test
+    void testFirstProfileIsStoredWithItsHash() {
+        VerifiablePresentation<VerifiableCredential.VerifiableIndyCredential> vp = VerifiablePresentation.<VerifiableCredential.VerifiableIndyCredential>builder()
+                .build();
+        when(didRepo.findDidDocSingle()).thenReturn(Optional.empty());
+        when(crypto.sign(any())).thenReturn(Optional.of(vp));
+
+        vpm.regenerate();
+
+        verify(didRepo, times(1)).save(argThat(d -> VPManager.contentHash(List.of()).equals(d.getProfileHash())));
+    }
+
+    private static VerifiableCredential.VerifiableIndyCredential vc(String issuanceDate, String label) {
+        return VerifiableCredential.VerifiableIndyCredential
+                .builder()
+                .id("urn:1")
+                .issuanceDate(issuanceDate)
+                .label(label)
+                .build();
+    }
+
     private Map<String, Object> createMap(String json) throws JsonProcessingException {
         final JsonNode node = m.readTree(json);
         return c.toMap(node);
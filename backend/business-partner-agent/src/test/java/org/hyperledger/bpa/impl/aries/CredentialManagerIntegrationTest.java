@@ -30,6 +30,7 @@ import org.hyperledger.bpa.RunWithAries;
 import org.hyperledger.bpa.client.CachingAriesClient;
 import org.hyperledger.bpa.impl.activity.CryptoManager;
 import org.hyperledger.bpa.impl.activity.Identity;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
 import org.hyperledger.bpa.impl.activity.VPManager;
 import org.hyperledger.bpa.impl.aries.config.SchemaService;
 import org.hyperledger.bpa.model.BPACredentialExchange;
@@ -67,6 +68,9 @@ public class CredentialManagerIntegrationTest extends RunWithAries {
     @Inject
     PartnerRepository partnerRepo;
 
+    @Inject
+    StateTransitionRecorder stateTransitions;
+
     @Inject
     VPManager vpMgmt;
 
@@ -121,9 +125,9 @@ public class CredentialManagerIntegrationTest extends RunWithAries {
         BPACredentialExchange ex = holderCredExRepo.findByCredentialExchangeId(offer.getCredentialExchangeId())
                 .orElseThrow();
         assertEquals(CredentialExchangeState.CREDENTIAL_ACKED, ex.getState());
-        assertNotNull(ex.getStateToTimestamp());
-        assertNotNull(ex.getStateToTimestamp().getStateToTimestamp());
-        assertEquals(4, ex.getStateToTimestamp().getStateToTimestamp().keySet().size());
+        assertNotNull(ex.getStateChangedAt());
+        assertNotNull(ex.getIssuedAt());
+        assertEquals(4, stateTransitions.timeline(ex.getId()).size());
         assertTrue(vpMgmt.getVerifiablePresentation().isEmpty());
 
         // make it public
@@ -186,9 +190,9 @@ public class CredentialManagerIntegrationTest extends RunWithAries {
 
         BPACredentialExchange ex = holderCredExRepo.findByCredentialExchangeId(offer.getCredExId()).orElseThrow();
         assertEquals(CredentialExchangeState.DONE, ex.getState());
-        assertNotNull(ex.getStateToTimestamp());
-        assertNotNull(ex.getStateToTimestamp().getStateToTimestamp());
-        assertEquals(4, ex.getStateToTimestamp().getStateToTimestamp().keySet().size());
+        assertNotNull(ex.getStateChangedAt());
+        assertNotNull(ex.getIssuedAt());
+        assertEquals(4, stateTransitions.timeline(ex.getId()).size());
         assertTrue(vpMgmt.getVerifiablePresentation().isEmpty());
 
         // make it public
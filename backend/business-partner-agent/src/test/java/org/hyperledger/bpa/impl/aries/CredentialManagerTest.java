@@ -25,6 +25,7 @@ import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.bpa.BaseTest;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.converter.LazyJson;
 import org.hyperledger.bpa.repository.PartnerRepository;
 import org.junit.jupiter.api.Test;
 
@@ -82,7 +83,7 @@ class CredentialManagerTest extends BaseTest {
                 .builder()
                 .did(DID)
                 .ariesSupport(Boolean.TRUE)
-                .verifiablePresentation(conv.toMap(vp))
+                .verifiablePresentation(LazyJson.of(vp))
                 .build());
 
         String iss = mgmt.resolveIssuer(c);
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.aries;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.aries.AriesClient;
+import org.hyperledger.aries.api.credentials.Credential.CredentialRevokedResult;
+import org.hyperledger.aries.api.exception.AriesException;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
+import org.hyperledger.bpa.client.LedgerExplorerClient;
+import org.hyperledger.bpa.client.api.LedgerQueryResult.DomainTransaction;
+import org.hyperledger.bpa.impl.activity.StateTransitionRecorder;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.HolderRevocationRegistry;
+import org.hyperledger.bpa.repository.HolderCredExRepository;
+import org.hyperledger.bpa.repository.HolderRevocationRegistryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HolderRevocationCheckerTest {
+
+    private static final String REV_REG = "M6Mbe3qx7vB4wpZF4sBRjt:4:M6Mbe3qx7vB4wpZF4sBRjt:3:CL:571:bank_account:"
+            + "CL_ACCUM:a9bbf3ea-1b66-4e30-bd2c-2c0a38cf0c93";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Mock
+    AriesClient ac;
+
+    @Mock
+    LedgerExplorerClient ledger;
+
+    @Mock
+    HolderCredExRepository holderCredExRepo;
+
+    @Mock
+    HolderRevocationRegistryRepository registryRepo;
+
+    @Mock
+    StateTransitionRecorder stateTransitions;
+
+    @InjectMocks
+    HolderRevocationChecker checker;
+
+    @BeforeEach
+    void setup() {
+        checker.executor = Executors.newFixedThreadPool(2);
+    }
+
+    @Test
+    void testOnlyNewEntriesAreEvaluated() throws Exception {
+        BPACredentialExchange one = credential("1");
+        BPACredentialExchange two = credential("2");
+        BPACredentialExchange three = credential("3");
+        when(registryRepo.findById(REV_REG))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(new HolderRevocationRegistry(REV_REG, 10, 1)));
+        when(ledger.queryRevocationRegistryEntries(REV_REG, 0)).thenReturn(Optional.of(List.of(entry(10, 1))));
+        when(ledger.queryRevocationRegistryEntries(REV_REG, 1))
+                .thenReturn(Optional.of(List.of(entry(10, 1), entry(12, 3))));
+
+        assertEquals(1, checker.checkRegistry(ledger, REV_REG, List.of(one, two, three)).size());
+        verify(holderCredExRepo, times(1)).updateRevoked(eq(one.getId()), eq(Boolean.TRUE), any());
+        verify(registryRepo).advance(REV_REG, 10, 1);
+
+        // index 1 is in the first entry, which has been evaluated already
+        assertEquals(1, checker.checkRegistry(ledger, REV_REG, List.of(one, two, three)).size());
+        verify(holderCredExRepo, times(1)).updateRevoked(eq(one.getId()), eq(Boolean.TRUE), any());
+        verify(holderCredExRepo, times(1)).updateRevoked(eq(three.getId()), eq(Boolean.TRUE), any());
+        verify(holderCredExRepo, never()).updateRevoked(eq(two.getId()), any(), any());
+        verify(registryRepo).advance(REV_REG, 12, 2);
+        verifyNoInteractions(ac);
+    }
+
+    @Test
+    void testEntriesAreAppliedInSeqNoOrder() throws Exception {
+        BPACredentialExchange one = credential("1");
+        BPACredentialExchange two = credential("2");
+        BPACredentialExchange revokedBefore = credential("3").setRevoked(Boolean.TRUE);
+        when(registryRepo.findById(REV_REG)).thenReturn(Optional.empty());
+        when(ledger.queryRevocationRegistryEntries(REV_REG, 0)).thenReturn(Optional.of(List.of(
+                entry(11, new int[] { 1, 3 }, new int[] { 2 }),
+                entry(10, new int[0], new int[] { 1, 3 }))));
+        when(holderCredExRepo.findByRoleAndRevokedTrueAndRevRegIdAndCredRevIdIn(
+                eq(CredentialExchangeRole.HOLDER), eq(REV_REG),
+                argThat(ids -> Set.copyOf(ids).equals(Set.of("1", "3")))))
+                        .thenReturn(List.of(revokedBefore));
+
+        assertEquals(1, checker.checkRegistry(ledger, REV_REG, List.of(one, two)).size());
+
+        // index 1 was issued again after it was revoked
+        verify(holderCredExRepo, never()).updateRevoked(eq(one.getId()), any(), any());
+        verify(holderCredExRepo, times(1)).updateRevoked(eq(two.getId()), eq(Boolean.TRUE), any());
+        verify(holderCredExRepo, times(1)).updateRevoked(eq(revokedBefore.getId()), eq(Boolean.FALSE), any());
+        verify(registryRepo).advance(REV_REG, 11, 2);
+    }
+
+    @Test
+    void testExplorerNotReachableFallsBackToAcaPy() throws Exception {
+        BPACredentialExchange one = credential("1");
+        BPACredentialExchange two = credential("2");
+        when(ledger.queryRevocationRegistryEntries(REV_REG, 0)).thenReturn(Optional.empty());
+        when(ac.credentialRevoked(one.getReferent()))
+                .thenReturn(Optional.of(new CredentialRevokedResult(Boolean.TRUE)));
+        when(ac.credentialRevoked(two.getReferent()))
+                .thenReturn(Optional.of(new CredentialRevokedResult(Boolean.FALSE)));
+
+        assertEquals(1, checker.checkRegistry(ledger, REV_REG, List.of(one, two)).size());
+        verify(holderCredExRepo, times(1)).updateRevoked(eq(one.getId()), eq(Boolean.TRUE), any());
+        verify(holderCredExRepo, never()).updateRevoked(eq(two.getId()), any(), any());
+    }
+
+    @Test
+    void testWithoutLedgerExplorerEachCredentialIsChecked() throws Exception {
+        checker.ledger = Optional.empty();
+        BPACredentialExchange one = credential("1");
+        BPACredentialExchange two = credential("2");
+        BPACredentialExchange notRevocable = credential("3").setRevRegId(null);
+        when(holderCredExRepo.findNotRevoked()).thenReturn(List.of(one, two, notRevocable));
+        when(ac.credentialRevoked(one.getReferent()))
+                .thenReturn(Optional.of(new CredentialRevokedResult(Boolean.TRUE)));
+        when(ac.credentialRevoked(two.getReferent())).thenThrow(new AriesException(404, "not found"));
+
+        checker.checkRevocationStatus();
+
+        verify(holderCredExRepo, times(1)).updateRevoked(eq(one.getId()), eq(Boolean.TRUE), any());
+        verify(holderCredExRepo, times(1)).updateReferent(two.getId(), null);
+        verify(ac, never()).credentialRevoked(notRevocable.getReferent());
+        verify(stateTransitions, times(1)).record(one);
+    }
+
+    private BPACredentialExchange credential(String credRevId) {
+        return BPACredentialExchange.builder()
+                .id(UUID.randomUUID())
+                .referent("referent-" + credRevId)
+                .revRegId(REV_REG)
+                .credRevId(credRevId)
+                .build();
+    }
+
+    private DomainTransaction entry(int seqNo, int... revoked) throws Exception {
+        return entry(seqNo, new int[0], revoked);
+    }
+
+    private DomainTransaction entry(int seqNo, int[] issued, int[] revoked) throws Exception {
+        return mapper.readValue("{\"txn\":{\"type\":\"114\",\"data\":{\"revocRegDefId\":\"" + REV_REG
+                + "\",\"value\":{\"issued\":" + mapper.writeValueAsString(issued)
+                + ",\"revoked\":" + mapper.writeValueAsString(revoked) + "}}},"
+                + "\"txnMetadata\":{\"seqNo\":" + seqNo + "}}", DomainTransaction.class);
+    }
+}
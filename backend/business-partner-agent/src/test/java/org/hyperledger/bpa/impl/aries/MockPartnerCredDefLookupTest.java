@@ -21,11 +21,12 @@ import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
 import org.hyperledger.bpa.api.CredentialType;
 import org.hyperledger.bpa.client.LedgerExplorerClient;
-import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+import org.hyperledger.bpa.client.api.LedgerQueryResult.DomainTransaction.TxnMetadata;
 import org.hyperledger.bpa.model.BPASchema;
 import org.hyperledger.bpa.model.Partner;
 import org.hyperledger.bpa.repository.BPARestrictionsRepository;
 import org.hyperledger.bpa.repository.BPASchemaRepository;
+import org.hyperledger.bpa.repository.LedgerCredentialDefinitionRepository;
 import org.hyperledger.bpa.repository.PartnerRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -39,7 +40,8 @@ import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @MicronautTest
@@ -61,6 +63,9 @@ class MockPartnerCredDefLookupTest {
     @Inject
     BPARestrictionsRepository restrictionsRepo;
 
+    @Inject
+    LedgerCredentialDefinitionRepository ledgerCredDefRepo;
+
     @BeforeEach
     public void setup() {
         lookup.setLedger(Optional.of(ledger));
@@ -93,14 +98,19 @@ class MockPartnerCredDefLookupTest {
                 BPASchema.builder().seqNo(977).type(CredentialType.INDY).build(),
                 BPASchema.builder().seqNo(9999).type(CredentialType.INDY).build()));
 
-        when(ledger.queryCredentialDefinitions(anyString()))
+        // schemas are queried in parallel
+        when(ledger.queryCredentialDefinitionTransactions("1077"))
                 .thenReturn(Optional.of(List.of(
-                        PartnerCredentialType.fromCredDefId("did-1:3:CL:1077:commercial register entry"),
-                        PartnerCredentialType.fromCredDefId("did-1:3:CL:1077:commereg test"),
-                        PartnerCredentialType.fromCredDefId("other:3:CL:1077:commreg"))))
+                        txn(10, "did-1:3:CL:1077:commercial register entry"),
+                        txn(11, "did-1:3:CL:1077:commereg test"),
+                        txn(12, "other:3:CL:1077:commreg"))));
+        when(ledger.queryCredentialDefinitionTransactions("977"))
                 .thenReturn(Optional.of(List.of(
-                        PartnerCredentialType.fromCredDefId("did-1:3:CL:977:bank"),
-                        PartnerCredentialType.fromCredDefId("did-2:3:CL:977:my-bank"))))
+                        txn(20, "did-1:3:CL:977:bank"),
+                        txn(21, "did-2:3:CL:977:my-bank"),
+                        // text search match on another schema
+                        txn(22, "did-2:3:CL:1977:other"))));
+        when(ledger.queryCredentialDefinitionTransactions("9999"))
                 .thenReturn(Optional.empty());
 
         lookup.lookupTypesForAllPartners();
@@ -117,5 +127,70 @@ class MockPartnerCredDefLookupTest {
 
         partners = pRepo.findBySupportedCredential("9999");
         assertEquals(0, partners.size());
+        assertEquals(0, pRepo.findBySupportedCredential("1977").size());
+
+        // second run is incremental, only newer transactions are added
+        when(ledger.queryCredentialDefinitionTransactions("977"))
+                .thenReturn(Optional.of(List.of(
+                        txn(20, "did-1:3:CL:977:bank"),
+                        txn(23, "did-2:3:CL:977:my-other-bank"))));
+        lookup.lookupTypesForAllPartners();
+
+        assertEquals(2, pRepo.findBySupportedCredential("977").size());
+        assertEquals(5, ledgerCredDefRepo.count());
+    }
+
+    @Test
+    void testPendingPartnerIsLinkedWithoutFullSync() {
+        Partner partner = pRepo.save(Partner
+                .builder()
+                .ariesSupport(Boolean.TRUE)
+                .did("did-3")
+                .connectionId("did-3")
+                .build());
+        when(schemaRepo.findAll()).thenReturn(List.of(
+                BPASchema.builder().seqNo(1077).type(CredentialType.INDY).build()));
+        when(ledger.queryCredentialDefinitionTransactions("did-3"))
+                .thenReturn(Optional.of(List.of(
+                        txn(30, "did-3:3:CL:1077:commercial register entry"),
+                        // schema that is not configured
+                        txn(31, "did-3:3:CL:571:bank"))));
+
+        lookup.lookupTypesForPartner(partner.getId());
+        lookup.processPendingPartners();
+
+        assertEquals(1, pRepo.findBySupportedCredential("1077").size());
+        assertEquals(0, pRepo.findBySupportedCredential("571").size());
+        // left to the sync, which would skip older transactions of the schema otherwise
+        assertEquals(0, ledgerCredDefRepo.count());
+        verify(ledger, never()).queryCredentialDefinitionTransactions("1077");
+    }
+
+    @Test
+    void testAddedSchemaIsSynced() {
+        pRepo.save(Partner
+                .builder()
+                .ariesSupport(Boolean.TRUE)
+                .did("did-4")
+                .connectionId("did-4")
+                .build());
+        String schemaId = "did-4:2:bank_account:1.0";
+        when(schemaRepo.findBySchemaId(schemaId)).thenReturn(Optional.of(
+                BPASchema.builder().schemaId(schemaId).seqNo(571).type(CredentialType.INDY).build()));
+        when(ledger.queryCredentialDefinitionTransactions("571"))
+                .thenReturn(Optional.of(List.of(txn(40, "did-4:3:CL:571:bank"))));
+
+        lookup.syncSchema(schemaId);
+
+        assertEquals(1, pRepo.findBySupportedCredential("571").size());
+        assertEquals(1, ledgerCredDefRepo.count());
+        verify(schemaRepo, never()).findAll();
+    }
+
+    private static TxnMetadata txn(int seqNo, String credDefId) {
+        TxnMetadata txn = new TxnMetadata();
+        txn.setSeqNo(seqNo);
+        txn.setTxnId(credDefId);
+        return txn;
     }
 }
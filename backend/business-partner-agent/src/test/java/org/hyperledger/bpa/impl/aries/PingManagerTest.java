@@ -19,22 +19,30 @@ package org.hyperledger.bpa.impl.aries;
 
 import lombok.NonNull;
 import org.hyperledger.aries.AriesClient;
+import org.hyperledger.aries.api.connection.ConnectionRecord;
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.exception.AriesException;
 import org.hyperledger.aries.api.trustping.PingEvent;
 import org.hyperledger.aries.api.trustping.PingEventState;
 import org.hyperledger.aries.api.trustping.PingRequest;
 import org.hyperledger.aries.api.trustping.PingResponse;
-import org.hyperledger.bpa.model.Partner;
 import org.hyperledger.bpa.repository.PartnerRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
@@ -52,82 +60,89 @@ class PingManagerTest {
     @InjectMocks
     private PingManager ping;
 
-    @Test
-    void testHappyFlow() throws Exception {
-        ping.checkConnections();
-
-        when(repo.findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter))
-                .thenReturn(List.of(
-                        createPartner("1"),
-                        createPartner("2")));
+    @BeforeEach
+    void setup() {
+        ping.executor = Executors.newFixedThreadPool(2);
+        ping.interval = Duration.ofMinutes(1);
+        ping.maxInterval = Duration.ofHours(1);
+        ping.parallelism = 2;
+        ping.batchSize = 100;
+        ping.staleGracePeriod = Duration.ofMinutes(10);
+        ping.staleDeleteRate = 1000;
+        ping.staleMaxDeletes = 1000;
+    }
 
+    @Test
+    void testDuePartnersArePinged() throws Exception {
+        when(repo.findConnectionIdsDueForPing(any(Instant.class), eq(100))).thenReturn(List.of("1", "2", "3"));
         when(aries.connectionsSendPing(anyString(), any(PingRequest.class)))
-                .thenReturn(Optional.of(new PingResponse("a")))
-                .thenReturn(Optional.of(new PingResponse("b")))
-                .thenReturn(Optional.of(new PingResponse("a")))
-                .thenReturn(Optional.of(new PingResponse("b")))
-                .thenReturn(Optional.of(new PingResponse("a")))
-                .thenReturn(Optional.of(new PingResponse("b")));
-
-        ping.handlePingEvent(PingEvent.of("a", PingEventState.RESPONSE_RECEIVED));
-        assertEquals(1, ping.getReceivedSize());
+                .thenReturn(Optional.of(new PingResponse("a")));
 
         ping.checkConnections();
 
-        verify(repo, times(2)).findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter);
+        verify(repo, times(1)).startPingRound(eq(List.of("1", "2", "3")), any(Instant.class),
+                eq(Duration.ofMinutes(1)), eq(Duration.ofHours(1)));
+        verify(aries, times(3)).connectionsSendPing(anyString(), any(PingRequest.class));
         verify(repo, never()).updateStateByConnectionId(anyString(), any(ConnectionState.class));
-        verify(repo, never()).updateStateAndLastSeenByConnectionId(any(), any(), any());
+    }
 
-        assertEquals(2, ping.getSentSize());
-        assertEquals(0, ping.getReceivedSize());
+    @Test
+    void testNothingDue() throws Exception {
+        when(repo.findConnectionIdsDueForPing(any(Instant.class), eq(100))).thenReturn(List.of());
 
         ping.checkConnections();
 
-        verify(repo, times(3)).findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter);
-        verify(repo, times(1)).updateStateByConnectionId("1", ConnectionState.PING_NO_RESPONSE);
-        verify(repo, times(1)).updateStateByConnectionId("2", ConnectionState.PING_NO_RESPONSE);
-        verify(repo, never()).updateStateAndLastSeenByConnectionId(any(), any(), any());
-
-        assertEquals(2, ping.getSentSize());
-        assertEquals(0, ping.getReceivedSize());
-
-        ping.handlePingEvent(PingEvent.of("a", PingEventState.RESPONSE_RECEIVED));
-        ping.handlePingEvent(PingEvent.of("b", PingEventState.RESPONSE_RECEIVED));
-        ping.handlePingEvent(PingEvent.of("comment", PingEventState.RECEIVED));
-
-        assertEquals(2, ping.getReceivedSize());
+        verify(repo, never()).startPingRound(anyList(), any(Instant.class), any(Duration.class), any(Duration.class));
+        verifyNoInteractions(aries);
+    }
 
-        ping.checkConnections();
+    @Test
+    void testUnknownConnection() throws Exception {
+        when(aries.connectionsSendPing(eq("1"), any(PingRequest.class)))
+                .thenThrow(new AriesException(404, "not found"));
 
-        verify(repo, times(1)).updateStateAndLastSeenByConnectionId(
-                argThat(a -> a.equals("1")),
-                argThat(a -> a.equals(ConnectionState.PING_RESPONSE)),
-                argThat(a -> a.isBefore(Instant.now())));
-        verify(repo, times(1)).updateStateAndLastSeenByConnectionId(
-                argThat(a -> a.equals("2")),
-                argThat(a -> a.equals(ConnectionState.PING_RESPONSE)),
-                argThat(a -> a.isBefore(Instant.now())));
+        assertEquals(PingManager.Outcome.NOT_FOUND, ping.sendPing("1"));
+        verify(repo, times(1)).updateStateByConnectionId("1", ConnectionState.PING_NO_RESPONSE);
+    }
 
-        assertEquals(2, ping.getSentSize());
+    @Test
+    void testOnlySentPingsAreRecorded() throws Exception {
+        when(aries.connectionsSendPing(eq("1"), any(PingRequest.class)))
+                .thenReturn(Optional.of(new PingResponse("a")));
+        when(aries.connectionsSendPing(eq("2"), any(PingRequest.class)))
+                .thenThrow(new IOException("aca-py down"));
+        when(aries.connectionsSendPing(eq("3"), any(PingRequest.class)))
+                .thenThrow(new AriesException(404, "not found"));
+
+        Instant before = Instant.now();
+        assertEquals(PingManager.Outcome.SENT, ping.sendPing("1"));
+        assertEquals(PingManager.Outcome.FAILED, ping.sendPing("2"));
+        assertEquals(PingManager.Outcome.NOT_FOUND, ping.sendPing("3"));
+
+        ping.flushPingEvents();
+
+        verify(repo, times(1)).recordPings(argThat(m -> m.keySet().equals(Set.of("1"))
+                && !m.get("1").isBefore(before)));
+        verify(repo, never()).recordPongs(anyMap());
     }
 
     @Test
-    void testInitialState() {
-        when(repo.findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter))
-                .thenReturn(List.of(
-                        createPartner("1"),
-                        createPartner("2")));
+    void testPongsAreWrittenInOneBatch() throws Exception {
+        ping.handlePingEvent(pingEvent("1", PingEventState.RESPONSE_RECEIVED));
+        ping.handlePingEvent(pingEvent("2", PingEventState.RESPONSE_RECEIVED));
+        ping.handlePingEvent(pingEvent("3", PingEventState.RECEIVED));
 
-        ping.checkConnections();
-        verify(repo, never()).updateStateByConnectionId(anyString(), any(ConnectionState.class));
+        ping.flushPingEvents();
+        ping.flushPingEvents();
 
-        assertEquals(0, ping.getSentSize());
+        verify(repo, times(1)).recordPongs(argThat(m -> m.keySet().equals(Set.of("1", "2"))));
+        verifyNoMoreInteractions(repo);
     }
 
     @Test
     void testRemoveStale() throws Exception {
-        when(aries.connectionIds()).thenReturn(List.of("1", "2", "3"));
-        when(repo.findAll()).thenReturn(List.of(Partner.builder().connectionId("1").build()));
+        when(aries.connections()).thenReturn(connections("1", "2", "3"));
+        when(repo.findAllConnectionIds()).thenReturn(List.of("1"));
 
         ping.deleteStaleConnections();
 
@@ -137,8 +152,8 @@ class PingManagerTest {
 
     @Test
     void testRemoveStaleOnlyBpa() throws Exception {
-        when(aries.connectionIds()).thenReturn(List.of());
-        when(repo.findAll()).thenReturn(List.of(Partner.builder().connectionId("1").build()));
+        when(aries.connections()).thenReturn(connections());
+        when(repo.findAllConnectionIds()).thenReturn(List.of("1"));
 
         ping.deleteStaleConnections();
 
@@ -147,8 +162,8 @@ class PingManagerTest {
 
     @Test
     void testRemoveStaleBothEmpty() throws Exception {
-        when(aries.connectionIds()).thenReturn(List.of());
-        when(repo.findAll()).thenReturn(List.of());
+        when(aries.connections()).thenReturn(connections());
+        when(repo.findAllConnectionIds()).thenReturn(List.of());
 
         ping.deleteStaleConnections();
 
@@ -157,19 +172,61 @@ class PingManagerTest {
 
     @Test
     void testRemoveStaleBothSame() throws Exception {
-        when(aries.connectionIds()).thenReturn(List.of("1", "2"));
-        when(repo.findAll()).thenReturn(List.of(
-                Partner.builder().connectionId("1").build(),
-                Partner.builder().connectionId("2").build()));
+        when(aries.connections()).thenReturn(connections("1", "2"));
+        when(repo.findAllConnectionIds()).thenReturn(List.of("1", "2"));
 
         ping.deleteStaleConnections();
 
         verify(aries, never()).connectionsRemove(anyString());
     }
 
-    private Partner createPartner(@NonNull String connectionId) {
-        return Partner.builder()
+    @Test
+    void testRemoveStaleKeepsNewConnections() throws Exception {
+        when(aries.connections()).thenReturn(Optional.of(List.of(
+                new ConnectionRecord().setConnectionId("1").setCreatedAt("2021-01-01 10:00:00.000000Z"),
+                new ConnectionRecord().setConnectionId("2")
+                        .setCreatedAt(Instant.now().toString().replace('T', ' ')))));
+        when(repo.findAllConnectionIds()).thenReturn(List.of());
+
+        ping.deleteStaleConnections();
+
+        verify(aries, times(1)).connectionsRemove("1");
+        verify(aries, never()).connectionsRemove("2");
+    }
+
+    @Test
+    void testRemoveStaleDryRun() throws Exception {
+        ping.staleDryRun = true;
+        when(aries.connections()).thenReturn(connections("1", "2"));
+        when(repo.findAllConnectionIds()).thenReturn(List.of("1"));
+
+        ping.deleteStaleConnections();
+
+        verify(aries, never()).connectionsRemove(anyString());
+    }
+
+    @Test
+    void testRemoveStaleIsLimited() throws Exception {
+        ping.staleMaxDeletes = 2;
+        when(aries.connections()).thenReturn(connections("1", "2", "3", "4"));
+        when(repo.findAllConnectionIds()).thenReturn(List.of());
+
+        ping.deleteStaleConnections();
+
+        verify(aries, times(2)).connectionsRemove(anyString());
+    }
+
+    private Optional<List<ConnectionRecord>> connections(String... ids) {
+        return Optional.of(Arrays.stream(ids)
+                .map(id -> new ConnectionRecord().setConnectionId(id))
+                .collect(Collectors.toList()));
+    }
+
+    private PingEvent pingEvent(@NonNull String connectionId, @NonNull PingEventState state) {
+        return PingEvent.builder()
                 .connectionId(connectionId)
+                .threadId("t" + connectionId)
+                .state(state)
                 .build();
     }
 }
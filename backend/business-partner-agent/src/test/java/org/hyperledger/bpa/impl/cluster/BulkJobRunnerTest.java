@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.cluster;
+
+import org.hyperledger.bpa.api.exception.NetworkException;
+import org.hyperledger.bpa.repository.BulkJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkJobRunnerTest {
+
+    private static final BulkJobType TYPE = BulkJobType.ISSUANCE;
+
+    private static final Instant NOW = Instant.ofEpochSecond(1000);
+
+    @Mock
+    BulkJobRepository repo;
+
+    @Mock
+    JobLeaseManager leases;
+
+    @InjectMocks
+    BulkJobRunner runner;
+
+    private final UUID jobId = UUID.randomUUID();
+
+    @BeforeEach
+    void setup() {
+        runner.lease = Duration.ofMinutes(2);
+        runner.maxFailures = 3;
+        runner.clock = Clock.fixed(NOW, ZoneOffset.UTC);
+        runner.jobExecutor = Executors.newSingleThreadExecutor();
+        lenient().when(leases.getNode()).thenReturn("node-1");
+    }
+
+    @Test
+    void testClaimsRunsAndReleasesJob() throws Exception {
+        when(repo.claim(jobId, "node-1", NOW, NOW.minus(Duration.ofMinutes(2)))).thenReturn(1);
+        BulkJobRunner.JobTask task = mock(BulkJobRunner.JobTask.class);
+
+        runner.submit(TYPE, repo, jobId, task);
+        awaitJobs();
+
+        verify(task).run(jobId);
+        verify(repo).release(jobId, "node-1");
+        verify(repo, never()).recordFailure(any(), anyInt());
+    }
+
+    @Test
+    void testSkipsJobThatRunsOnAnotherNode() throws Exception {
+        when(repo.claim(eq(jobId), any(), any(), any())).thenReturn(0);
+        BulkJobRunner.JobTask task = mock(BulkJobRunner.JobTask.class);
+
+        runner.submit(TYPE, repo, jobId, task);
+        awaitJobs();
+
+        verify(task, never()).run(any());
+        verify(repo, never()).release(any(), any());
+    }
+
+    @Test
+    void testUnavailableAcaPyIsNotCountedAsFailure() {
+        when(repo.claim(eq(jobId), any(), any(), any())).thenReturn(1);
+
+        runner.submit(TYPE, repo, jobId, id -> {
+            throw new IOException("aca-py not reachable");
+        });
+        awaitJobs();
+
+        verify(repo).release(jobId, "node-1");
+        verify(repo, never()).recordFailure(any(), anyInt());
+    }
+
+    @Test
+    void testFailedJobIsCountedAndReleased() {
+        when(repo.claim(eq(jobId), any(), any(), any())).thenReturn(1);
+
+        runner.submit(TYPE, repo, jobId, id -> {
+            throw new IllegalStateException("db error");
+        });
+        awaitJobs();
+
+        verify(repo).recordFailure(jobId, 3);
+        verify(repo).release(jobId, "node-1");
+    }
+
+    @Test
+    void testResumeSubmitsUnclaimedJobs() throws Exception {
+        when(repo.findUnclaimed(NOW.minus(Duration.ofMinutes(2)))).thenReturn(List.of(jobId));
+        when(repo.claim(eq(jobId), any(), any(), any())).thenReturn(1);
+        BulkJobRunner.JobTask task = mock(BulkJobRunner.JobTask.class);
+
+        runner.resume(TYPE, repo, task);
+        awaitJobs();
+
+        verify(task).run(jobId);
+    }
+
+    @Test
+    void testJobStopsWhenTheLeaseIsLost() throws Exception {
+        when(repo.claim(eq(jobId), any(), any(), any())).thenReturn(1);
+        when(repo.renew(eq(jobId), any(), any())).thenReturn(0);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch heartbeat = new CountDownLatch(1);
+        List<Integer> processed = new ArrayList<>();
+
+        runner.submit(TYPE, repo, jobId, id -> {
+            running.countDown();
+            assertTrue(heartbeat.await(5, TimeUnit.SECONDS));
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                runner.processParallel(id, List.of(1, 2), executor, processed::add);
+            } finally {
+                executor.shutdown();
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        runner.heartbeat();
+        heartbeat.countDown();
+        awaitJobs();
+
+        assertTrue(processed.isEmpty());
+        verify(repo, never()).recordFailure(any(), anyInt());
+    }
+
+    @Test
+    void testLeaseThatCouldNotBeRenewedExpires() throws Exception {
+        when(repo.claim(eq(jobId), any(), any(), any())).thenReturn(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch expired = new CountDownLatch(1);
+
+        runner.submit(TYPE, repo, jobId, id -> {
+            running.countDown();
+            assertTrue(expired.await(5, TimeUnit.SECONDS));
+            assertThrows(LeaseLostException.class, () -> runner.checkLease(id));
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        runner.checkLease(jobId);
+        runner.clock = Clock.fixed(NOW.plus(Duration.ofMinutes(3)), ZoneOffset.UTC);
+        expired.countDown();
+        awaitJobs();
+    }
+
+    @Test
+    void testProcessParallelStopsWhenAcaPyIsUnavailable() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Integer> processed = new ArrayList<>();
+        try {
+            assertThrows(NetworkException.class, () -> runner.processParallel(jobId, List.of(1, 2, 3), executor,
+                    i -> {
+                        if (i == 2) {
+                            throw new NetworkException("aca-py not available");
+                        }
+                        processed.add(i);
+                    }));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(List.of(1), processed);
+    }
+
+    private void awaitJobs() {
+        ExecutorService executor = runner.jobExecutor;
+        executor.shutdown();
+        try {
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+    }
+}
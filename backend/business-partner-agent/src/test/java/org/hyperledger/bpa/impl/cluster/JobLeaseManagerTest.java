@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.cluster;
+
+import io.micronaut.data.exceptions.DataAccessException;
+import org.hyperledger.bpa.controller.api.admin.ScheduledJobStatus;
+import org.hyperledger.bpa.model.ScheduledJob;
+import org.hyperledger.bpa.repository.ScheduledJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobLeaseManagerTest {
+
+    private static final String JOB = "trust-ping";
+
+    private static final Duration PERIOD = Duration.ofSeconds(10);
+
+    @Mock
+    ScheduledJobRepository jobRepo;
+
+    @Mock
+    Clock clock;
+
+    @InjectMocks
+    JobLeaseManager leases;
+
+    @BeforeEach
+    void setup() {
+        leases.node = "node-1";
+        leases.jobTimeout = Duration.ofHours(1);
+    }
+
+    @Test
+    void testRunsAndRecordsWhenLeaseIsFree() {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(4_000_000), Instant.ofEpochMilli(4_000_250));
+        when(jobRepo.claimRun(eq(JOB), eq("node-1"), eq(Instant.ofEpochMilli(4_000_000)), any(), any()))
+                .thenReturn(1);
+
+        AtomicBoolean ran = new AtomicBoolean();
+        leases.runExclusive(JOB, PERIOD, () -> ran.set(true));
+
+        assertTrue(ran.get());
+        verify(jobRepo).createIfAbsent(JOB);
+        // previous run must have started at least the period minus the tolerance ago,
+        // and must have finished unless it started before the timeout
+        verify(jobRepo).claimRun(JOB, "node-1", Instant.ofEpochMilli(4_000_000), Instant.ofEpochMilli(3_991_000),
+                Instant.ofEpochMilli(400_000));
+        verify(jobRepo).updateLastRun(JOB, Instant.ofEpochMilli(4_000_250), 250L, true, null);
+    }
+
+    @Test
+    void testSkipsWhenRunIsNotClaimed() {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(4_000_000));
+        when(jobRepo.claimRun(any(), any(), any(), any(), any())).thenReturn(0);
+
+        leases.runExclusive(JOB, PERIOD, () -> fail("must not run"));
+
+        verify(jobRepo, never()).updateLastRun(any(), any(), anyLong(), anyBoolean(), any());
+    }
+
+    @Test
+    void testSkipsWhenLeaseCanNotBeChecked() {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(4_000_000));
+        doThrow(new DataAccessException("connection refused")).when(jobRepo).createIfAbsent(JOB);
+
+        leases.runExclusive(JOB, PERIOD, () -> fail("must not run"));
+
+        verify(jobRepo, never()).claimRun(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testFailureIsRecorded() {
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        when(jobRepo.claimRun(any(), any(), any(), any(), any())).thenReturn(1);
+
+        assertThrows(IllegalStateException.class,
+                () -> leases.runExclusive(JOB, PERIOD, () -> {
+                    throw new IllegalStateException("aca-py not reachable");
+                }));
+
+        verify(jobRepo).updateLastRun(JOB, Instant.EPOCH, 0L, false, "aca-py not reachable");
+    }
+
+    @Test
+    void testListJobsShowsUnfinishedRunsAsRunning() {
+        Instant now = Instant.ofEpochMilli(10_000_000);
+        when(clock.instant()).thenReturn(now);
+        when(jobRepo.listOrderByName()).thenReturn(List.of(
+                job("finished", now.minusSeconds(60), now.minusSeconds(50)),
+                job("running", now.minusSeconds(60), now.minusSeconds(600)),
+                job("abandoned", now.minus(Duration.ofHours(2)), null),
+                job("never", null, null)));
+
+        List<Boolean> running = leases.listJobs()
+                .stream()
+                .map(ScheduledJobStatus::isRunning)
+                .collect(Collectors.toList());
+
+        assertEquals(List.of(Boolean.FALSE, Boolean.TRUE, Boolean.FALSE), running);
+    }
+
+    private static ScheduledJob job(String name, Instant lastStartedAt, Instant lastFinishedAt) {
+        return ScheduledJob.builder().name(name).lastStartedAt(lastStartedAt).lastFinishedAt(lastFinishedAt).build();
+    }
+}
@@ -116,7 +116,7 @@ class ConverterTest extends BaseTest {
         final Partner model = conv.toModelObject("did:web:test.foo", partner);
         assertTrue(model.getDid().startsWith("did"));
         assertNotNull(model.getVerifiablePresentation());
-        assertEquals(vp, conv.fromMap(model.getVerifiablePresentation(), Converter.VP_TYPEREF));
+        assertEquals(vp, model.getVerifiablePresentation().get());
     }
 
     @Test
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvUtilTest {
+
+    @Test
+    void testPlainFields() {
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "")),
+                CsvUtil.parse("a,b\r\n\n  \nc,\n"));
+    }
+
+    @Test
+    void testQuotedFields() {
+        assertEquals(List.of(
+                List.of("id", "address"),
+                List.of("1", "Main Street 1, 10115 Berlin"),
+                List.of("2", "the \"old\" mill\nsecond line")),
+                CsvUtil.parse("id,address\n"
+                        + "1,\"Main Street 1, 10115 Berlin\"\n"
+                        + "2,\"the \"\"old\"\" mill\nsecond line\""));
+    }
+
+    @Test
+    void testUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> CsvUtil.parse("1,\"Main Street 1, Berlin"));
+    }
+}
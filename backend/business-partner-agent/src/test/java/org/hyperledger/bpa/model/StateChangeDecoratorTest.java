@@ -18,37 +18,75 @@
 package org.hyperledger.bpa.model;
 
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 public class StateChangeDecoratorTest {
 
     @Test
-    void testFindLatestStateChange() {
+    void testLatestStateWins() {
         Instant i1 = Instant.ofEpochMilli(1633426742074L);
         Instant i2 = i1.plusMillis(33);
         Instant i3 = i2.plusMillis(32);
 
-        StateChangeDecorator.StateToTimestamp<ConnectionState> changes = StateChangeDecorator.StateToTimestamp
-                .<ConnectionState>builder()
-                .stateToTimestamp(Map.of(
-                        ConnectionState.RESPONSE, i2,
-                        ConnectionState.ACTIVE, i3,
-                        ConnectionState.REQUEST, i1))
+        Partner p = Partner.builder()
+                .pushStateChange(ConnectionState.REQUEST, i1)
                 .build();
+        // events might arrive out of order
+        p.pushStates(ConnectionState.ACTIVE, i3);
+        p.pushStates(ConnectionState.RESPONSE, i2);
 
-        Map.Entry<ConnectionState, Instant> latestTimestamp = changes.findLatestEntry();
-        Assertions.assertNotNull(latestTimestamp);
-        Assertions.assertEquals(ConnectionState.ACTIVE, latestTimestamp.getKey());
+        Assertions.assertEquals(ConnectionState.ACTIVE, p.getState());
+        Assertions.assertEquals(i3, p.getStateChangedAt());
 
-        List<ConnectionState> states = new ArrayList<>(changes.toApi().keySet());
-        Assertions.assertEquals(ConnectionState.REQUEST, states.get(0));
-        Assertions.assertEquals(ConnectionState.RESPONSE, states.get(1));
-        Assertions.assertEquals(ConnectionState.ACTIVE, states.get(2));
+        p.setId(UUID.randomUUID());
+        List<StateTransition> transitions = p.drainTransitions();
+        Assertions.assertEquals(List.of("REQUEST", "ACTIVE", "RESPONSE"), transitions
+                .stream()
+                .map(StateTransition::getState)
+                .collect(Collectors.toList()));
+        transitions.forEach(t -> {
+            Assertions.assertEquals(p.getId(), t.getEntityId());
+            Assertions.assertEquals(StateTransition.EntityType.PARTNER, t.getEntityType());
+        });
+        Assertions.assertTrue(p.drainTransitions().isEmpty());
+    }
+
+    @Test
+    void testInitialTransition() {
+        Instant ts = Instant.ofEpochMilli(1633426742074L);
+        Partner p = Partner.builder()
+                .id(UUID.randomUUID())
+                .pushStateChange(ConnectionState.INVITATION, ts)
+                .build();
+        Assertions.assertTrue(p.drainTransitions().isEmpty());
+
+        StateTransition initial = p.initialTransition().orElseThrow();
+        Assertions.assertEquals("INVITATION", initial.getState());
+        Assertions.assertEquals(ts, initial.getTs());
+        Assertions.assertEquals(p.getId(), initial.getEntityId());
+
+        Assertions.assertTrue(Partner.builder().build().initialTransition().isEmpty());
+    }
+
+    @Test
+    void testIssuedAtIsSetOnce() {
+        Instant acked = Instant.ofEpochMilli(1633426742074L);
+        BPACredentialExchange ex = BPACredentialExchange.builder()
+                .id(UUID.randomUUID())
+                .pushStateChange(CredentialExchangeState.OFFER_SENT, acked.minusSeconds(10))
+                .build();
+        Assertions.assertNull(ex.getIssuedAt());
+
+        ex.pushStates(CredentialExchangeState.CREDENTIAL_ACKED, acked);
+        ex.pushStates(CredentialExchangeState.DONE, acked.plusSeconds(1));
+        Assertions.assertEquals(acked, ex.getIssuedAt());
+        Assertions.assertEquals(CredentialExchangeState.DONE, ex.getState());
     }
 }
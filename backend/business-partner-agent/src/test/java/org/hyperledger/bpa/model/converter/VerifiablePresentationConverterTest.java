@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiablePresentationConverterTest {
+
+    private final VerifiablePresentationConverter converter = new VerifiablePresentationConverter();
+
+    VerifiablePresentationConverterTest() {
+        converter.setMapper(new ObjectMapper());
+    }
+
+    @Test
+    void testReadIsDeferredAndUntouchedValueIsWrittenAsRead() {
+        String json = "{\"id\":\"vp1\", \"type\":[\"VerifiablePresentation\"]}";
+        LazyJson<VerifiablePresentation<VerifiableIndyCredential>> lazy = converter.convertToEntityValue(json, null);
+
+        assertTrue(lazy.isRaw());
+        assertSame(json, converter.convertToPersistedValue(lazy, null));
+
+        assertEquals("vp1", lazy.get().getId());
+        assertFalse(lazy.isRaw());
+        assertSame(lazy.get(), lazy.get());
+    }
+
+    @Test
+    void testValueIsSerialized() {
+        VerifiablePresentation<VerifiableIndyCredential> vp = VerifiablePresentation
+                .<VerifiableIndyCredential>builder()
+                .id("vp2")
+                .build();
+        String json = converter.convertToPersistedValue(LazyJson.of(vp), null);
+
+        assertTrue(json.contains("\"id\":\"vp2\""));
+        assertEquals(LazyJson.of(vp), converter.convertToEntityValue(json, null));
+    }
+
+    @Test
+    void testNull() {
+        assertNull(converter.convertToEntityValue(null, null));
+        assertNull(converter.convertToPersistedValue(null, null));
+        assertNull(LazyJson.ofNullable(null));
+    }
+}
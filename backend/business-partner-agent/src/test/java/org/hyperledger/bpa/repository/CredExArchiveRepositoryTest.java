@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
+import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.StateTransition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest
+class CredExArchiveRepositoryTest {
+
+    @Inject
+    CredExArchiveRepository archiveRepo;
+
+    @Inject
+    IssuerCredExRepository credExRepo;
+
+    @Inject
+    PartnerRepository partnerRepo;
+
+    @Inject
+    StateTransitionRepository stateTransitionRepo;
+
+    @Test
+    void testArchiveTerminalExchanges() {
+        Instant old = Instant.now().minus(100, ChronoUnit.DAYS);
+        Partner p = createRandomPartner();
+
+        BPACredentialExchange declined = credExRepo.save(createDummyCredEx(p, CredentialExchangeRole.ISSUER,
+                CredentialExchangeState.DECLINED, old));
+        BPACredentialExchange issued = credExRepo.save(createDummyCredEx(p, CredentialExchangeRole.ISSUER,
+                CredentialExchangeState.CREDENTIAL_ACKED, old));
+        BPACredentialExchange revocable = credExRepo.save(createDummyCredEx(p, CredentialExchangeRole.ISSUER,
+                CredentialExchangeState.CREDENTIAL_ACKED, old).setRevRegId("revRegId").setCredRevId("1"));
+        BPACredentialExchange held = credExRepo.save(createDummyCredEx(p, CredentialExchangeRole.HOLDER,
+                CredentialExchangeState.CREDENTIAL_ACKED, old));
+        BPACredentialExchange recent = credExRepo.save(createDummyCredEx(p, CredentialExchangeRole.ISSUER,
+                CredentialExchangeState.PROBLEM, Instant.now()));
+        recordTransition(declined);
+        recordTransition(recent);
+
+        Instant olderThan = Instant.now().minus(90, ChronoUnit.DAYS);
+        assertEquals(1, archiveRepo.archive(olderThan, 1));
+        assertEquals(1, archiveRepo.archive(olderThan, 10));
+        assertEquals(0, archiveRepo.archive(olderThan, 10));
+
+        assertTrue(credExRepo.findById(declined.getId()).isEmpty());
+        assertTrue(credExRepo.findById(issued.getId()).isEmpty());
+        assertTrue(credExRepo.findById(revocable.getId()).isPresent());
+        assertTrue(credExRepo.findById(held.getId()).isPresent());
+        assertTrue(credExRepo.findById(recent.getId()).isPresent());
+
+        assertTrue(stateTransitionRepo.findByEntityIdOrderByTs(declined.getId()).isEmpty());
+        assertEquals(1, stateTransitionRepo.findByEntityIdOrderByTs(recent.getId()).size());
+    }
+
+    private void recordTransition(BPACredentialExchange credEx) {
+        stateTransitionRepo.save(StateTransition
+                .builder()
+                .entityType(StateTransition.EntityType.CREDENTIAL_EXCHANGE)
+                .entityId(credEx.getId())
+                .state(credEx.getState().name())
+                .ts(credEx.getStateChangedAt())
+                .build());
+    }
+
+    private static BPACredentialExchange createDummyCredEx(Partner partner, CredentialExchangeRole role,
+            CredentialExchangeState state, Instant stateChangedAt) {
+        return BPACredentialExchange
+                .builder()
+                .partner(partner)
+                .threadId(UUID.randomUUID().toString())
+                .credentialExchangeId(UUID.randomUUID().toString())
+                .role(role)
+                .state(state)
+                .stateChangedAt(stateChangedAt)
+                .build();
+    }
+
+    private Partner createRandomPartner() {
+        return partnerRepo.save(Partner
+                .builder()
+                .ariesSupport(Boolean.TRUE)
+                .did(UUID.randomUUID().toString())
+                .connectionId(UUID.randomUUID().toString())
+                .state(ConnectionState.ACTIVE)
+                .build());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.bpa.api.JobState;
+import org.hyperledger.bpa.model.IssuanceJob;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest
+class IssuanceJobRepositoryTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(2);
+
+    @Inject
+    IssuanceJobRepository jobRepo;
+
+    @Test
+    void testLeaseIsExclusiveUntilItExpires() {
+        UUID id = save().getId();
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        assertEquals(List.of(id), jobRepo.findUnclaimed(now.minus(LEASE)));
+        assertEquals(1, jobRepo.claim(id, "node-1", now, now.minus(LEASE)));
+        assertEquals(0, jobRepo.claim(id, "node-2", now, now.minus(LEASE)));
+        assertTrue(jobRepo.findUnclaimed(now.minus(LEASE)).isEmpty());
+        assertEquals(1, jobRepo.renew(id, "node-1", now));
+
+        Instant later = now.plus(LEASE).plusSeconds(1);
+        assertEquals(List.of(id), jobRepo.findUnclaimed(later.minus(LEASE)));
+        assertEquals(1, jobRepo.claim(id, "node-2", later, later.minus(LEASE)));
+        assertEquals(0, jobRepo.renew(id, "node-1", later));
+
+        jobRepo.release(id, "node-1");
+        assertEquals(0, jobRepo.claim(id, "node-1", later, later.minus(LEASE)));
+        jobRepo.release(id, "node-2");
+        assertEquals(1, jobRepo.claim(id, "node-1", later, later.minus(LEASE)));
+    }
+
+    @Test
+    void testJobIsGivenUpAfterMaxFailures() {
+        UUID id = save().getId();
+
+        jobRepo.recordFailure(id, 2);
+        assertEquals(JobState.RUNNING, jobRepo.findById(id).orElseThrow().getState());
+        jobRepo.recordFailure(id, 2);
+        assertEquals(JobState.FAILED, jobRepo.findById(id).orElseThrow().getState());
+
+        Instant now = Instant.now();
+        assertEquals(0, jobRepo.claim(id, "node-1", now, now.minus(LEASE)));
+        assertTrue(jobRepo.findUnclaimed(now.minus(LEASE)).isEmpty());
+    }
+
+    private IssuanceJob save() {
+        return jobRepo.save(IssuanceJob
+                .builder()
+                .state(JobState.RUNNING)
+                .credDefId(UUID.randomUUID())
+                .total(1)
+                .build());
+    }
+}
@@ -20,12 +20,15 @@ package org.hyperledger.bpa.repository;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
 import org.hyperledger.aries.api.credentials.Credential;
+import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
 import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
 import org.hyperledger.bpa.model.BPACredentialExchange;
+import org.hyperledger.bpa.model.CredExPartnerSummary;
 import org.hyperledger.bpa.model.Partner;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -62,4 +65,44 @@ public class IssuerCredExRepositoryTest {
         Assertions.assertNotNull(exchange.getCredential());
         Assertions.assertEquals("val1", exchange.getCredential().getAttrs().get("attr1"));
     }
+
+    @Test
+    void testListPartnerSummaries() {
+        Partner p = partnerRepo.save(Partner.builder()
+                .did("did-2")
+                .alias("Partner 2")
+                .ariesSupport(Boolean.TRUE)
+                .build());
+        BPACredentialExchange first = saveExchange(p, CredentialExchangeRole.ISSUER);
+        BPACredentialExchange second = saveExchange(p, CredentialExchangeRole.ISSUER);
+        saveExchange(p, CredentialExchangeRole.HOLDER);
+
+        List<CredExPartnerSummary> page = issuerCredExRepo.listPartnerSummaries(
+                CredentialExchangeRole.ISSUER.name(), p.getId(), null, null, 1);
+        Assertions.assertEquals(1, page.size());
+        Assertions.assertEquals(second.getId(), page.get(0).getCredExId());
+        Assertions.assertEquals(p.getId(), page.get(0).getPartnerId());
+        Assertions.assertEquals("Partner 2", page.get(0).getAlias());
+
+        CredExPartnerSummary last = page.get(0);
+        Assertions.assertEquals(issuerCredExRepo.findById(second.getId()).orElseThrow().getUpdatedAt(),
+                last.getUpdatedAt());
+        page = issuerCredExRepo.listPartnerSummaries(
+                CredentialExchangeRole.ISSUER.name(), p.getId(), last.getUpdatedAt(), last.getCredExId(), 10);
+        Assertions.assertEquals(1, page.size());
+        Assertions.assertEquals(first.getId(), page.get(0).getCredExId());
+
+        Assertions.assertEquals(3, issuerCredExRepo.listPartnerSummaries(null, p.getId(), null, null, 10).size());
+    }
+
+    private BPACredentialExchange saveExchange(Partner p, CredentialExchangeRole role) {
+        return issuerCredExRepo.save(BPACredentialExchange
+                .builder()
+                .threadId(UUID.randomUUID().toString())
+                .credentialExchangeId(UUID.randomUUID().toString())
+                .state(CredentialExchangeState.OFFER_SENT)
+                .role(role)
+                .partner(p)
+                .build());
+    }
 }
@@ -21,9 +21,11 @@ import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
 import org.hyperledger.aries.api.present_proof.PresentationExchangeState;
 import org.hyperledger.bpa.model.PartnerProof;
+import org.hyperledger.bpa.model.StateTransition;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -35,6 +37,9 @@ class PartnerProofRepositoryTest {
     @Inject
     PartnerProofRepository repo;
 
+    @Inject
+    StateTransitionRepository transitionRepo;
+
     @Test
     void testUpdateProof() {
         PartnerProof pp = PartnerProof
@@ -70,8 +75,10 @@ class PartnerProofRepositoryTest {
         pp = repo.findById(pp.getId()).orElseThrow();
 
         assertEquals(PresentationExchangeState.PRESENTATION_ACKED, pp.getState());
-        assertEquals(PresentationExchangeState.PRESENTATION_ACKED,
-                pp.getStateToTimestamp().toApi().keySet().toArray()[2]);
+        assertEquals(Instant.ofEpochMilli(1631780000000L), pp.getStateChangedAt());
+        List<StateTransition> transitions = transitionRepo.findByEntityIdOrderByTs(pp.getId());
+        assertEquals(3, transitions.size());
+        assertEquals(PresentationExchangeState.PRESENTATION_ACKED.name(), transitions.get(2).getState());
     }
 
 }
@@ -17,24 +17,29 @@
  */
 package org.hyperledger.bpa.repository;
 
+import io.micronaut.data.exceptions.OptimisticLockException;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.aries.api.present_proof.PresentationExchangeState;
 import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
-import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.PartnerProof;
+import org.hyperledger.bpa.model.PartnerSupportedCredential;
+import org.hyperledger.bpa.model.converter.LazyJson;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,7 +53,13 @@ class PartnerRepositoryTest {
     TagRepository tagRepo;
 
     @Inject
-    Converter conv;
+    PartnerSupportedCredentialRepository supportedCredRepo;
+
+    @Inject
+    PartnerProofRepository proofRepo;
+
+    @Inject
+    StateTransitionRepository transitionRepo;
 
     @Test
     void testUpdateAlias() {
@@ -211,7 +222,7 @@ class PartnerRepositoryTest {
 
     private void createPartnerWithCredentialType(int seqno) {
         final String did = RandomStringUtils.random(16);
-        partnerRepo.save(Partner
+        Partner p = partnerRepo.save(Partner
                 .builder()
                 .ariesSupport(Boolean.TRUE)
                 .did(did)
@@ -221,8 +232,7 @@ class PartnerRepositoryTest {
         final List<PartnerCredentialType> sc = List.of(
                 PartnerCredentialType.fromCredDefId("M6Mbe3qx7vB4wpZF4sBRj1:3:CL:" + seqno + ":ba"),
                 PartnerCredentialType.fromCredDefId("M6Mbe3qx7vB4wpZF4sBRj2:3:CL:" + ++seqno + ":bank_account"));
-        Map<String, Object> map = conv.toMap(new Foo(sc));
-        partnerRepo.updateByDid(did, map);
+        sc.forEach(type -> supportedCredRepo.save(PartnerSupportedCredential.from(p.getId(), type)));
     }
 
     @Test
@@ -234,7 +244,9 @@ class PartnerRepositoryTest {
                 .connectionId("con1")
                 .build());
 
-        partnerRepo.updateVerifiablePresentation(partner.getId(), Map.of(), Boolean.TRUE, "alias", "did:indy:public");
+        partnerRepo.updateVerifiablePresentation(partner.getId(),
+                LazyJson.of(VerifiablePresentation.<VerifiableIndyCredential>builder().build()), Boolean.TRUE,
+                "alias", "did:indy:public");
 
         Optional<Partner> reload = partnerRepo.findById(partner.getId());
         assertTrue(reload.isPresent());
@@ -261,11 +273,97 @@ class PartnerRepositoryTest {
         assertEquals(1, pingTrue.size());
     }
 
-    @Data
-    @AllArgsConstructor
-    @NoArgsConstructor
-    public static class Foo {
-        List<PartnerCredentialType> wrapped;
+    @Test
+    void testConcurrentUpdatesAreDetected() {
+        Partner p = partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did1").connectionId("con1")
+                .state(ConnectionState.REQUEST).build());
+        assertEquals(0L, p.getVersion());
+
+        Partner nodeA = partnerRepo.findById(p.getId()).orElseThrow();
+        Partner nodeB = partnerRepo.findById(p.getId()).orElseThrow();
+
+        partnerRepo.updateState(nodeA.getId(), nodeA.getVersion(), ConnectionState.ACTIVE, Instant.now());
+        assertThrows(OptimisticLockException.class, () -> partnerRepo.updateState(
+                nodeB.getId(), nodeB.getVersion(), ConnectionState.RESPONSE, Instant.now()));
+        assertThrows(OptimisticLockException.class, () -> partnerRepo.update(nodeB.setAlias("stale")));
+
+        Partner reload = partnerRepo.findById(p.getId()).orElseThrow();
+        assertEquals(1L, reload.getVersion());
+        assertEquals(ConnectionState.ACTIVE, reload.getState());
+        assertNull(reload.getAlias());
+    }
+
+    @Test
+    void testDeleteRemovesStateHistoryOfExchanges() {
+        Partner p = partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did1").connectionId("con1")
+                .pushStateChange(ConnectionState.REQUEST, Instant.now()).build());
+        PartnerProof pp = proofRepo.save(PartnerProof.builder().partnerId(p.getId()).presentationExchangeId("pres-1")
+                .pushStateChange(PresentationExchangeState.REQUEST_SENT, Instant.now()).build());
+        assertFalse(transitionRepo.findByEntityIdOrderByTs(p.getId()).isEmpty());
+        assertFalse(transitionRepo.findByEntityIdOrderByTs(pp.getId()).isEmpty());
+
+        partnerRepo.deleteByPartnerId(p.getId());
+
+        assertTrue(transitionRepo.findByEntityIdOrderByTs(p.getId()).isEmpty());
+        assertTrue(transitionRepo.findByEntityIdOrderByTs(pp.getId()).isEmpty());
+    }
+
+    @Test
+    void testFindResolvableByIdGreaterThan() {
+        Partner web = partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did:web:partner").build());
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did:peer:1abc").build());
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did:sov:unknown").build());
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).build());
+
+        List<Partner> resolvable = partnerRepo.findResolvableByIdGreaterThan(new UUID(0, 0), "did:sov:unknown",
+                "did:peer:%", 10);
+        assertEquals(List.of(web.getId()), resolvable.stream().map(Partner::getId).collect(Collectors.toList()));
     }
 
+    @Test
+    void testFindAllConnectionIds() {
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did1").connectionId("con1").build());
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.FALSE).did("did2").build());
+
+        assertEquals(List.of("con1"), partnerRepo.findAllConnectionIds());
+    }
+
+    @Test
+    void testPingRounds() throws Exception {
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did1").connectionId("con1")
+                .state(ConnectionState.ACTIVE).trustPing(Boolean.TRUE).build());
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did2").connectionId("con2")
+                .state(ConnectionState.ACTIVE).trustPing(Boolean.FALSE).build());
+        Instant t0 = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Duration interval = Duration.ofMinutes(1);
+
+        assertEquals(List.of("con1"), partnerRepo.findConnectionIdsDueForPing(t0, 10));
+        assertEquals(1, partnerRepo.startPingRound(List.of("con1"), t0, interval, Duration.ofHours(1)));
+        assertTrue(partnerRepo.findConnectionIdsDueForPing(t0, 10).isEmpty());
+        assertEquals(1, partnerRepo.recordPings(Map.of("con1", t0.plusMillis(20))));
+
+        assertEquals(1, partnerRepo.recordPongs(Map.of("con1", t0.plusMillis(150))));
+        Partner answered = partnerRepo.findByConnectionId("con1").orElseThrow();
+        assertEquals(ConnectionState.PING_RESPONSE, answered.getState());
+        assertEquals(130, answered.getPingRttMs());
+
+        // the ping could not be sent, so there is no answer to wait for
+        Instant t1 = t0.plus(Duration.ofMinutes(2));
+        assertEquals(List.of("con1"), partnerRepo.findConnectionIdsDueForPing(t1, 10));
+        partnerRepo.startPingRound(List.of("con1"), t1, interval, Duration.ofHours(1));
+        assertEquals(ConnectionState.PING_RESPONSE, partnerRepo.findByConnectionId("con1").orElseThrow().getState());
+
+        Instant t2 = t1.plus(Duration.ofMinutes(2));
+        partnerRepo.startPingRound(List.of("con1"), t2, interval, Duration.ofHours(1));
+        assertEquals(ConnectionState.PING_RESPONSE, partnerRepo.findByConnectionId("con1").orElseThrow().getState());
+        partnerRepo.recordPings(Map.of("con1", t2));
+
+        // no answer, next ping after two intervals at the earliest
+        t2 = t2.plus(Duration.ofMinutes(2));
+        partnerRepo.startPingRound(List.of("con1"), t2, interval, Duration.ofHours(1));
+        assertEquals(ConnectionState.PING_NO_RESPONSE,
+                partnerRepo.findByConnectionId("con1").orElseThrow().getState());
+        assertTrue(partnerRepo.findConnectionIdsDueForPing(t2.plus(Duration.ofSeconds(119)), 10).isEmpty());
+        assertEquals(List.of("con1"), partnerRepo.findConnectionIdsDueForPing(t2.plus(Duration.ofMinutes(3)), 10));
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+import org.hyperledger.bpa.model.Partner;
+import org.hyperledger.bpa.model.PartnerSupportedCredential;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@MicronautTest
+class PartnerSupportedCredentialRepositoryTest {
+
+    @Inject
+    PartnerRepository partnerRepo;
+
+    @Inject
+    PartnerSupportedCredentialRepository supportedCredRepo;
+
+    @Test
+    void testFindAndDeleteByPartnerIdIn() {
+        UUID p1 = createPartner("did:sov:1");
+        UUID p2 = createPartner("did:sov:2");
+
+        supportedCredRepo.saveAll(List.of(supported(p1, "1:3:CL:571:ba"), supported(p1, "1:3:CL:573:bank"),
+                supported(p2, "2:3:CL:571:ba")));
+        assertEquals(3, supportedCredRepo.findByPartnerIdIn(List.of(p1, p2)).size());
+        assertEquals(2, partnerRepo.findBySupportedCredential("571").size());
+        assertEquals(1, partnerRepo.findBySupportedCredential("573").size());
+
+        supportedCredRepo.deleteByPartnerIdIn(List.of(p1));
+        assertEquals(0, supportedCredRepo.findByPartnerId(p1).size());
+        assertEquals(1, supportedCredRepo.findByPartnerId(p2).size());
+        assertEquals(0, partnerRepo.findBySupportedCredential("573").size());
+    }
+
+    @Test
+    void testReplaceByPartnerIdIn() {
+        UUID p1 = createPartner("did:sov:1");
+        UUID p2 = createPartner("did:sov:2");
+        supportedCredRepo.saveAll(List.of(supported(p1, "1:3:CL:571:ba"), supported(p1, "1:3:CL:573:bank"),
+                supported(p2, "2:3:CL:571:ba")));
+
+        supportedCredRepo.replaceByPartnerIdIn(List.of(p1), List.of(supported(p1, "1:3:CL:575:other")));
+        assertEquals(1, supportedCredRepo.findByPartnerId(p1).size());
+        assertEquals(1, supportedCredRepo.findByPartnerId(p2).size());
+        assertEquals(1, partnerRepo.findBySupportedCredential("571").size());
+        assertEquals(0, partnerRepo.findBySupportedCredential("573").size());
+        assertEquals(1, partnerRepo.findBySupportedCredential("575").size());
+
+        supportedCredRepo.replaceByPartnerIdIn(List.of(p1, p2), List.of());
+        assertEquals(0, supportedCredRepo.count());
+    }
+
+    @Test
+    void testDeletePartnerCascades() {
+        UUID p1 = createPartner("did:sov:1");
+        supportedCredRepo.save(supported(p1, "1:3:CL:571:ba"));
+
+        partnerRepo.deleteByPartnerId(p1);
+
+        assertEquals(0, supportedCredRepo.count());
+    }
+
+    private UUID createPartner(String did) {
+        return partnerRepo.save(Partner
+                .builder()
+                .ariesSupport(Boolean.TRUE)
+                .did(did)
+                .connectionId(did)
+                .build()).getId();
+    }
+
+    private static PartnerSupportedCredential supported(UUID partnerId, String credDefId) {
+        return PartnerSupportedCredential.from(partnerId, PartnerCredentialType.fromCredDefId(credDefId));
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.context.BeanContext;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.inject.ExecutableMethod;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.micronaut.transaction.jdbc.DelegatingDataSource;
+import jakarta.inject.Inject;
+import org.hyperledger.bpa.controller.api.activity.ActivityRole;
+import org.hyperledger.bpa.controller.api.activity.ActivityType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks via EXPLAIN that the lookups which run on every aca-py event do not
+ * scan whole tables. The tables are seeded within a transaction that is rolled
+ * back at the end, so other tests do not see the rows.
+ */
+@MicronautTest(transactional = false)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RepositoryIndexTest {
+
+    private static final int PARTNERS = 5_000;
+    private static final int EXCHANGES = 20_000;
+
+    @Inject
+    BeanContext beanContext;
+
+    @Inject
+    DataSource dataSource;
+
+    private Connection con;
+
+    @BeforeAll
+    void seed() throws SQLException {
+        con = DelegatingDataSource.unwrapDataSource(dataSource).getConnection();
+        con.setAutoCommit(false);
+        try (Statement s = con.createStatement()) {
+            s.execute("INSERT INTO partner (id, did, aries_support, connection_id, invitation_msg_id) "
+                    + "SELECT md5('p' || i)::uuid, 'did:sov:' || i, true, 'con-' || i, 'inv-' || i "
+                    + "FROM generate_series(1, " + PARTNERS + ") i");
+            s.execute("INSERT INTO bpa_credential_exchange (id, partner_id, type, thread_id, "
+                    + "credential_exchange_id, role, state, referent, revoked, credential) "
+                    + "SELECT md5('c' || i)::uuid, md5('p' || (i % " + PARTNERS + " + 1))::uuid, 'INDY', "
+                    + "'thread-' || i, 'cred-ex-' || i, CASE WHEN i % 2 = 0 THEN 'HOLDER' ELSE 'ISSUER' END, "
+                    + "'DONE', 'ref-' || i, i % 100 > 0, jsonb_build_object('schemaId', 'schema-' || i % 50, "
+                    + "'credentialDefinitionId', 'cred-def-' || i % 500, 'attrs', jsonb_build_object('name', "
+                    + "'name-' || i)) FROM generate_series(1, " + EXCHANGES + ") i");
+            s.execute("INSERT INTO partner_proof (id, partner_id, created_at, presentation_exchange_id, thread_id, "
+                    + "role, state) "
+                    + "SELECT md5('pp' || i)::uuid, md5('p' || (i % " + PARTNERS + " + 1))::uuid, now(), "
+                    + "'pres-ex-' || i, 'thread-' || i, 'VERIFIER', 'VERIFIED' "
+                    + "FROM generate_series(1, " + EXCHANGES + ") i");
+            s.execute("INSERT INTO activity (id, partner_id, link_id, type, role, state, completed) "
+                    + "SELECT md5('a' || i)::uuid, md5('p' || (i % " + PARTNERS + " + 1))::uuid, "
+                    + "md5('c' || i)::uuid, 'CREDENTIAL_EXCHANGE', 'CREDENTIAL_EXCHANGE_ISSUER', "
+                    + "'CREDENTIAL_EXCHANGE_ACCEPTED', true FROM generate_series(1, " + EXCHANGES + ") i");
+            s.execute("INSERT INTO chat_message (id, partner_id, content, incoming, created_at) "
+                    + "SELECT md5('m' || i)::uuid, md5('p' || (i % " + PARTNERS + " + 1))::uuid, 'hello', true, now() "
+                    + "FROM generate_series(1, " + EXCHANGES + ") i");
+            s.execute("INSERT INTO state_transition (entity_type, entity_id, state, ts) "
+                    + "SELECT 'CREDENTIAL_EXCHANGE', md5('c' || (i % " + EXCHANGES + " + 1))::uuid, 'DONE', now() "
+                    + "FROM generate_series(1, " + EXCHANGES + ") i");
+            s.execute("ANALYZE");
+        }
+    }
+
+    @AfterAll
+    void rollback() throws SQLException {
+        con.rollback();
+        con.close();
+    }
+
+    @Test
+    void testPartnerLookups() throws SQLException {
+        assertUsesIndex("partner", PartnerRepository.class, "findByConnectionId",
+                new Class[] { String.class }, "con-42");
+        assertUsesIndex("partner", PartnerRepository.class, "findByInvitationMsgId",
+                new Class[] { String.class }, "inv-42");
+        assertUsesIndex("partner", PartnerRepository.class, "findByDid",
+                new Class[] { String.class }, "did:sov:42");
+    }
+
+    @Test
+    void testCredentialExchangeLookups() throws SQLException {
+        assertUsesIndex("bpa_credential_exchange", IssuerCredExRepository.class, "findByCredentialExchangeId",
+                new Class[] { String.class }, "cred-ex-42");
+        assertUsesIndex("bpa_credential_exchange", HolderCredExRepository.class, "findByCredentialExchangeId",
+                new Class[] { String.class }, "cred-ex-42");
+        assertUsesIndex("bpa_credential_exchange", HolderCredExRepository.class, "findByReferent",
+                new Class[] { String.class }, "ref-42");
+        assertUsesIndex("bpa_credential_exchange", HolderCredExRepository.class, "findByPartnerId",
+                new Class[] { UUID.class }, partnerId(42));
+    }
+
+    @Test
+    void testCredentialExchangeListing() throws SQLException {
+        assertUsesIndex("bpa_credential_exchange", IssuerCredExRepository.class, "listPartnerSummaries",
+                new Class[] { String.class, UUID.class, Instant.class, UUID.class, int.class },
+                null, null, partnerId(42), partnerId(42), null, null, null, 100);
+    }
+
+    @Test
+    void testCredentialJsonLookups() throws SQLException {
+        assertUsesIndex("bpa_credential_exchange", HolderCredExRepository.class,
+                "findBySchemaIdAndCredentialDefinitionId", new Class[] { String.class, String.class },
+                "schema-42", "cred-def-42");
+        assertUsesIndex("bpa_credential_exchange", HolderCredExRepository.class, "findCredentialsByAttributes",
+                new Class[] { String.class }, "{\"name\": \"name-42\"}");
+        assertUsesIndex("bpa_credential_exchange", HolderCredExRepository.class, "findNotRevoked",
+                new Class[0]);
+    }
+
+    @Test
+    void testProofExchangeLookups() throws SQLException {
+        assertUsesIndex("partner_proof", PartnerProofRepository.class, "findByPresentationExchangeId",
+                new Class[] { String.class }, "pres-ex-42");
+        assertUsesIndex("partner_proof", PartnerProofRepository.class, "findByThreadId",
+                new Class[] { String.class }, "thread-42");
+        assertUsesIndex("partner_proof", PartnerProofRepository.class, "findByPartnerIdOrderByRole",
+                new Class[] { UUID.class }, partnerId(42));
+    }
+
+    @Test
+    void testActivityLookup() throws SQLException {
+        assertUsesIndex("activity", ActivityRepository.class, "findByLinkIdAndTypeAndRole",
+                new Class[] { UUID.class, ActivityType.class, ActivityRole.class },
+                md5Uuid("c42"), ActivityType.CREDENTIAL_EXCHANGE.name(),
+                ActivityRole.CREDENTIAL_EXCHANGE_ISSUER.name());
+    }
+
+    @Test
+    void testChatMessageLookup() throws SQLException {
+        assertUsesIndex("chat_message", ChatMessageRepository.class, "findByPartnerIdOrderByCreatedAtAsc",
+                new Class[] { UUID.class }, partnerId(42));
+    }
+
+    @Test
+    void testStateTransitionLookup() throws SQLException {
+        assertUsesIndex("state_transition", StateTransitionRepository.class, "findByEntityIdOrderByTs",
+                new Class[] { UUID.class }, md5Uuid("c42"));
+    }
+
+    private void assertUsesIndex(String table, Class<?> repository, String method, Class<?>[] argTypes,
+            Object... args) throws SQLException {
+        ExecutableMethod<?, ?> m = beanContext.getBeanDefinition(repository).getRequiredMethod(method, argTypes);
+        // native queries keep the named parameters in the value
+        String query = m.stringValue(Query.class, "rawQuery")
+                .or(() -> m.stringValue(Query.class))
+                .orElseThrow();
+        assertEquals(args.length, query.chars().filter(c -> c == '?').count(), query);
+        String plan = explain(query, args);
+        assertFalse(plan.contains("Seq Scan on " + table), repository.getSimpleName() + "." + method
+                + " scans " + table + ":\n" + plan);
+    }
+
+    private String explain(String query, Object... args) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement ps = con.prepareStatement("EXPLAIN " + query)) {
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    private UUID partnerId(int i) throws SQLException {
+        return md5Uuid("p" + i);
+    }
+
+    private UUID md5Uuid(String value) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT md5(?)::uuid")) {
+            ps.setString(1, value);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getObject(1, UUID.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@MicronautTest(transactional = false)
+class ScheduledJobRepositoryTest {
+
+    private static final Duration PERIOD = Duration.ofSeconds(10);
+
+    private static final Duration TIMEOUT = Duration.ofHours(1);
+
+    @Inject
+    ScheduledJobRepository jobRepo;
+
+    @Test
+    void testConcurrentClaimsOnlyOneWins() throws Exception {
+        String job = "job-" + UUID.randomUUID();
+        jobRepo.createIfAbsent(job);
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> claims = List.of(
+                    executor.submit(() -> claim(start, job, "node-1", now)),
+                    executor.submit(() -> claim(start, job, "node-2", now)));
+            start.countDown();
+            int claimed = 0;
+            for (Future<Integer> c : claims) {
+                claimed += c.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(1, claimed);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1L, jobRepo.findById(job).orElseThrow().getRuns());
+    }
+
+    @Test
+    void testRunIsClaimedOnceThePreviousOneFinished() {
+        String job = "job-" + UUID.randomUUID();
+        jobRepo.createIfAbsent(job);
+        Instant t0 = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        assertEquals(1, jobRepo.claimRun(job, "node-1", t0, t0.minus(PERIOD), t0.minus(TIMEOUT)));
+
+        // the first run takes longer than the period
+        Instant t1 = t0.plus(PERIOD).plusSeconds(1);
+        assertEquals(0, jobRepo.claimRun(job, "node-2", t1, t1.minus(PERIOD), t1.minus(TIMEOUT)));
+
+        jobRepo.updateLastRun(job, t1, PERIOD.plusSeconds(1).toMillis(), true, null);
+        assertEquals(1, jobRepo.claimRun(job, "node-2", t1, t1.minus(PERIOD), t1.minus(TIMEOUT)));
+
+        // the node that ran it died, the run is abandoned after the timeout
+        Instant t2 = t1.plus(PERIOD).plusSeconds(1);
+        assertEquals(0, jobRepo.claimRun(job, "node-1", t2, t2.minus(PERIOD), t2.minus(TIMEOUT)));
+        Instant t3 = t1.plus(TIMEOUT).plusSeconds(1);
+        assertEquals(1, jobRepo.claimRun(job, "node-1", t3, t3.minus(PERIOD), t3.minus(TIMEOUT)));
+        assertEquals("node-1", jobRepo.findById(job).orElseThrow().getNode());
+    }
+
+    private int claim(CountDownLatch start, String job, String node, Instant now) throws InterruptedException {
+        start.await();
+        return jobRepo.claimRun(job, node, now, now.minus(PERIOD), now.minus(TIMEOUT));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.repository.replica;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRouterTest {
+
+    @Mock
+    DataSource dataSource;
+
+    @Mock
+    Connection connection;
+
+    @Mock
+    Statement statement;
+
+    @Mock
+    ResultSet resultSet;
+
+    private final Supplier<String> primary = () -> "primary";
+
+    private final Supplier<String> replica = () -> "replica";
+
+    private final Supplier<String> failing = () -> {
+        throw new IllegalStateException("connection refused");
+    };
+
+    private ReplicaRouter router;
+
+    @BeforeEach
+    void setup() {
+        router = new ReplicaRouter();
+        router.replicaDataSource = Optional.of(dataSource);
+        router.maxLag = Duration.ofSeconds(30);
+    }
+
+    @Test
+    void testNoReplicaConfigured() {
+        router.replicaDataSource = Optional.empty();
+        router.checkReplicaLag();
+        assertEquals("primary", router.read(primary, Optional.empty(), Supplier::get));
+    }
+
+    @Test
+    void testReplicaInSync() throws Exception {
+        mockLag(0.5);
+        router.checkReplicaLag();
+        assertTrue(router.isReplicaAvailable());
+        assertEquals("replica", router.read(primary, Optional.of(replica), Supplier::get));
+    }
+
+    @Test
+    void testReplicaLagging() throws Exception {
+        mockLag(120);
+        router.checkReplicaLag();
+        assertFalse(router.isReplicaAvailable());
+        assertEquals("primary", router.read(primary, Optional.of(replica), Supplier::get));
+    }
+
+    @Test
+    void testReplicaNotReachable() throws Exception {
+        when(dataSource.getConnection()).thenThrow(new SQLException("connection refused"));
+        router.checkReplicaLag();
+        assertFalse(router.isReplicaAvailable());
+        assertEquals("primary", router.read(primary, Optional.of(replica), Supplier::get));
+    }
+
+    @Test
+    void testFailingReplicaFallsBackToPrimary() throws Exception {
+        mockLag(0);
+        router.checkReplicaLag();
+        assertEquals("primary", router.read(primary, Optional.of(failing), Supplier::get));
+        assertFalse(router.isReplicaAvailable());
+        // not used until the next lag check
+        assertEquals("primary", router.read(primary, Optional.of(replica), Supplier::get));
+    }
+
+    private void mockLag(double seconds) throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(Boolean.TRUE);
+        when(resultSet.getDouble(1)).thenReturn(seconds);
+    }
+}
@@ -42,9 +42,11 @@ export default {
     return appAxios().post(`${ApiRoutes.ISSUER}/issue-credential/send`, data);
   },
 
-  listCredentialExchanges(id) {
+  // The backend returns one page per request, pass the nextCursor of the
+  // previous page to get the next one
+  listCredentialExchanges(id, cursor?) {
     return appAxios().get(`${ApiRoutes.ISSUER}/exchanges`, {
-      params: { partnerId: id },
+      params: { partnerId: id, cursor },
     });
   },
 
@@ -52,15 +54,19 @@ export default {
     return appAxios().get(`${ApiRoutes.ISSUER}/exchanges/${id}`);
   },
 
-  listCredentialExchangesAsIssuer(id?) {
+  getCredExTimeline(id) {
+    return appAxios().get(`${ApiRoutes.ISSUER}/exchanges/${id}/timeline`);
+  },
+
+  listCredentialExchangesAsIssuer(id?, cursor?) {
     return appAxios().get(`${ApiRoutes.ISSUER}/exchanges`, {
-      params: { role: CredentialExchangeRoles.ISSUER, partnerId: id },
+      params: { role: CredentialExchangeRoles.ISSUER, partnerId: id, cursor },
     });
   },
 
-  listCredentialExchangesAsHolder() {
+  listCredentialExchangesAsHolder(cursor?) {
     return appAxios().get(`${ApiRoutes.ISSUER}/exchanges`, {
-      params: { role: CredentialExchangeRoles.HOLDER },
+      params: { role: CredentialExchangeRoles.HOLDER, cursor },
     });
   },
   revokeCredential(id) {
@@ -15,7 +15,6 @@ export interface Partner {
   ariesSupport: boolean;
   incoming: boolean;
   state: string; // Connection state
-  stateToTimestamp: StateToTimestamp;
   alias: string;
   did: string;
   credential?: CredentialEntity[]; // Needs to be revised in the backend
@@ -23,12 +22,6 @@ export interface Partner {
   name: string;
 }
 
-export interface StateToTimestamp {
-  request: number;
-  response: number;
-  completed: number;
-}
-
 export interface CredentialEntity {
   type: string;
   typeLabel: string;
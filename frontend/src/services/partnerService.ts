@@ -32,4 +32,7 @@ export default {
   getPresentationExRecords(id: string) {
     return appAxios().get(`${ApiRoutes.PARTNERS}/${id}/proof-exchanges`);
   },
+  getPartnerTimeline(id: string) {
+    return appAxios().get(`${ApiRoutes.PARTNERS}/${id}/timeline`);
+  },
 };
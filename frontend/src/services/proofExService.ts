@@ -37,6 +37,9 @@ export default {
   getProofExRecord(id: string) {
     return appAxios().get(`${ApiRoutes.PROOF_EXCHANGES}/${id}`);
   },
+  getProofExTimeline(id: string) {
+    return appAxios().get(`${ApiRoutes.PROOF_EXCHANGES}/${id}/timeline`);
+  },
   deleteProofExRecord(id: string) {
     return appAxios().delete(`${ApiRoutes.PROOF_EXCHANGES}/${id}`);
   },